@@ -115,6 +115,31 @@ public class ModellerTest {
         checkTestBundleResource(resource);
     }
 
+    @Test
+    public void testParsingFromPersistedCache() throws Exception {
+        URL pathToTestBundle = getClass().getClassLoader().getResource("test.bundle.jar");
+        File bundle = new File(pathToTestBundle.toURI());
+        File cacheDir = new File(bundle.getParentFile(), "modelCache");
+        IOUtils.deleteRecursive(cacheDir);
+
+        ModelledResourceManagerImpl manager = new ModelledResourceManagerImpl();
+        manager.setModellingManager(new ModellingManagerImpl());
+        manager.setParserProxy(ParserProxyTest.getMockParserServiceProxy());
+        manager.setModellingPlugins(Collections.<ServiceModeller>emptyList());
+        manager.setCacheDirectory(cacheDir.getPath());
+        manager.getModelledResource("file:///test.bundle.uri", FileSystem.getFSRoot(bundle));
+        assertEquals(1, cacheDir.list().length);
+
+        // without a parser the bundle can only be modelled from the cache directory
+        ModelledResourceManagerImpl cached = new ModelledResourceManagerImpl();
+        cached.setModellingManager(new ModellingManagerImpl());
+        cached.setModellingPlugins(Collections.<ServiceModeller>emptyList());
+        cached.setCacheDirectory(cacheDir.getPath());
+        checkTestBundleResource(cached.getModelledResource("file:///test.bundle.uri", FileSystem.getFSRoot(bundle)));
+
+        IOUtils.deleteRecursive(cacheDir);
+    }
+
     private void checkTestBundleResource(ModelledResource resource) {
         assertNotNull(resource);
 
@@ -63,9 +63,14 @@ import org.osgi.service.jndi.JNDIConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Models the services and references of blueprint files. Parsing is thread safe as long as
+ * {@link #parseCDR(InputStream)} and {@link #parseCDR(List)} are, every call parses into a
+ * new registry, so a single proxy can be shared by all the threads modelling bundles.
+ */
 abstract public class AbstractParserProxy implements ParserProxy {
 	  private final Logger _logger = LoggerFactory.getLogger(AbstractParserProxy.class);
-	  private ModellingManager _modellingManager;
+	  private volatile ModellingManager _modellingManager;
 
 
       protected abstract ComponentDefinitionRegistry parseCDR(List<URL> blueprintsToParse) throws Exception;
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.application.modelling.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.jar.Attributes;
+
+import org.apache.aries.application.InvalidAttributeException;
+import org.apache.aries.application.modelling.ExportedService;
+import org.apache.aries.application.modelling.ImportedService;
+import org.apache.aries.application.modelling.ModellingManager;
+import org.apache.aries.application.modelling.ParsedServiceElements;
+import org.apache.aries.application.modelling.ServiceModeller;
+import org.apache.aries.util.filesystem.IDirectory;
+import org.apache.aries.util.filesystem.IFile;
+import org.apache.aries.util.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the parts of a bundle model that are expensive to build: the manifest, and the services
+ * and references found in the blueprint files and by the {@link ServiceModeller} plugins. Models are
+ * keyed by a hash of the bundle content, so a bundle is modelled once wherever it is deployed from.
+ * <p>
+ * When a directory is given the models are also written to it, one file per bundle, so that they
+ * survive restarts and can be shared between processes. Service properties of types other than
+ * strings and collections of strings are not written out, models using them are only kept in memory.
+ * <p>
+ * This class is thread safe.
+ */
+final class ModelCache
+{
+  private static final Logger _logger = LoggerFactory.getLogger(ModelCache.class);
+  /** Changes whenever the key or the file format changes, so that older files are ignored */
+  private static final int FORMAT_VERSION = 1;
+  private static final String SUFFIX = ".model";
+
+  private static final int STRING = 0;
+  private static final int ARRAY = 1;
+  private static final int LIST = 2;
+  private static final int SET = 3;
+  private static final int QUEUE = 4;
+
+  static final class Model
+  {
+    final Attributes manifest;
+    final ParsedServiceElements elements;
+
+    Model(Attributes manifest, ParsedServiceElements elements)
+    {
+      this.manifest = manifest;
+      this.elements = elements;
+    }
+  }
+
+  private final Map<String, Model> models;
+  private final File directory;
+
+  /**
+   * @param maxModels the number of models kept in memory
+   * @param directory the directory models are written to, or null to keep them in memory only
+   */
+  ModelCache(final int maxModels, File directory)
+  {
+    this.models = new LinkedHashMap<String, Model>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Model> eldest)
+      {
+        return size() > maxModels;
+      }
+    };
+    this.directory = directory;
+    if (directory != null && !!!directory.isDirectory() && !!!directory.mkdirs()) {
+      _logger.warn("Unable to create the model cache directory {}, models will be kept in memory only", directory);
+    }
+  }
+
+  /**
+   * Hash the content of a bundle. An archive on disk is hashed as it is, any other bundle is
+   * hashed file by file. The plugins are part of the key since they contribute to the model.
+   *
+   * @return the key of the bundle
+   */
+  String key(IDirectory bundle, Collection<ServiceModeller> plugins) throws IOException
+  {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    update(digest, String.valueOf(FORMAT_VERSION));
+    if (plugins != null) {
+      for (ServiceModeller plugin : plugins) update(digest, plugin.getClass().getName());
+    }
+
+    byte[] buffer = new byte[8192];
+    File archive = getArchive(bundle);
+    if (archive != null) {
+      digest(digest, new FileInputStream(archive), buffer);
+    } else {
+      List<IFile> files = new ArrayList<IFile>(bundle.listAllFiles());
+      Collections.sort(files, new Comparator<IFile>() {
+        public int compare(IFile f1, IFile f2)
+        {
+          return f1.getName().compareTo(f2.getName());
+        }
+      });
+      String prefix = bundle.getName();
+      for (IFile file : files) {
+        if (file.isDirectory()) continue;
+        String name = file.getName();
+        if (prefix.length() > 0 && name.startsWith(prefix)) name = name.substring(prefix.length());
+        update(digest, name);
+        digest(digest, file.open(), buffer);
+      }
+    }
+
+    StringBuilder result = new StringBuilder();
+    for (byte b : digest.digest()) {
+      result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return result.toString();
+  }
+
+  /**
+   * @return the cached model, or null if the bundle has not been modelled
+   */
+  Model get(String key, ModellingManager modellingManager)
+  {
+    synchronized (models) {
+      Model result = models.get(key);
+      if (result != null) return result;
+    }
+    if (directory == null) return null;
+
+    File file = new File(directory, key + SUFFIX);
+    if (!!!file.isFile()) return null;
+
+    Model result = null;
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      result = read(in, modellingManager);
+    } catch (Exception e) {
+      // a partly written or outdated file, it is written again once the bundle is modelled
+      _logger.debug("Unable to read the cached model " + file, e);
+    } finally {
+      IOUtils.close(in);
+    }
+    if (result != null) {
+      synchronized (models) {
+        models.put(key, result);
+      }
+    }
+    return result;
+  }
+
+  void put(String key, Model model)
+  {
+    synchronized (models) {
+      models.put(key, model);
+    }
+    if (directory == null || !!!directory.isDirectory()) return;
+
+    File file = new File(directory, key + SUFFIX);
+    File temp = null;
+    DataOutputStream out = null;
+    try {
+      temp = File.createTempFile(key, ".tmp", directory);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      boolean written = write(out, model);
+      out.close();
+      out = null;
+      // models of other processes are written the same, so it does not matter who wins
+      if (written && (temp.renameTo(file) || file.isFile())) temp = null;
+    } catch (IOException e) {
+      _logger.debug("Unable to write the cached model " + file, e);
+    } finally {
+      IOUtils.close(out);
+      if (temp != null) temp.delete();
+    }
+  }
+
+  /**
+   * @return the file of a bundle that is an archive on disk, or null
+   */
+  private static File getArchive(IDirectory bundle)
+  {
+    if (!!!bundle.isRoot()) return null;
+    try {
+      URL url = bundle.toURL();
+      if (!!!"file".equals(url.getProtocol())) return null;
+      File file = new File(url.toURI());
+      return file.isFile() ? file : null;
+    } catch (IOException e) {
+      return null;
+    } catch (URISyntaxException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static void update(MessageDigest digest, String s) throws IOException
+  {
+    digest.update(s.getBytes("UTF-8"));
+    digest.update((byte) 0);
+  }
+
+  private static void digest(MessageDigest digest, InputStream in, byte[] buffer) throws IOException
+  {
+    try {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      IOUtils.close(in);
+    }
+  }
+
+  /**
+   * @return false if the model holds values that cannot be written
+   */
+  private static boolean write(DataOutputStream out, Model model) throws IOException
+  {
+    out.writeInt(FORMAT_VERSION);
+
+    out.writeInt(model.manifest.size());
+    for (Map.Entry<Object, Object> e : model.manifest.entrySet()) {
+      writeString(out, e.getKey().toString());
+      writeString(out, (String) e.getValue());
+    }
+
+    Collection<ExportedService> services = model.elements.getServices();
+    out.writeInt(services.size());
+    for (ExportedService service : services) {
+      writeString(out, service.getName());
+      out.writeInt(service.getRanking());
+      writeStrings(out, service.getInterfaces());
+      Map<String, Object> props = service.getServiceProperties();
+      out.writeInt(props.size());
+      for (Map.Entry<String, Object> e : props.entrySet()) {
+        writeString(out, e.getKey());
+        Object value = e.getValue();
+        if (value instanceof String) {
+          out.writeByte(STRING);
+          writeString(out, (String) value);
+        } else if (value instanceof String[]) {
+          out.writeByte(ARRAY);
+          String[] values = (String[]) value;
+          out.writeInt(values.length);
+          for (String v : values) writeString(out, v);
+        } else if (value instanceof Collection && onlyStrings((Collection<?>) value)) {
+          // the collection types the blueprint parser creates
+          out.writeByte(value instanceof Set ? SET : value instanceof Queue ? QUEUE : LIST);
+          @SuppressWarnings("unchecked")
+          Collection<String> values = (Collection<String>) value;
+          writeStrings(out, values);
+        } else {
+          return false;
+        }
+      }
+    }
+
+    Collection<ImportedService> references = model.elements.getReferences();
+    out.writeInt(references.size());
+    for (ImportedService reference : references) {
+      out.writeBoolean(reference.isOptional());
+      writeString(out, reference.getInterface());
+      writeString(out, reference.getComponentName());
+      writeString(out, reference.getFilter());
+      writeString(out, reference.getId());
+      out.writeBoolean(reference.isList());
+    }
+    return true;
+  }
+
+  private static Model read(DataInputStream in, ModellingManager modellingManager)
+      throws IOException, InvalidAttributeException
+  {
+    if (in.readInt() != FORMAT_VERSION) return null;
+
+    Attributes manifest = new Attributes();
+    for (int i = in.readInt(); i > 0; i--) {
+      manifest.putValue(readString(in), readString(in));
+    }
+
+    Collection<ExportedService> services = new ArrayList<ExportedService>();
+    for (int i = in.readInt(); i > 0; i--) {
+      String name = readString(in);
+      int ranking = in.readInt();
+      Collection<String> interfaces = readStrings(in, new ArrayList<String>());
+      Map<String, Object> props = new LinkedHashMap<String, Object>();
+      for (int j = in.readInt(); j > 0; j--) {
+        String key = readString(in);
+        int type = in.readByte();
+        Object value;
+        if (type == STRING) {
+          value = readString(in);
+        } else if (type == ARRAY) {
+          String[] values = new String[in.readInt()];
+          for (int k = 0; k < values.length; k++) values[k] = readString(in);
+          value = values;
+        } else if (type == SET) {
+          value = readStrings(in, new LinkedHashSet<String>());
+        } else if (type == QUEUE) {
+          value = readStrings(in, new LinkedList<String>());
+        } else if (type == LIST) {
+          value = readStrings(in, new ArrayList<String>());
+        } else {
+          throw new IOException("Unknown property type " + type);
+        }
+        props.put(key, value);
+      }
+      services.add(modellingManager.getExportedService(name, ranking, interfaces, props));
+    }
+
+    Collection<ImportedService> references = new ArrayList<ImportedService>();
+    for (int i = in.readInt(); i > 0; i--) {
+      boolean optional = in.readBoolean();
+      String iface = readString(in);
+      String componentName = readString(in);
+      String filter = readString(in);
+      String id = readString(in);
+      boolean isMultiple = in.readBoolean();
+      references.add(modellingManager.getImportedService(optional, iface, componentName, filter, id, isMultiple));
+    }
+
+    return new Model(manifest, modellingManager.getParsedServiceElements(services, references));
+  }
+
+  private static boolean onlyStrings(Collection<?> values)
+  {
+    for (Object o : values) {
+      if (!!!(o instanceof String)) return false;
+    }
+    return true;
+  }
+
+  private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException
+  {
+    out.writeInt(values.size());
+    for (String v : values) writeString(out, v);
+  }
+
+  private static <T extends Collection<String>> T readStrings(DataInputStream in, T result) throws IOException
+  {
+    for (int i = in.readInt(); i > 0; i--) result.add(readString(in));
+    return result;
+  }
+
+  /**
+   * Unlike {@link DataOutputStream#writeUTF(String)} this takes null and strings longer than 64k,
+   * which manifest headers can be.
+   */
+  private static void writeString(DataOutputStream out, String s) throws IOException
+  {
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes("UTF-8");
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException
+  {
+    int length = in.readInt();
+    if (length == -1) return null;
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+}
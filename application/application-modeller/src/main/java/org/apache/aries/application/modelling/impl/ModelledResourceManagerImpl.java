@@ -22,6 +22,7 @@ package org.apache.aries.application.modelling.impl;
 import static org.apache.aries.application.utils.AppConstants.LOG_ENTRY;
 import static org.apache.aries.application.utils.AppConstants.LOG_EXIT;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -35,8 +36,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.apache.aries.application.InvalidAttributeException;
 import org.apache.aries.application.modelling.ExportedService;
@@ -60,12 +59,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+/**
+ * Models bundles, keeping the models in a cache keyed by the bundle content. The cache is written
+ * to the directory given by the {@value #CACHE_DIRECTORY_PROPERTY} system property, or set with
+ * {@link #setCacheDirectory(String)}, if any.
+ * <p>
+ * Bundles can be modelled concurrently, the {@link ParserProxy} is shared by all the threads.
+ */
 public class ModelledResourceManagerImpl implements ModelledResourceManager
 {
+  /** The directory the models are written to, they are kept in memory only if this is not set */
+  public static final String CACHE_DIRECTORY_PROPERTY = "org.apache.aries.application.modelling.cache.dir";
+  /** The number of models kept in memory */
+  public static final String CACHE_SIZE_PROPERTY = "org.apache.aries.application.modelling.cache.size";
+
+  private static final int CACHE_SIZE = Integer.getInteger(CACHE_SIZE_PROPERTY, 500);
+
   private final Logger _logger = LoggerFactory.getLogger(ModelledResourceManagerImpl.class);
   private ParserProxy _parserProxy;
   private ModellingManager _modellingManager;
   private Collection<ServiceModeller> modellingPlugins;
+  private volatile ModelCache _cache = newCache(getSystemProperty(CACHE_DIRECTORY_PROPERTY));
 
   public void setModellingPlugins(Collection<ServiceModeller> modellingPlugins) {
     this.modellingPlugins = modellingPlugins;
@@ -83,6 +97,25 @@ public class ModelledResourceManagerImpl implements ModelledResourceManager
     return _parserProxy;
   }
 
+  /**
+   * @param directory the directory to write the models to, null to keep them in memory only
+   */
+  public void setCacheDirectory(String directory) {
+    _cache = newCache(directory);
+  }
+
+  private static ModelCache newCache(String directory) {
+    return new ModelCache(CACHE_SIZE, (directory == null || directory.length() == 0) ? null : new File(directory));
+  }
+
+  private static String getSystemProperty(final String name) {
+    return AccessController.doPrivileged(new PrivilegedAction<String>() {
+      public String run() {
+        return System.getProperty(name);
+      }
+    });
+  }
+
   /**
    * For a given file, which we know to be a bundle, parse out all the
    * service, reference and reference-list elements. This method will return
@@ -93,16 +126,14 @@ public class ModelledResourceManagerImpl implements ModelledResourceManager
    * @throws OpenFailureException 
    */
   public ParsedServiceElements getServiceElements (IDirectory archive) throws ModellerException { 
-      BundleManifest bm = BundleManifest.fromBundle(archive);
-      return getServiceElements(bm, archive);
+      return getModel(archive).elements;
   }
   
   public ParsedServiceElements getServiceElements(InputStreamProvider archive) throws ModellerException {
       ICloseableDirectory dir = null;
       try {
           dir = FileSystem.getFSRoot(archive.open());
-          BundleManifest bm = BundleManifest.fromBundle(dir);
-          return getServiceElements(bm, dir);
+          return getModel(dir).elements;
       } catch (IOException e) {
           throw new ModellerException(e);
       } finally {
@@ -182,9 +213,7 @@ public class ModelledResourceManagerImpl implements ModelledResourceManager
     _logger.debug(LOG_ENTRY, "getModelledResource", new Object[]{uri, bundle});
 
     if (bundle != null) {
-        BundleManifest bm = BundleManifest.fromBundle(bundle);
-        ParsedServiceElements pse = getServiceElements(bm, bundle);
-        return model(uri, bm, pse);
+        return model(uri, getModel(bundle));
     } else {
       // The bundle does not exist
       ModellerException me = new ModellerException(MessageUtil.getMessage("INVALID_BUNDLE_LOCATION", bundle));
@@ -194,8 +223,33 @@ public class ModelledResourceManagerImpl implements ModelledResourceManager
 
   }
   
-  private ModelledResource model(String uri, BundleManifest bm, ParsedServiceElements pse) throws ModellerException {
-      Attributes attributes = bm.getRawAttributes();
+  /**
+   * Get the manifest and the service elements of a bundle from the cache, or parse them.
+   */
+  private ModelCache.Model getModel(IDirectory bundle) throws ModellerException {
+      ModelCache cache = _cache;
+      String key = null;
+      try {
+          key = cache.key(bundle, modellingPlugins);
+      } catch (IOException e) {
+          // model the bundle without the cache
+          _logger.debug("Unable to hash the content of " + bundle, e);
+      }
+
+      ModelCache.Model result = (key == null) ? null : cache.get(key, _modellingManager);
+      if (result == null) {
+          BundleManifest bm = BundleManifest.fromBundle(bundle);
+          ParsedServiceElements pse = getServiceElements(bm, bundle);
+          result = new ModelCache.Model(bm.getRawAttributes(), pse);
+          if (key != null) cache.put(key, result);
+      }
+      return result;
+  }
+
+  private ModelledResource model(String uri, ModelCache.Model model) throws ModellerException {
+      // the cached manifest is shared
+      Attributes attributes = (Attributes) model.manifest.clone();
+      ParsedServiceElements pse = model.elements;
       ModelledResource mbi = null;
       try {
         mbi = _modellingManager.getModelledResource(uri, attributes, pse.getReferences(), pse.getServices());
@@ -272,77 +326,4 @@ public class ModelledResourceManagerImpl implements ModelledResourceManager
     return result;
   }
 
-  private class ZipBlueprintIterator implements Iterator<InputStream> {
-      private final ZipInputStream zip;
-      private final BundleBlueprintParser bpParser;
-      private boolean valid;
-      
-      public ZipBlueprintIterator(ZipInputStream zip, BundleBlueprintParser bpParser) {
-          this.zip = zip;
-          this.bpParser = bpParser;
-      }
-
-      public boolean hasNext() {
-          valid = false;
-          ZipEntry entry;
-          
-          try {
-              while (!valid && (entry = zip.getNextEntry()) != null) {
-                  if (!entry.isDirectory()) {
-                      String name = entry.getName();
-                      String directory = "";
-                      int index = name.lastIndexOf('/');
-                      if (index != -1) {
-                          directory = name.substring(0, index);
-                          name = name.substring(index+1);
-                      }
-                      
-                      if (bpParser.isBPFile(directory, name)) {
-                          valid = true;
-                      }
-                      
-                  }
-              }
-          } catch (IOException e) {
-              _logger.error("Could not open next zip entry", e);
-          }
-          
-          return valid;
-      }
-
-      public InputStream next() {
-          if (!valid) throw new IllegalStateException();
-          
-          return new InputStream() {
-            public int read() throws IOException {
-                return zip.read();
-            }
-              
-            @Override
-            public void close() {
-                // intercept close so that the zipinputstream stays open
-            }
-          };
-      }
-
-      public void remove() {
-          throw new UnsupportedOperationException();
-      }
-      
-  }
-  
-  /**
-   * Internal use only. Different to the general Iterable interface this can return an Iterator only once.
-   */
-  private Iterable<InputStream> findBlueprints(BundleManifest bundleMf, InputStream stream) {
-      final BundleBlueprintParser bpParser = new BundleBlueprintParser(bundleMf);
-      final ZipInputStream zip = new ZipInputStream(stream);
-      
-      return new Iterable<InputStream>() {
-        public Iterator<InputStream> iterator() {
-            return new ZipBlueprintIterator(zip, bpParser);
-        }
-    };
-  }
-
 }
@@ -22,8 +22,7 @@ package org.apache.aries.application.resolver.obr;
 import static org.apache.aries.application.utils.AppConstants.LOG_ENTRY;
 import static org.apache.aries.application.utils.AppConstants.LOG_EXIT;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -38,6 +37,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.aries.application.ApplicationMetadata;
 import org.apache.aries.application.Content;
@@ -90,6 +91,12 @@ public class OBRAriesResolver implements AriesApplicationResolver
   private PlatformRepository platformRepository;
   private ModellingManager modellingManager;
   private ModellingHelper modellingHelper;
+  /** The capabilities read from the platform repositories, by repository uri */
+  private final ConcurrentMap<URI, PlatformCapabilities> platformCapabilities = new ConcurrentHashMap<URI, PlatformCapabilities>();
+  private final Object localRepositoryLock = new Object();
+  private Repository localRepositorySource;
+  private long localRepositoryLastModified;
+  private Repository wrappedLocalRepository;
   
   public void setModellingManager (ModellingManager m) { 
     modellingManager = m;
@@ -232,14 +239,8 @@ public class OBRAriesResolver implements AriesApplicationResolver
   {
     log.debug(LOG_ENTRY, "getConfiguredObrResolver", new Object[]{appName, appVersion,byValueBundles });
     DataModelHelper helper = repositoryAdmin.getHelper();
-    Repository appRepo;
-    try {      
-      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-      RepositoryGeneratorImpl.generateRepository(repositoryAdmin, appName + "_" + appVersion, byValueBundles, bytesOut);
-      appRepo = helper.readRepository(new InputStreamReader(new ByteArrayInputStream(bytesOut.toByteArray())));
-    } catch (Exception e) {
-      throw new ResolverException(e);
-    } 
+    // the by value bundles are handed to OBR as they are, rather than written to repository xml and read back
+    Repository appRepo = helper.repository(RepositoryGeneratorImpl.generateResources(repositoryAdmin, byValueBundles));
         
     List<Repository> resolveRepos = new ArrayList<Repository>();
     // add system repository
@@ -360,34 +361,61 @@ public class OBRAriesResolver implements AriesApplicationResolver
   private void addPlatformRepositories (Resolver obrResolver, String appName, PlatformRepository platformRepository)
   { 
     log.debug(LOG_ENTRY, "addPlatformRepositories", new Object[]{obrResolver, appName});
-    DataModelHelper helper = repositoryAdmin.getHelper();
     if (platformRepository != null) {
       Collection<URI> uris = platformRepository.getPlatformRepositoryURLs();
       if ((uris != null) && (!uris.isEmpty())) {
         for (URI uri : uris) {
-          InputStream is = null;
-          try {
-            is = uri.toURL().openStream();
-            Reader repoReader = new InputStreamReader(is);
-            Repository aPlatformRepo = helper.readRepository(repoReader);
-            Resource resources[] = aPlatformRepo.getResources();
-            for (Resource r : resources) { 
-              Capability[] caps = r.getCapabilities();
-              for (Capability c : caps) { 
-                obrResolver.addGlobalCapability(c);
-              }
-            }
-          } catch (Exception e) {
-            // not a big problem
-            log.error(MessageUtil.getMessage("RESOLVER_UNABLE_TO_READ_REPOSITORY_EXCEPTION", new Object[]{appName, uri}) );
-          } finally { 
-            IOUtils.close(is);
+          for (Capability c : getPlatformCapabilities(uri, appName)) { 
+            obrResolver.addGlobalCapability(c);
           }
         }
       }
     }
     log.debug(LOG_EXIT, "addPlatformRepositories");
   }
+
+  /**
+   * Get the capabilities of a platform repository. The repository xml is read once and kept until
+   * the repository file changes, repositories which are not files are read once only, as
+   * OBR does for the repositories added to the repository admin.
+   */
+  private Capability[] getPlatformCapabilities(URI uri, String appName)
+  {
+    long lastModified = 0;
+    if ("file".equals(uri.getScheme())) {
+      try {
+        lastModified = new File(uri).lastModified();
+      } catch (IllegalArgumentException e) {
+        // not a plain file uri, treat it as any other uri
+      }
+    }
+    PlatformCapabilities cached = platformCapabilities.get(uri);
+    if (cached != null && cached.lastModified == lastModified) {
+      return cached.capabilities;
+    }
+
+    List<Capability> result = new ArrayList<Capability>();
+    InputStream is = null;
+    try {
+      is = uri.toURL().openStream();
+      Reader repoReader = new InputStreamReader(is);
+      Repository aPlatformRepo = repositoryAdmin.getHelper().readRepository(repoReader);
+      Resource resources[] = aPlatformRepo.getResources();
+      for (Resource r : resources) { 
+        result.addAll(Arrays.asList(r.getCapabilities()));
+      }
+    } catch (Exception e) {
+      // not a big problem, and the repository is read again next time
+      log.error(MessageUtil.getMessage("RESOLVER_UNABLE_TO_READ_REPOSITORY_EXCEPTION", new Object[]{appName, uri}) );
+      return new Capability[0];
+    } finally { 
+      IOUtils.close(is);
+    }
+
+    Capability[] capabilities = result.toArray(new Capability[result.size()]);
+    platformCapabilities.put(uri, new PlatformCapabilities(capabilities, lastModified));
+    return capabilities;
+  }
   
   private Resource createApplicationResource( String appName, Version appVersion,
       List<Content> appContent)
@@ -718,14 +746,26 @@ public class OBRAriesResolver implements AriesApplicationResolver
    {
        Repository localRepository = repositoryAdmin.getLocalRepository();
        
-       Resource[] resources = localRepository.getResources();
-
-       Resource[] newResources = new Resource[resources.length];
-       for (int i = 0; i < resources.length; i++) {
-           newResources[i] = new ResourceWrapper(resources[i]); 
+       synchronized (localRepositoryLock) {
+           // the local repository changes when bundles are installed or uninstalled, until then the wrapped
+           // resources can be reused
+           long lastModified = localRepository.getLastModified();
+           if (localRepository == localRepositorySource && lastModified == localRepositoryLastModified) {
+               return wrappedLocalRepository;
+           }
+           
+           Resource[] resources = localRepository.getResources();
+
+           Resource[] newResources = new Resource[resources.length];
+           for (int i = 0; i < resources.length; i++) {
+               newResources[i] = new ResourceWrapper(resources[i]); 
+           }
+           
+           wrappedLocalRepository = repositoryAdmin.getHelper().repository(newResources);
+           localRepositorySource = localRepository;
+           localRepositoryLastModified = lastModified;
+           return wrappedLocalRepository;
        }
-       
-       return repositoryAdmin.getHelper().repository(newResources);
    }
    
 
@@ -733,4 +773,16 @@ public class OBRAriesResolver implements AriesApplicationResolver
      return Boolean.parseBoolean(System.getProperty(AppConstants.PROVISON_EXCLUDE_LOCAL_REPO_SYSPROP));     
    }
 
+   private static final class PlatformCapabilities
+   {
+     private final Capability[] capabilities;
+     private final long lastModified;
+
+     PlatformCapabilities(Capability[] capabilities, long lastModified)
+     {
+       this.capabilities = capabilities;
+       this.lastModified = lastModified;
+     }
+   }
+
 }
@@ -32,7 +32,6 @@ import java.util.Map;
 
 import org.apache.aries.application.modelling.Provider;
 import org.apache.felix.bundlerepository.Capability;
-import org.apache.felix.bundlerepository.DataModelHelper;
 import org.apache.felix.bundlerepository.Property;
 import org.apache.felix.bundlerepository.RepositoryAdmin;
 import org.osgi.framework.Constants;
@@ -81,66 +80,40 @@ public class OBRCapability implements Capability
   public Property[] getProperties()
   {
     logger.debug(LOG_ENTRY, "getProperties");
-    DataModelHelper helper = repositoryAdmin.getHelper();
     
     List<Property> properties = new ArrayList<Property>();
     
     // Felix BundleRepository doesn't appear to correctly cope with String[] value properties
-    // as a result we can't do multi value service properties. OBR doesn't really like implementations
-    // of its interfaces that it didn't generate, but it is a little weird when it does and doesn't.
-    // so we create a Property implemenation which we use to generate the OBR xml for a property which
-    // we then get OBR to parse. This is really convoluted and nasty.
-    for (final Map.Entry<String, Object> entry : _props.entrySet()) {
-      String propXML = helper.writeProperty(new Property() {
-        @Override
-        public String getValue()
-        {
-          Object value = entry.getValue();
-          
-          if (value instanceof String[]) {
-            String newValue = Arrays.toString((String[])value);
-            value = newValue.substring(1, newValue.length() - 1);
-          } else if (value instanceof Collection) {
-            //We can't rely on Collections having a sensible toString() as it isn't
-            //part of the API (although all base Java ones do). We can use an array
-            //to get consistency
-            String newValue = Arrays.toString(((Collection<?>)value).toArray());
-            value = newValue.substring(1, newValue.length() - 1);
-          }
-          
-          return String.valueOf(value);
-        }
-        
-        @Override
-        public String getType()
-        {
-          String name = entry.getKey();
-          String type = null;
-          if (Constants.VERSION_ATTRIBUTE.equals(name) || (Constants.BUNDLE_VERSION_ATTRIBUTE.equals(name))) {
-            type =  "version";
-          } else if (Constants.OBJECTCLASS.equals(name) || (Constants.MANDATORY_DIRECTIVE + ":").equals(name) ||
-              entry.getValue() instanceof String[] || entry.getValue() instanceof Collection)
-            type = "set";
-          return type;
-        }
-        
-        @Override
-        public String getName()
-        {
-          return entry.getKey();
-        }
-        
-        @Override
-        public Object getConvertedValue()
-        {
-          return null;
-        }
-      });
+    // as a result we can't do multi value service properties. So we turn them into the
+    // comma separated 'set' properties OBR would read from repository xml.
+    for (Map.Entry<String, Object> entry : _props.entrySet()) {
+      String name = entry.getKey();
+      Object value = entry.getValue();
+      String type = null;
+
+      if (value instanceof String[]) {
+        String newValue = Arrays.toString((String[])value);
+        value = newValue.substring(1, newValue.length() - 1);
+        type = "set";
+      } else if (value instanceof Collection) {
+        //We can't rely on Collections having a sensible toString() as it isn't
+        //part of the API (although all base Java ones do). We can use an array
+        //to get consistency
+        String newValue = Arrays.toString(((Collection<?>)value).toArray());
+        value = newValue.substring(1, newValue.length() - 1);
+        type = "set";
+      }
+
+      if (Constants.VERSION_ATTRIBUTE.equals(name) || (Constants.BUNDLE_VERSION_ATTRIBUTE.equals(name))) {
+        type =  "version";
+      } else if (Constants.OBJECTCLASS.equals(name) || (Constants.MANDATORY_DIRECTIVE + ":").equals(name)) {
+        type = "set";
+      }
       
       try {
-        properties.add(helper.readProperty(propXML));
-      } catch (Exception e) {
-        // Do nothing and hope it OBR doesn't generate XML it can't parse.
+        properties.add(new OBRProperty(name, type, String.valueOf(value)));
+      } catch (IllegalArgumentException e) {
+        // Do nothing, OBR would not have been able to read this property either.
       }
     }
     
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.aries.application.resolver.obr.impl;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.apache.felix.bundlerepository.Property;
+import org.osgi.framework.Version;
+
+/**
+ * An OBR property whose value is converted the same way as when OBR reads the property from
+ * repository xml, so that it can be handed to OBR without writing and parsing the xml.
+ */
+public final class OBRProperty implements Property
+{
+  private final String name;
+  private final String type;
+  private final String value;
+  private final Object convertedValue;
+
+  /**
+   * @param name the property name
+   * @param type one of the types of {@link Property}, or null for a string
+   * @param value the property value
+   * @throws IllegalArgumentException if the value cannot be converted to the type
+   */
+  public OBRProperty(String name, String type, String value)
+  {
+    this.name = name;
+    this.type = type;
+    this.value = value;
+    this.convertedValue = convert(value, type);
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public String getType()
+  {
+    return type;
+  }
+
+  public String getValue()
+  {
+    return value;
+  }
+
+  public Object getConvertedValue()
+  {
+    return convertedValue;
+  }
+
+  @Override
+  public String toString()
+  {
+    return name + "=" + value;
+  }
+
+  private Object convert(String value, String type)
+  {
+    if (value == null || type == null) return value;
+
+    try {
+      if (Property.VERSION.equalsIgnoreCase(type)) {
+        return Version.parseVersion(value);
+      } else if (Property.URL.equalsIgnoreCase(type)) {
+        return new URL(value);
+      } else if (Property.URI.equalsIgnoreCase(type)) {
+        return new URI(value);
+      } else if (Property.LONG.equalsIgnoreCase(type)) {
+        return Long.valueOf(value.trim());
+      } else if (Property.DOUBLE.equalsIgnoreCase(type)) {
+        return Double.valueOf(value.trim());
+      } else if (Property.SET.equalsIgnoreCase(type)) {
+        Set<String> result = new HashSet<String>();
+        StringTokenizer st = new StringTokenizer(value, ",");
+        while (st.hasMoreTokens()) {
+          result.add(st.nextToken().trim());
+        }
+        return result;
+      }
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Invalid " + type + " value for property " + name, e);
+    }
+    return value;
+  }
+}
@@ -34,6 +34,11 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -56,6 +61,7 @@ import org.apache.aries.util.filesystem.FileUtils;
 import org.apache.aries.util.filesystem.IDirectory;
 import org.apache.aries.util.io.IOUtils;
 import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.DataModelHelper;
 import org.apache.felix.bundlerepository.Property;
 import org.apache.felix.bundlerepository.RepositoryAdmin;
 import org.apache.felix.bundlerepository.Requirement;
@@ -73,6 +79,7 @@ public final class RepositoryGeneratorImpl implements RepositoryGenerator
   private static Logger logger = LoggerFactory.getLogger(RepositoryGeneratorImpl.class);
   private static Collection<BundleResourceTransformer> bundleResourceTransformers = new ArrayList<BundleResourceTransformer>();
   private static final String MANDATORY_DIRECTIVE = Constants.MANDATORY_DIRECTIVE + ":";
+  private static final int MODELLING_THREADS = Runtime.getRuntime().availableProcessors();
 
 
   public void setModelledResourceManager( ModelledResourceManager modelledResourceManager) {
@@ -217,13 +224,7 @@ public final class RepositoryGeneratorImpl implements RepositoryGenerator
     root.setAttribute("name", repositoryName);
     doc.appendChild(root);
     for (ModelledResource mr : byValueBundles) {
-      BundleResource bundleResource = new BundleResource(mr, repositoryAdmin);
-      if (bundleResourceTransformers.size() > 0) { 
-        for (BundleResourceTransformer brt : bundleResourceTransformers) { 
-          bundleResource = brt.transform (bundleResource);
-        }
-      }
-      writeResource (bundleResource, mr.getLocation(), doc, root);
+      writeResource (toBundleResource(repositoryAdmin, mr), mr.getLocation(), doc, root);
     }
 
     try {
@@ -236,7 +237,42 @@ public final class RepositoryGeneratorImpl implements RepositoryGenerator
     }
     logger.debug(LOG_EXIT, "generateRepository");
   }
-  private static String getType(String name) {
+  /**
+   * Build the OBR resources of some bundles, as they would be read from the repository xml generated
+   * for the bundles, without going through the xml.
+   * 
+   * @param repositoryAdmin the repository admin
+   * @param byValueBundles the bundles
+   * @return a resource for each bundle
+   * @throws ResolverException if a bundle has a capability or requirement OBR cannot read
+   */
+  public static Resource[] generateResources(RepositoryAdmin repositoryAdmin,
+      Collection<? extends ModelledResource> byValueBundles) throws ResolverException {
+    logger.debug(LOG_ENTRY, "generateResources", new Object[]{repositoryAdmin, byValueBundles});
+    DataModelHelper helper = repositoryAdmin.getHelper();
+    Resource[] result = new Resource[byValueBundles.size()];
+    int i = 0;
+    for (ModelledResource mr : byValueBundles) {
+      try {
+        result[i++] = new RepositoryResource(toBundleResource(repositoryAdmin, mr), helper);
+      } catch (IllegalArgumentException iae) {
+        logger.debug(LOG_EXIT, "generateResources", iae);
+        throw new ResolverException(iae);
+      }
+    }
+    logger.debug(LOG_EXIT, "generateResources", result);
+    return result;
+  }
+
+  private static BundleResource toBundleResource(RepositoryAdmin repositoryAdmin, ModelledResource mr) {
+    BundleResource bundleResource = new BundleResource(mr, repositoryAdmin);
+    for (BundleResourceTransformer brt : bundleResourceTransformers) { 
+      bundleResource = brt.transform (bundleResource);
+    }
+    return bundleResource;
+  }
+
+  static String getType(String name) {
     logger.debug(LOG_ENTRY, "getType", new Object[]{name});
     String type = null;
     if (Constants.VERSION_ATTRIBUTE.equals(name) || (Constants.BUNDLE_VERSION_ATTRIBUTE.equals(name))) {
@@ -256,6 +292,7 @@ public final class RepositoryGeneratorImpl implements RepositoryGenerator
     File wstemp = null;
     Set<ModelledResource> mrs = new HashSet<ModelledResource>();
     if (source != null) {
+      ExecutorService executor = null;
       try {
         for (String urlString : source) {
           
@@ -279,8 +316,11 @@ public final class RepositoryGeneratorImpl implements RepositoryGenerator
           }
 
         }
+        // the bundles are modelled in parallel, while the remote ones are downloaded
+        executor = Executors.newFixedThreadPool(Math.min(MODELLING_THREADS, Math.max(1, jarFiles.size())));
+        List<Future<ModelledResource>> models = new ArrayList<Future<ModelledResource>>();
         for (URI jarFileURI : jarFiles) {
-          String uriString = jarFileURI.toString();
+          final String uriString = jarFileURI.toString();
           File f = null;
           if ("file".equals(jarFileURI.toURL().getProtocol())) {
             f = new File(jarFileURI);
@@ -303,11 +343,23 @@ public final class RepositoryGeneratorImpl implements RepositoryGenerator
             f = new File(wstemp, fileName);
             out = new FileOutputStream(f);
             IOUtils.copy(in, out);
+            // the bundle is modelled on another thread, so it must be complete
+            IOUtils.close(out);
           } 
 
-          IDirectory jarDir = FileSystem.getFSRoot(f);
-          mrs.add(modelledResourceManager.getModelledResource(uriString, jarDir));
-
+          final IDirectory jarDir = FileSystem.getFSRoot(f);
+          models.add(executor.submit(new Callable<ModelledResource>() {
+            public ModelledResource call() throws Exception {
+              return modelledResourceManager.getModelledResource(uriString, jarDir);
+            }
+          }));
+        }
+        for (Future<ModelledResource> model : models) {
+          try {
+            mrs.add(model.get());
+          } catch (ExecutionException ee) {
+            throw (ee.getCause() instanceof Exception) ? (Exception) ee.getCause() : ee;
+          }
         }
         generateRepository("Resource Repository", mrs, fout);
 
@@ -315,6 +367,9 @@ public final class RepositoryGeneratorImpl implements RepositoryGenerator
         logger.debug(LOG_EXIT, "generateRepository");
         throw new IOException(e);
       } finally {
+        if (executor != null) {
+          executor.shutdownNow();
+        }
         IOUtils.close(in);
         IOUtils.close(out);
         if (wstemp != null) {
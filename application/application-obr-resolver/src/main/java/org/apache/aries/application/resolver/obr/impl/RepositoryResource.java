@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.aries.application.resolver.obr.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.DataModelHelper;
+import org.apache.felix.bundlerepository.Property;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+import org.osgi.framework.Version;
+
+/**
+ * An immutable copy of a resource, such as a {@link org.apache.aries.application.resolver.obr.ext.BundleResource},
+ * that OBR sees the same way as the resource written to repository xml by {@link RepositoryGeneratorImpl}
+ * and read back. Capability properties are typed and stripped of quotes as in the xml, and
+ * requirements are matched by OBR's own filters. This lets an application's bundles be resolved
+ * without serializing them to xml and parsing it again.
+ */
+public final class RepositoryResource implements Resource
+{
+  private final String symbolicName;
+  private final Version version;
+  private final String uri;
+  private final String id;
+  private final String presentationName;
+  private final Map<String, Object> properties;
+  private final Capability[] capabilities;
+  private final Requirement[] requirements;
+
+  /**
+   * @param resource the resource to copy
+   * @param helper the helper of the repository admin, used to build the requirement filters
+   * @throws IllegalArgumentException if a capability property or a requirement filter is invalid
+   */
+  public RepositoryResource(Resource resource, DataModelHelper helper)
+  {
+    symbolicName = resource.getSymbolicName();
+    version = resource.getVersion();
+    uri = resource.getURI();
+    id = symbolicName + "/" + version;
+    presentationName = resource.getPresentationName();
+
+    Map<String, Object> props = new HashMap<String, Object>();
+    props.put(SYMBOLIC_NAME, symbolicName);
+    props.put(VERSION, version);
+    props.put(ID, id);
+    if (uri != null) props.put(URI, uri);
+    if (presentationName != null) props.put(PRESENTATION_NAME, presentationName);
+    properties = Collections.unmodifiableMap(props);
+
+    Capability[] caps = resource.getCapabilities();
+    capabilities = new Capability[caps.length];
+    for (int i = 0; i < caps.length; i++) {
+      capabilities[i] = new RepositoryCapability(caps[i]);
+    }
+
+    Requirement[] reqs = resource.getRequirements();
+    requirements = new Requirement[reqs.length];
+    for (int i = 0; i < reqs.length; i++) {
+      requirements[i] = new RepositoryRequirement(reqs[i], helper);
+    }
+  }
+
+  public Capability[] getCapabilities()
+  {
+    return capabilities.clone();
+  }
+
+  public String[] getCategories()
+  {
+    return new String[0];
+  }
+
+  public String getId()
+  {
+    return id;
+  }
+
+  public String getPresentationName()
+  {
+    return presentationName;
+  }
+
+  public Map getProperties()
+  {
+    return properties;
+  }
+
+  public Requirement[] getRequirements()
+  {
+    return requirements.clone();
+  }
+
+  public Long getSize()
+  {
+    return null;
+  }
+
+  public String getSymbolicName()
+  {
+    return symbolicName;
+  }
+
+  public String getURI()
+  {
+    return uri;
+  }
+
+  public Version getVersion()
+  {
+    return version;
+  }
+
+  public boolean isLocal()
+  {
+    return false;
+  }
+
+  @Override
+  public String toString()
+  {
+    return id;
+  }
+
+  private static final class RepositoryCapability implements Capability
+  {
+    private final String name;
+    private final Property[] properties;
+    private final Map<String, Object> propertiesAsMap;
+
+    RepositoryCapability(Capability capability)
+    {
+      name = capability.getName();
+
+      Property[] props = capability.getProperties();
+      properties = new Property[props.length];
+      Map<String, Object> map = new HashMap<String, Object>();
+      for (int i = 0; i < props.length; i++) {
+        String propName = props[i].getName();
+        String value = props[i].getValue();
+        String type = (props[i].getType() == null) ? RepositoryGeneratorImpl.getType(propName) : props[i].getType();
+
+        // remove the beginning " and tailing "
+        if (value.startsWith("\"") && value.endsWith("\""))
+          value = value.substring(1, value.length() - 1);
+        properties[i] = new OBRProperty(propName, type, value);
+        // OBR looks up capability properties by lower case name
+        map.put(propName.toLowerCase(), properties[i].getConvertedValue());
+      }
+      propertiesAsMap = Collections.unmodifiableMap(map);
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public Property[] getProperties()
+    {
+      return properties.clone();
+    }
+
+    public Map getPropertiesAsMap()
+    {
+      return propertiesAsMap;
+    }
+
+    @Override
+    public String toString()
+    {
+      return name + ":" + propertiesAsMap;
+    }
+  }
+
+  private static final class RepositoryRequirement implements Requirement
+  {
+    private final Requirement filter;
+    private final boolean extend;
+    private final boolean multiple;
+    private final boolean optional;
+    private final String comment;
+
+    RepositoryRequirement(Requirement requirement, DataModelHelper helper)
+    {
+      filter = helper.requirement(requirement.getName(), requirement.getFilter());
+      extend = requirement.isExtend();
+      multiple = requirement.isMultiple();
+      optional = requirement.isOptional();
+      comment = requirement.getComment();
+    }
+
+    public String getComment()
+    {
+      return comment;
+    }
+
+    public String getFilter()
+    {
+      return filter.getFilter();
+    }
+
+    public String getName()
+    {
+      return filter.getName();
+    }
+
+    public boolean isExtend()
+    {
+      return extend;
+    }
+
+    public boolean isMultiple()
+    {
+      return multiple;
+    }
+
+    public boolean isOptional()
+    {
+      return optional;
+    }
+
+    public boolean isSatisfied(Capability capability)
+    {
+      return filter.isSatisfied(capability);
+    }
+
+    @Override
+    public String toString()
+    {
+      return getName() + ":" + getFilter();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.application.resolver.obr.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.aries.application.modelling.ModelledResource;
+import org.apache.felix.bundlerepository.RepositoryAdmin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Builds the OBR repository of an application of 300 bundles, each exporting and importing 20
+ * packages and a service, the way {@link org.apache.aries.application.resolver.obr.OBRAriesResolver}
+ * does before resolving, and the way it did by writing the repository xml and reading it back.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.aries.application.resolver.obr.impl.ApplicationRepositoryBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApplicationRepositoryBenchmark {
+
+  private RepositoryAdmin admin;
+  private List<ModelledResource> bundles;
+
+  @Setup
+  public void setUp() {
+    admin = RepositoryResourceTest.repositoryAdmin();
+    bundles = RepositoryResourceTest.application(300, 20);
+  }
+
+  @Benchmark
+  public Object resources() throws Exception {
+    return admin.getHelper().repository(RepositoryGeneratorImpl.generateResources(admin, bundles));
+  }
+
+  @Benchmark
+  public Object repositoryXml() throws Exception {
+    return RepositoryResourceTest.readRepositoryXml(admin, bundles);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .include(ApplicationRepositoryBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.application.resolver.obr.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.aries.application.modelling.ExportedBundle;
+import org.apache.aries.application.modelling.ExportedPackage;
+import org.apache.aries.application.modelling.ExportedService;
+import org.apache.aries.application.modelling.ImportedBundle;
+import org.apache.aries.application.modelling.ImportedPackage;
+import org.apache.aries.application.modelling.ImportedService;
+import org.apache.aries.application.modelling.ModelledResource;
+import org.apache.aries.application.modelling.ModellingConstants;
+import org.apache.aries.application.modelling.ResourceType;
+import org.apache.aries.unittest.mocks.Skeleton;
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.DataModelHelper;
+import org.apache.felix.bundlerepository.Repository;
+import org.apache.felix.bundlerepository.RepositoryAdmin;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+import org.apache.felix.bundlerepository.impl.DataModelHelperImpl;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+
+/**
+ * Checks that the resources built by {@link RepositoryGeneratorImpl#generateResources(RepositoryAdmin, Collection)}
+ * look the same to OBR as the resources read back from the repository xml.
+ */
+public class RepositoryResourceTest
+{
+  @Test
+  public void testResourcesMatchRepositoryXml() throws Exception
+  {
+    RepositoryAdmin admin = repositoryAdmin();
+    List<ModelledResource> bundles = application(5, 4);
+
+    Resource[] xmlResources = readRepositoryXml(admin, bundles).getResources();
+    Resource[] resources = RepositoryGeneratorImpl.generateResources(admin, bundles);
+    assertEquals(xmlResources.length, resources.length);
+
+    Map<String, Resource> xmlById = new HashMap<String, Resource>();
+    for (Resource r : xmlResources) xmlById.put(r.getId(), r);
+
+    for (Resource r : resources) {
+      Resource xml = xmlById.get(r.getId());
+      assertEquals(xml.getSymbolicName(), r.getSymbolicName());
+      assertEquals(xml.getVersion(), r.getVersion());
+      assertEquals(xml.getURI(), r.getURI());
+      assertEquals(xml.getPresentationName(), r.getPresentationName());
+
+      assertEquals(capabilities(xml.getCapabilities()), capabilities(r.getCapabilities()));
+      assertEquals(requirements(xml.getRequirements()), requirements(r.getRequirements()));
+    }
+
+    // every requirement is satisfied by the same capabilities either way
+    for (int i = 0; i < resources.length; i++) {
+      for (Requirement req : xmlById.get(resources[i].getId()).getRequirements()) {
+        for (Requirement adapted : resources[i].getRequirements()) {
+          if (!!!adapted.getFilter().equals(req.getFilter())) continue;
+          for (Resource provider : resources) {
+            Capability[] xmlCaps = xmlById.get(provider.getId()).getCapabilities();
+            Capability[] caps = provider.getCapabilities();
+            for (int c = 0; c < caps.length; c++) {
+              assertEquals(req.getFilter() + " " + caps[c], req.isSatisfied(xmlCaps[c]), adapted.isSatisfied(caps[c]));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  static Repository readRepositoryXml(RepositoryAdmin admin, Collection<ModelledResource> bundles) throws Exception
+  {
+    ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+    RepositoryGeneratorImpl.generateRepository(admin, "test_1.0.0", bundles, bytesOut);
+    return admin.getHelper().readRepository(new InputStreamReader(new ByteArrayInputStream(bytesOut.toByteArray())));
+  }
+
+  private static List<Object> capabilities(Capability[] caps)
+  {
+    List<Object> result = new ArrayList<Object>();
+    for (Capability c : caps) {
+      result.add(c.getName());
+      result.add(c.getPropertiesAsMap());
+    }
+    return result;
+  }
+
+  private static List<String> requirements(Requirement[] reqs)
+  {
+    List<String> result = new ArrayList<String>();
+    for (Requirement r : reqs) {
+      result.add(r.getName() + r.getFilter() + r.isOptional() + r.isMultiple() + r.isExtend());
+    }
+    return result;
+  }
+
+  static RepositoryAdmin repositoryAdmin()
+  {
+    return Skeleton.newMock(new RepositoryAdminMock(), RepositoryAdmin.class);
+  }
+
+  /**
+   * An application of bundles which each export some packages and a service, and import the
+   * packages and the service of the previous bundle.
+   */
+  static List<ModelledResource> application(int bundleCount, int packageCount)
+  {
+    List<ModelledResource> result = new ArrayList<ModelledResource>();
+    for (int b = 0; b < bundleCount; b++) {
+      BundleMock bundle = new BundleMock("test.bundle" + b, "1.0." + b);
+      for (int p = 0; p < packageCount; p++) {
+        bundle.exportedPackages.add(exportedPackage("test.bundle" + b + ".pkg" + p, "1." + p, bundle));
+        if (b > 0) {
+          bundle.importedPackages.add(importedPackage("test.bundle" + (b - 1) + ".pkg" + p, "[1." + p + ",2)", p % 2 == 1));
+        }
+      }
+      bundle.exportedServices.add(exportedService("test.bundle" + b + ".Service"));
+      if (b > 0) bundle.importedServices.add(importedService("test.bundle" + (b - 1) + ".Service"));
+      result.add(Skeleton.newMock(bundle, ModelledResource.class));
+    }
+    return result;
+  }
+
+  private static ExportedPackage exportedPackage(String name, String version, BundleMock bundle)
+  {
+    Map<String, Object> attrs = new HashMap<String, Object>();
+    attrs.put(ResourceType.PACKAGE.toString(), name);
+    attrs.put(Constants.VERSION_ATTRIBUTE, new Version(version));
+    attrs.put(Constants.BUNDLE_SYMBOLICNAME_ATTRIBUTE, bundle.symbolicName);
+    attrs.put(Constants.BUNDLE_VERSION_ATTRIBUTE, bundle.version);
+    return Skeleton.newMock(new ProviderMock(ResourceType.PACKAGE, attrs), ExportedPackage.class);
+  }
+
+  private static ExportedService exportedService(String iface)
+  {
+    Map<String, Object> attrs = new HashMap<String, Object>();
+    attrs.put(ModellingConstants.OBR_SERVICE, ModellingConstants.OBR_SERVICE);
+    attrs.put(Constants.OBJECTCLASS, new String[] { iface, "java.lang.Object" });
+    return Skeleton.newMock(new ProviderMock(ResourceType.SERVICE, attrs), ExportedService.class);
+  }
+
+  private static ImportedPackage importedPackage(String name, String range, boolean optional)
+  {
+    String low = range.substring(1, range.indexOf(','));
+    String high = range.substring(range.indexOf(',') + 1, range.length() - 1);
+    String filter = "(&(package=" + name + ")(version>=" + low + ")(!(version>=" + high + ")))";
+    return Skeleton.newMock(new ConsumerMock(ResourceType.PACKAGE, filter, optional), ImportedPackage.class);
+  }
+
+  private static ImportedService importedService(String iface)
+  {
+    String filter = "(&(service=service)(objectClass=" + iface + "))";
+    return Skeleton.newMock(new ConsumerMock(ResourceType.SERVICE, filter, false), ImportedService.class);
+  }
+
+  static class RepositoryAdminMock
+  {
+    private final DataModelHelper helper = new DataModelHelperImpl();
+
+    public DataModelHelper getHelper()
+    {
+      return helper;
+    }
+  }
+
+  static class ProviderMock
+  {
+    private final ResourceType type;
+    private final Map<String, Object> attributes;
+
+    ProviderMock(ResourceType type, Map<String, Object> attributes)
+    {
+      this.type = type;
+      this.attributes = attributes;
+    }
+
+    public ResourceType getType() { return type; }
+    public Map<String, Object> getAttributes() { return attributes; }
+  }
+
+  static class ConsumerMock
+  {
+    private final ResourceType type;
+    private final String filter;
+    private final boolean optional;
+
+    ConsumerMock(ResourceType type, String filter, boolean optional)
+    {
+      this.type = type;
+      this.filter = filter;
+      this.optional = optional;
+    }
+
+    public ResourceType getType() { return type; }
+    public String getAttributeFilter() { return filter; }
+    public boolean isMultiple() { return false; }
+    public boolean isOptional() { return optional; }
+  }
+
+  static class BundleMock
+  {
+    private final String symbolicName;
+    private final String version;
+    private final ExportedBundle exportedBundle;
+    final List<ExportedPackage> exportedPackages = new ArrayList<ExportedPackage>();
+    final List<ImportedPackage> importedPackages = new ArrayList<ImportedPackage>();
+    final List<ExportedService> exportedServices = new ArrayList<ExportedService>();
+    final List<ImportedService> importedServices = new ArrayList<ImportedService>();
+
+    BundleMock(String symbolicName, String version)
+    {
+      this.symbolicName = symbolicName;
+      this.version = version;
+      Map<String, Object> attrs = new HashMap<String, Object>();
+      attrs.put(ModellingConstants.OBR_SYMBOLIC_NAME, symbolicName);
+      attrs.put(Constants.VERSION_ATTRIBUTE, new Version(version));
+      attrs.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+      exportedBundle = Skeleton.newMock(new ProviderMock(ResourceType.BUNDLE, attrs), ExportedBundle.class);
+    }
+
+    public String getSymbolicName() { return symbolicName; }
+    public String getVersion() { return version; }
+    public String getLocation() { return "file:/apps/" + symbolicName + "_" + version + ".jar"; }
+    public ExportedBundle getExportedBundle() { return exportedBundle; }
+    public Collection<ExportedPackage> getExportedPackages() { return exportedPackages; }
+    public Collection<ImportedPackage> getImportedPackages() { return importedPackages; }
+    public Collection<ExportedService> getExportedServices() { return exportedServices; }
+    public Collection<ImportedService> getImportedServices() { return importedServices; }
+    public Collection<ImportedBundle> getRequiredBundles() { return Collections.emptyList(); }
+    public boolean isFragment() { return false; }
+  }
+}
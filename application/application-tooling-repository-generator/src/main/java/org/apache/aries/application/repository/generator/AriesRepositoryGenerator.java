@@ -165,6 +165,8 @@ public class AriesRepositoryGenerator {
     System.out.println("The parameter of the repository file location is the location for the genenerated reporsitory xml, e.g. /test/rep/repo.xml. It must end with .xml. If the parameter is not present, it will generate a repository.xml in the current directory.");
     System.out.println();
     System.out.println("The paremater of url1 [url2 url 3 ...] is a list of urls. If the url starts with file:, it can be a directory, which means all jar or war files in that directory to be included in the reposiotry.");
+    System.out.println();
+    System.out.println("The bundles are modelled in parallel. To reuse the models of unchanged bundles in later runs, set the system property org.apache.aries.application.modelling.cache.dir to a directory to keep them in.");
     System.out.println("===============================================================");
   }
   /**
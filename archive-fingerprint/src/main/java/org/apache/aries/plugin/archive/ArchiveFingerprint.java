@@ -0,0 +1,155 @@
+package org.apache.aries.plugin.archive;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.plexus.archiver.ArchiveEntry;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.ResourceIterator;
+import org.codehaus.plexus.components.io.resources.PlexusIoResource;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * A digest of the entries collected by an archiver, kept next to the archive in a
+ * <code>&lt;archive&gt;.fingerprint</code> file.
+ * <p>
+ * The manifests generated by the esa and eba mojos are written again by every build, so
+ * the modification times the archiver compares do not tell whether the archive is up to
+ * date. The fingerprint covers the names and the content of the entries instead, and it
+ * also changes when an entry is removed.
+ */
+public class ArchiveFingerprint
+{
+    /** Files up to this size are digested by content, larger ones by size and modification time */
+    static final long CONTENT_LIMIT = 64 * 1024;
+
+    private final File archive;
+
+    private final File file;
+
+    private final String value;
+
+    /**
+     * Computes the fingerprint of the entries added to the archiver so far.
+     *
+     * @param archive the archive the archiver is about to write
+     */
+    public ArchiveFingerprint( File archive, Archiver archiver )
+        throws IOException
+    {
+        this.archive = archive;
+        this.file = new File( archive.getPath() + ".fingerprint" );
+        this.value = digest( archiver );
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public String getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return whether the archive exists and was written from entries with this fingerprint
+     */
+    public boolean isUpToDate()
+        throws IOException
+    {
+        return archive.isFile() && file.isFile() && value.equals( FileUtils.fileRead( file ).trim() );
+    }
+
+    /**
+     * Removes the recorded fingerprint, so that an archive left incomplete by a failed build
+     * is not taken as up to date.
+     */
+    public void invalidate()
+    {
+        file.delete();
+    }
+
+    /**
+     * Records the fingerprint once the archive is written.
+     */
+    public void write()
+        throws IOException
+    {
+        FileUtils.fileWrite( file.getPath(), value );
+    }
+
+    private static String digest( Archiver archiver )
+        throws IOException
+    {
+        Map<String, ArchiveEntry> entries = new TreeMap<String, ArchiveEntry>();
+        for ( ResourceIterator it = archiver.getResources(); it.hasNext(); )
+        {
+            ArchiveEntry entry = it.next();
+            entries.put( entry.getName(), entry );
+        }
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( "SHA-1 is not available" );
+        }
+        byte[] buffer = new byte[8192];
+        for ( ArchiveEntry entry : entries.values() )
+        {
+            PlexusIoResource resource = entry.getResource();
+            digest.update( ( entry.getName() + ":" + resource.getSize() + ":" ).getBytes( "UTF-8" ) );
+            if ( entry.getType() == ArchiveEntry.DIRECTORY )
+            {
+                continue;
+            }
+            if ( resource.getSize() > CONTENT_LIMIT )
+            {
+                digest.update( String.valueOf( resource.getLastModified() ).getBytes( "UTF-8" ) );
+                continue;
+            }
+            InputStream in = entry.getInputStream();
+            try
+            {
+                int n;
+                while ( ( n = in.read( buffer ) ) != -1 )
+                {
+                    digest.update( buffer, 0, n );
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return new BigInteger( 1, digest.digest() ).toString( 16 );
+    }
+}
@@ -0,0 +1,115 @@
+package org.apache.aries.plugin.archive;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.codehaus.plexus.archiver.zip.ZipArchiver;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArchiveFingerprintTest
+{
+    private File dir;
+
+    private File archive;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        dir = new File( "target/fingerprint-test" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        archive = new File( dir, "test.esa" );
+        FileUtils.fileWrite( new File( dir, "a.txt" ).getPath(), "a" );
+        FileUtils.fileWrite( new File( dir, "b.txt" ).getPath(), "b" );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( dir );
+    }
+
+    @Test
+    public void testUpToDateOnceWritten()
+        throws Exception
+    {
+        ArchiveFingerprint fingerprint = new ArchiveFingerprint( archive, createArchiver( "a.txt", "b.txt" ) );
+        assertEquals( new File( dir, "test.esa.fingerprint" ), fingerprint.getFile() );
+        assertFalse( fingerprint.isUpToDate() );
+
+        FileUtils.fileWrite( archive.getPath(), "archive" );
+        assertFalse( fingerprint.isUpToDate() );
+        fingerprint.write();
+        assertTrue( fingerprint.isUpToDate() );
+        assertTrue( new ArchiveFingerprint( archive, createArchiver( "a.txt", "b.txt" ) ).isUpToDate() );
+
+        fingerprint.invalidate();
+        assertFalse( fingerprint.getFile().exists() );
+        assertFalse( fingerprint.isUpToDate() );
+    }
+
+    @Test
+    public void testNotUpToDateWithoutArchive()
+        throws Exception
+    {
+        ArchiveFingerprint fingerprint = new ArchiveFingerprint( archive, createArchiver( "a.txt" ) );
+        fingerprint.write();
+        assertFalse( fingerprint.isUpToDate() );
+    }
+
+    @Test
+    public void testEntriesChangeFingerprint()
+        throws Exception
+    {
+        String fingerprint = new ArchiveFingerprint( archive, createArchiver( "a.txt", "b.txt" ) ).getValue();
+        assertEquals( fingerprint, new ArchiveFingerprint( archive, createArchiver( "b.txt", "a.txt" ) ).getValue() );
+
+        // a removed entry
+        assertFalse( fingerprint.equals( new ArchiveFingerprint( archive, createArchiver( "a.txt" ) ).getValue() ) );
+
+        // a generated entry written again with a different content of the same length
+        File b = new File( dir, "b.txt" );
+        long lastModified = b.lastModified();
+        FileUtils.fileWrite( b.getPath(), "c" );
+        assertTrue( b.setLastModified( lastModified ) );
+        assertFalse( fingerprint.equals( new ArchiveFingerprint( archive, createArchiver( "a.txt", "b.txt" ) ).getValue() ) );
+    }
+
+    private ZipArchiver createArchiver( String... names )
+        throws Exception
+    {
+        ZipArchiver archiver = new ZipArchiver();
+        for ( String name : names )
+        {
+            archiver.addFile( new File( dir, name ), name );
+        }
+        return archiver;
+    }
+}
@@ -28,16 +28,46 @@ import org.osgi.framework.ServiceRegistration;
 
 public class Activator implements BundleActivator {
 
+    private static final String METADATA_SCANNER = "org.apache.aries.blueprint.services.AnnotationMetadataScanner";
+    private static final String MUTABLE_METADATA = "org.apache.aries.blueprint.mutable.MutableBeanMetadata";
+
     ServiceRegistration sr;
+    ServiceRegistration msr;
+    BlueprintAnnotationScannerImpl scanner;
     
     public void start(BundleContext context) {
         Dictionary dict = new Hashtable();
         dict.put(Constants.SERVICE_RANKING, 0);
-        sr = context.registerService(BlueprintAnnotationScanner.class.getName(), new BlueprintAnnotationScannerImpl(context), dict);
+        scanner = new BlueprintAnnotationScannerImpl(context);
+        context.addBundleListener(scanner);
+        sr = context.registerService(BlueprintAnnotationScanner.class.getName(), scanner, dict);
+        if (isMetadataScannerAvailable()) {
+            msr = context.registerService(METADATA_SCANNER, createMetadataScanner(scanner), dict);
+        }
     }
 
     public void stop(BundleContext context) {
+      AriesFrameworkUtil.safeUnregisterService(msr);
       AriesFrameworkUtil.safeUnregisterService(sr);
+      context.removeBundleListener(scanner);
+    }
+
+    /**
+     * The blueprint core packages are optional imports, the metadata scanner is only
+     * loaded when they are wired to this bundle.
+     */
+    private static boolean isMetadataScannerAvailable() {
+        try {
+            Class.forName(METADATA_SCANNER, false, Activator.class.getClassLoader());
+            Class.forName(MUTABLE_METADATA, false, Activator.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Object createMetadataScanner(BlueprintAnnotationScannerImpl scanner) {
+        return new AnnotationMetadataScannerImpl(scanner);
     }
    
 }
@@ -0,0 +1,332 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.blueprint.annotation.impl;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.aries.blueprint.jaxb.Targument;
+import org.apache.aries.blueprint.jaxb.Tbean;
+import org.apache.aries.blueprint.jaxb.Tblueprint;
+import org.apache.aries.blueprint.jaxb.Tcomponent;
+import org.apache.aries.blueprint.jaxb.Tproperty;
+import org.apache.aries.blueprint.jaxb.Treference;
+import org.apache.aries.blueprint.jaxb.TreferenceList;
+import org.apache.aries.blueprint.jaxb.TreferenceListener;
+import org.apache.aries.blueprint.jaxb.TregistrationListener;
+import org.apache.aries.blueprint.jaxb.Tservice;
+import org.apache.aries.blueprint.jaxb.TserviceReference;
+import org.apache.aries.blueprint.jaxb.TservicePropertyEntry;
+import org.apache.aries.blueprint.jaxb.Tvalue;
+import org.apache.aries.blueprint.reflect.BeanArgumentImpl;
+import org.apache.aries.blueprint.reflect.BeanMetadataImpl;
+import org.apache.aries.blueprint.reflect.BeanPropertyImpl;
+import org.apache.aries.blueprint.reflect.ComponentMetadataImpl;
+import org.apache.aries.blueprint.reflect.MapEntryImpl;
+import org.apache.aries.blueprint.reflect.MetadataUtil;
+import org.apache.aries.blueprint.reflect.RefMetadataImpl;
+import org.apache.aries.blueprint.reflect.ReferenceListMetadataImpl;
+import org.apache.aries.blueprint.reflect.ReferenceListenerImpl;
+import org.apache.aries.blueprint.reflect.ReferenceMetadataImpl;
+import org.apache.aries.blueprint.reflect.RegistrationListenerImpl;
+import org.apache.aries.blueprint.reflect.ServiceMetadataImpl;
+import org.apache.aries.blueprint.reflect.ServiceReferenceMetadataImpl;
+import org.apache.aries.blueprint.reflect.ValueMetadataImpl;
+import org.osgi.service.blueprint.reflect.BeanMetadata;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Metadata;
+import org.osgi.service.blueprint.reflect.ReferenceListMetadata;
+import org.osgi.service.blueprint.reflect.ServiceMetadata;
+import org.osgi.service.blueprint.reflect.ServiceReferenceMetadata;
+import org.osgi.service.blueprint.reflect.Target;
+
+/**
+ * Builds the metadata of the components of a generated blueprint model, as the blueprint
+ * parser builds it from the XML the model is marshalled to. Only the elements generated
+ * from the annotations are supported.
+ */
+class AnnotationMetadataBuilder {
+
+    private static final String ID_PREFIX = ".component-";
+
+    private final Tblueprint tblueprint;
+    private final Set<String> ids = new HashSet<String>();
+    private int idCounter;
+
+    AnnotationMetadataBuilder(Tblueprint tblueprint) {
+        this.tblueprint = tblueprint;
+    }
+
+    /**
+     * @param typeConverters the list the type converters are added to
+     * @return the top level components, the type converters excepted
+     */
+    List<ComponentMetadata> build(List<Target> typeConverters) {
+        // the generated ids must not clash with the ids of the components
+        addIds(tblueprint.getTypeConverters().getBeanOrReferenceOrRef());
+        addIds(tblueprint.getServiceOrReferenceListOrBean());
+
+        for (Object o : tblueprint.getTypeConverters().getBeanOrReferenceOrRef()) {
+            if (o instanceof Tbean) {
+                typeConverters.add(createBean((Tbean) o));
+            } else if (o instanceof Treference) {
+                typeConverters.add(createReference((Treference) o));
+            } else {
+                throw unsupported(o);
+            }
+        }
+
+        List<ComponentMetadata> components = new ArrayList<ComponentMetadata>();
+        for (Object o : tblueprint.getServiceOrReferenceListOrBean()) {
+            if (o instanceof Tbean) {
+                components.add(createBean((Tbean) o));
+            } else if (o instanceof Tservice) {
+                components.add(createService((Tservice) o));
+            } else if (o instanceof Treference) {
+                components.add(createReference((Treference) o));
+            } else if (o instanceof TreferenceList) {
+                components.add(createReferenceList((TreferenceList) o));
+            } else {
+                throw unsupported(o);
+            }
+        }
+        return components;
+    }
+
+    private BeanMetadataImpl createBean(Tbean tbean) {
+        BeanMetadataImpl metadata = new BeanMetadataImpl();
+        metadata.setId(getId(tbean));
+        if (tbean.getScope() != null) {
+            metadata.setScope(tbean.getScope());
+            if (!metadata.getScope().equals(BeanMetadata.SCOPE_SINGLETON)) {
+                if ("eager".equals(tbean.getActivation())) {
+                    throw new BlueprintAnnotationException("A <bean> with a prototype or custom scope can not have an eager activation");
+                }
+                metadata.setActivation(ComponentMetadata.ACTIVATION_LAZY);
+            } else {
+                metadata.setActivation(getActivation(tbean));
+            }
+        } else {
+            metadata.setActivation(getActivation(tbean));
+        }
+        metadata.setClassName(tbean.getClazz());
+        setDependsOn(metadata, tbean);
+        metadata.setInitMethod(tbean.getInitMethod());
+        metadata.setDestroyMethod(tbean.getDestroyMethod());
+        if (tbean.getFactoryRef() != null) {
+            metadata.setFactoryComponent(new RefMetadataImpl(tbean.getFactoryRef()));
+        }
+        metadata.setFactoryMethod(tbean.getFactoryMethod());
+
+        if (metadata.getClassName() == null && metadata.getFactoryComponent() == null) {
+            throw new BlueprintAnnotationException("Bean class or factory-ref must be specified");
+        }
+        if (metadata.getFactoryComponent() != null && metadata.getFactoryMethod() == null) {
+            throw new BlueprintAnnotationException("factory-method is required when factory-component is set");
+        }
+        if (MetadataUtil.isPrototypeScope(metadata) && metadata.getDestroyMethod() != null) {
+            throw new BlueprintAnnotationException("destroy-method must not be set for a <bean> with a prototype scope");
+        }
+
+        for (Object o : tbean.getArgumentOrPropertyOrAny()) {
+            if (o instanceof Targument) {
+                Targument targ = (Targument) o;
+                int index = targ.getIndex() != null ? targ.getIndex().intValue() : -1;
+                Metadata value = getValue(targ.getRefAttribute(), targ.getValueAttribute(), targ.getValue());
+                metadata.addArgument(new BeanArgumentImpl(value, targ.getType(), index));
+            } else if (o instanceof Tproperty) {
+                Tproperty tp = (Tproperty) o;
+                Metadata value = getValue(tp.getRefAttribute(), tp.getValueAttribute(), tp.getValue());
+                metadata.addProperty(new BeanPropertyImpl(tp.getName(), value));
+            } else {
+                throw unsupported(o);
+            }
+        }
+        MetadataUtil.validateBeanArguments(metadata.getArguments());
+        return metadata;
+    }
+
+    private ServiceMetadataImpl createService(Tservice tservice) {
+        ServiceMetadataImpl service = new ServiceMetadataImpl();
+        service.setId(getId(tservice));
+        service.setActivation(getActivation(tservice));
+        if (tservice.getInterface() != null) {
+            service.addInterface(tservice.getInterface());
+        }
+        if (tservice.getRefAttribute() != null) {
+            service.setServiceComponent(new RefMetadataImpl(tservice.getRefAttribute()));
+        }
+        setDependsOn(service, tservice);
+        String autoExport = tservice.getAutoExport();
+        if ("disabled".equals(autoExport)) {
+            service.setAutoExport(ServiceMetadata.AUTO_EXPORT_DISABLED);
+        } else if ("interfaces".equals(autoExport)) {
+            service.setAutoExport(ServiceMetadata.AUTO_EXPORT_INTERFACES);
+        } else if ("class-hierarchy".equals(autoExport)) {
+            service.setAutoExport(ServiceMetadata.AUTO_EXPORT_CLASS_HIERARCHY);
+        } else if ("all-classes".equals(autoExport)) {
+            service.setAutoExport(ServiceMetadata.AUTO_EXPORT_ALL_CLASSES);
+        } else {
+            throw new BlueprintAnnotationException("Illegal value (" + autoExport + ") for auto-export attribute");
+        }
+        service.setRanking(tservice.getRanking());
+
+        if (tservice.getInterfaces() != null) {
+            if (tservice.getInterface() != null) {
+                throw new BlueprintAnnotationException("Only one of interface attribute or interfaces element must be used");
+            }
+            service.setInterfaceNames(new ArrayList<String>(tservice.getInterfaces().getValue()));
+        }
+        for (TservicePropertyEntry entry : tservice.getServiceProperties().getEntry()) {
+            service.addServiceProperty(new MapEntryImpl(new ValueMetadataImpl(entry.getKey()),
+                    getValue(null, entry.getValueAttribute(), entry.getValue())));
+        }
+        for (TregistrationListener listener : tservice.getRegistrationListener()) {
+            if (listener.getRegistrationMethod() == null && listener.getUnregistrationMethod() == null) {
+                throw new BlueprintAnnotationException("One of registration-method or unregistration-method must be set");
+            }
+            service.addRegistrationListener(new RegistrationListenerImpl(getListenerComponent(listener.getRefAttribute()),
+                    listener.getRegistrationMethod(), listener.getUnregistrationMethod()));
+        }
+
+        if (service.getServiceComponent() == null) {
+            throw new BlueprintAnnotationException("The ref attribute must be set on the service " + service.getId());
+        }
+        if (service.getAutoExport() == ServiceMetadata.AUTO_EXPORT_DISABLED && service.getInterfaces().isEmpty()) {
+            throw new BlueprintAnnotationException("interface attribute or interfaces element must be set when auto-export is set to disabled");
+        }
+        if (service.getAutoExport() != ServiceMetadata.AUTO_EXPORT_DISABLED && !service.getInterfaces().isEmpty()) {
+            throw new BlueprintAnnotationException("interface attribute or interfaces element must not be set when auto-export is set to anything else than disabled");
+        }
+        return service;
+    }
+
+    private ReferenceMetadataImpl createReference(Treference treference) {
+        ReferenceMetadataImpl reference = new ReferenceMetadataImpl();
+        reference.setId(getId(treference));
+        setReference(reference, treference);
+        BigInteger timeout = treference.getTimeout() != null ? treference.getTimeout() : tblueprint.getDefaultTimeout();
+        reference.setTimeout(timeout.longValue());
+        return reference;
+    }
+
+    private ReferenceListMetadataImpl createReferenceList(TreferenceList treferenceList) {
+        ReferenceListMetadataImpl references = new ReferenceListMetadataImpl();
+        references.setId(getId(treferenceList));
+        if ("service-reference".equals(treferenceList.getMemberType())) {
+            references.setMemberType(ReferenceListMetadata.USE_SERVICE_REFERENCE);
+        } else {
+            references.setMemberType(ReferenceListMetadata.USE_SERVICE_OBJECT);
+        }
+        setReference(references, treferenceList);
+        return references;
+    }
+
+    private void setReference(ServiceReferenceMetadataImpl reference, TserviceReference treference) {
+        reference.setActivation(getActivation(treference));
+        setDependsOn(reference, treference);
+        reference.setInterface(treference.getInterface());
+        reference.setFilter(treference.getFilter());
+        reference.setComponentName(treference.getComponentName());
+        String availability = treference.getAvailability() != null ? treference.getAvailability() : tblueprint.getDefaultAvailability();
+        if ("mandatory".equals(availability)) {
+            reference.setAvailability(ServiceReferenceMetadata.AVAILABILITY_MANDATORY);
+        } else if ("optional".equals(availability)) {
+            reference.setAvailability(ServiceReferenceMetadata.AVAILABILITY_OPTIONAL);
+        } else {
+            throw new BlueprintAnnotationException("Illegal value for availability attribute: " + availability);
+        }
+        for (TreferenceListener listener : treference.getReferenceListener()) {
+            if (listener.getBindMethod() == null && listener.getUnbindMethod() == null) {
+                throw new BlueprintAnnotationException("One of bind-method or unbind-method must be set");
+            }
+            reference.addServiceListener(new ReferenceListenerImpl(getListenerComponent(listener.getRefAttribute()),
+                    listener.getBindMethod(), listener.getUnbindMethod()));
+        }
+    }
+
+    private Target getListenerComponent(String ref) {
+        if (ref == null) {
+            throw new BlueprintAnnotationException("The ref attribute of a listener must be set");
+        }
+        return new RefMetadataImpl(ref);
+    }
+
+    private Metadata getValue(String refAttribute, String valueAttribute, Tvalue tvalue) {
+        Metadata value = null;
+        int count = 0;
+        if (refAttribute != null) {
+            value = new RefMetadataImpl(refAttribute);
+            count++;
+        }
+        if (valueAttribute != null) {
+            value = new ValueMetadataImpl(valueAttribute);
+            count++;
+        }
+        if (tvalue != null) {
+            value = new ValueMetadataImpl(tvalue.getContent(), tvalue.getType());
+            count++;
+        }
+        if (count != 1) {
+            throw new BlueprintAnnotationException("One of ref attribute, value attribute or value element must be set");
+        }
+        return value;
+    }
+
+    private void setDependsOn(ComponentMetadataImpl metadata, Tcomponent tcomponent) {
+        if (tcomponent.getDependsOn() != null) {
+            metadata.setDependsOn(new ArrayList<String>(tcomponent.getDependsOn()));
+        }
+    }
+
+    private int getActivation(Tcomponent tcomponent) {
+        String activation = tcomponent.getActivation() != null ? tcomponent.getActivation() : tblueprint.getDefaultActivation();
+        if ("eager".equals(activation)) {
+            return ComponentMetadata.ACTIVATION_EAGER;
+        } else if ("lazy".equals(activation)) {
+            return ComponentMetadata.ACTIVATION_LAZY;
+        } else {
+            throw new BlueprintAnnotationException("Attribute activation must be equal to eager or lazy");
+        }
+    }
+
+    private void addIds(List<Object> elements) {
+        for (Object o : elements) {
+            if (o instanceof Tcomponent && ((Tcomponent) o).getId() != null) {
+                ids.add(((Tcomponent) o).getId());
+            }
+        }
+    }
+
+    private String getId(Tcomponent tcomponent) {
+        String id = tcomponent.getId();
+        if (id == null) {
+            do {
+                id = ID_PREFIX + ++idCounter;
+            } while (ids.contains(id));
+            ids.add(id);
+        }
+        return id;
+    }
+
+    private static BlueprintAnnotationException unsupported(Object o) {
+        return new BlueprintAnnotationException("Unsupported element in the generated blueprint model: " + o);
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.blueprint.annotation.impl;
+
+import java.util.List;
+
+import org.apache.aries.blueprint.services.AnnotationMetadataScanner;
+import org.osgi.framework.Bundle;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Target;
+
+/**
+ * Registered next to the scanner when the blueprint core services package is wired, so
+ * that the extender can build the metadata without reading the generated XML.
+ */
+public class AnnotationMetadataScannerImpl implements AnnotationMetadataScanner {
+
+    private final BlueprintAnnotationScannerImpl scanner;
+
+    public AnnotationMetadataScannerImpl(BlueprintAnnotationScannerImpl scanner) {
+        this.scanner = scanner;
+    }
+
+    public List<ComponentMetadata> createComponentMetadata(Bundle bundle, List<Target> typeConverters) {
+        return scanner.createComponentMetadata(bundle, typeConverters);
+    }
+
+}
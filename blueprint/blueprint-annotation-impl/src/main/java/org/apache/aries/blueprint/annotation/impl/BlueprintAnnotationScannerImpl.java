@@ -17,7 +17,6 @@
 package org.apache.aries.blueprint.annotation.impl;
 
 import java.io.File;
-import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.math.BigInteger;
@@ -30,6 +29,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -69,13 +70,33 @@ import org.apache.aries.blueprint.jaxb.Tvalue;
 import org.apache.xbean.finder.BundleAnnotationFinder;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.blueprint.container.Converter;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Target;
 import org.osgi.service.packageadmin.PackageAdmin;
 
 public class BlueprintAnnotationScannerImpl implements
-        BlueprintAnnotationScanner {
+        BlueprintAnnotationScanner, BundleListener {
+    private static final String GENERATED_FILE_PREFIX = "annotation-generated-blueprint";
+    private static final String GENERATED_FILE_SUFFIX = ".xml";
+
+    private static JAXBContext jaxbContext;
+
     private final BundleContext context;
+    private final ConcurrentMap<Long, CachedModel> models = new ConcurrentHashMap<Long, CachedModel>();
+
+    private static class CachedModel {
+        private final long lastModified;
+        private final Tblueprint model;
+
+        CachedModel(long lastModified, Tblueprint model) {
+            this.lastModified = lastModified;
+            this.model = model;
+        }
+    }
 
     public BlueprintAnnotationScannerImpl(BundleContext bc) {
         this.context = bc;
@@ -109,58 +130,105 @@ public class BlueprintAnnotationScannerImpl implements
     }
     
     public URL createBlueprintModel(Bundle bundle) {
-
-        Tblueprint tblueprint = generateBlueprintModel(bundle);
-
-        if (tblueprint != null) {
-            // create the generated blueprint xml file in bundle storage
-            // area
-            BundleContext ctx = getBlueprintExtenderContext();
-
-            if (ctx == null) {
-                // blueprint extender doesn't exist, let' still generate the
-                // bundle, using the bundle's bundle context
-                ctx = bundle.getBundleContext();
-            }
-
-            File dir = ctx.getDataFile(bundle.getSymbolicName() + "/"
-                    + bundle.getVersion() + "/");
-            if (!dir.exists()) {
-                dir.mkdirs();
-            }
-            String blueprintPath = cachePath(bundle,
-                    "annotation-generated-blueprint.xml");
-            File file = ctx.getDataFile(blueprintPath);
-            if (!file.exists()) {
-                try {
-                    file.createNewFile();
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
-            }
+        // create the generated blueprint xml file in bundle storage
+        // area
+        BundleContext ctx = getBlueprintExtenderContext();
+
+        if (ctx == null) {
+            // blueprint extender doesn't exist, let' still generate the
+            // bundle, using the bundle's bundle context
+            ctx = bundle.getBundleContext();
+        }
+
+        File dir = ctx.getDataFile(bundle.getSymbolicName() + "/"
+                + bundle.getVersion() + "/");
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        // the file name carries the revision of the bundle and of this scanner, a file written
+        // for the current revisions is reused without scanning the bundle again
+        Bundle scanner = context.getBundle();
+        String fileName = GENERATED_FILE_PREFIX + "-" + bundle.getLastModified() + "-" + scanner.getVersion()
+                + "-" + scanner.getLastModified() + GENERATED_FILE_SUFFIX;
+        File file = ctx.getDataFile(cachePath(bundle, fileName));
+        if (!file.isFile()) {
+            Tblueprint tblueprint = getBlueprintModel(bundle);
+            deleteGeneratedFiles(dir);
+            File tmp = new File(dir, fileName + ".tmp");
             try {
-                marshallOBRModel(tblueprint, file);
+                marshallOBRModel(tblueprint, tmp);
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    return null;
+                }
             } catch (JAXBException e) {
                 // TODO Auto-generated catch block
                 e.printStackTrace();
+                tmp.delete();
+                return null;
             }
-            try {
-                return file.toURI().toURL();
-            } catch (MalformedURLException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }
+        }
+        try {
+            return file.toURI().toURL();
+        } catch (MalformedURLException e) {
+            // TODO Auto-generated catch block
+            e.printStackTrace();
         }
 
         return null;
 
     }
 
-    private void marshallOBRModel(Tblueprint tblueprint, File blueprintFile)
+    /**
+     * Builds the metadata of the annotated components from the cached model, for the
+     * {@link AnnotationMetadataScannerImpl} service.
+     */
+    public List<ComponentMetadata> createComponentMetadata(Bundle bundle, List<Target> typeConverters) {
+        return new AnnotationMetadataBuilder(getBlueprintModel(bundle)).build(typeConverters);
+    }
+
+    public void bundleChanged(BundleEvent event) {
+        if (event.getType() == BundleEvent.UPDATED || event.getType() == BundleEvent.UNINSTALLED) {
+            models.remove(event.getBundle().getBundleId());
+        }
+    }
+
+    /**
+     * @return the model generated for the current revision of the bundle, the bundle is
+     *         only scanned if it was updated since the model was generated
+     */
+    private Tblueprint getBlueprintModel(Bundle bundle) {
+        long lastModified = bundle.getLastModified();
+        CachedModel cached = models.get(bundle.getBundleId());
+        if (cached == null || cached.lastModified != lastModified) {
+            cached = new CachedModel(lastModified, generateBlueprintModel(bundle));
+            models.put(bundle.getBundleId(), cached);
+        }
+        return cached.model;
+    }
+
+    private void deleteGeneratedFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().startsWith(GENERATED_FILE_PREFIX)) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    private static synchronized JAXBContext getJAXBContext() throws JAXBException {
+        // the context is expensive to create and thread safe, only the marshallers are not
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(Tblueprint.class);
+        }
+        return jaxbContext;
+    }
+
+    void marshallOBRModel(Tblueprint tblueprint, File blueprintFile)
             throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(Tblueprint.class);
-        Marshaller marshaller = context.createMarshaller();
+        Marshaller marshaller = getJAXBContext().createMarshaller();
         marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
         marshaller.marshal(tblueprint, blueprintFile);
 
@@ -170,10 +238,14 @@ public class BlueprintAnnotationScannerImpl implements
         BundleAnnotationFinder baf = createBundleAnnotationFinder(bundle);
 
         // we don't trust baf when it comes to returning classes just once (ARIES-654)
-        Set<Class> blueprintClasses = new LinkedHashSet<Class>(baf.findAnnotatedClasses(Blueprint.class));
-        Set<Class> beanClasses = new HashSet<Class>(baf.findAnnotatedClasses(Bean.class));
-        Set<Class> refListenerClasses = new HashSet<Class>(baf.findAnnotatedClasses(ReferenceListener.class));
-        Set<Class> regListenerClasses = new HashSet<Class>(baf.findAnnotatedClasses(RegistrationListener.class));
+        return generateBlueprintModel(new LinkedHashSet<Class>(baf.findAnnotatedClasses(Blueprint.class)),
+                new HashSet<Class>(baf.findAnnotatedClasses(Bean.class)),
+                new HashSet<Class>(baf.findAnnotatedClasses(ReferenceListener.class)),
+                new HashSet<Class>(baf.findAnnotatedClasses(RegistrationListener.class)));
+    }
+
+    Tblueprint generateBlueprintModel(Set<Class> blueprintClasses, Set<Class> beanClasses,
+            Set<Class> refListenerClasses, Set<Class> regListenerClasses) {
         Map<String, TreferenceListener> reflMap = new HashMap<String, TreferenceListener>();
         Map<String, TregistrationListener> reglMap = new HashMap<String, TregistrationListener>();
         
@@ -0,0 +1,220 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.blueprint.annotation.impl;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.apache.aries.blueprint.annotation.Arg;
+import org.apache.aries.blueprint.annotation.Bean;
+import org.apache.aries.blueprint.annotation.Bind;
+import org.apache.aries.blueprint.annotation.Blueprint;
+import org.apache.aries.blueprint.annotation.Destroy;
+import org.apache.aries.blueprint.annotation.Init;
+import org.apache.aries.blueprint.annotation.Inject;
+import org.apache.aries.blueprint.annotation.Reference;
+import org.apache.aries.blueprint.annotation.ReferenceList;
+import org.apache.aries.blueprint.annotation.ReferenceListener;
+import org.apache.aries.blueprint.annotation.Register;
+import org.apache.aries.blueprint.annotation.RegistrationListener;
+import org.apache.aries.blueprint.annotation.Service;
+import org.apache.aries.blueprint.annotation.ServiceProperty;
+import org.apache.aries.blueprint.annotation.Unbind;
+import org.apache.aries.blueprint.annotation.Unregister;
+import org.apache.aries.blueprint.jaxb.Tblueprint;
+import org.apache.aries.blueprint.parser.ComponentDefinitionRegistryImpl;
+import org.apache.aries.blueprint.parser.Parser;
+import org.osgi.service.blueprint.container.Converter;
+import org.osgi.service.blueprint.container.ReifiedType;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Target;
+
+public class AnnotationMetadataBuilderTest extends TestCase {
+
+    @Blueprint(defaultActivation = "lazy", defaultTimeout = 100, defaultAvailability = "optional")
+    @Bean(id = "bar", scope = "prototype")
+    public static class Bar {
+        @Inject(value = "Hello Bar")
+        private String value;
+
+        @Inject(ref = "blueprintBundleContext")
+        private Object context;
+    }
+
+    @Bean(id = "foo", activation = "eager", dependsOn = "bar", args = @Arg(value = "arg"))
+    @Service(autoExport = "all-classes", ranking = 2,
+            serviceProperties = @ServiceProperty(key = "key", value = "value"),
+            registerationListeners = @RegistrationListener(ref = "registrationListener"))
+    public static class Foo implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Inject(value = "5")
+        private int a;
+
+        private Bar bar;
+
+        @Inject(ref = "bar")
+        public void setBar(Bar bar) {
+            this.bar = bar;
+        }
+
+        @Init
+        public void init() {
+        }
+
+        @Destroy
+        public void destroy() {
+        }
+    }
+
+    @Bean(id = "bindingListener")
+    @ReferenceListener
+    public static class BindingListener {
+        @Inject
+        @Reference(id = "runnable", serviceInterface = Runnable.class, timeout = 100,
+                referenceListeners = @ReferenceListener(ref = "bindingListener"))
+        private Runnable runnable;
+
+        @Inject
+        @ReferenceList(serviceInterface = Runnable.class, availability = "mandatory",
+                referenceListeners = @ReferenceListener(ref = "bindingListener"))
+        private List<Runnable> runnables;
+
+        @Bind
+        public void bind(Runnable runnable) {
+        }
+
+        @Unbind
+        public void unbind(Runnable runnable) {
+        }
+    }
+
+    @Bean(id = "registrationListener")
+    @RegistrationListener
+    public static class FooRegistrationListener {
+        @Register
+        public void register(Serializable foo, Map<?, ?> props) {
+        }
+
+        @Unregister
+        public void unregister(Serializable foo, Map<?, ?> props) {
+        }
+    }
+
+    @Bean(id = "converter")
+    public static class StringConverter implements Converter {
+        @Inject(name = "prefix", value = "converted:")
+        private String prefix;
+
+        public boolean canConvert(Object sourceObject, ReifiedType targetType) {
+            return targetType.getRawClass() == String.class;
+        }
+
+        public Object convert(Object sourceObject, ReifiedType targetType) throws Exception {
+            return prefix + sourceObject;
+        }
+    }
+
+    private static final List<Class<?>> FIXTURES = Arrays.<Class<?>>asList(
+            Bar.class, Foo.class, BindingListener.class, FooRegistrationListener.class, StringConverter.class);
+
+    public void testMetadataMatchesParsedXml() throws Exception {
+        BlueprintAnnotationScannerImpl scanner = new BlueprintAnnotationScannerImpl(null);
+        Tblueprint tblueprint = scanner.generateBlueprintModel(annotated(Blueprint.class), annotated(Bean.class),
+                annotated(ReferenceListener.class), annotated(RegistrationListener.class));
+
+        List<Target> typeConverters = new ArrayList<Target>();
+        Map<String, String> built = new TreeMap<String, String>();
+        for (ComponentMetadata component : new AnnotationMetadataBuilder(tblueprint).build(typeConverters)) {
+            built.put(component.getId(), describe(component));
+        }
+
+        ComponentDefinitionRegistryImpl registry = new ComponentDefinitionRegistryImpl();
+        File file = File.createTempFile("annotation-generated-blueprint", ".xml");
+        try {
+            scanner.marshallOBRModel(tblueprint, file);
+            Parser parser = new Parser();
+            parser.parse(Collections.singletonList(file.toURI().toURL()));
+            parser.populate(null, registry);
+        } finally {
+            file.delete();
+        }
+        Map<String, String> parsed = new TreeMap<String, String>();
+        for (String name : registry.getComponentDefinitionNames()) {
+            ComponentMetadata component = registry.getComponentDefinition(name);
+            // the parser registers the type converters as components too
+            if (!registry.getTypeConverters().contains(component)) {
+                parsed.put(name, describe(component));
+            }
+        }
+
+        assertEquals(parsed, built);
+        assertEquals(describe(registry.getTypeConverters()), describe(typeConverters));
+
+        // the service and the reference list get generated ids
+        assertEquals(7, built.size());
+        assertTrue(built.keySet().containsAll(Arrays.asList("bar", "foo", "bindingListener", "registrationListener", "runnable")));
+        assertEquals(1, typeConverters.size());
+    }
+
+    private static Set<Class> annotated(Class<? extends Annotation> annotation) {
+        Set<Class> classes = new LinkedHashSet<Class>();
+        for (Class<?> c : FIXTURES) {
+            if (c.isAnnotationPresent(annotation)) {
+                classes.add(c);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * The metadata classes do not implement equals, they are described by the values of their getters.
+     */
+    private static String describe(Object o) throws Exception {
+        if (o instanceof Collection) {
+            List<String> elements = new ArrayList<String>();
+            for (Object element : (Collection<?>) o) {
+                elements.add(describe(element));
+            }
+            return elements.toString();
+        }
+        if (o == null || !o.getClass().getName().startsWith("org.apache.aries.blueprint.reflect.")) {
+            return String.valueOf(o);
+        }
+        Map<String, String> values = new TreeMap<String, String>();
+        for (Method method : o.getClass().getMethods()) {
+            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
+                    && method.getDeclaringClass() != Object.class) {
+                values.put(method.getName(), describe(method.invoke(o)));
+            }
+        }
+        return o.getClass().getSimpleName() + values;
+    }
+}
@@ -531,6 +531,7 @@ public class CmNamespaceHandler implements NamespaceHandler {
             beanMetadata.setScope(BeanMetadata.SCOPE_SINGLETON);
             beanMetadata.setId(MANAGED_OBJECT_MANAGER_NAME);
             beanMetadata.setRuntimeClass(ManagedObjectManager.class);            
+            beanMetadata.setDestroyMethod("destroy");
             registry.registerComponentDefinition(beanMetadata);
         }
     }
@@ -20,7 +20,9 @@ package org.apache.aries.blueprint.compendium.cm;
 
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.aries.blueprint.ext.PropertyPlaceholder;
 import org.apache.aries.blueprint.services.ExtendedBlueprintContainer;
@@ -46,6 +48,9 @@ public class CmPropertyPlaceholder extends PropertyPlaceholder implements Manage
     private String updateStrategy;
     private ManagedObjectManager managedObjectManager;
     private Dictionary<String,Object> properties;
+    // the properties looked up so far, guarded by the lock like the properties themselves
+    private final Set<Object> usedProperties = new HashSet<Object>();
+    private final Object lock = new Object();
 
     public ExtendedBlueprintContainer getBlueprintContainer() {
         return blueprintContainer;
@@ -91,7 +96,9 @@ public class CmPropertyPlaceholder extends PropertyPlaceholder implements Manage
         LOGGER.debug("Initializing CmPropertyPlaceholder");
         Configuration config = CmUtils.getConfiguration(configAdmin, persistentId);
         if (config != null) {
-            properties = config.getProperties();
+            synchronized (lock) {
+                properties = config.getProperties();
+            }
         }
         Properties props = new Properties();
         props.put(Constants.SERVICE_PID, persistentId);
@@ -109,12 +116,16 @@ public class CmPropertyPlaceholder extends PropertyPlaceholder implements Manage
     protected String getProperty(String val) {
         LOGGER.debug("Retrieving property value {} from configuration with pid {}", val, persistentId);
         Object v = null;
-        if (properties != null) {
-            v = properties.get(val);
-            if (v != null) {
-                LOGGER.debug("Found property value {}", v);
-            } else {
-                LOGGER.debug("Property not found in configuration");
+        synchronized (lock) {
+            // recorded along with the read, so that an update either sees the use or is seen by it
+            usedProperties.add(val);
+            if (properties != null) {
+                v = properties.get(val);
+                if (v != null) {
+                    LOGGER.debug("Found property value {}", v);
+                } else {
+                    LOGGER.debug("Property not found in configuration");
+                }
             }
         }
         if (v == null) {
@@ -128,15 +139,61 @@ public class CmPropertyPlaceholder extends PropertyPlaceholder implements Manage
     }
 
     public void updated(Dictionary props) {
-        if ("reload".equalsIgnoreCase(updateStrategy) && !equals(properties, props)) {
+        if (!"reload".equalsIgnoreCase(updateStrategy)) {
+            return;
+        }
+        synchronized (lock) {
+            if (equals(properties, props)) {
+                return;
+            }
             LOGGER.debug("Configuration updated for pid={}", persistentId);
-            // Run in a separate thread to avoid re-entrance
-            new Thread() {
-                public void run() {
-                    blueprintContainer.reload();
+            if (!isUsed(changedKeys(properties, props))) {
+                // None of the values resolved so far looked up the changed properties,
+                // the values resolved from now on will see the new configuration.
+                LOGGER.debug("Changed properties are not used by any value, not reloading for pid={}", persistentId);
+                properties = props;
+                return;
+            }
+        }
+        // Run on the update pool to avoid re-entrance, updates for this pid
+        // are already coalesced by the managed object manager
+        managedObjectManager.execute(new Runnable() {
+            public void run() {
+                blueprintContainer.reload();
+            }
+        });
+    }
+
+    private boolean isUsed(Set<Object> keys) {
+        for (Object key : keys) {
+            if (usedProperties.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T,U> Set<Object> changedKeys(Dictionary<T,U> d1, Dictionary<T,U> d2) {
+        Set<Object> keys = new HashSet<Object>();
+        if (d1 != null) {
+            for (Enumeration<T> e = d1.keys(); e.hasMoreElements();) {
+                T k = e.nextElement();
+                U v1 = d1.get(k);
+                U v2 = d2 != null ? d2.get(k) : null;
+                if (v1 == null ? v2 != null : !v1.equals(v2)) {
+                    keys.add(k);
                 }
-            }.start();
+            }
+        }
+        if (d2 != null) {
+            for (Enumeration<T> e = d2.keys(); e.hasMoreElements();) {
+                T k = e.nextElement();
+                if (d1 == null || d1.get(k) == null) {
+                    keys.add(k);
+                }
+            }
         }
+        return keys;
     }
 
     private <T,U> boolean equals(Dictionary<T,U> d1, Dictionary<T,U> d2) {
@@ -18,13 +18,25 @@
  */
 package org.apache.aries.blueprint.compendium.cm;
 
+import java.lang.management.ManagementFactory;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.aries.util.AriesFrameworkUtil;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
@@ -35,22 +47,54 @@ import org.slf4j.LoggerFactory;
  * Since persistence id can only be associated with one ManagedService in a bundle
  * this class ensures only one ManagedService is registered per persistence id.
  */
-public class ManagedObjectManager {
+public class ManagedObjectManager implements ManagedObjectManagerMBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ManagedObjectManager.class);
 
+    /**
+     * Updates for the same persistence id received within this number of milliseconds are
+     * applied once, with the latest configuration.
+     */
+    static final long COALESCING_WINDOW = Long.getLong("org.apache.aries.blueprint.cm.update.window", 100);
+
+    /**
+     * The maximum number of threads applying the configuration updates of all the blueprint containers.
+     */
+    static final int UPDATE_THREADS = Integer.getInteger("org.apache.aries.blueprint.cm.update.threads", 4);
+
+    /**
+     * Configuration updates of all the blueprint containers are applied by this pool instead of
+     * starting one thread per update. The threads are stopped when there is nothing to do. The
+     * pool is created for the first manager and shut down with the last one, so no thread
+     * outlives a refresh of this bundle.
+     */
+    private static ScheduledThreadPoolExecutor sharedExecutor;
+    private static int sharedExecutorUsers;
+
     private HashMap<String, ConfigurationWatcher> map = new HashMap<String, ConfigurationWatcher>();
+
+    private final ScheduledThreadPoolExecutor executor = acquireExecutor();
+    private volatile boolean destroyed;
+    private ObjectName objectName;
+
+    private final AtomicLong dispatchedUpdates = new AtomicLong();
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+    private final AtomicLong totalDispatchLatency = new AtomicLong();
+    private final AtomicLong maxDispatchLatency = new AtomicLong();
                
     public synchronized void register(ManagedObject cm, Properties props) {
         String key = cm.getPersistentId();
         ConfigurationWatcher reg = map.get(key);
         if (reg == null) {
-            reg = new ConfigurationWatcher(); 
+            reg = new ConfigurationWatcher(key); 
             ServiceRegistration registration = cm.getBundle().getBundleContext().registerService(ManagedService.class.getName(), reg, (Dictionary) props);
             reg.setRegistration(registration);            
             map.put(key, reg);
         }
         reg.add(cm);
+        if (objectName == null) {
+            registerMBean(cm.getBundle());
+        }
     }
 
     public synchronized void unregister(ManagedObject cm) {
@@ -60,28 +104,210 @@ public class ManagedObjectManager {
             reg.remove(cm);
             if (reg.isEmpty()) {
                 map.remove(key);
+                reg.unregister();
+                AriesFrameworkUtil.safeUnregisterService(reg.getRegistration());
+            }
+        }
+    }
+
+    /**
+     * Stops applying configuration updates, called when the blueprint container is destroyed.
+     * Updates which are still waiting are dropped.
+     */
+    public void destroy() {
+        synchronized (this) {
+            if (destroyed) {
+                return;
+            }
+            destroyed = true;
+            for (ConfigurationWatcher reg : map.values()) {
+                reg.unregister();
                 AriesFrameworkUtil.safeUnregisterService(reg.getRegistration());
             }
+            map.clear();
+            unregisterMBean();
         }
+        releaseExecutor();
     }
             
-    private static class ConfigurationWatcher implements ManagedService {
+    public long getDispatchedUpdates() {
+        return dispatchedUpdates.get();
+    }
+
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    public long getAverageDispatchLatency() {
+        long dispatched = dispatchedUpdates.get();
+        return dispatched == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalDispatchLatency.get() / dispatched);
+    }
+
+    public long getMaxDispatchLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDispatchLatency.get());
+    }
+
+    /**
+     * Runs the given task on the thread pool applying the configuration updates.
+     * The task is dropped if the blueprint container has been destroyed.
+     */
+    void execute(final Runnable task) {
+        if (destroyed) {
+            LOGGER.debug("Configuration update dropped, the blueprint container is destroyed");
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    if (!destroyed) {
+                        task.run();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Configuration update dropped, the blueprint container is destroyed");
+        }
+    }
+
+    private ScheduledFuture<?> schedule(Runnable task) {
+        try {
+            return executor.schedule(task, COALESCING_WINDOW, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Configuration update dropped, the blueprint container is destroyed");
+            return null;
+        }
+    }
+
+    private void registerMBean(Bundle bundle) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME + ",bundleId=" + bundle.getBundleId());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to register the configuration update statistics", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to unregister the configuration update statistics", e);
+            }
+            objectName = null;
+        }
+    }
+
+    private void dispatched(long latency) {
+        dispatchedUpdates.incrementAndGet();
+        totalDispatchLatency.addAndGet(latency);
+        long max = maxDispatchLatency.get();
+        while (latency > max && !maxDispatchLatency.compareAndSet(max, latency)) {
+            max = maxDispatchLatency.get();
+        }
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor acquireExecutor() {
+        if (sharedExecutor == null) {
+            sharedExecutor = createExecutor(UPDATE_THREADS);
+        }
+        sharedExecutorUsers++;
+        return sharedExecutor;
+    }
+
+    private static synchronized void releaseExecutor() {
+        if (--sharedExecutorUsers == 0) {
+            // not shutdownNow(), the container may be destroyed by a reload running on the pool
+            sharedExecutor.shutdown();
+            sharedExecutor = null;
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createExecutor(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Blueprint CM update " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
 
+    private class ConfigurationWatcher implements ManagedService, Runnable {
+
+        private final String pid;
         private ServiceRegistration registration;
         private List<ManagedObject> list = new CopyOnWriteArrayList<ManagedObject>();
+        // the latest configuration received and not applied yet
+        private Dictionary pending;
+        private boolean hasPending;
+        private long received;
+        // set while this watcher is scheduled or running on the executor
+        private ScheduledFuture<?> future;
+        private volatile boolean unregistered;
         
-        public ConfigurationWatcher() {
+        public ConfigurationWatcher(String pid) {
+            this.pid = pid;
         }
         
-        public void updated(final Dictionary props) throws ConfigurationException {
-            // Run in a separate thread to avoid re-entrance
-            new Thread() {
-                public void run() {
-                    for (ManagedObject cm : list) {
-                        cm.updated(props);
+        public synchronized void updated(final Dictionary props) throws ConfigurationException {
+            if (unregistered) {
+                return;
+            }
+            // Applied later on the executor to avoid re-entrance
+            if (hasPending) {
+                coalescedUpdates.incrementAndGet();
+                LOGGER.debug("Coalescing configuration updates for pid={}", pid);
+            } else {
+                received = System.nanoTime();
+            }
+            pending = props;
+            hasPending = true;
+            if (future == null) {
+                future = schedule(this);
+            }
+        }
+
+        public void run() {
+            Dictionary props;
+            synchronized (this) {
+                if (unregistered) {
+                    // the managed objects have been destroyed
+                    pending = null;
+                    hasPending = false;
+                    future = null;
+                    return;
+                }
+                props = pending;
+                pending = null;
+                hasPending = false;
+                dispatched(System.nanoTime() - received);
+            }
+            try {
+                for (ManagedObject cm : list) {
+                    // skip the managed objects destroyed in the mean time
+                    if (unregistered || !list.contains(cm)) {
+                        continue;
                     }
+                    cm.updated(props);
+                }
+            } catch (Throwable t) {
+                LOGGER.warn("Error applying configuration update for pid=" + pid, t);
+            } finally {
+                synchronized (this) {
+                    // Updates received while running are applied one after another
+                    future = hasPending && !unregistered ? schedule(this) : null;
                 }
-            }.start();
+            }
         }
         
         private void setRegistration(ServiceRegistration registration) {
@@ -103,6 +329,17 @@ public class ManagedObjectManager {
         private boolean isEmpty() {
             return list.isEmpty();
         }
+
+        private synchronized void unregister() {
+            unregistered = true;
+            pending = null;
+            hasPending = false;
+            // frees the shared pool from the update waiting for this watcher
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
     }
         
 }
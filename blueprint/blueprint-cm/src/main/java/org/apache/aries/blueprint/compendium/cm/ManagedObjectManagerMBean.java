@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.compendium.cm;
+
+/**
+ * The statistics of the configuration updates applied by a {@link ManagedObjectManager},
+ * registered in the platform MBean server for each blueprint bundle using the cm namespace.
+ */
+public interface ManagedObjectManagerMBean {
+
+    String OBJECT_NAME = "org.apache.aries.blueprint.cm:type=ConfigurationUpdates";
+
+    /**
+     * @return the number of configuration updates applied to the managed objects
+     */
+    long getDispatchedUpdates();
+
+    /**
+     * @return the number of configuration updates dropped because a newer one for the same
+     *         persistence id was received before they were applied
+     */
+    long getCoalescedUpdates();
+
+    /**
+     * @return the average time in milliseconds between receiving a configuration update and
+     *         starting to apply it
+     */
+    long getAverageDispatchLatency();
+
+    /**
+     * @return the longest time in milliseconds between receiving a configuration update and
+     *         starting to apply it
+     */
+    long getMaxDispatchLatency();
+
+}
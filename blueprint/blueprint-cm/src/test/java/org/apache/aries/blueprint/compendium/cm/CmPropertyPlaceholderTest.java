@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.compendium.cm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.apache.aries.blueprint.ext.evaluator.PropertyEvaluator;
+import org.apache.aries.blueprint.reflect.ValueMetadataImpl;
+import org.apache.aries.blueprint.services.ExtendedBlueprintContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CmPropertyPlaceholderTest {
+
+    private CmPropertyPlaceholder placeholder;
+    private ManagedObjectManager manager;
+    private int reloads;
+
+    @Before
+    public void setUp() {
+        manager = new ManagedObjectManager() {
+            @Override
+            void execute(Runnable task) {
+                task.run();
+            }
+        };
+        placeholder = new CmPropertyPlaceholder();
+        placeholder.setPersistentId("test");
+        placeholder.setUpdateStrategy("reload");
+        placeholder.setManagedObjectManager(manager);
+        placeholder.setBlueprintContainer(createContainer());
+        placeholder.updated(config("a", "1", "b", "2"));
+    }
+
+    @After
+    public void tearDown() {
+        manager.destroy();
+    }
+
+    @Test
+    public void testUnusedPropertyChangeDoesNotReload() {
+        assertEquals("a=1", resolve("a=${a}"));
+
+        placeholder.updated(config("a", "1", "b", "3"));
+        assertEquals(0, reloads);
+        // values resolved afterwards see the new configuration
+        assertEquals("b=3", resolve("b=${b}"));
+    }
+
+    @Test
+    public void testUsedPropertyChangeReloads() {
+        assertEquals("a=1", resolve("a=${a}"));
+
+        placeholder.updated(config("a", "4", "b", "2"));
+        assertEquals(1, reloads);
+    }
+
+    @Test
+    public void testRemovedUsedPropertyReloads() {
+        assertEquals("a=1", resolve("a=${a}"));
+
+        placeholder.updated(config("b", "2"));
+        assertEquals(1, reloads);
+    }
+
+    @Test
+    public void testPropertyReadByEvaluatorReloads() {
+        placeholder.setEvaluator(new PropertyEvaluator() {
+            public String evaluate(String expression, Dictionary<String, String> properties) {
+                // the expression names neither property
+                return properties.get("a") + properties.get("b");
+            }
+        });
+        assertEquals("12", resolve("${sum}"));
+
+        placeholder.updated(config("a", "1", "b", "5"));
+        assertEquals(1, reloads);
+    }
+
+    @Test
+    public void testOtherUpdateStrategyIgnoresUpdates() {
+        placeholder.setUpdateStrategy("none");
+        assertEquals("a=1", resolve("a=${a}"));
+
+        placeholder.updated(config("a", "4"));
+        assertEquals(0, reloads);
+        assertEquals("a=1", resolve("a=${a}"));
+    }
+
+    private String resolve(String value) {
+        return placeholder.new LateBindingValueMetadata(new ValueMetadataImpl(value)).getStringValue();
+    }
+
+    private ExtendedBlueprintContainer createContainer() {
+        return (ExtendedBlueprintContainer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] {ExtendedBlueprintContainer.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("reload".equals(method.getName())) {
+                            reloads++;
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Dictionary<String, Object> config(String... keyValues) {
+        Dictionary<String, Object> config = new Hashtable<String, Object>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            config.put(keyValues[i], keyValues[i + 1]);
+        }
+        return config;
+    }
+}
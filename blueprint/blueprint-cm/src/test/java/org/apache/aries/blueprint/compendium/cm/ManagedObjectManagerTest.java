@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.compendium.cm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ManagedService;
+
+public class ManagedObjectManagerTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private ManagedObjectManager manager;
+    private TestManagedObject managed;
+
+    @Before
+    public void setUp() {
+        manager = new ManagedObjectManager();
+        managed = new TestManagedObject("test", 1000);
+        manager.register(managed, new Properties());
+    }
+
+    @After
+    public void tearDown() {
+        manager.destroy();
+    }
+
+    @Test
+    public void testUpdatesWithinWindowAreCoalesced() throws Exception {
+        Dictionary<String, Object> first = config("1");
+        Dictionary<String, Object> second = config("2");
+        Dictionary<String, Object> last = config("3");
+        managed.service.updated(first);
+        managed.service.updated(second);
+        managed.service.updated(last);
+
+        assertSame(last, managed.updates.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(managed.updates.poll(3 * ManagedObjectManager.COALESCING_WINDOW, TimeUnit.MILLISECONDS));
+        assertEquals(1, manager.getDispatchedUpdates());
+        assertEquals(2, manager.getCoalescedUpdates());
+    }
+
+    @Test
+    public void testUpdatesAfterWindowAreApplied() throws Exception {
+        Dictionary<String, Object> first = config("1");
+        Dictionary<String, Object> second = config("2");
+        managed.service.updated(first);
+        assertSame(first, managed.updates.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        managed.service.updated(second);
+        assertSame(second, managed.updates.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(2, manager.getDispatchedUpdates());
+        assertEquals(0, manager.getCoalescedUpdates());
+    }
+
+    @Test
+    public void testUpdateDroppedAfterUnregistration() throws Exception {
+        managed.service.updated(config("1"));
+        manager.unregister(managed);
+        assertTrue(managed.unregistered);
+
+        assertNull(managed.updates.poll(3 * ManagedObjectManager.COALESCING_WINDOW, TimeUnit.MILLISECONDS));
+        // updates delivered to the unregistered service are ignored as well
+        managed.service.updated(config("2"));
+        assertNull(managed.updates.poll(3 * ManagedObjectManager.COALESCING_WINDOW, TimeUnit.MILLISECONDS));
+        assertEquals(0, manager.getDispatchedUpdates());
+    }
+
+    @Test
+    public void testDestroyDropsOnlyUpdatesOfItsContainer() throws Exception {
+        ManagedObjectManager other = new ManagedObjectManager();
+        TestManagedObject otherManaged = new TestManagedObject("test", 1001);
+        other.register(otherManaged, new Properties());
+        try {
+            managed.service.updated(config("1"));
+            Dictionary<String, Object> otherConfig = config("2");
+            otherManaged.service.updated(otherConfig);
+            manager.destroy();
+            assertTrue(managed.unregistered);
+
+            // the pool shared by the containers keeps applying the updates of the other one
+            assertSame(otherConfig, otherManaged.updates.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertNull(managed.updates.poll(3 * ManagedObjectManager.COALESCING_WINDOW, TimeUnit.MILLISECONDS));
+        } finally {
+            other.destroy();
+        }
+    }
+
+    @Test
+    public void testTaskDroppedAfterDestroy() throws Exception {
+        final BlockingQueue<String> runs = new LinkedBlockingQueue<String>();
+        manager.execute(new Runnable() {
+            public void run() {
+                runs.add("before");
+            }
+        });
+        assertEquals("before", runs.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        manager.destroy();
+        manager.execute(new Runnable() {
+            public void run() {
+                runs.add("after");
+            }
+        });
+        assertNull(runs.poll(3 * ManagedObjectManager.COALESCING_WINDOW, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testStatisticsRegisteredAsMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ManagedObjectManagerMBean.OBJECT_NAME + ",bundleId=1000");
+        assertTrue(server.isRegistered(name));
+
+        Dictionary<String, Object> first = config("1");
+        managed.service.updated(first);
+        managed.service.updated(config("2"));
+        managed.updates.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(1L, server.getAttribute(name, "DispatchedUpdates"));
+        assertEquals(1L, server.getAttribute(name, "CoalescedUpdates"));
+        long max = (Long) server.getAttribute(name, "MaxDispatchLatency");
+        assertTrue(max >= (Long) server.getAttribute(name, "AverageDispatchLatency"));
+
+        manager.destroy();
+        assertFalse(server.isRegistered(name));
+    }
+
+    private static Dictionary<String, Object> config(String value) {
+        Dictionary<String, Object> config = new Hashtable<String, Object>();
+        config.put("key", value);
+        return config;
+    }
+
+    private static class TestManagedObject implements ManagedObject {
+        private final String persistentId;
+        private final Bundle bundle;
+        private final BlockingQueue<Dictionary> updates = new LinkedBlockingQueue<Dictionary>();
+        private ManagedService service;
+        private boolean unregistered;
+
+        TestManagedObject(String persistentId, final long bundleId) {
+            this.persistentId = persistentId;
+            final ServiceRegistration registration = (ServiceRegistration) proxy(ServiceRegistration.class, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("unregister".equals(method.getName())) {
+                        unregistered = true;
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+            final BundleContext context = (BundleContext) proxy(BundleContext.class, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("registerService".equals(method.getName())) {
+                        service = (ManagedService) args[1];
+                        return registration;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+            bundle = (Bundle) proxy(Bundle.class, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("getBundleContext".equals(method.getName())) {
+                        return context;
+                    } else if ("getBundleId".equals(method.getName())) {
+                        return bundleId;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        public Bundle getBundle() {
+            return bundle;
+        }
+
+        public String getPersistentId() {
+            return persistentId;
+        }
+
+        public void updated(Dictionary props) {
+            updates.add(props);
+        }
+    }
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(ManagedObjectManagerTest.class.getClassLoader(), new Class[] {type}, handler);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.container;
+
+import java.util.List;
+
+import org.apache.aries.blueprint.ComponentDefinitionRegistry;
+import org.apache.aries.blueprint.reflect.MetadataUtil;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Target;
+
+/**
+ * The components built by the annotation scanner, added to the blueprint paths of a bundle
+ * in place of the generated XML file.
+ */
+class AnnotatedComponents {
+
+    private final List<ComponentMetadata> components;
+    private final List<Target> typeConverters;
+
+    AnnotatedComponents(List<ComponentMetadata> components, List<Target> typeConverters) {
+        this.components = components;
+        this.typeConverters = typeConverters;
+    }
+
+    boolean isEmpty() {
+        return components.isEmpty() && typeConverters.isEmpty();
+    }
+
+    /**
+     * Registers copies of the components, the container may populate its registry
+     * again when it is restarted.
+     */
+    void populate(ComponentDefinitionRegistry registry) {
+        for (Target typeConverter : typeConverters) {
+            registry.registerTypeConverter(MetadataUtil.cloneTarget(typeConverter));
+        }
+        for (ComponentMetadata component : components) {
+            registry.registerComponentDefinition(MetadataUtil.cloneComponentMetadata(component));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "annotated components " + components.size() + ", type converters " + typeConverters.size();
+    }
+}
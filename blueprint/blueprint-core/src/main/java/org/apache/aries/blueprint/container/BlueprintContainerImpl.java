@@ -111,6 +111,9 @@ public class BlueprintContainerImpl
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BlueprintContainerImpl.class);
 
+    // Framework property enabling the streaming mode of the parser
+    private static final String PARSER_STREAMING = "org.apache.aries.blueprint.parser.streaming";
+
     private static final Class[] SECURITY_BUGFIX = {
             BlueprintDomainCombiner.class,
             BlueprintProtectionDomain.class,
@@ -295,7 +298,7 @@ public class BlueprintContainerImpl
                     case Unknown:
                         readDirectives();
                         eventDispatcher.blueprintEvent(new BlueprintEvent(BlueprintEvent.CREATING, getBundle(), getExtenderBundle()));
-                        parser = new Parser();
+                        parser = new Parser(null, false, Boolean.parseBoolean(bundleContext.getProperty(PARSER_STREAMING)));
                         parser.parse(getResources());
                         namespaces = parser.getNamespaces();
                         handlerSet = handlers.getNamespaceHandlers(namespaces, getBundle());
@@ -324,6 +327,11 @@ public class BlueprintContainerImpl
                             parser.validate(handlerSet.getSchema(), new ValidationHandler());
                         }
                         parser.populate(handlerSet, componentDefinitionRegistry);
+                        for (Object path : pathList) {
+                            if (path instanceof AnnotatedComponents) {
+                                ((AnnotatedComponents) path).populate(componentDefinitionRegistry);
+                            }
+                        }
                         state = State.Populated;
                         break;
                     }
@@ -417,6 +425,8 @@ public class BlueprintContainerImpl
         for (Object path : pathList) {
             if (path instanceof URL) {
                 resources.add((URL) path);                
+            } else if (path instanceof AnnotatedComponents) {
+                // registered once the parsed components are populated
             } else if (path instanceof String) {
                 URL url = bundle.getEntry((String) path);
                 if (url == null) {
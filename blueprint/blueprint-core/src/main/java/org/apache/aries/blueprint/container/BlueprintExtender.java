@@ -32,6 +32,7 @@ import java.util.concurrent.*;
 import org.apache.aries.blueprint.BlueprintConstants;
 import org.apache.aries.blueprint.annotation.service.BlueprintAnnotationScanner;
 import org.apache.aries.blueprint.namespace.NamespaceHandlerRegistryImpl;
+import org.apache.aries.blueprint.services.AnnotationMetadataScanner;
 import org.apache.aries.blueprint.services.BlueprintExtenderService;
 import org.apache.aries.blueprint.services.ParserService;
 import org.apache.aries.blueprint.utils.HeaderParser;
@@ -53,6 +54,8 @@ import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.service.blueprint.container.BlueprintContainer;
 import org.osgi.service.blueprint.container.BlueprintEvent;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Target;
 import org.osgi.util.tracker.BundleTracker;
 import org.osgi.util.tracker.BundleTrackerCustomizer;
 import org.slf4j.Logger;
@@ -67,6 +70,7 @@ public class BlueprintExtender implements BundleActivator, BundleTrackerCustomiz
 
     /** The QuiesceParticipant implementation class name */
     private static final String QUIESCE_PARTICIPANT_CLASS = "org.apache.aries.quiesce.participant.QuiesceParticipant";
+    private static final String ANNOTATION_METADATA = "org.apache.aries.blueprint.annotation.metadata";
     private static final Logger LOGGER = LoggerFactory.getLogger(BlueprintExtender.class);
 
     private BundleContext context;
@@ -380,17 +384,19 @@ public class BlueprintExtender implements BundleActivator, BundleTrackerCustomiz
             // Check annotations
             if (blueprintHeaderAnnotation != null && blueprintHeaderAnnotation.trim().equalsIgnoreCase("true")) {
                 LOGGER.debug("Scanning bundle {}/{} for blueprint annotations", bundle.getSymbolicName(), bundle.getVersion());
-                ServiceReference sr = this.context.getServiceReference(BlueprintAnnotationScanner.class.getName());
-                if (sr != null) {
-                    BlueprintAnnotationScanner bas = (BlueprintAnnotationScanner) this.context.getService(sr);
-                    try {
-                        // try to generate the blueprint definition XML
-                        URL url = bas.createBlueprintModel(bundle);
-                        if (url != null) {
-                            pathList.add(url);
+                if (!addAnnotatedComponents(bundle, pathList)) {
+                    ServiceReference sr = this.context.getServiceReference(BlueprintAnnotationScanner.class.getName());
+                    if (sr != null) {
+                        BlueprintAnnotationScanner bas = (BlueprintAnnotationScanner) this.context.getService(sr);
+                        try {
+                            // try to generate the blueprint definition XML
+                            URL url = bas.createBlueprintModel(bundle);
+                            if (url != null) {
+                                pathList.add(url);
+                            }
+                        } finally {
+                            this.context.ungetService(sr);
                         }
-                    } finally {
-                        this.context.ungetService(sr);
                     }
                 }
             }
@@ -555,6 +561,37 @@ public class BlueprintExtender implements BundleActivator, BundleTrackerCustomiz
         return getOverrideURLForCachePath(cachePath);
     }    
     
+    /**
+     * Builds the metadata of the annotated components directly, without writing and parsing
+     * the XML, when enabled and an annotation scanner registered the metadata service.
+     *
+     * @return whether the bundle was scanned
+     */
+    private boolean addAnnotatedComponents(Bundle bundle, List<Object> pathList) {
+        if (!Boolean.parseBoolean(this.context.getProperty(ANNOTATION_METADATA))) {
+            return false;
+        }
+        ServiceReference sr = this.context.getServiceReference(AnnotationMetadataScanner.class.getName());
+        if (sr == null) {
+            return false;
+        }
+        AnnotationMetadataScanner scanner = (AnnotationMetadataScanner) this.context.getService(sr);
+        if (scanner == null) {
+            return false;
+        }
+        try {
+            List<Target> typeConverters = new ArrayList<Target>();
+            List<ComponentMetadata> components = scanner.createComponentMetadata(bundle, typeConverters);
+            AnnotatedComponents annotated = new AnnotatedComponents(components, typeConverters);
+            if (!annotated.isEmpty()) {
+                pathList.add(annotated);
+            }
+            return true;
+        } finally {
+            this.context.ungetService(sr);
+        }
+    }
+
     private void addEntry(Bundle bundle, String path, List<Object> pathList) {
         URL override = getOverrideURL(bundle, path);
         if(override == null) {
@@ -47,11 +47,20 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceListRecipe.class);
 
+    /**
+     * Framework property which, when set to <code>true</code>, makes the iterators of the
+     * reference-list collections work on a snapshot of the members taken when the iterator
+     * is created, instead of reflecting the changes made while iterating as required by the
+     * Blueprint specification. Snapshot iterators do not need any locking.
+     */
+    public static final String SNAPSHOT_ITERATION_PROPERTY = "org.apache.aries.blueprint.referenceList.snapshotIteration";
+
     private final ReferenceListMetadata metadata;
     private final List<ManagedCollection> collections = new ArrayList<ManagedCollection>();
     private final DynamicCollection<ServiceDispatcher> storage = new DynamicCollection<ServiceDispatcher>();
     private final List<ServiceDispatcher> unboundDispatchers = new ArrayList<ServiceDispatcher>();
     private final Object monitor = new Object();
+    private final boolean snapshotIteration;
 
     public ReferenceListRecipe(String name,
                          ExtendedBlueprintContainer blueprintContainer,
@@ -61,6 +70,8 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
                          List<Recipe> explicitDependencies) {
         super(name, blueprintContainer, metadata, filterRecipe, listenersRecipe, explicitDependencies);
         this.metadata = metadata;
+        BundleContext context = blueprintContainer.getBundleContext();
+        this.snapshotIteration = context != null && Boolean.parseBoolean(context.getProperty(SNAPSHOT_ITERATION_PROPERTY));
     }
 
     @Override
@@ -167,7 +178,7 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
                 return col;
             }
         }
-        ManagedCollection collection = new ManagedCollection(useReferences, storage);
+        ManagedCollection collection = new ManagedCollection(useReferences, storage, snapshotIteration);
         collections.add(collection);
         return collection;
     }
@@ -179,7 +190,7 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
     public class ServiceDispatcher implements Callable<Object> {
 
         public ServiceReference reference;
-        public Object service;
+        public volatile Object service;
         public Object proxy;
         
         public ServiceDispatcher(ServiceReference reference) throws Exception {
@@ -206,14 +217,21 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
             }
         }
 
-        public synchronized Object call() throws Exception {
-            if (service == null && reference != null) {
-                service = getServiceSecurely(reference);
+        public Object call() throws Exception {
+            // Once retrieved, the service is kept until the dispatcher is destroyed
+            Object service = this.service;
+            if (service != null) {
+                return service;
             }
-            if (service == null) {
-                throw new ServiceUnavailableException("Service is unavailable", getOsgiFilter());
+            synchronized (this) {
+                if (this.service == null && reference != null) {
+                    this.service = getServiceSecurely(reference);
+                }
+                if (this.service == null) {
+                    throw new ServiceUnavailableException("Service is unavailable", getOsgiFilter());
+                }
+                return this.service;
             }
-            return service;
         }
 
     }
@@ -259,11 +277,19 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
 
         protected final DynamicCollection<ServiceDispatcher> dispatchers;
         protected boolean references;
+        protected final boolean snapshot;
+        // the dispatchers snapshot and the references or proxies taken from it
+        private volatile Object[][] values = new Object[][] { null, null };
 
         public ManagedCollection(boolean references, DynamicCollection<ServiceDispatcher> dispatchers) {
+            this(references, dispatchers, false);
+        }
+
+        public ManagedCollection(boolean references, DynamicCollection<ServiceDispatcher> dispatchers, boolean snapshot) {
             this.references = references;
             this.dispatchers = dispatchers;
-            LOGGER.debug("ManagedCollection references={}", references);
+            this.snapshot = snapshot;
+            LOGGER.debug("ManagedCollection references={}, snapshot={}", references, snapshot);
         }
 
         public boolean addDispatcher(ServiceDispatcher dispatcher) {
@@ -279,7 +305,7 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
         }
 
         public Iterator iterator() {
-            return new ManagedListIterator(dispatchers.iterator());
+            return listIterator(0);
         }
 
         public int size() {
@@ -351,9 +377,35 @@ public class ReferenceListRecipe extends AbstractServiceReferenceRecipe {
         }
 
         public ListIterator listIterator(int index) {
+            if (snapshot) {
+                return new DynamicCollection.SnapshotIterator<Object>(getSnapshotValues(), index);
+            }
             return new ManagedListIterator(dispatchers.iterator(index));
         }
 
+        /**
+         * Maps the current dispatchers snapshot to the references or proxies, once per change
+         * of the members. Dispatchers destroyed in the mean time are left out.
+         */
+        protected Object[] getSnapshotValues() {
+            Object[] dispatchers = this.dispatchers.getSnapshot();
+            Object[][] values = this.values;
+            if (values[0] == dispatchers) {
+                return values[1];
+            }
+            List<Object> mapped = new ArrayList<Object>(dispatchers.length);
+            for (Object o : dispatchers) {
+                ServiceDispatcher dispatcher = (ServiceDispatcher) o;
+                Object value = references ? dispatcher.reference : dispatcher.proxy;
+                if (value != null) {
+                    mapped.add(value);
+                }
+            }
+            values = new Object[][] { dispatchers, mapped.toArray() };
+            this.values = values;
+            return values[1];
+        }
+
         public List<ServiceDispatcher> subList(int fromIndex, int toIndex) {
             throw new UnsupportedOperationException("Not implemented");
         }
@@ -63,6 +63,9 @@ public class ReferenceRecipe extends AbstractServiceReferenceRecipe {
     private final Object monitor = new Object();
     private volatile ServiceReference trackedServiceReference;
     private volatile Object trackedService;
+    // Immutable snapshot of the bound service, read without locking by the proxies.
+    // Only set while holding the monitor, and cleared before the service is released.
+    private volatile Binding binding;
     private Object defaultBean;
 
     private final Collection<Class<?>> proxyChildBeanClasses;
@@ -165,6 +168,10 @@ public class ReferenceRecipe extends AbstractServiceReferenceRecipe {
         synchronized (monitor) {
             ServiceReference oldReference = trackedServiceReference;
             trackedServiceReference = ref;
+            if (ref != oldReference) {
+              // the proxies and the listeners must not see the old service any more
+              binding = null;
+            }
             voidProxiedChildren();
             bind(trackedServiceReference, proxy);
             if (ref != oldReference) {
@@ -185,6 +192,7 @@ public class ReferenceRecipe extends AbstractServiceReferenceRecipe {
         LOGGER.debug("Unbinding reference {}", getName());
         synchronized (monitor) {
             if (trackedServiceReference != null) {
+                binding = null;
                 unbind(trackedServiceReference, proxy);
                 ServiceReference oldReference = trackedServiceReference;
                 trackedServiceReference = null;
@@ -203,6 +211,11 @@ public class ReferenceRecipe extends AbstractServiceReferenceRecipe {
     }
 
     private Object getService() throws InterruptedException {
+        // Steady state: the service is bound and has already been retrieved
+        Binding b = binding;
+        if (b != null) {
+            return b.service;
+        }
         synchronized (monitor) {
             if (isStarted() && trackedServiceReference == null && metadata.getTimeout() > 0
                     && metadata.getAvailability() == ServiceReferenceMetadata.AVAILABILITY_MANDATORY) {
@@ -250,6 +263,7 @@ public class ReferenceRecipe extends AbstractServiceReferenceRecipe {
                   throw new IllegalStateException("getService() returned null for " + trackedServiceReference);
               }
               
+              binding = new Binding(trackedServiceReference, trackedService);
               result = trackedService;
             }
             return result;
@@ -264,6 +278,10 @@ public class ReferenceRecipe extends AbstractServiceReferenceRecipe {
     }
 
     private ServiceReference getServiceReference() throws InterruptedException {
+        Binding b = binding;
+        if (b != null) {
+            return b.reference;
+        }
         synchronized (monitor) {
             if (!optional) {
                 getService();
@@ -300,6 +318,16 @@ public class ReferenceRecipe extends AbstractServiceReferenceRecipe {
         return proxyChildBeanClasses;
     }
 
+    private static class Binding {
+        private final ServiceReference reference;
+        private final Object service;
+
+        Binding(ServiceReference reference, Object service) {
+            this.reference = reference;
+            this.service = service;
+        }
+    }
+
     public class ServiceDispatcher implements Callable<Object> {
 
         public Object call() throws Exception {
@@ -19,8 +19,11 @@
 package org.apache.aries.blueprint.ext;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -69,9 +72,19 @@ public abstract class AbstractPropertyPlaceholder implements ComponentDefinition
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractPropertyPlaceholder.class);
 
+    private static final int MAX_TEMPLATES = 8192;
+
     private String placeholderPrefix = "${";
     private String placeholderSuffix = "}";
     private Pattern pattern;
+    // string values already split into literals and placeholders, least recently used first
+    private final Map<String, Template> templates = Collections.synchronizedMap(
+            new LinkedHashMap<String, Template>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+                    return size() > MAX_TEMPLATES;
+                }
+            });
 
     private LinkedList<String> processingStack = new LinkedList<String>();
 
@@ -431,6 +444,15 @@ public abstract class AbstractPropertyPlaceholder implements ComponentDefinition
     }
     
     protected String processString(String str) {
+        Template template = templates.get(str);
+        if (template == null) {
+            template = new Template(str);
+            templates.put(str, template);
+        }
+        return template.evaluate();
+    }
+
+    private String processStringIteratively(String str) {
         // TODO: we need to handle escapes on the prefix / suffix
         Matcher matcher = getPattern().matcher(str);
         while (matcher.find()) {
@@ -454,6 +476,60 @@ public abstract class AbstractPropertyPlaceholder implements ComponentDefinition
         return pattern;
     }
 
+    /**
+     * A string value split once into its literal parts and placeholders, so that resolving
+     * it again does not need to go through the regular expression.
+     */
+    private class Template {
+
+        private final String[] literals;
+        private final String[] expressions;
+        private final String[] placeholders;
+
+        Template(String str) {
+            List<String> literals = new ArrayList<String>();
+            List<String> expressions = new ArrayList<String>();
+            List<String> placeholders = new ArrayList<String>();
+            Matcher matcher = getPattern().matcher(str);
+            int last = 0;
+            while (matcher.find()) {
+                literals.add(str.substring(last, matcher.start()));
+                expressions.add(matcher.group(1));
+                placeholders.add(matcher.group(0));
+                last = matcher.end();
+            }
+            literals.add(str.substring(last));
+            this.literals = literals.toArray(new String[literals.size()]);
+            this.expressions = expressions.toArray(new String[expressions.size()]);
+            this.placeholders = placeholders.toArray(new String[placeholders.size()]);
+        }
+
+        String evaluate() {
+            if (expressions.length == 0) {
+                return literals[0];
+            }
+            StringBuilder sb = new StringBuilder();
+            boolean replaced = false;
+            for (int i = 0; i < expressions.length; i++) {
+                sb.append(literals[i]);
+                String rep = retrieveValue(expressions[i]);
+                if (rep != null) {
+                    sb.append(rep);
+                    replaced = true;
+                } else {
+                    sb.append(placeholders[i]);
+                }
+            }
+            sb.append(literals[expressions.length]);
+            String result = sb.toString();
+            if (replaced && result.contains(placeholderPrefix)) {
+                // the values may have brought in new placeholders
+                result = processStringIteratively(result);
+            }
+            return result;
+        }
+    }
+
     public class LateBindingValueMetadata implements ValueMetadata {
 
         private final ValueMetadata metadata;
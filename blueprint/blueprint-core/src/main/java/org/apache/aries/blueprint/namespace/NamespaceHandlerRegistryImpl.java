@@ -21,29 +21,41 @@ package org.apache.aries.blueprint.namespace;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.AbstractMap;
-import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
@@ -51,6 +63,7 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
 import org.apache.aries.blueprint.NamespaceHandler;
+import org.apache.aries.blueprint.container.BlueprintThreadFactory;
 import org.apache.aries.blueprint.container.NamespaceHandlerRegistry;
 import org.apache.aries.blueprint.parser.NamespaceHandlerSet;
 import org.osgi.framework.Bundle;
@@ -70,14 +83,28 @@ import org.xml.sax.SAXException;
  * This registry will track NamespaceHandler objects in the OSGi registry and make
  * them available, calling listeners when handlers are registered or unregistered.
  *
+ * Compiled schemas are cached by the namespaces and handlers they are made of, so that
+ * containers using the same namespace handlers share them.  The schema of each handler
+ * is compiled in the background as soon as the handler is registered, unless the
+ * {@link #SCHEMA_PRECOMPILE} framework property is false.  The size of the cache can be
+ * set with the {@link #SCHEMA_CACHE_SIZE} framework property.
+ *
  * @version $Rev$, $Date$
  */
-public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, ServiceTrackerCustomizer {
+public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, ServiceTrackerCustomizer, NamespaceHandlerRegistryImplMBean {
     
     public static final URI BLUEPRINT_NAMESPACE = URI.create("http://www.osgi.org/xmlns/blueprint/v1.0.0");
 
     public static final String NAMESPACE = "osgi.service.blueprint.namespace";
 
+    public static final String SCHEMA_CACHE_SIZE = "org.apache.aries.blueprint.schema.cache.size";
+
+    public static final String SCHEMA_PRECOMPILE = "org.apache.aries.blueprint.schema.precompile";
+
+    private static final int DEFAULT_SCHEMA_CACHE_SIZE = 64;
+
+    private static final int SCHEMA_COMPILER_THREADS = Runtime.getRuntime().availableProcessors();
+
     private static final Logger LOGGER = LoggerFactory.getLogger(NamespaceHandlerRegistryImpl.class);
 
     // The bundle context is thread safe
@@ -91,12 +118,29 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
                         new ConcurrentHashMap<URI, CopyOnWriteArraySet<NamespaceHandler>>();
 
     // Access to the LRU schemas map is synchronized on itself
-    private final LRUMap<Map<URI, NamespaceHandler>, Reference<Schema>> schemas =
-                        new LRUMap<Map<URI, NamespaceHandler>, Reference<Schema>>(10);
+    private final Map<SchemaKey, Reference<Schema>> schemas;
+
+    private final int maxCachedSchemas;
+
+    // The schemas being compiled, so that containers asking for the same schema wait for a single compilation
+    private final ConcurrentHashMap<SchemaKey, FutureTask<Schema>> pendingSchemas =
+                        new ConcurrentHashMap<SchemaKey, FutureTask<Schema>>();
 
-    // Access to this factory is synchronized on itself
-    private final SchemaFactory schemaFactory =
-                        SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    // Schema factories are not thread safe, a factory is taken out of the queue while it is used
+    private final Queue<SchemaFactory> schemaFactories = new ConcurrentLinkedQueue<SchemaFactory>();
+
+    // The implementation found when the registry was created, used for all the factories
+    private final Class<? extends SchemaFactory> schemaFactoryClass;
+
+    // Compiles the schemas of the handlers when they are registered
+    private final ThreadPoolExecutor schemaCompiler;
+
+    private final boolean precompile;
+
+    private final AtomicLong schemaCacheHits = new AtomicLong();
+    private final AtomicLong schemaCacheMisses = new AtomicLong();
+
+    private ObjectName objectName;
 
     // Access to this variable is must be synchronized on itself
     private final ArrayList<NamespaceHandlerSetImpl> sets =
@@ -104,8 +148,28 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
 
     public NamespaceHandlerRegistryImpl(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
+        maxCachedSchemas = getSchemaCacheSize(bundleContext);
+        schemas = new LinkedHashMap<SchemaKey, Reference<Schema>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SchemaKey, Reference<Schema>> eldest) {
+                return size() > maxCachedSchemas;
+            }
+        };
+        precompile = !"false".equalsIgnoreCase(bundleContext.getProperty(SCHEMA_PRECOMPILE));
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        schemaFactoryClass = schemaFactory.getClass();
+        schemaFactories.add(schemaFactory);
+        schemaCompiler = new ThreadPoolExecutor(SCHEMA_COMPILER_THREADS, SCHEMA_COMPILER_THREADS, 10, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new BlueprintThreadFactory("Blueprint Schema Compiler"));
+        schemaCompiler.allowCoreThreadTimeOut(true);
+        // The schema of containers which do not use any custom namespace
+        precompileSchema(Collections.<URI, NamespaceHandler>emptyMap());
         tracker = new ServiceTracker(bundleContext, NamespaceHandler.class.getName(), this);
         tracker.open();
+        Bundle bundle = bundleContext.getBundle();
+        if (bundle != null) {
+            registerMBean(bundle);
+        }
     }
 
     public Object addingService(ServiceReference reference) {
@@ -162,6 +226,7 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
                 for (NamespaceHandlerSetImpl s : sets) {
                     s.registerHandler(uri, handler);
                 }
+                precompileSchema(Collections.singletonMap(uri, handler));
             }
         }
     }
@@ -244,6 +309,63 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
 
     public void destroy() {
         tracker.close();
+        schemaCompiler.shutdownNow();
+        unregisterMBean();
+        LOGGER.debug("Schema cache hits: {}, misses: {}", schemaCacheHits.get(), schemaCacheMisses.get());
+    }
+
+    public long getSchemaCacheHits() {
+        return schemaCacheHits.get();
+    }
+
+    public long getSchemaCacheMisses() {
+        return schemaCacheMisses.get();
+    }
+
+    public int getCachedSchemas() {
+        synchronized (schemas) {
+            return schemas.size();
+        }
+    }
+
+    public int getMaxCachedSchemas() {
+        return maxCachedSchemas;
+    }
+
+    private void registerMBean(Bundle bundle) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME + ",bundleId=" + bundle.getBundleId());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to register the schema cache statistics", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to unregister the schema cache statistics", e);
+            }
+            objectName = null;
+        }
+    }
+
+    private static int getSchemaCacheSize(BundleContext bundleContext) {
+        String size = bundleContext.getProperty(SCHEMA_CACHE_SIZE);
+        if (size != null) {
+            try {
+                return Integer.parseInt(size.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid value for " + SCHEMA_CACHE_SIZE + ": " + size);
+            }
+        }
+        return DEFAULT_SCHEMA_CACHE_SIZE;
     }
 
     private Schema getSchema(Map<URI, NamespaceHandler> handlers,
@@ -252,69 +374,131 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
         if (schemaMap != null && !schemaMap.isEmpty()) {
             return createSchema(handlers, bundle, schemaMap);
         }
-        // Find a schema that can handle all the requested namespaces
-        // If it contains additional namespaces, it should not be a problem since
-        // they won't be used at all
-        Schema schema = getExistingSchema(handlers);
-        if (schema == null) {
-            // Create schema
-            schema = createSchema(handlers, bundle, schemaMap);
-            cacheSchema(handlers, schema);
+        SchemaKey key = new SchemaKey(handlers);
+        Schema schema = getExistingSchema(key);
+        if (schema != null) {
+            schemaCacheHits.incrementAndGet();
+            return schema;
         }
-        return schema;
+        schemaCacheMisses.incrementAndGet();
+        return loadSchema(key, handlers);
     }
 
-    private Schema getExistingSchema(Map<URI, NamespaceHandler> handlers) {
-        synchronized (schemas) {
-            for (Map<URI, NamespaceHandler> key : schemas.keySet()) {
-                boolean found = true;
-                for (URI uri : handlers.keySet()) {
-                    if (!handlers.get(uri).equals(key.get(uri))) {
-                        found = false;
-                        break;
+    private void precompileSchema(final Map<URI, NamespaceHandler> handlers) {
+        if (!precompile) {
+            return;
+        }
+        final SchemaKey key = new SchemaKey(handlers);
+        try {
+            schemaCompiler.execute(new Runnable() {
+                public void run() {
+                    try {
+                        loadSchema(key, handlers);
+                    } catch (Throwable t) {
+                        LOGGER.debug("Unable to compile the schema for namespaces " + handlers.keySet(), t);
                     }
                 }
-                if (found) {
-                    return schemas.get(key).get();
+            });
+        } catch (RejectedExecutionException e) {
+            // The registry has been destroyed
+        }
+    }
+
+    /**
+     * Returns the cached schema, or compiles it.  A single thread compiles a given schema,
+     * the others wait for its result.
+     */
+    private Schema loadSchema(final SchemaKey key, final Map<URI, NamespaceHandler> handlers) throws IOException, SAXException {
+        FutureTask<Schema> task = new FutureTask<Schema>(new Callable<Schema>() {
+            public Schema call() throws Exception {
+                Schema schema = getExistingSchema(key);
+                if (schema == null) {
+                    schema = createSchema(handlers, null, new Properties());
+                    cacheSchema(key, schema);
                 }
+                return schema;
             }
-            return null;
+        });
+        FutureTask<Schema> pending = pendingSchemas.putIfAbsent(key, task);
+        if (pending == null) {
+            pending = task;
+            try {
+                task.run();
+            } finally {
+                pendingSchemas.remove(key, task);
+            }
+        }
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the schema for namespaces " + handlers.keySet());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new SAXException((Exception) cause);
+            }
+        }
+    }
+
+    private Schema getExistingSchema(SchemaKey key) {
+        synchronized (schemas) {
+            Reference<Schema> ref = schemas.get(key);
+            Schema schema = ref != null ? ref.get() : null;
+            if (schema != null) {
+                return schema;
+            }
+            // Find a schema that can handle all the requested namespaces
+            // If it contains additional namespaces, it should not be a problem since
+            // they won't be used at all
+            Reference<Schema> found = null;
+            for (Map.Entry<SchemaKey, Reference<Schema>> entry : schemas.entrySet()) {
+                if (entry.getKey().covers(key) && entry.getValue().get() != null) {
+                    found = entry.getValue();
+                    break;
+                }
+            }
+            if (found == null) {
+                return null;
+            }
+            // Remember it under the requested key so that the next lookup is direct
+            schemas.put(key, found);
+            return found.get();
         }
     }
 
     private void removeSchemasFor(NamespaceHandler handler) {
         synchronized (schemas) {
-            List<Map<URI, NamespaceHandler>> keys = new ArrayList<Map<URI, NamespaceHandler>>();
-            for (Map<URI, NamespaceHandler> key : schemas.keySet()) {
-                if (key.values().contains(handler)) {
+            List<SchemaKey> keys = new ArrayList<SchemaKey>();
+            for (SchemaKey key : schemas.keySet()) {
+                if (key.contains(handler)) {
                     keys.add(key);
                 }
             }
-            for (Map<URI, NamespaceHandler> key : keys) {
+            for (SchemaKey key : keys) {
                 schemas.remove(key);
             }
         }
     }
 
-    private void cacheSchema(Map<URI, NamespaceHandler> handlers, Schema schema) {
-        synchronized (schemas) {
-            // Remove schemas that are fully included
-            for (Iterator<Map<URI, NamespaceHandler>> iterator = schemas.keySet().iterator(); iterator.hasNext();) {
-                Map<URI, NamespaceHandler> key = iterator.next();
-                boolean found = true;
-                for (URI uri : key.keySet()) {
-                    if (!key.get(uri).equals(handlers.get(uri))) {
-                        found = false;
-                        break;
-                    }
-                }
-                if (found) {
-                    iterator.remove();
-                    break;
-                }
+    private void cacheSchema(SchemaKey key, Schema schema) {
+        // Do not cache schemas of handlers unregistered while the schema was compiled
+        for (int i = 0; i < key.namespaces.length; i++) {
+            Set<NamespaceHandler> registered = handlers.get(key.namespaces[i]);
+            if (registered == null || !registered.contains(key.handlers[i])) {
+                return;
             }
-            // Add our new schema
-            schemas.put(handlers, new SoftReference<Schema>(schema));
+        }
+        synchronized (schemas) {
+            schemas.put(key, new SoftReference<Schema>(schema));
         }
     }
 
@@ -342,9 +526,18 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
                     schemaSources.add(new StreamSource(url.openStream(), url.toExternalForm()));
                 }
             }
-            synchronized (schemaFactory) {
+            SchemaFactory schemaFactory = schemaFactories.poll();
+            if (schemaFactory == null) {
+                schemaFactory = newSchemaFactory();
+            }
+            try {
                 schemaFactory.setResourceResolver(new BundleResourceResolver(schemaMap, bundle, schemaSources));
                 return schemaFactory.newSchema(schemaSources.toArray(new Source[schemaSources.size()]));
+            } finally {
+                schemaFactory.setResourceResolver(null);
+                if (schemaFactories.size() < SCHEMA_COMPILER_THREADS) {
+                    schemaFactories.offer(schemaFactory);
+                }
             }
         } finally {
             for (StreamSource s : schemaSources) {
@@ -353,6 +546,14 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
         }
     }
 
+    private SchemaFactory newSchemaFactory() {
+        try {
+            return schemaFactoryClass.newInstance();
+        } catch (Exception e) {
+            return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        }
+    }
+
     private static void closeQuietly(Closeable closeable) {
         try {
             if (closeable != null) {
@@ -641,82 +842,59 @@ public class NamespaceHandlerRegistryImpl implements NamespaceHandlerRegistry, S
         }
     }
 
-    public static class LRUMap<K,V> extends AbstractMap<K,V> {
-
-        private final int bound;
-        private final LinkedList<Entry<K,V>> entries = new LinkedList<Entry<K,V>>();
-
-        private static class LRUEntry<K,V> implements Entry<K,V> {
-            private final K key;
-            private final V value;
-
-            private LRUEntry(K key, V value) {
-                this.key = key;
-                this.value = value;
-            }
-
-            public K getKey() {
-                return key;
-            }
-
-            public V getValue() {
-                return value;
-            }
-
-            public V setValue(V value) {
-                throw new UnsupportedOperationException();
+    /**
+     * The canonical key of a cached schema: the namespaces, sorted, and the handler used for each of them.
+     */
+    static final class SchemaKey {
+        private final URI[] namespaces;
+        private final NamespaceHandler[] handlers;
+        private final int hashCode;
+
+        SchemaKey(Map<URI, NamespaceHandler> handlers) {
+            // Copy the handlers, the ones of a namespace handler set can change
+            Map<URI, NamespaceHandler> sorted = new TreeMap<URI, NamespaceHandler>(handlers);
+            this.namespaces = sorted.keySet().toArray(new URI[sorted.size()]);
+            this.handlers = sorted.values().toArray(new NamespaceHandler[sorted.size()]);
+            this.hashCode = 31 * Arrays.hashCode(this.namespaces) + Arrays.hashCode(this.handlers);
+        }
+
+        boolean contains(NamespaceHandler handler) {
+            for (NamespaceHandler h : handlers) {
+                if (h.equals(handler)) {
+                    return true;
+                }
             }
+            return false;
         }
 
-        private LRUMap(int bound) {
-            this.bound = bound;
-        }
-
-        public V get(Object key) {
-            if (key == null) {
-                throw new NullPointerException();
-            }
-            for (Entry<K,V> e : entries) {
-                if (e.getKey().equals(key)) {
-                    entries.remove(e);
-                    entries.addFirst(e);
-                    return e.getValue();
+        /**
+         * @return whether all the namespaces of the given key are handled by the same handlers in this key
+         */
+        boolean covers(SchemaKey key) {
+            for (int i = 0; i < key.namespaces.length; i++) {
+                int index = Arrays.binarySearch(namespaces, key.namespaces[i]);
+                if (index < 0 || !handlers[index].equals(key.handlers[i])) {
+                    return false;
                 }
             }
-            return null;
+            return true;
         }
 
-        public V put(K key, V value) {
-            if (key == null) {
-                throw new NullPointerException();
-            }
-            V old = null;
-            for (Entry<K,V> e : entries) {
-                if (e.getKey().equals(key)) {
-                    entries.remove(e);
-                    old = e.getValue();
-                    break;
-                }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
             }
-            if (value != null) {
-                entries.addFirst(new LRUEntry<K,V>(key, value));
-                while (entries.size() > bound) {
-                    entries.removeLast();
-                }
+            if (!(o instanceof SchemaKey)) {
+                return false;
             }
-            return old;
+            SchemaKey key = (SchemaKey) o;
+            return Arrays.equals(namespaces, key.namespaces) && Arrays.equals(handlers, key.handlers);
         }
 
-        public Set<Entry<K, V>> entrySet() {
-            return new AbstractSet<Entry<K,V>>() {
-                public Iterator<Entry<K, V>> iterator() {
-                    return entries.iterator();
-                }
-
-                public int size() {
-                    return entries.size();
-                }
-            };
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
     }
 
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.namespace;
+
+/**
+ * The statistics of the schema cache of a {@link NamespaceHandlerRegistryImpl}, registered
+ * in the platform MBean server by the blueprint extender.
+ */
+public interface NamespaceHandlerRegistryImplMBean {
+
+    String OBJECT_NAME = "org.apache.aries.blueprint:type=SchemaCache";
+
+    /**
+     * @return the number of schemas requested by containers which were found in the cache
+     */
+    long getSchemaCacheHits();
+
+    /**
+     * @return the number of schemas requested by containers which were not found in the cache
+     */
+    long getSchemaCacheMisses();
+
+    /**
+     * @return the number of schemas currently in the cache
+     */
+    int getCachedSchemas();
+
+    /**
+     * @return the maximum number of schemas kept in the cache
+     */
+    int getMaxCachedSchemas();
+
+}
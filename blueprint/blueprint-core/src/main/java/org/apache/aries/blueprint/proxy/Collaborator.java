@@ -20,11 +20,13 @@ package org.apache.aries.blueprint.proxy;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.aries.blueprint.Interceptor;
+import org.apache.aries.blueprint.SelectiveInterceptor;
 import org.apache.aries.proxy.InvocationListener;
 import org.osgi.service.blueprint.reflect.ComponentMetadata;
 import org.slf4j.Logger;
@@ -42,12 +44,17 @@ public class Collaborator implements InvocationListener, Serializable {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(Collaborator.class);
 
+    private static final Interceptor[] NO_INTERCEPTORS = new Interceptor[0];
+
     private transient List<Interceptor> interceptors = null;
     private transient ComponentMetadata cm = null;
+    // the interceptors which apply to each method, in invocation order
+    private transient ConcurrentMap<Method, Interceptor[]> methodInterceptors;
 
     public Collaborator(ComponentMetadata cm, List<Interceptor> interceptors) {
         this.cm = cm;
         this.interceptors = interceptors;
+        this.methodInterceptors = new ConcurrentHashMap<Method, Interceptor[]>();
     }
 
     /**
@@ -59,28 +66,32 @@ public class Collaborator implements InvocationListener, Serializable {
      *            : method
      * @param parameters
      *            : method paramters
+     * @return null if no interceptor applies to the method, otherwise an array holding
+     *         the number of interceptors still to be called back followed by the
+     *         tokens returned by their preCall
      * @throws Throwable
      */
     public Object preInvoke(Object o, Method m, Object[] parameters)
             throws Throwable {
-        Deque<StackElement> stack = new ArrayDeque<StackElement>(interceptors.size());
-        if (interceptors != null) {
-          try{
-            for (Interceptor im : interceptors) {
-                Collaborator.StackElement se = new StackElement(im);
-
+        Interceptor[] applicable = getInterceptors(m);
+        if (applicable.length == 0) {
+            return null;
+        }
+        Object[] tokens = new Object[applicable.length + 1];
+        tokens[0] = 0;
+        try {
+            for (int i = 0; i < applicable.length; i++) {
                 // should we do this before or after the preCall ?
-                stack.push(se);
+                tokens[0] = i + 1;
 
                 // allow exceptions to propagate
-                se.setPreCallToken(im.preCall(cm, m, parameters));
+                tokens[i + 1] = applicable[i].preCall(cm, m, parameters);
             }
-          } catch (Throwable t) {
-            postInvokeExceptionalReturn(stack, o, m, t);
+        } catch (Throwable t) {
+            postInvokeExceptionalReturn(tokens, o, m, t);
             throw t;
-          }
         }
-        return stack;
+        return tokens;
     }
 
     /**
@@ -89,14 +100,14 @@ public class Collaborator implements InvocationListener, Serializable {
     public void postInvoke(Object token, Object o, Method method, 
          Object returnType) throws Throwable {
         
-        Deque<StackElement> calledInterceptors =
-                    (Deque<StackElement>) token;
-        if(calledInterceptors != null) {
-            while (!calledInterceptors.isEmpty()) {
-                Collaborator.StackElement se = calledInterceptors.pop();
+        Object[] tokens = (Object[]) token;
+        if (tokens != null) {
+            Interceptor[] applicable = getInterceptors(method);
+            while ((Integer) tokens[0] > 0) {
+                int i = (Integer) tokens[0] - 1;
+                tokens[0] = i;
                 try {
-                    se.interceptor.postCallWithReturn(cm, method, returnType, se
-                            .getPreCallToken());
+                    applicable[i].postCallWithReturn(cm, method, returnType, tokens[i + 1]);
                 } catch (Throwable t) {
                     LOGGER.debug("postCallInterceptorWithReturn", t);
                     // propagate this to invoke ... further interceptors will be
@@ -112,15 +123,18 @@ public class Collaborator implements InvocationListener, Serializable {
      */
     public void postInvokeExceptionalReturn(Object token, Object o, Method method,
                  Throwable exception) throws Throwable {
+        Object[] tokens = (Object[]) token;
+        if (tokens == null) {
+            return;
+        }
         Throwable tobeRethrown = null;
-        Deque<StackElement> calledInterceptors =
-          (Deque<StackElement>) token;
-        while (!calledInterceptors.isEmpty()) {
-            Collaborator.StackElement se = calledInterceptors.pop();
+        Interceptor[] applicable = getInterceptors(method);
+        while ((Integer) tokens[0] > 0) {
+            int i = (Integer) tokens[0] - 1;
+            tokens[0] = i;
 
             try {
-                se.interceptor.postCallWithException(cm, method, exception, se
-                        .getPreCallToken());
+                applicable[i].postCallWithException(cm, method, exception, tokens[i + 1]);
             } catch (Throwable t) {
                 // log the exception
                 LOGGER.debug("postCallInterceptorWithException", t);
@@ -137,22 +151,26 @@ public class Collaborator implements InvocationListener, Serializable {
             throw tobeRethrown;
     }
 
-    // info to store on interceptor stack during invoke
-    private static class StackElement {
-        private final Interceptor interceptor;
-        private Object preCallToken;
-
-        private StackElement(Interceptor i) {
-            interceptor = i;
+    private Interceptor[] getInterceptors(Method m) {
+        if (interceptors == null) {
+            return NO_INTERCEPTORS;
         }
-
-        private void setPreCallToken(Object preCallToken) {
-            this.preCallToken = preCallToken;
-        }
-
-        private Object getPreCallToken() {
-            return preCallToken;
+        Interceptor[] applicable = methodInterceptors.get(m);
+        if (applicable == null) {
+            List<Interceptor> list = new ArrayList<Interceptor>(interceptors.size());
+            for (Interceptor interceptor : interceptors) {
+                if (appliesTo(cm, interceptor, m)) {
+                    list.add(interceptor);
+                }
+            }
+            applicable = list.isEmpty() ? NO_INTERCEPTORS : list.toArray(new Interceptor[list.size()]);
+            methodInterceptors.putIfAbsent(m, applicable);
         }
+        return applicable;
+    }
 
+    static boolean appliesTo(ComponentMetadata cm, Interceptor interceptor, Method m) {
+        return !(interceptor instanceof SelectiveInterceptor)
+                || ((SelectiveInterceptor) interceptor).appliesTo(cm, m);
     }
-}
\ No newline at end of file
+}
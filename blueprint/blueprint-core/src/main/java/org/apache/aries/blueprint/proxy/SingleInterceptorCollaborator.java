@@ -20,6 +20,8 @@ package org.apache.aries.blueprint.proxy;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.aries.blueprint.Interceptor;
 import org.apache.aries.proxy.InvocationListener;
@@ -42,11 +44,15 @@ public class SingleInterceptorCollaborator implements InvocationListener, Serial
     private transient Interceptor interceptor;
     private transient ComponentMetadata cm;
 
+    private transient ConcurrentMap<Method, Boolean> applicable;
+
     private static final Object NON_INVOKED = new Object();
+    private static final Object NOT_APPLICABLE = new Object();
 
     public SingleInterceptorCollaborator(ComponentMetadata cm, Interceptor interceptor) {
         this.cm = cm;
         this.interceptor = interceptor;
+        this.applicable = new ConcurrentHashMap<Method, Boolean>();
     }
 
     /**
@@ -54,6 +60,9 @@ public class SingleInterceptorCollaborator implements InvocationListener, Serial
      */
     public Object preInvoke(Object o, Method m, Object[] parameters)
             throws Throwable {
+        if (!appliesTo(m)) {
+            return NOT_APPLICABLE;
+        }
         Object callToken = NON_INVOKED;
         try {
               callToken = interceptor.preCall(cm, m, parameters);
@@ -70,7 +79,7 @@ public class SingleInterceptorCollaborator implements InvocationListener, Serial
     public void postInvoke(Object token, Object o, Method method, 
          Object returnType) throws Throwable {
 
-        if(token != NON_INVOKED) {
+        if(token != NON_INVOKED && token != NOT_APPLICABLE) {
             try {
                 interceptor.postCallWithReturn(cm, method, returnType, token);
             } catch (Throwable t) {
@@ -85,6 +94,9 @@ public class SingleInterceptorCollaborator implements InvocationListener, Serial
      */
     public void postInvokeExceptionalReturn(Object token, Object o, Method method,
                  Throwable exception) throws Throwable {
+        if (token == NOT_APPLICABLE) {
+            return;
+        }
         try {
             interceptor.postCallWithException(cm, method, exception, token);
         } catch (Throwable t) {
@@ -93,4 +105,13 @@ public class SingleInterceptorCollaborator implements InvocationListener, Serial
             throw t;
         }
     }
-}
\ No newline at end of file
+
+    private boolean appliesTo(Method m) {
+        Boolean result = applicable.get(m);
+        if (result == null) {
+            result = Collaborator.appliesTo(cm, interceptor, m);
+            applicable.putIfAbsent(m, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.aries.blueprint.services;
+
+import java.util.List;
+
+import org.osgi.framework.Bundle;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Target;
+
+/**
+ * Builds the metadata of the annotated components of a bundle directly, without generating
+ * a blueprint XML file for the parser to read. It is registered by the annotation scanner next
+ * to its <code>BlueprintAnnotationScanner</code> service, and only used by the extender when the
+ * framework property <code>org.apache.aries.blueprint.annotation.metadata</code> is true.
+ */
+public interface AnnotationMetadataScanner {
+
+  /**
+   * Builds the metadata the parser would build from the blueprint XML generated for the bundle.
+   *
+   * @param bundle         the annotated bundle
+   * @param typeConverters the list the type converters are added to
+   * @return               the top level components, the type converters excepted
+   */
+  List<ComponentMetadata> createComponentMetadata(Bundle bundle, List<Target> typeConverters);
+
+}
@@ -33,6 +33,11 @@ import java.util.NoSuchElementException;
  * synchronization lock, so the performance in heavy concurrency load is far from optimal.
  * If such a use is needed, a CopyOnWriteArrayList may be more suited.
  *
+ * Alternatively, {@link #snapshotIterator(int)} returns an iterator over an immutable copy
+ * of the elements, which can be used without any locking at the expense of not seeing changes
+ * made after the iterator has been created.  The copy is made on the first snapshot request
+ * following a change, so collections which are never iterated this way do not pay for it.
+ *
  * @version $Rev$, $Date$
  */
 public class DynamicCollection<E> extends AbstractCollection<E> {
@@ -40,6 +45,8 @@ public class DynamicCollection<E> extends AbstractCollection<E> {
     protected final Object lock = new Object();
     protected final List<E> storage;
     protected final List<WeakReference<DynamicIterator>> iterators;
+    // copy of the storage, dropped on each change and made again when it is asked for
+    protected volatile Object[] snapshot = new Object[0];
 
     public DynamicCollection() {
         this.storage = new ArrayList<E>();
@@ -67,6 +74,32 @@ public class DynamicCollection<E> extends AbstractCollection<E> {
         return new DynamicIterator(index);
     }
 
+    /**
+     * Returns an iterator over the elements of this collection at the time of the call.
+     * The iterator does not reflect later additions or removals and never blocks.
+     */
+    public ListIterator<E> snapshotIterator(int index) {
+        return new SnapshotIterator<E>(getSnapshot(), index);
+    }
+
+    /**
+     * Returns the elements of this collection at the time of the call.  The same array is
+     * returned without locking until the collection changes, so it must not be modified.
+     */
+    public Object[] getSnapshot() {
+        Object[] s = snapshot;
+        if (s == null) {
+            synchronized (lock) {
+                s = snapshot;
+                if (s == null) {
+                    s = storage.toArray();
+                    snapshot = s;
+                }
+            }
+        }
+        return s;
+    }
+
     public int size() {
         synchronized (lock) {
             return storage.size();
@@ -136,6 +169,7 @@ public class DynamicCollection<E> extends AbstractCollection<E> {
         }
         synchronized (lock) {
             storage.add(index, o);
+            snapshot = null;
             for (Iterator<WeakReference<DynamicIterator>> it = iterators.iterator(); it.hasNext();) {
                 DynamicIterator i = it.next().get();
                 if (i == null) {
@@ -151,12 +185,14 @@ public class DynamicCollection<E> extends AbstractCollection<E> {
     public void clear() {
         synchronized (lock) {
             storage.clear();
+            snapshot = null;
         }
     }
 
     public E remove(int index) {
         synchronized (lock) {
             E o = storage.remove(index);
+            snapshot = null;
             for (Iterator<WeakReference<DynamicIterator>> it = iterators.iterator(); it.hasNext();) {
                 WeakReference<DynamicIterator> r = it.next();
                 DynamicIterator i = r.get();
@@ -311,4 +347,63 @@ public class DynamicCollection<E> extends AbstractCollection<E> {
 
     }
 
+    public static class SnapshotIterator<E> implements ListIterator<E> {
+
+        protected final Object[] elements;
+        protected int index;
+
+        public SnapshotIterator(Object[] elements, int index) {
+            if (index < 0 || index > elements.length) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            this.elements = elements;
+            this.index = index;
+        }
+
+        public boolean hasNext() {
+            return index < elements.length;
+        }
+
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (index >= elements.length) {
+                throw new NoSuchElementException();
+            }
+            return (E) elements[index++];
+        }
+
+        @SuppressWarnings("unchecked")
+        public E previous() {
+            if (index <= 0) {
+                throw new NoSuchElementException();
+            }
+            return (E) elements[--index];
+        }
+
+        public int nextIndex() {
+            return index;
+        }
+
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        public void set(E o) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void add(E o) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
 }
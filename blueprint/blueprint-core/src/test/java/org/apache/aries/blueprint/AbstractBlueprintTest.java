@@ -66,10 +66,14 @@ public abstract class AbstractBlueprintTest extends TestCase {
 
     protected ComponentDefinitionRegistryImpl parse(String name, NamespaceHandlerSet handlers) throws Exception {
         ComponentDefinitionRegistryImpl registry = new ComponentDefinitionRegistryImpl();
-        Parser parser = new Parser();
+        Parser parser = newParser();
         parser.parse(Collections.singletonList(getClass().getResource(name)));
         parser.populate(handlers, registry);
         return registry;
     }
 
+    protected Parser newParser() {
+        return new Parser();
+    }
+
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.apache.aries.blueprint.parser.ComponentDefinitionRegistryImpl;
+import org.apache.aries.blueprint.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the DOM and the streaming modes of the {@link Parser} on large generated
+ * descriptors, going through the same steps as a blueprint container: parse, find the
+ * namespaces, validate and populate the registry.  The GC profiler reports the memory
+ * allocated for each descriptor; the {@code parse} benchmarks return the parser as the
+ * container keeps it while it waits for namespace handlers, so that its retained size
+ * can be compared with a heap dump.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.aries.blueprint.ParserBenchmark
+ * </pre>
+ *
+ * @version $Rev$, $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx512m")
+public class ParserBenchmark {
+
+    @Param({ "500", "5000" })
+    private int beans;
+
+    private File descriptor;
+    private List<URL> urls;
+    private Schema schema;
+
+    @Setup
+    public void setUp() throws Exception {
+        descriptor = File.createTempFile("parserBenchmark", ".xml");
+        Writer w = new OutputStreamWriter(new FileOutputStream(descriptor), "UTF-8");
+        try {
+            w.write("<blueprint xmlns=\"http://www.osgi.org/xmlns/blueprint/v1.0.0\">\n");
+            for (int i = 0; i < beans; i++) {
+                w.write("  <bean id=\"bean" + i + "\" class=\"org.example.Bean" + i + "\" init-method=\"init\">\n");
+                for (int p = 0; p < 5; p++) {
+                    w.write("    <property name=\"property" + p + "\" value=\"value " + p + "\"/>\n");
+                }
+                w.write("    <property name=\"list\">\n");
+                w.write("      <list><value>a</value><value>b</value><ref component-id=\"bean" + (i + 1) + "\"/></list>\n");
+                w.write("    </property>\n");
+                w.write("  </bean>\n");
+                w.write("  <service id=\"service" + i + "\" ref=\"bean" + i + "\" interface=\"org.example.Service\">\n");
+                w.write("    <service-properties><entry key=\"key\" value=\"value\"/></service-properties>\n");
+                w.write("  </service>\n");
+            }
+            w.write("</blueprint>\n");
+        } finally {
+            w.close();
+        }
+        urls = Collections.singletonList(descriptor.toURI().toURL());
+        schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                .newSchema(getClass().getResource("/org/osgi/service/blueprint/blueprint.xsd"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        descriptor.delete();
+    }
+
+    @Benchmark
+    public Object parseDom() throws Exception {
+        return parse(new Parser());
+    }
+
+    @Benchmark
+    public Object parseStreaming() throws Exception {
+        return parse(new Parser(null, false, true));
+    }
+
+    @Benchmark
+    public Object dom() throws Exception {
+        return populate(parse(new Parser()));
+    }
+
+    @Benchmark
+    public Object streaming() throws Exception {
+        return populate(parse(new Parser(null, false, true)));
+    }
+
+    private Parser parse(Parser parser) throws Exception {
+        parser.parse(urls);
+        parser.getNamespaces();
+        return parser;
+    }
+
+    private ComponentDefinitionRegistryImpl populate(Parser parser) {
+        ComponentDefinitionRegistryImpl registry = new ComponentDefinitionRegistryImpl();
+        parser.validate(schema);
+        parser.populate(null, registry);
+        return registry;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(ParserBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
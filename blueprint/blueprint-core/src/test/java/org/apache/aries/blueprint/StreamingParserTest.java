@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.apache.aries.blueprint.parser.ComponentDefinitionRegistryImpl;
+import org.apache.aries.blueprint.parser.Parser;
+import org.osgi.service.blueprint.container.ComponentDefinitionException;
+import org.osgi.service.blueprint.reflect.BeanMetadata;
+
+/**
+ * Runs the parser tests with the parser in streaming mode.
+ */
+public class StreamingParserTest extends ParserTest {
+
+    @Override
+    protected Parser newParser() {
+        return new Parser(null, false, true);
+    }
+
+    public void testNamespaces() throws Exception {
+        Parser parser = newParser();
+        parser.parse(Collections.singletonList(getClass().getResource("/test-scopes.xml")));
+        Set<URI> namespaces = parser.getNamespaces();
+        assertEquals(Collections.singleton(URI.create("http://test.org")), namespaces);
+
+        parser = newParser();
+        parser.parse(Collections.singletonList(getClass().getResource("/test-references.xml")));
+        assertEquals(Collections.singleton(URI.create("http://aries.apache.org/blueprint/xmlns/blueprint-ext/v1.0.0")),
+                     parser.getNamespaces());
+    }
+
+    public void testValidation() throws Exception {
+        Parser parser = newParser();
+        parser.parse(Collections.singletonList(getClass().getResource("/test-simple-component.xml")));
+        parser.validate(getBlueprintSchema());
+        ComponentDefinitionRegistryImpl registry = new ComponentDefinitionRegistryImpl();
+        parser.populate(null, registry);
+        assertTrue(registry.getComponentDefinition("pojoA") instanceof BeanMetadata);
+
+        parser = newParser();
+        parser.parse(Collections.singletonList(getClass().getResource("/test.xml")));
+        parser.validate(getBlueprintSchema());
+        try {
+            parser.populate(null, new ComponentDefinitionRegistryImpl());
+            fail("Document should not be valid");
+        } catch (ComponentDefinitionException e) {
+            assertEquals("Unable to validate xml", e.getMessage());
+        }
+    }
+
+    public void testParseInputStream() throws Exception {
+        Parser parser = newParser();
+        InputStream in = getClass().getResourceAsStream("/test-simple-component.xml");
+        try {
+            parser.parse(in);
+        } finally {
+            in.close();
+        }
+        ComponentDefinitionRegistryImpl registry = new ComponentDefinitionRegistryImpl();
+        parser.populate(null, registry);
+        assertTrue(registry.getComponentDefinition("pojoA") instanceof BeanMetadata);
+        assertTrue(registry.getComponentDefinition("pojoB") instanceof BeanMetadata);
+    }
+
+    private Schema getBlueprintSchema() throws Exception {
+        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        return factory.newSchema(getClass().getResource("/org/osgi/service/blueprint/blueprint.xsd"));
+    }
+}
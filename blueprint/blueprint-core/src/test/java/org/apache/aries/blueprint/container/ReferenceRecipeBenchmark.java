@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.container;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.aries.blueprint.reflect.ReferenceMetadataImpl;
+import org.apache.aries.blueprint.services.ExtendedBlueprintContainer;
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.blueprint.reflect.ReferenceMetadata;
+
+/**
+ * Measures the dispatch of calls made through a bound reference proxy by many
+ * threads at once.  The {@code locked} benchmarks take a monitor around every
+ * call, as {@link ReferenceRecipe} did before the bound service was published
+ * without locking, and give the figures to compare with.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.aries.blueprint.container.ReferenceRecipeBenchmark
+ * </pre>
+ *
+ * @version $Rev$, $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReferenceRecipeBenchmark {
+
+    private ReferenceRecipe recipe;
+    private Callable<Object> dispatcher;
+    private final Object monitor = new Object();
+
+    @Setup
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void setUp() throws Exception {
+        ServiceReference reference = EasyMock.createNiceMock(ServiceReference.class);
+        EasyMock.expect(reference.getProperty(Constants.SERVICE_ID)).andStubReturn(1L);
+
+        BundleContext bundleContext = EasyMock.createNiceMock(BundleContext.class);
+        EasyMock.expect(bundleContext.getServiceReferences((String) null, "(" + Constants.OBJECTCLASS + "=" + Runnable.class.getName() + ")"))
+                .andStubReturn(new ServiceReference[] { reference });
+        EasyMock.expect(bundleContext.getService(reference)).andStubReturn(new Runnable() {
+            public void run() {
+            }
+        });
+
+        ExtendedBlueprintContainer container = EasyMock.createNiceMock(ExtendedBlueprintContainer.class);
+        EasyMock.expect(container.getBundleContext()).andStubReturn(bundleContext);
+        EasyMock.replay(reference, bundleContext, container);
+
+        ReferenceMetadataImpl metadata = new ReferenceMetadataImpl();
+        metadata.setInterface(Runnable.class.getName());
+        metadata.setAvailability(ReferenceMetadata.AVAILABILITY_MANDATORY);
+        metadata.setTimeout(1000);
+
+        recipe = new ReferenceRecipe("ref", container, metadata, null, null, null);
+        recipe.start(new SatisfiableRecipe.SatisfactionListener() {
+            public void notifySatisfaction(SatisfiableRecipe satisfiable) {
+            }
+        });
+        dispatcher = recipe.new ServiceDispatcher();
+    }
+
+    @TearDown
+    public void tearDown() {
+        recipe.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object dispatchSingleThread() throws Exception {
+        return dispatcher.call();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object dispatchAllThreads() throws Exception {
+        return dispatcher.call();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object lockedSingleThread() throws Exception {
+        synchronized (monitor) {
+            return dispatcher.call();
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object lockedAllThreads() throws Exception {
+        synchronized (monitor) {
+            return dispatcher.call();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ReferenceRecipeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.ext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.aries.blueprint.parser.ComponentDefinitionRegistryImpl;
+import org.apache.aries.blueprint.reflect.BeanMetadataImpl;
+import org.apache.aries.blueprint.reflect.BeanPropertyImpl;
+import org.apache.aries.blueprint.reflect.PassThroughMetadataImpl;
+import org.apache.aries.blueprint.reflect.ValueMetadataImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.service.blueprint.reflect.BeanProperty;
+import org.osgi.service.blueprint.reflect.ValueMetadata;
+
+/**
+ * Measures the resolution of the placeholders of a registry holding 5,000 bean properties.
+ * Run it against an older revision of {@link AbstractPropertyPlaceholder} to compare.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.aries.blueprint.ext.PropertyPlaceholderBenchmark
+ * </pre>
+ *
+ * @version $Rev$, $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyPlaceholderBenchmark {
+
+    private static final int PROPERTIES = 5000;
+
+    private final Map<String, String> defaults = new HashMap<String, String>();
+    private final List<String> values = new ArrayList<String>();
+    private PropertyPlaceholder placeholder;
+    private PropertyPlaceholder registryPlaceholder;
+    private ComponentDefinitionRegistryImpl registry;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < PROPERTIES; i++) {
+            defaults.put("key" + i, "value" + i);
+            values.add("jdbc:${key" + i + "}/${key" + (i + 1) % PROPERTIES + "}?timeout=30");
+        }
+        placeholder = createPlaceholder();
+    }
+
+    private PropertyPlaceholder createPlaceholder() {
+        PropertyPlaceholder placeholder = new PropertyPlaceholder();
+        placeholder.setSystemProperties(PropertyPlaceholder.SystemProperties.never);
+        placeholder.setDefaultProperties(defaults);
+        return placeholder;
+    }
+
+    @Setup(Level.Invocation)
+    public void createRegistry() {
+        // as on a container reload, a new placeholder processes a new registry
+        registryPlaceholder = createPlaceholder();
+        registry = new ComponentDefinitionRegistryImpl();
+        registry.registerComponentDefinition(new PassThroughMetadataImpl("blueprintBundle", null));
+        for (int i = 0; i < PROPERTIES; i++) {
+            BeanMetadataImpl bean = new BeanMetadataImpl();
+            bean.setId("bean" + i);
+            bean.setClassName(Object.class.getName());
+            bean.addProperty(new BeanPropertyImpl("url", new ValueMetadataImpl(values.get(i))));
+            registry.registerComponentDefinition(bean);
+        }
+    }
+
+    @Benchmark
+    public int processString() {
+        int length = 0;
+        for (String value : values) {
+            length += placeholder.processString(value).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int processRegistry() {
+        registryPlaceholder.process(registry);
+        int length = 0;
+        for (int i = 0; i < PROPERTIES; i++) {
+            BeanMetadataImpl bean = (BeanMetadataImpl) registry.getComponentDefinition("bean" + i);
+            for (BeanProperty property : bean.getProperties()) {
+                length += ((ValueMetadata) property.getValue()).getStringValue().length();
+            }
+        }
+        return length;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(PropertyPlaceholderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -52,6 +52,19 @@ public class PropertyPlaceholderTest extends PropertyPlaceholder {
         assertEquals("say hello world", sut.getStringValue());
     }
     
+    @Test
+    public void unresolvedPropKept() {
+        sut = makeProperty("${prop1} ${missing}");
+        assertEquals("hello ${missing}", sut.getStringValue());
+    }
+
+    @Test
+    public void nestedProps() {
+        bind("nested", "${prop1} ${prop2}");
+        sut = makeProperty("say ${nested}");
+        assertEquals("say hello world", sut.getStringValue());
+    }
+
 //    @Test
 //    public void evaluateStringProps() {
 //        sut = makeProperty("${prop1+prop2}");
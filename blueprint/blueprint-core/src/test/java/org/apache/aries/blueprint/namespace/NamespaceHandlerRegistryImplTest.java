@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.namespace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.validation.Schema;
+
+import org.apache.aries.blueprint.NamespaceHandler;
+import org.apache.aries.blueprint.ParserContext;
+import org.apache.aries.blueprint.TestBundleContext;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.blueprint.reflect.Metadata;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+public class NamespaceHandlerRegistryImplTest {
+
+    private static final URI NS_A = URI.create("http://test.org/a");
+    private static final URI NS_B = URI.create("http://test.org/b");
+    private static final URI NS_C = URI.create("http://test.org/c");
+
+    private final Properties properties = new Properties();
+    private final List<File> schemaFiles = new ArrayList<File>();
+    private NamespaceHandlerRegistryImpl registry;
+    private Bundle bundle;
+
+    @Before
+    public void setUp() {
+        bundle = EasyMock.createNiceMock(Bundle.class);
+        EasyMock.replay(bundle);
+    }
+
+    @After
+    public void tearDown() {
+        if (registry != null) {
+            registry.destroy();
+        }
+        for (File file : schemaFiles) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSchemaKeyIgnoresOrder() {
+        TestHandler a = new TestHandler(NS_A);
+        TestHandler b = new TestHandler(NS_B);
+        Map<URI, NamespaceHandler> ab = new LinkedHashMap<URI, NamespaceHandler>();
+        ab.put(NS_A, a);
+        ab.put(NS_B, b);
+        Map<URI, NamespaceHandler> ba = new LinkedHashMap<URI, NamespaceHandler>();
+        ba.put(NS_B, b);
+        ba.put(NS_A, a);
+
+        NamespaceHandlerRegistryImpl.SchemaKey key = new NamespaceHandlerRegistryImpl.SchemaKey(ab);
+        assertEquals(key, new NamespaceHandlerRegistryImpl.SchemaKey(ba));
+        assertEquals(key.hashCode(), new NamespaceHandlerRegistryImpl.SchemaKey(ba).hashCode());
+
+        // the same namespaces handled by another handler make another schema
+        Map<URI, NamespaceHandler> other = new LinkedHashMap<URI, NamespaceHandler>(ab);
+        other.put(NS_B, new TestHandler(NS_B));
+        assertFalse(key.equals(new NamespaceHandlerRegistryImpl.SchemaKey(other)));
+
+        NamespaceHandlerRegistryImpl.SchemaKey keyB =
+                new NamespaceHandlerRegistryImpl.SchemaKey(Collections.<URI, NamespaceHandler>singletonMap(NS_B, b));
+        assertTrue(key.covers(keyB));
+        assertFalse(keyB.covers(key));
+        assertFalse(new NamespaceHandlerRegistryImpl.SchemaKey(other).covers(keyB));
+    }
+
+    @Test
+    public void testSchemaSharedWhateverTheOrderOfNamespaces() throws Exception {
+        properties.setProperty(NamespaceHandlerRegistryImpl.SCHEMA_PRECOMPILE, "false");
+        registry = new NamespaceHandlerRegistryImpl(new PropertiesBundleContext(properties));
+        TestHandler a = register(NS_A);
+        TestHandler b = register(NS_B);
+
+        Schema schema = getSchema(NS_A, NS_B);
+        assertSame(schema, getSchema(NS_B, NS_A));
+        assertEquals(1, a.compilations.get());
+        assertEquals(1, b.compilations.get());
+        assertEquals(1, registry.getSchemaCacheHits());
+        assertEquals(1, registry.getSchemaCacheMisses());
+
+        // a schema covering more namespaces is reused
+        assertSame(schema, getSchema(NS_A));
+        assertEquals(1, a.compilations.get());
+        assertEquals(2, registry.getSchemaCacheHits());
+    }
+
+    @Test
+    public void testConcurrentRequestsCompileOnce() throws Exception {
+        properties.setProperty(NamespaceHandlerRegistryImpl.SCHEMA_PRECOMPILE, "false");
+        registry = new NamespaceHandlerRegistryImpl(new PropertiesBundleContext(properties));
+        final TestHandler a = register(NS_A);
+        a.release = new CountDownLatch(1);
+
+        int threads = 8;
+        final CountDownLatch started = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Schema>> schemas = new ArrayList<Future<Schema>>();
+            for (int i = 0; i < threads; i++) {
+                schemas.add(executor.submit(new Callable<Schema>() {
+                    public Schema call() throws Exception {
+                        started.countDown();
+                        return getSchema(NS_A);
+                    }
+                }));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // let the other requests reach the pending compilation
+            Thread.sleep(100);
+            a.release.countDown();
+
+            Schema schema = schemas.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Schema> future : schemas) {
+                assertSame(schema, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, a.compilations.get());
+        assertEquals(threads, registry.getSchemaCacheHits() + registry.getSchemaCacheMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSchemaEvicted() throws Exception {
+        properties.setProperty(NamespaceHandlerRegistryImpl.SCHEMA_PRECOMPILE, "false");
+        properties.setProperty(NamespaceHandlerRegistryImpl.SCHEMA_CACHE_SIZE, "2");
+        registry = new NamespaceHandlerRegistryImpl(new PropertiesBundleContext(properties));
+        TestHandler a = register(NS_A);
+        TestHandler b = register(NS_B);
+        TestHandler c = register(NS_C);
+        assertEquals(2, registry.getMaxCachedSchemas());
+
+        Schema schemaA = getSchema(NS_A);
+        getSchema(NS_B);
+        // a is now more recently used than b
+        assertSame(schemaA, getSchema(NS_A));
+        getSchema(NS_C);
+        assertEquals(2, registry.getCachedSchemas());
+
+        // b has been evicted, a has not
+        assertSame(schemaA, getSchema(NS_A));
+        getSchema(NS_B);
+        assertEquals(1, a.compilations.get());
+        assertEquals(2, b.compilations.get());
+        assertEquals(1, c.compilations.get());
+        assertEquals(2, registry.getSchemaCacheHits());
+        assertEquals(4, registry.getSchemaCacheMisses());
+    }
+
+    @Test
+    public void testSchemaPrecompiledWhenHandlerRegistered() throws Exception {
+        registry = new NamespaceHandlerRegistryImpl(new PropertiesBundleContext(properties));
+        TestHandler a = register(NS_A);
+
+        // the schema without any custom namespace and the one of the handler
+        long timeout = System.currentTimeMillis() + 10000;
+        while (registry.getCachedSchemas() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, registry.getCachedSchemas());
+
+        getSchema(NS_A);
+        assertEquals(1, a.compilations.get());
+        assertEquals(1, registry.getSchemaCacheHits());
+        assertEquals(0, registry.getSchemaCacheMisses());
+    }
+
+    @Test
+    public void testSchemaOfUnregisteredHandlerRemoved() throws Exception {
+        properties.setProperty(NamespaceHandlerRegistryImpl.SCHEMA_PRECOMPILE, "false");
+        registry = new NamespaceHandlerRegistryImpl(new PropertiesBundleContext(properties));
+        TestHandler a = register(NS_A);
+        Schema schema = getSchema(NS_A);
+
+        registry.unregisterHandler(a, Collections.singletonMap(NamespaceHandlerRegistryImpl.NAMESPACE, NS_A));
+        registry.registerHandler(a, Collections.singletonMap(NamespaceHandlerRegistryImpl.NAMESPACE, NS_A));
+        assertNotSame(schema, getSchema(NS_A));
+        assertEquals(2, a.compilations.get());
+    }
+
+    private TestHandler register(URI namespace) throws IOException {
+        TestHandler handler = new TestHandler(namespace);
+        handler.schema = writeSchema(namespace);
+        registry.registerHandler(handler, Collections.singletonMap(NamespaceHandlerRegistryImpl.NAMESPACE, namespace));
+        return handler;
+    }
+
+    private Schema getSchema(URI... namespaces) throws Exception {
+        Set<URI> uris = new LinkedHashSet<URI>(Arrays.asList(namespaces));
+        return registry.getNamespaceHandlers(uris, bundle).getSchema();
+    }
+
+    private URL writeSchema(URI namespace) throws IOException {
+        File file = File.createTempFile("schema", ".xsd");
+        schemaFiles.add(file);
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\""
+                    + namespace + "\">\n"
+                    + "  <xsd:element name=\"element\" type=\"xsd:string\"/>\n"
+                    + "</xsd:schema>\n");
+        } finally {
+            writer.close();
+        }
+        return file.toURI().toURL();
+    }
+
+    private static class PropertiesBundleContext extends TestBundleContext {
+        private final Properties properties;
+
+        PropertiesBundleContext(Properties properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public String getProperty(String name) {
+            return properties.getProperty(name);
+        }
+    }
+
+    private static class TestHandler implements NamespaceHandler {
+        final AtomicInteger compilations = new AtomicInteger();
+        final URI namespace;
+        volatile URL schema;
+        volatile CountDownLatch release;
+
+        TestHandler(URI namespace) {
+            this.namespace = namespace;
+        }
+
+        public URL getSchemaLocation(String namespace) {
+            compilations.incrementAndGet();
+            CountDownLatch latch = release;
+            if (latch != null) {
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return schema;
+        }
+
+        public Set<Class> getManagedClasses() {
+            return new HashSet<Class>();
+        }
+
+        public Metadata parse(Element element, ParserContext context) {
+            return null;
+        }
+
+        public ComponentMetadata decorate(Node node, ComponentMetadata component, ParserContext context) {
+            return component;
+        }
+    }
+}
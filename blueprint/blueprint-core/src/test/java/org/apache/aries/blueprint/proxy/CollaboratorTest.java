@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.proxy;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.aries.blueprint.Interceptor;
+import org.apache.aries.blueprint.SelectiveInterceptor;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+
+public class CollaboratorTest extends TestCase {
+
+    private final List<String> calls = new ArrayList<String>();
+
+    public void testInterceptorsCalledInOrder() throws Throwable {
+        Method run = Runnable.class.getMethod("run");
+        Collaborator collaborator = new Collaborator(null, Arrays.<Interceptor>asList(
+                new RecordingInterceptor("a", null), new RecordingInterceptor("b", null)));
+
+        Object token = collaborator.preInvoke(null, run, new Object[0]);
+        collaborator.postInvoke(token, null, run, null);
+        assertEquals(Arrays.asList("a.pre", "b.pre", "b.post", "a.post"), calls);
+    }
+
+    public void testSelectiveInterceptorLeftOut() throws Throwable {
+        Method run = Runnable.class.getMethod("run");
+        Method toString = Object.class.getMethod("toString");
+        Collaborator collaborator = new Collaborator(null, Arrays.<Interceptor>asList(
+                new RecordingInterceptor("a", "run"), new RecordingInterceptor("b", "run")));
+
+        Object token = collaborator.preInvoke(null, toString, new Object[0]);
+        assertNull(token);
+        collaborator.postInvoke(token, null, toString, null);
+        collaborator.postInvokeExceptionalReturn(token, null, toString, new Exception());
+        assertTrue(calls.isEmpty());
+
+        token = collaborator.preInvoke(null, run, new Object[0]);
+        collaborator.postInvokeExceptionalReturn(token, null, run, new Exception());
+        assertEquals(Arrays.asList("a.pre", "b.pre", "b.exception", "a.exception"), calls);
+    }
+
+    public void testFailingPostCallNotRepeated() throws Throwable {
+        Method run = Runnable.class.getMethod("run");
+        Collaborator collaborator = new Collaborator(null, Arrays.<Interceptor>asList(
+                new RecordingInterceptor("a", null), new RecordingInterceptor("b", null) {
+                    @Override
+                    public void postCallWithReturn(ComponentMetadata cm, Method m, Object returnType, Object preCallToken) throws Throwable {
+                        super.postCallWithReturn(cm, m, returnType, preCallToken);
+                        throw new IllegalStateException();
+                    }
+                }));
+
+        Object token = collaborator.preInvoke(null, run, new Object[0]);
+        try {
+            collaborator.postInvoke(token, null, run, null);
+            fail("Should have failed");
+        } catch (IllegalStateException e) {
+            collaborator.postInvokeExceptionalReturn(token, null, run, e);
+        }
+        assertEquals(Arrays.asList("a.pre", "b.pre", "b.post", "a.exception"), calls);
+    }
+
+    private class RecordingInterceptor implements SelectiveInterceptor {
+        private final String name;
+        private final String methodName;
+
+        RecordingInterceptor(String name, String methodName) {
+            this.name = name;
+            this.methodName = methodName;
+        }
+
+        public boolean appliesTo(ComponentMetadata cm, Method m) {
+            return methodName == null || methodName.equals(m.getName());
+        }
+
+        public Object preCall(ComponentMetadata cm, Method m, Object... parameters) throws Throwable {
+            calls.add(name + ".pre");
+            return name;
+        }
+
+        public void postCallWithReturn(ComponentMetadata cm, Method m, Object returnType, Object preCallToken) throws Throwable {
+            assertEquals(name, preCallToken);
+            calls.add(name + ".post");
+        }
+
+        public void postCallWithException(ComponentMetadata cm, Method m, Throwable ex, Object preCallToken) throws Throwable {
+            assertEquals(name, preCallToken);
+            calls.add(name + ".exception");
+        }
+
+        public int getRank() {
+            return 0;
+        }
+    }
+}
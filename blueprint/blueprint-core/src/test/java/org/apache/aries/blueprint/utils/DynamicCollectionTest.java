@@ -110,4 +110,35 @@ public class DynamicCollectionTest extends TestCase {
         assertFalse(iterator.hasNext());
     }
 
+    public void testSnapshotIteratorIgnoresChanges() throws Exception {
+        collection.add(O0);
+        collection.add(O1);
+
+        Iterator iterator = collection.snapshotIterator(0);
+        collection.remove(O0);
+        collection.add(O2);
+        assertTrue(iterator.hasNext());
+        assertEquals(O0, iterator.next());
+        assertTrue(iterator.hasNext());
+        assertEquals(O1, iterator.next());
+        assertFalse(iterator.hasNext());
+
+        iterator = collection.snapshotIterator(0);
+        assertEquals(O1, iterator.next());
+        assertEquals(O2, iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    public void testSnapshotKeptUntilChange() throws Exception {
+        collection.add(O0);
+        Object[] snapshot = collection.getSnapshot();
+        assertSame(snapshot, collection.getSnapshot());
+
+        collection.add(O1);
+        assertNotSame(snapshot, collection.getSnapshot());
+        assertEquals(2, collection.getSnapshot().length);
+
+        collection.clear();
+        assertEquals(0, collection.getSnapshot().length);
+    }
 }
@@ -0,0 +1,405 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the classes carrying the bean annotations by reading the class files of the
+ * project classpath, without loading them. Only the class files of the scanned packages
+ * are read.
+ * <p>
+ * The result is stored in an index file along with the length and modification time of
+ * every class file and jar, so that the next build only reads the class files which
+ * changed and can tell whether the classpath changed at all.
+ */
+public class ClassIndex {
+
+    static final String[] BEAN_ANNOTATIONS = {
+        "Ljavax/inject/Singleton;", "Lorg/springframework/stereotype/Component;"
+    };
+
+    private static final String CONFIG = "config";
+    private static final String CLASSPATH = "classpath";
+    private static final String ENTRY_PREFIX = "entry.";
+
+    private final Collection<String> packageNames;
+    private final Set<String> annotations;
+    private final String config;
+    private Properties previous = new Properties();
+    private final Properties current = new Properties();
+
+    /**
+     * @param packageNames the packages to scan, sub packages included
+     * @param config the settings the generated file depends on besides the classpath
+     */
+    public ClassIndex(Collection<String> packageNames, String config) {
+        this(packageNames, BEAN_ANNOTATIONS, config);
+    }
+
+    public ClassIndex(Collection<String> packageNames, String[] annotationDescriptors, String config) {
+        this.packageNames = packageNames;
+        this.annotations = new HashSet<String>(Arrays.asList(annotationDescriptors));
+        this.config = packageNames + ";" + this.annotations + ";" + config;
+    }
+
+    /**
+     * Reads the index stored by a previous build, a missing or unreadable file is ignored.
+     */
+    public void load(File indexFile) {
+        previous = new Properties();
+        if (indexFile == null || !indexFile.isFile()) {
+            return;
+        }
+        try {
+            InputStream is = new FileInputStream(indexFile);
+            try {
+                previous.load(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            previous = new Properties();
+        }
+        if (!config.equals(previous.getProperty(CONFIG))) {
+            previous = new Properties();
+        }
+    }
+
+    public void save(File indexFile) throws IOException {
+        indexFile.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(indexFile);
+        try {
+            current.store(os, "Classes scanned by the blueprint-generate goal");
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Scans the classpath, reading only the class files which changed since the index was loaded.
+     *
+     * @param classpath the directories and jars to scan
+     * @return the names of the annotated classes of the scanned packages, sorted
+     */
+    public Set<String> update(List<File> classpath) throws IOException {
+        MessageDigest digest = createDigest();
+        Set<String> classNames = new TreeSet<String>();
+        current.clear();
+        current.setProperty(CONFIG, config);
+        for (File file : classpath) {
+            if (file.isDirectory()) {
+                scanDirectory(file, "", digest, classNames);
+            } else if (file.isFile()) {
+                scanJar(file, digest, classNames);
+            }
+        }
+        current.setProperty(CLASSPATH, toHex(digest.digest()));
+        return classNames;
+    }
+
+    /**
+     * @return true if no class file or jar of the classpath changed since the loaded index was stored
+     */
+    public boolean isUpToDate() {
+        String classpath = current.getProperty(CLASSPATH);
+        return classpath != null && classpath.equals(previous.getProperty(CLASSPATH));
+    }
+
+    private void scanDirectory(File dir, String path, MessageDigest digest, Set<String> classNames) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String resource = path + file.getName();
+            if (file.isDirectory()) {
+                scanDirectory(file, resource + "/", digest, classNames);
+            } else if (resource.endsWith(".class")) {
+                String location = file.getAbsolutePath();
+                String stamp = stamp(file, digest);
+                if (isScanned(resource)) {
+                    String names = getCachedNames(location, stamp);
+                    if (names == null) {
+                        String className = getAnnotatedClassName(readFile(file));
+                        names = (className == null) ? "" : className;
+                    }
+                    record(location, stamp, names, classNames);
+                }
+            }
+        }
+    }
+
+    private void scanJar(File file, MessageDigest digest, Set<String> classNames) throws IOException {
+        String location = file.getAbsolutePath();
+        String stamp = stamp(file, digest);
+        String names = getCachedNames(location, stamp);
+        if (names == null) {
+            names = scanJar(file);
+        }
+        record(location, stamp, names, classNames);
+    }
+
+    private String scanJar(File file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        ZipFile zip;
+        try {
+            zip = new ZipFile(file);
+        } catch (ZipException e) {
+            // not an archive, a pom artifact for instance
+            return "";
+        }
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class") || !isScanned(entry.getName())) {
+                    continue;
+                }
+                InputStream is = zip.getInputStream(entry);
+                String className;
+                try {
+                    className = getAnnotatedClassName(readFully(is));
+                } finally {
+                    is.close();
+                }
+                if (className != null) {
+                    sb.append(sb.length() == 0 ? "" : ",").append(className);
+                }
+            }
+        } finally {
+            zip.close();
+        }
+        return sb.toString();
+    }
+
+    private String getCachedNames(String location, String stamp) {
+        String value = previous.getProperty(ENTRY_PREFIX + location);
+        if (value != null && value.startsWith(stamp + "|")) {
+            return value.substring(stamp.length() + 1);
+        }
+        return null;
+    }
+
+    private void record(String location, String stamp, String names, Set<String> classNames) {
+        current.setProperty(ENTRY_PREFIX + location, stamp + "|" + names);
+        if (names.length() > 0) {
+            classNames.addAll(Arrays.asList(names.split(",")));
+        }
+    }
+
+    private boolean isScanned(String resource) {
+        int index = resource.lastIndexOf('/');
+        String packageName = (index < 0) ? "" : resource.substring(0, index).replace('/', '.');
+        for (String scanned : packageNames) {
+            if (packageName.startsWith(scanned)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stamp(File file, MessageDigest digest) throws IOException {
+        String stamp = file.length() + ":" + file.lastModified();
+        digest.update((file.getAbsolutePath() + "=" + stamp + "\n").getBytes("UTF-8"));
+        return stamp;
+    }
+
+    /**
+     * Reads the class annotations from the class file.
+     *
+     * @return the name of the class if it carries one of the annotations, null otherwise
+     *         or if the class file cannot be read
+     */
+    String getAnnotatedClassName(byte[] b) {
+        try {
+            if (readInt(b, 0) != 0xCAFEBABE) {
+                return null;
+            }
+            int cpCount = readUnsignedShort(b, 8);
+            String[] utf8 = new String[cpCount];
+            int[] classNames = new int[cpCount];
+            int offset = 10;
+            for (int i = 1; i < cpCount; i++) {
+                int tag = b[offset] & 0xFF;
+                switch (tag) {
+                    case 1:
+                        int length = readUnsignedShort(b, offset + 1);
+                        utf8[i] = new String(b, offset + 3, length, "UTF-8");
+                        offset += 3 + length;
+                        break;
+                    case 7:
+                        classNames[i] = readUnsignedShort(b, offset + 1);
+                        offset += 3;
+                        break;
+                    case 8: case 16: case 19: case 20:
+                        offset += 3;
+                        break;
+                    case 15:
+                        offset += 4;
+                        break;
+                    case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                        offset += 5;
+                        break;
+                    case 5: case 6:
+                        offset += 9;
+                        i++;
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            String className = utf8[classNames[readUnsignedShort(b, offset + 2)]];
+            offset += 6;
+            offset += 2 + 2 * readUnsignedShort(b, offset);
+            // fields and methods
+            for (int k = 0; k < 2; k++) {
+                int count = readUnsignedShort(b, offset);
+                offset += 2;
+                for (int i = 0; i < count; i++) {
+                    offset = skipAttributes(b, offset + 6);
+                }
+            }
+            int attributes = readUnsignedShort(b, offset);
+            offset += 2;
+            for (int i = 0; i < attributes; i++) {
+                String name = utf8[readUnsignedShort(b, offset)];
+                int length = readInt(b, offset + 2);
+                if ("RuntimeVisibleAnnotations".equals(name)) {
+                    int count = readUnsignedShort(b, offset + 6);
+                    int pos = offset + 8;
+                    for (int j = 0; j < count; j++) {
+                        if (annotations.contains(utf8[readUnsignedShort(b, pos)])) {
+                            return className.replace('/', '.');
+                        }
+                        pos = skipAnnotation(b, pos);
+                    }
+                }
+                offset += 6 + length;
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // truncated or corrupt class file
+            return null;
+        }
+    }
+
+    private static int skipAttributes(byte[] b, int offset) {
+        int count = readUnsignedShort(b, offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            offset += 6 + readInt(b, offset + 2);
+        }
+        return offset;
+    }
+
+    private static int skipAnnotation(byte[] b, int offset) {
+        int pairs = readUnsignedShort(b, offset + 2);
+        offset += 4;
+        for (int i = 0; i < pairs; i++) {
+            offset = skipElementValue(b, offset + 2);
+        }
+        return offset;
+    }
+
+    private static int skipElementValue(byte[] b, int offset) {
+        char tag = (char) (b[offset] & 0xFF);
+        switch (tag) {
+            case 'e':
+                return offset + 5;
+            case '@':
+                return skipAnnotation(b, offset + 1);
+            case '[':
+                int count = readUnsignedShort(b, offset + 1);
+                offset += 3;
+                for (int i = 0; i < count; i++) {
+                    offset = skipElementValue(b, offset);
+                }
+                return offset;
+            default:
+                return offset + 3;
+        }
+    }
+
+    private static int readUnsignedShort(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16)
+            | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return readFully(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = is.read(buffer)) != -1) {
+            os.write(buffer, 0, len);
+        }
+        return os.toByteArray();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+        }
+        return sb.toString();
+    }
+}
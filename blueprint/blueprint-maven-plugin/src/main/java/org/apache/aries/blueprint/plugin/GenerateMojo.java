@@ -18,12 +18,19 @@
  */
 package org.apache.aries.blueprint.plugin;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -34,7 +41,6 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
-import org.apache.xbean.finder.ClassFinder;
 
 /**
  * Generates blueprint from spring annotations
@@ -68,6 +74,13 @@ public class GenerateMojo extends AbstractMojo {
      */
     protected boolean persistenceAnnotated;
 
+    /**
+     * Index of the scanned class files, used to only read the class files which changed
+     * since the previous build and to skip the generation when nothing changed
+     * @parameter default-value="${project.build.directory}/blueprint-generate.index"
+     */
+    protected File indexFile;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         try {
             String buildDir = project.getBuild().getDirectory();
@@ -75,33 +88,80 @@ public class GenerateMojo extends AbstractMojo {
             Resource resource = new Resource();
             resource.setDirectory(generatedDir);
             project.addResource(resource);
-            ClassFinder finder = createProjectScopeFinder();
-            
+            List<File> classpath = getProjectClasspath();
+
             File file = new File(generatedDir, "OSGI-INF/blueprint/autowire.xml");
+            ClassIndex index = new ClassIndex(scanPaths, "persistenceAnnotated=" + persistenceAnnotated);
+            index.load(indexFile);
+            Set<String> classNames = index.update(classpath);
+            if (index.isUpToDate() && file.isFile()) {
+                getLog().info("Blueprint file " + file + " is up to date");
+                return;
+            }
+
             file.getParentFile().mkdirs();
             System.out.println("Generating blueprint to " + file);
-            Set<Class<?>> classes = FilteredClassFinder.findClasses(finder, scanPaths);
+            ClassLoader loader = createProjectScopeLoader(classpath);
+            Set<Class<?>> classes = new HashSet<Class<?>>();
+            for (String className : classNames) {
+                classes.add(loader.loadClass(className));
+            }
             Context context = new Context(classes);
             context.resolve();
-            new Generator(context, new FileOutputStream(file), persistenceAnnotated).generate();
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            new Generator(context, os, persistenceAnnotated).generate();
+            writeIfChanged(file, os.toByteArray());
+            index.save(indexFile);
         } catch (Exception e) {
             throw new MojoExecutionException("Error building commands help", e);
         }
     }
 
-    private ClassFinder createProjectScopeFinder() throws MalformedURLException {
-        List<URL> urls = new ArrayList<URL>();
-
-        urls.add( new File(project.getBuild().getOutputDirectory()).toURI().toURL() );
+    private List<File> getProjectClasspath() {
+        List<File> classpath = new ArrayList<File>();
+        classpath.add(new File(project.getBuild().getOutputDirectory()));
         for ( Object artifactO : project.getArtifacts() ) {
             Artifact artifact = (Artifact)artifactO;
             File file = artifact.getFile();
             if ( file != null ) {
-                urls.add( file.toURI().toURL() );
+                classpath.add(file);
+            }
+        }
+        return classpath;
+    }
+
+    private ClassLoader createProjectScopeLoader(List<File> classpath) throws MalformedURLException {
+        List<URL> urls = new ArrayList<URL>();
+        for (File file : classpath) {
+            urls.add( file.toURI().toURL() );
+        }
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), getClass().getClassLoader());
+    }
+
+    /**
+     * Keeps the existing file, and its modification time, when the content did not change
+     * so that the goals processing the resources see no change either.
+     */
+    private void writeIfChanged(File file, byte[] content) throws IOException {
+        if (file.isFile() && file.length() == content.length) {
+            byte[] existing = new byte[content.length];
+            DataInputStream is = new DataInputStream(new FileInputStream(file));
+            try {
+                is.readFully(existing);
+            } finally {
+                is.close();
+            }
+            if (Arrays.equals(existing, content)) {
+                getLog().info("Blueprint file " + file + " is unchanged");
+                return;
             }
         }
-        ClassLoader loader = new URLClassLoader(urls.toArray(new URL[urls.size()]), getClass().getClassLoader());
-        return new ClassFinder(loader, urls);
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
     }
 
 }
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.plugin;
+
+import static java.util.Arrays.asList;
+import static org.apache.aries.blueprint.plugin.FilteredClassFinder.findClasses;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.aries.blueprint.plugin.test.MyBean1;
+import org.apache.xbean.finder.ClassFinder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassIndexTest {
+
+    private static final String PACKAGE_NAME = MyBean1.class.getPackage().getName();
+
+    @Test
+    public void testSameClassesAsClassFinder() throws Exception {
+        ClassFinder classFinder = new ClassFinder(this.getClass().getClassLoader());
+        Set<String> expected = new TreeSet<String>();
+        for (Class<?> clazz : findClasses(classFinder, asList(PACKAGE_NAME))) {
+            expected.add(clazz.getName());
+        }
+
+        ClassIndex index = new ClassIndex(asList(PACKAGE_NAME), "");
+        Assert.assertEquals(expected, index.update(getClasspath()));
+    }
+
+    @Test
+    public void testIndexReused() throws Exception {
+        File indexFile = File.createTempFile("blueprint-generate", ".index");
+        indexFile.deleteOnExit();
+        List<File> classpath = getClasspath();
+
+        ClassIndex index = new ClassIndex(asList(PACKAGE_NAME), "a");
+        index.load(indexFile);
+        Set<String> classNames = index.update(classpath);
+        Assert.assertFalse(index.isUpToDate());
+        index.save(indexFile);
+
+        ClassIndex reloaded = new ClassIndex(asList(PACKAGE_NAME), "a");
+        reloaded.load(indexFile);
+        Assert.assertEquals(classNames, reloaded.update(classpath));
+        Assert.assertTrue(reloaded.isUpToDate());
+
+        ClassIndex otherConfig = new ClassIndex(asList(PACKAGE_NAME), "b");
+        otherConfig.load(indexFile);
+        Assert.assertEquals(classNames, otherConfig.update(classpath));
+        Assert.assertFalse(otherConfig.isUpToDate());
+    }
+
+    private List<File> getClasspath() throws Exception {
+        return asList(new File(MyBean1.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+    }
+}
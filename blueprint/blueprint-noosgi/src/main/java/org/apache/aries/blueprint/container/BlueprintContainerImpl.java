@@ -31,6 +31,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.xml.validation.Schema;
+
 import org.apache.aries.blueprint.ComponentDefinitionRegistryProcessor;
 import org.apache.aries.blueprint.ExtendedBeanMetadata;
 import org.apache.aries.blueprint.Processor;
@@ -65,6 +67,12 @@ import org.slf4j.LoggerFactory;
 
 public class BlueprintContainerImpl implements ExtendedBlueprintContainer {
 
+    /**
+     * Set this property to false to parse and validate the descriptors of every container,
+     * instead of sharing them with the other containers of the JVM
+     */
+    public static final String DESCRIPTOR_CACHE = "org.apache.aries.blueprint.noosgi.descriptor.cache";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(BlueprintContainerImpl.class);
 
     private final ClassLoader loader;
@@ -133,7 +141,14 @@ public class BlueprintContainerImpl implements ExtendedBlueprintContainer {
     public void init(boolean validate) throws Exception {
         // Parse xml resources
         Parser parser = new Parser();
-        parser.parse(getResources());
+        List<DescriptorCache.Descriptor> descriptors = getCachedDescriptors();
+        if (descriptors != null) {
+            for (DescriptorCache.Descriptor descriptor : descriptors) {
+                parser.parse(descriptor.getDocument());
+            }
+        } else {
+            parser.parse(getResources());
+        }
         // Check namespaces
         Set<URI> namespaces = parser.getNamespaces();
         // Create handler set
@@ -141,8 +156,16 @@ public class BlueprintContainerImpl implements ExtendedBlueprintContainer {
         // Add predefined beans
         componentDefinitionRegistry.registerComponentDefinition(new PassThroughMetadataImpl("blueprintContainer", this));
         if (validate) {
-            // Validate
-            parser.validate(handlerSet.getSchema());
+            // Validate, unless the same descriptors were validated against the same schema
+            Schema schema = handlerSet.getSchema();
+            if (descriptors == null || !isValidated(descriptors, schema)) {
+                parser.validate(schema);
+                if (descriptors != null) {
+                    for (DescriptorCache.Descriptor descriptor : descriptors) {
+                        descriptor.setValidated(schema);
+                    }
+                }
+            }
         }
         // Populate
         parser.populate(handlerSet, componentDefinitionRegistry);
@@ -155,6 +178,33 @@ public class BlueprintContainerImpl implements ExtendedBlueprintContainer {
         instantiateEagerComponents();
     }
 
+    /**
+     * @return the shared descriptors of the resources, or null if they are not all cached
+     */
+    private List<DescriptorCache.Descriptor> getCachedDescriptors() throws Exception {
+        if ("false".equals(getProperty(DESCRIPTOR_CACHE))) {
+            return null;
+        }
+        List<DescriptorCache.Descriptor> descriptors = new ArrayList<DescriptorCache.Descriptor>();
+        for (URL url : getResources()) {
+            DescriptorCache.Descriptor descriptor = DescriptorCache.get(url);
+            if (descriptor == null) {
+                return null;
+            }
+            descriptors.add(descriptor);
+        }
+        return descriptors;
+    }
+
+    private boolean isValidated(List<DescriptorCache.Descriptor> descriptors, Schema schema) {
+        for (DescriptorCache.Descriptor descriptor : descriptors) {
+            if (!descriptor.isValidated(schema)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void destroy() {
         repository.destroy();
     }
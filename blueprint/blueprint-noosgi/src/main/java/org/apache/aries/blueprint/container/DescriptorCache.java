@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.container;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.validation.Schema;
+
+import org.w3c.dom.Document;
+
+/**
+ * The blueprint descriptors read by the containers of this JVM, shared so that the
+ * containers started from the same descriptors do not parse and validate them again.
+ * <p>
+ * Only the descriptors read from a file or a jar file are kept, along with the length and
+ * the modification time of the file so that a modified descriptor is read again.  Each
+ * container is given its own copy of the document, as namespace handlers may modify it.
+ * The least recently used descriptors are dropped, so that the descriptors of undeployed
+ * applications are not kept forever.
+ */
+public class DescriptorCache {
+
+    /**
+     * The number of descriptors kept, the least recently used ones are dropped
+     */
+    static final int MAX_CACHED_DESCRIPTORS = 64;
+
+    private static final Map<String, Descriptor> descriptors = new LinkedHashMap<String, Descriptor>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Descriptor> eldest) {
+            return size() > MAX_CACHED_DESCRIPTORS;
+        }
+    };
+    private static DocumentBuilderFactory documentBuilderFactory;
+
+    static class Descriptor {
+        private final String stamp;
+        private final Document document;
+        // schemas do not override equals, the weak keys do not keep the dropped schemas alive
+        private final Set<Schema> validated = Collections.synchronizedSet(
+                Collections.newSetFromMap(new WeakHashMap<Schema, Boolean>()));
+
+        Descriptor(String stamp, Document document) {
+            this.stamp = stamp;
+            this.document = document;
+        }
+
+        /**
+         * @return a copy of the document, for the parser of a container
+         */
+        Document getDocument() {
+            // reading a DOM tree may modify it, the copies are made one at a time
+            synchronized (document) {
+                return (Document) document.cloneNode(true);
+            }
+        }
+
+        boolean isValidated(Schema schema) {
+            return validated.contains(schema);
+        }
+
+        void setValidated(Schema schema) {
+            validated.add(schema);
+        }
+    }
+
+    private DescriptorCache() {
+    }
+
+    /**
+     * @return the descriptor read from the url, or null if the url does not refer to a file or a jar file
+     */
+    static Descriptor get(URL url) throws Exception {
+        String stamp = getStamp(url);
+        if (stamp == null) {
+            return null;
+        }
+        String key = url.toExternalForm();
+        Descriptor descriptor;
+        synchronized (descriptors) {
+            descriptor = descriptors.get(key);
+        }
+        if (descriptor == null || !stamp.equals(descriptor.stamp)) {
+            descriptor = new Descriptor(stamp, parse(url));
+            synchronized (descriptors) {
+                descriptors.put(key, descriptor);
+            }
+        }
+        return descriptor;
+    }
+
+    /**
+     * Drops all the descriptors, and the schemas they were validated against.
+     */
+    public static void clear() {
+        synchronized (descriptors) {
+            descriptors.clear();
+        }
+        SimpleNamespaceHandlerSet.clearSchemas();
+    }
+
+    private static String getStamp(URL url) {
+        try {
+            URL fileUrl = url;
+            if ("jar".equals(url.getProtocol())) {
+                String path = url.getPath();
+                int index = path.indexOf("!/");
+                if (index < 0) {
+                    return null;
+                }
+                fileUrl = new URL(path.substring(0, index));
+            }
+            if (!"file".equals(fileUrl.getProtocol())) {
+                return null;
+            }
+            File file = new File(fileUrl.toURI());
+            if (!file.isFile()) {
+                return null;
+            }
+            return file.length() + ":" + file.lastModified();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Document parse(URL url) throws Exception {
+        InputStream is = url.openStream();
+        try {
+            return getDocumentBuilderFactory().newDocumentBuilder().parse(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static synchronized DocumentBuilderFactory getDocumentBuilderFactory() {
+        if (documentBuilderFactory == null) {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            documentBuilderFactory = dbf;
+        }
+        return documentBuilderFactory;
+    }
+}
@@ -47,6 +47,18 @@ public class SimpleNamespaceHandlerSet implements NamespaceHandlerSet {
 
     public static final URI EXT_1_2_NAMESPACE = URI.create("http://aries.apache.org/blueprint/xmlns/blueprint-ext/v1.2.0");
 
+    /**
+     * The number of schemas shared by the handler sets, the least recently used ones are dropped
+     */
+    private static final int MAX_CACHED_SCHEMAS = 16;
+
+    private static final Map<String, Schema> schemas = new LinkedHashMap<String, Schema>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Schema> eldest) {
+            return size() > MAX_CACHED_SCHEMAS;
+        }
+    };
+
     private Map<URI, URL> namespaces;
     private Map<URI, NamespaceHandler> handlers;
     private Schema schema;
@@ -78,56 +90,79 @@ public class SimpleNamespaceHandlerSet implements NamespaceHandlerSet {
 
     public Schema getSchema() throws SAXException, IOException {
         if (schema == null) {
-            final List<StreamSource> schemaSources = new ArrayList<StreamSource>();
-            final List<InputStream> streams = new ArrayList<InputStream>();
-            try {
-                InputStream is = getClass().getResourceAsStream("/org/apache/aries/blueprint/blueprint.xsd");
+            // schemas are immutable and thread safe, the handler sets of the same schemas share one
+            String key = namespaces.toString();
+            synchronized (schemas) {
+                schema = schemas.get(key);
+            }
+            if (schema == null) {
+                schema = createSchema();
+                synchronized (schemas) {
+                    schemas.put(key, schema);
+                }
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Drops the shared schemas.
+     */
+    static void clearSchemas() {
+        synchronized (schemas) {
+            schemas.clear();
+        }
+    }
+
+    private Schema createSchema() throws SAXException, IOException {
+        final List<StreamSource> schemaSources = new ArrayList<StreamSource>();
+        final List<InputStream> streams = new ArrayList<InputStream>();
+        try {
+            InputStream is = getClass().getResourceAsStream("/org/apache/aries/blueprint/blueprint.xsd");
+            streams.add(is);
+            schemaSources.add(new StreamSource(is));
+            for (URI uri : namespaces.keySet()) {
+                is = namespaces.get(uri).openStream();
                 streams.add(is);
                 schemaSources.add(new StreamSource(is));
-                for (URI uri : namespaces.keySet()) {
-                    is = namespaces.get(uri).openStream();
-                    streams.add(is);
-                    schemaSources.add(new StreamSource(is));
-                }
-                SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-                schemaFactory.setResourceResolver(new LSResourceResolver() {
-                    
-                    public LSInput resolveResource(String type, String namespace, String publicId,
-                                                   String systemId, String baseURI) {
-                        try {
-                            if (systemId != null && !URI.create(systemId).isAbsolute()) {
-                                URL namespaceURL = namespaces.get(URI.create(namespace));
-                                if (namespaceURL != null) {
-                                    URI systemIdUri = namespaceURL.toURI().resolve(systemId);
-                                    if (!systemIdUri.isAbsolute() && "jar".equals(namespaceURL.getProtocol())) {
-                                        String urlString = namespaceURL.toString();
-                                        int jarFragmentIndex = urlString.lastIndexOf('!');
-                                        if (jarFragmentIndex > 0 && jarFragmentIndex < urlString.length() - 1) {
-                                            String jarUrlOnly = urlString.substring(0, jarFragmentIndex);
-                                            String oldFragment = urlString.substring(jarFragmentIndex + 1);
-                                            String newFragment = URI.create(oldFragment).resolve(systemId).toString();
-                                            String newJarUri = jarUrlOnly + '!' + newFragment;
-                                            systemIdUri = URI.create(newJarUri);
-                                        }
+            }
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schemaFactory.setResourceResolver(new LSResourceResolver() {
+                
+                public LSInput resolveResource(String type, String namespace, String publicId,
+                                               String systemId, String baseURI) {
+                    try {
+                        if (systemId != null && !URI.create(systemId).isAbsolute()) {
+                            URL namespaceURL = namespaces.get(URI.create(namespace));
+                            if (namespaceURL != null) {
+                                URI systemIdUri = namespaceURL.toURI().resolve(systemId);
+                                if (!systemIdUri.isAbsolute() && "jar".equals(namespaceURL.getProtocol())) {
+                                    String urlString = namespaceURL.toString();
+                                    int jarFragmentIndex = urlString.lastIndexOf('!');
+                                    if (jarFragmentIndex > 0 && jarFragmentIndex < urlString.length() - 1) {
+                                        String jarUrlOnly = urlString.substring(0, jarFragmentIndex);
+                                        String oldFragment = urlString.substring(jarFragmentIndex + 1);
+                                        String newFragment = URI.create(oldFragment).resolve(systemId).toString();
+                                        String newJarUri = jarUrlOnly + '!' + newFragment;
+                                        systemIdUri = URI.create(newJarUri);
                                     }
-                                    InputStream resourceStream = systemIdUri.toURL().openStream();
-                                    return new LSInputImpl(publicId, systemId, resourceStream);
                                 }
+                                InputStream resourceStream = systemIdUri.toURL().openStream();
+                                return new LSInputImpl(publicId, systemId, resourceStream);
                             }
-                        } catch (Exception ex) {
-                            // ignore
                         }
-                        return null;
+                    } catch (Exception ex) {
+                        // ignore
                     }
-                });
-                schema = schemaFactory.newSchema(schemaSources.toArray(new Source[schemaSources.size()]));
-            } finally {
-                for (InputStream is : streams) {
-                    is.close();
+                    return null;
                 }
+            });
+            return schemaFactory.newSchema(schemaSources.toArray(new Source[schemaSources.size()]));
+        } finally {
+            for (InputStream is : streams) {
+                is.close();
             }
         }
-        return schema;
     }
 
     public void addListener(Listener listener) {
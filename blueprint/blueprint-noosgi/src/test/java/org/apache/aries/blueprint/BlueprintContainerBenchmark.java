@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.aries.blueprint.container.BlueprintContainerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time taken to start and stop a container from the test descriptors, with the
+ * descriptors shared by the containers of the JVM or parsed and validated by each of them.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.aries.blueprint.BlueprintContainerBenchmark
+ * </pre>
+ *
+ * @version $Rev$, $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlueprintContainerBenchmark {
+
+    @Param({ "true", "false" })
+    private String cache;
+
+    private ClassLoader loader;
+    private List<URL> urls;
+    private Map<String, String> properties;
+
+    @Setup
+    public void setUp() {
+        loader = getClass().getClassLoader();
+        urls = Arrays.asList(loader.getResource("test.xml"), loader.getResource("test2.xml"));
+        properties = Collections.singletonMap(BlueprintContainerImpl.DESCRIPTOR_CACHE, cache);
+    }
+
+    @Benchmark
+    public Object startup() throws Exception {
+        BlueprintContainerImpl container = new BlueprintContainerImpl(loader, urls, properties, true);
+        Object foo = container.getComponentInstance("foo");
+        container.destroy();
+        return foo;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(BlueprintContainerBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.validation.Schema;
+
+import org.apache.aries.blueprint.sample.Foo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DescriptorCacheTest {
+
+    private final List<File> files = new ArrayList<File>();
+
+    @Before
+    public void setUp() {
+        DescriptorCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        DescriptorCache.clear();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSharedDescriptors() throws Exception {
+        URL url1 = copy("test.xml");
+        URL url2 = copy("test2.xml");
+
+        startContainer(url1, url2);
+        DescriptorCache.Descriptor descriptor = DescriptorCache.get(url1);
+        assertNotNull(descriptor);
+        Schema schema = new SimpleNamespaceHandlerSet().getSchema();
+        assertTrue(descriptor.isValidated(schema));
+        assertTrue(DescriptorCache.get(url2).isValidated(schema));
+
+        // the second container reuses the descriptor read by the first one
+        startContainer(url1, url2);
+        assertSame(descriptor, DescriptorCache.get(url1));
+        assertSame(schema, new SimpleNamespaceHandlerSet().getSchema());
+
+        // a modified descriptor is read and validated again
+        append(url1, "<!-- modified -->\n");
+        DescriptorCache.Descriptor modified = DescriptorCache.get(url1);
+        assertNotSame(descriptor, modified);
+        assertFalse(modified.isValidated(schema));
+        startContainer(url1, url2);
+        assertSame(modified, DescriptorCache.get(url1));
+        assertTrue(modified.isValidated(schema));
+    }
+
+    @Test
+    public void testClearDropsSchemas() throws Exception {
+        Schema schema = new SimpleNamespaceHandlerSet().getSchema();
+        assertSame(schema, new SimpleNamespaceHandlerSet().getSchema());
+
+        DescriptorCache.clear();
+        assertNotSame(schema, new SimpleNamespaceHandlerSet().getSchema());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDescriptorsDropped() throws Exception {
+        URL url = copy("test.xml");
+        DescriptorCache.Descriptor descriptor = DescriptorCache.get(url);
+        for (int i = 1; i < DescriptorCache.MAX_CACHED_DESCRIPTORS; i++) {
+            DescriptorCache.get(copy("test.xml"));
+        }
+
+        // the cache is full, a descriptor in use is kept when another one is read
+        assertSame(descriptor, DescriptorCache.get(url));
+        DescriptorCache.get(copy("test.xml"));
+        assertSame(descriptor, DescriptorCache.get(url));
+
+        // and dropped once the other descriptors were used more recently
+        for (int i = 0; i < DescriptorCache.MAX_CACHED_DESCRIPTORS; i++) {
+            DescriptorCache.get(copy("test.xml"));
+        }
+        assertNotSame(descriptor, DescriptorCache.get(url));
+    }
+
+    @Test
+    public void testRemoteResourcesNotCached() throws Exception {
+        assertNull(DescriptorCache.get(new URL("http://localhost/blueprint.xml")));
+    }
+
+    private void startContainer(URL... urls) throws Exception {
+        BlueprintContainerImpl container = new BlueprintContainerImpl(getClass().getClassLoader(), Arrays.asList(urls));
+        Foo foo = (Foo) container.getComponentInstance("foo");
+        assertNotNull(foo);
+        assertEquals(5, foo.getA());
+        assertEquals(1, foo.getB());
+        container.destroy();
+    }
+
+    private URL copy(String resource) throws IOException {
+        File file = File.createTempFile("descriptor", ".xml");
+        files.add(file);
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resource);
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[4096];
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        return file.toURI().toURL();
+    }
+
+    private static void append(URL url, String text) throws Exception {
+        File file = new File(url.toURI());
+        Writer writer = new FileWriter(file, true);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+}
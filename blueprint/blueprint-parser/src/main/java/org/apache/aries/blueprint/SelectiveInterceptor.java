@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.blueprint;
+
+import java.lang.reflect.Method;
+
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+
+/**
+ * An {@link Interceptor} which only acts on some of the methods of the components it is
+ * registered for. The interceptor is asked once per method whether it applies, and is
+ * left out of the calls to the methods it does not apply to.
+ */
+public interface SelectiveInterceptor extends Interceptor {
+    /**
+     * Tells whether calls to the method m should be intercepted. The answer is cached,
+     * so it must only depend on the component metadata and the method.
+     * @param cm : the component's metadata
+     * @param m : the method that may be invoked
+     * @return <code>true</code> if preCall and postCall should be called for the method
+     */
+    public boolean appliesTo(ComponentMetadata cm, Method m);
+}
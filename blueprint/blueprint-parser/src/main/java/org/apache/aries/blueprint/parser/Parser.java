@@ -18,6 +18,9 @@
  */
 package org.apache.aries.blueprint.parser;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
@@ -33,9 +36,16 @@ import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.validation.Schema;
+import javax.xml.validation.TypeInfoProvider;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
 import org.apache.aries.blueprint.ComponentDefinitionRegistry;
 import org.apache.aries.blueprint.NamespaceHandler;
@@ -88,11 +98,24 @@ import org.w3c.dom.EntityReference;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
- * TODO: javadoc
+ * Parses blueprint xml into metadata registered in a {@link ComponentDefinitionRegistry}.
+ * <p>
+ * By default each document is read into a DOM tree, which is validated and then walked to
+ * populate the registry.  In streaming mode, {@link #parse(List)} only scans the documents
+ * for the namespaces they use, and {@link #populate(NamespaceHandlerSet, ComponentDefinitionRegistry)}
+ * reads them again in a single pass which validates them against the schema given to
+ * {@link #validate(Schema)} and builds the metadata.  Only the top level element being read,
+ * and the custom top level elements, are kept as DOM elements, so that namespace handlers
+ * still receive DOM nodes.
  *
  * @version $Rev: 1135256 $, $Date: 2011-06-13 21:09:27 +0100 (Mon, 13 Jun 2011) $
  */
@@ -178,6 +201,8 @@ public class Parser {
     public static final String ACTIVATION_DEFAULT = ACTIVATION_EAGER;
     
     private static DocumentBuilderFactory documentBuilderFactory;
+    private static SAXParserFactory saxParserFactory;
+    private static XMLInputFactory xmlInputFactory;
     private static final NamespaceHandler missingNamespace = new NamespaceHandler() {
         @Override
         public Metadata parse(Element element, ParserContext context) {
@@ -199,6 +224,11 @@ public class Parser {
     };
 
     private final List<Document> documents = new ArrayList<Document>();
+    // The documents to read again when populating the registry in streaming mode
+    private final List<Descriptor> descriptors = new ArrayList<Descriptor>();
+    private final boolean streaming;
+    private Schema schema;
+    private ErrorHandler errorHandler;
     private ComponentDefinitionRegistry registry;
     private NamespaceHandlerSet handlers;
     private final String idPrefix;
@@ -219,8 +249,18 @@ public class Parser {
     }
 
     public Parser(String idPrefix, boolean ignoreUnknownNamespaces) {
+      this(idPrefix, ignoreUnknownNamespaces, false);
+    }
+
+    /**
+     * @param idPrefix the prefix of generated component ids, "component-" if null
+     * @param ignoreUnknownNamespaces whether elements and attributes without a namespace handler are ignored
+     * @param streaming whether the documents are read in streaming mode, see the class documentation
+     */
+    public Parser(String idPrefix, boolean ignoreUnknownNamespaces, boolean streaming) {
       this.idPrefix = idPrefix == null ? "component-" : idPrefix;
       this.ignoreUnknownNamespaces = ignoreUnknownNamespaces;
+      this.streaming = streaming;
     }
 
     /**
@@ -229,6 +269,16 @@ public class Parser {
      * @throws Exception on parse error
      */
     public void parse(InputStream inputStream) throws Exception { 
+      if (streaming) {
+        // The stream can not be read again, keep its content rather than a tree
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = inputStream.read(buffer); n != -1; n = inputStream.read(buffer)) {
+          bytes.write(buffer, 0, n);
+        }
+        addDescriptor(new BytesDescriptor(bytes.toByteArray()));
+        return;
+      }
       InputSource inputSource = new InputSource(inputStream);
       DocumentBuilder builder = getDocumentBuilderFactory().newDocumentBuilder();
       Document doc = builder.parse(inputSource);
@@ -244,6 +294,10 @@ public class Parser {
         // Create document builder factory
         // Load documents
         for (URL url : urls) {
+            if (streaming) {
+                addDescriptor(new UrlDescriptor(url));
+                continue;
+            }
             InputStream inputStream = url.openStream();
             try {
                 parse (inputStream);
@@ -253,12 +307,25 @@ public class Parser {
         }
     }
 
+    /**
+     * Adds a document which was already read, by a caller keeping the parsed descriptors
+     * for instance.  The document is used as is: it must be namespace aware, and the
+     * namespace handlers may modify it while the registry is populated.
+     * @param document the document to add
+     */
+    public void parse(Document document) {
+        documents.add(document);
+    }
+
     public Set<URI> getNamespaces() {
         if (this.namespaces == null) {
             Set<URI> namespaces = new LinkedHashSet<URI>();
             for (Document doc : documents) {
                 findNamespaces(namespaces, doc);
             }
+            for (Descriptor descriptor : descriptors) {
+                namespaces.addAll(descriptor.namespaces);
+            }
             this.namespaces = namespaces;
         }
         return this.namespaces;
@@ -306,6 +373,9 @@ public class Parser {
         for (Document doc : this.documents) {
             loadComponents(doc);
         }
+        for (Descriptor descriptor : this.descriptors) {
+            loadComponents(descriptor);
+        }
     }
 
     public void validate(Schema schema) {
@@ -313,6 +383,14 @@ public class Parser {
     }
 
     public void validate(Schema schema, ErrorHandler errorHandler) {
+        if (streaming) {
+            // The documents are validated while the registry is populated
+            this.schema = schema;
+            this.errorHandler = errorHandler;
+            if (documents.isEmpty()) {
+                return;
+            }
+        }
         try {
             Validator validator = schema.newValidator();
             if (errorHandler != null) {
@@ -327,27 +405,8 @@ public class Parser {
     }
 
     private void loadComponents(Document doc) {
-        defaultTimeout = TIMEOUT_DEFAULT;
-        defaultAvailability = AVAILABILITY_DEFAULT;
-        defaultActivation = ACTIVATION_DEFAULT;
         Element root = doc.getDocumentElement();
-        if (!isBlueprintNamespace(root.getNamespaceURI()) ||
-                !nodeNameEquals(root, BLUEPRINT_ELEMENT)) {
-            throw new ComponentDefinitionException("Root element must be {" + BLUEPRINT_NAMESPACE + "}" + BLUEPRINT_ELEMENT + " element");
-        }
-        // Parse global attributes
-        if (root.hasAttribute(DEFAULT_ACTIVATION_ATTRIBUTE)) {
-            defaultActivation = root.getAttribute(DEFAULT_ACTIVATION_ATTRIBUTE);
-        }
-        if (root.hasAttribute(DEFAULT_TIMEOUT_ATTRIBUTE)) {
-            defaultTimeout = root.getAttribute(DEFAULT_TIMEOUT_ATTRIBUTE);
-        }
-        if (root.hasAttribute(DEFAULT_AVAILABILITY_ATTRIBUTE)) {
-            defaultAvailability = root.getAttribute(DEFAULT_AVAILABILITY_ATTRIBUTE);
-        }
-        
-        // Parse custom attributes
-        handleCustomAttributes(root.getAttributes(), null);
+        loadRoot(root);
 
         // Parse elements
         // Break into 2 loops to ensure we scan the blueprint elements before
@@ -371,18 +430,80 @@ public class Parser {
                 Element element = (Element) node;
                 String namespaceUri = element.getNamespaceURI();
                 if (!isBlueprintNamespace(namespaceUri)) {
-                    Metadata component = parseCustomElement(element, null);
-                    if (component != null) {
-                        if (!(component instanceof ComponentMetadata)) {
-                            throw new ComponentDefinitionException("Expected a ComponentMetadata to be returned when parsing element " + element.getNodeName());
-                        }
-                        registry.registerComponentDefinition((ComponentMetadata) component);
-                    }
+                    loadCustomComponent(element);
                 } 
             }
         }
     }
 
+    private void loadComponents(Descriptor descriptor) {
+        InputStream in = null;
+        try {
+            in = descriptor.openStream();
+            XMLReader reader = getSAXParserFactory().newSAXParser().getXMLReader();
+            StreamingHandler handler = new StreamingHandler(getDocumentBuilderFactory().newDocumentBuilder().newDocument());
+            if (schema != null) {
+                ValidatorHandler validator = schema.newValidatorHandler();
+                if (errorHandler != null) {
+                    validator.setErrorHandler(errorHandler);
+                }
+                validator.setContentHandler(handler);
+                handler.typeInfo = validator.getTypeInfoProvider();
+                reader.setContentHandler(validator);
+            } else {
+                reader.setContentHandler(handler);
+            }
+            reader.parse(new InputSource(in));
+        } catch (SAXException e) {
+            throw new ComponentDefinitionException(schema != null ? "Unable to validate xml" : "Unable to parse xml", e);
+        } catch (ComponentDefinitionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ComponentDefinitionException("Unable to parse xml", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private void loadRoot(Element root) {
+        defaultTimeout = TIMEOUT_DEFAULT;
+        defaultAvailability = AVAILABILITY_DEFAULT;
+        defaultActivation = ACTIVATION_DEFAULT;
+        if (!isBlueprintNamespace(root.getNamespaceURI()) ||
+                !nodeNameEquals(root, BLUEPRINT_ELEMENT)) {
+            throw new ComponentDefinitionException("Root element must be {" + BLUEPRINT_NAMESPACE + "}" + BLUEPRINT_ELEMENT + " element");
+        }
+        // Parse global attributes
+        if (root.hasAttribute(DEFAULT_ACTIVATION_ATTRIBUTE)) {
+            defaultActivation = root.getAttribute(DEFAULT_ACTIVATION_ATTRIBUTE);
+        }
+        if (root.hasAttribute(DEFAULT_TIMEOUT_ATTRIBUTE)) {
+            defaultTimeout = root.getAttribute(DEFAULT_TIMEOUT_ATTRIBUTE);
+        }
+        if (root.hasAttribute(DEFAULT_AVAILABILITY_ATTRIBUTE)) {
+            defaultAvailability = root.getAttribute(DEFAULT_AVAILABILITY_ATTRIBUTE);
+        }
+        
+        // Parse custom attributes
+        handleCustomAttributes(root.getAttributes(), null);
+    }
+
+    private void loadCustomComponent(Element element) {
+        Metadata component = parseCustomElement(element, null);
+        if (component != null) {
+            if (!(component instanceof ComponentMetadata)) {
+                throw new ComponentDefinitionException("Expected a ComponentMetadata to be returned when parsing element " + element.getNodeName());
+            }
+            registry.registerComponentDefinition((ComponentMetadata) component);
+        }
+    }
+
     public <T> T parseElement(Class<T> type, ComponentMetadata enclosingComponent, Element element) {
         if (BeanArgument.class.isAssignableFrom(type)) {
             return type.cast(parseBeanArgument(enclosingComponent, element));
@@ -1411,6 +1532,75 @@ public class Parser {
         return value.toString();
     }
 
+    private void addDescriptor(Descriptor descriptor) throws IOException, XMLStreamException {
+        InputStream in = descriptor.openStream();
+        try {
+            findNamespaces(descriptor.namespaces, in);
+        } finally {
+            in.close();
+        }
+        descriptors.add(descriptor);
+    }
+
+    /**
+     * Finds the namespaces used by a document the same way as {@link #findNamespaces(Set, Node)},
+     * without building a tree.
+     */
+    private static void findNamespaces(Set<URI> namespaces, InputStream in) throws XMLStreamException {
+        XMLStreamReader reader = getXMLInputFactory().createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String ns = reader.getNamespaceURI();
+                addNamespace(namespaces, ns);
+                boolean bean = isBlueprintNamespace(ns) && BEAN_ELEMENT.equals(reader.getLocalName());
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    String attrNs = reader.getAttributeNamespace(i);
+                    if (attrNs != null && attrNs.length() > 0) {
+                        addNamespace(namespaces, attrNs);
+                    } else if (bean && SCOPE_ATTRIBUTE.equals(reader.getAttributeLocalName(i))) {
+                        //Scope attribute is special case, as may contain namespace usage within its value.
+                        String value = reader.getAttributeValue(i);
+                        if (value.indexOf(":") != -1) {
+                            String prefix = value.split(":")[0];
+                            String uri = reader.getNamespaceContext().getNamespaceURI(prefix);
+                            if (uri == null || uri.length() == 0) {
+                                throw new ComponentDefinitionException("Unsupported attribute namespace prefix " + prefix + " " + SCOPE_ATTRIBUTE + "=\"" + value + "\"");
+                            }
+                            namespaces.add(URI.create(uri));
+                        }
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void addNamespace(Set<URI> namespaces, String ns) {
+        if (ns != null && ns.length() > 0 && !isBlueprintNamespace(ns) && !isIgnorableAttributeNamespace(ns)) {
+            namespaces.add(URI.create(ns));
+        }
+    }
+
+    private static SAXParserFactory getSAXParserFactory() {
+        if (saxParserFactory == null) {
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+            spf.setNamespaceAware(true);
+            saxParserFactory = spf;
+        }
+        return saxParserFactory;
+    }
+
+    private static XMLInputFactory getXMLInputFactory() {
+        if (xmlInputFactory == null) {
+            xmlInputFactory = XMLInputFactory.newInstance();
+        }
+        return xmlInputFactory;
+    }
+
     private static DocumentBuilderFactory getDocumentBuilderFactory() {
         if (documentBuilderFactory == null) {
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
@@ -1419,4 +1609,129 @@ public class Parser {
         }
         return documentBuilderFactory;
     }
+
+    /**
+     * A document read in streaming mode, and the namespaces it uses.
+     */
+    private static abstract class Descriptor {
+        final Set<URI> namespaces = new LinkedHashSet<URI>();
+
+        abstract InputStream openStream() throws IOException;
+    }
+
+    private static class UrlDescriptor extends Descriptor {
+        private final URL url;
+
+        UrlDescriptor(URL url) {
+            this.url = url;
+        }
+
+        InputStream openStream() throws IOException {
+            return url.openStream();
+        }
+    }
+
+    private static class BytesDescriptor extends Descriptor {
+        private final byte[] bytes;
+
+        BytesDescriptor(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        InputStream openStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    /**
+     * Populates the registry while a document is read.  The root element is kept, and each
+     * top level element is built as a DOM element below it.  Blueprint elements are parsed as
+     * soon as they end and then dropped, custom elements are parsed at the end of the document,
+     * as with a whole DOM tree.
+     */
+    private class StreamingHandler extends DefaultHandler {
+        private final Document document;
+        private final List<String[]> prefixes = new ArrayList<String[]>();
+        private final List<Element> customElements = new ArrayList<Element>();
+        // Tells which attributes were only added by the schema, null when not validating
+        private TypeInfoProvider typeInfo;
+        private Element root;
+        private Node current;
+
+        StreamingHandler(Document document) {
+            this.document = document;
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            prefixes.add(new String[] { prefix, uri });
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            Element element = document.createElementNS(uri.length() > 0 ? uri : null, qName.length() > 0 ? qName : localName);
+            for (String[] prefix : prefixes) {
+                String name = prefix[0].length() > 0 ? "xmlns:" + prefix[0] : "xmlns";
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, prefix[1]);
+            }
+            prefixes.clear();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                if (typeInfo != null && !typeInfo.isSpecified(i)) {
+                    // Default values of the schema are not in the document
+                    continue;
+                }
+                String ns = attributes.getURI(i);
+                String name = attributes.getQName(i);
+                element.setAttributeNS(ns.length() > 0 ? ns : null, name.length() > 0 ? name : attributes.getLocalName(i), attributes.getValue(i));
+            }
+            if (root == null) {
+                document.appendChild(element);
+                root = element;
+                loadRoot(root);
+            } else {
+                current.appendChild(element);
+            }
+            current = element;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            Node parent = current.getParentNode();
+            if (parent == root) {
+                Element element = (Element) current;
+                if (isBlueprintNamespace(element.getNamespaceURI())) {
+                    parseBlueprintElement(element);
+                    root.removeChild(element);
+                } else {
+                    customElements.add(element);
+                }
+            }
+            current = parent;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (current == null || current == root) {
+                return;
+            }
+            Node last = current.getLastChild();
+            if (last instanceof Text) {
+                ((Text) last).appendData(new String(ch, start, length));
+            } else {
+                current.appendChild(document.createTextNode(new String(ch, start, length)));
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void endDocument() {
+            for (Element element : customElements) {
+                loadCustomComponent(element);
+            }
+        }
+    }
 }
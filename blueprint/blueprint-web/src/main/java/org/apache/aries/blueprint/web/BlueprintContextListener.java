@@ -21,6 +21,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
@@ -31,6 +33,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -57,6 +60,20 @@ public class BlueprintContextListener implements ServletContextListener {
     
     public static final String PROPERTIES = "blueprintProperties";
     
+    /**
+     * The blueprint descriptors and namespace handler resources found by each class loader,
+     * so that the class path is searched once, not for every web application context started.
+     */
+    private static final Map<ClassLoader, Map<String, List<URL>>> resourceIndex =
+            new WeakHashMap<ClassLoader, Map<String, List<URL>>>();
+
+    /**
+     * The namespace handlers created from each class loader.  As with the handler services of the
+     * OSGi extender, one handler instance serves all the containers started from the class loader.
+     * The handlers are weakly referenced, as their classes would otherwise keep the class loader.
+     */
+    private static final Map<ClassLoader, Map<String, Reference<NamespaceHandler>>> handlerIndex =
+            new WeakHashMap<ClassLoader, Map<String, Reference<NamespaceHandler>>>();
 
     public void contextInitialized(ServletContextEvent event) {
         ServletContext servletContext = event.getServletContext();
@@ -64,13 +81,9 @@ public class BlueprintContextListener implements ServletContextListener {
         if (location == null) {
             location = DEFAULT_CONTEXT_LOCATION;
         }
-        List<URL> resourcePaths = new ArrayList<URL>();
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
         try {
-            Enumeration<URL> resources = classLoader.getResources(location);
-            while (resources.hasMoreElements()) {
-                resourcePaths.add(resources.nextElement());
-            }
+            List<URL> resourcePaths = getResources(classLoader, location);
             servletContext.log("Loading Blueprint contexts " + resourcePaths);
 
             Map<String, String> properties = new HashMap<String, String>();
@@ -123,9 +136,7 @@ public class BlueprintContextListener implements ServletContextListener {
     protected NamespaceHandlerSet getNamespaceHandlerSetFromLocation(ServletContext servletContext, ClassLoader tccl) {
         List<String> handlerClassNames = new LinkedList<String>();
         try {
-            Enumeration<URL> resources = tccl.getResources(NAMESPACE_HANDLERS_LOCATION);
-            while (resources.hasMoreElements()) {
-                URL resource = resources.nextElement();
+            for (URL resource : getResources(tccl, NAMESPACE_HANDLERS_LOCATION)) {
                 BufferedReader br = new BufferedReader(new InputStreamReader(resource.openStream()));
                 try {
                     for (String line = br.readLine(); line != null; line = br.readLine()) {
@@ -156,16 +167,7 @@ public class BlueprintContextListener implements ServletContextListener {
         
         for (String name : handlerClassNames) {
             String trimmedName = name.trim();
-            Object instance = null; 
-            try {
-                instance = tccl.loadClass(trimmedName).newInstance();
-            } catch (Exception ex) {
-                throw new RuntimeException("Failed to load NamespaceHandler: " + trimmedName, ex);
-            }
-            if (!(instance instanceof NamespaceHandler)) {
-                throw new RuntimeException("Invalid NamespaceHandler: " + trimmedName);
-            }
-            NamespaceHandler nsHandler = (NamespaceHandler)instance;
+            NamespaceHandler nsHandler = getNamespaceHandler(tccl, trimmedName);
             Namespaces namespaces = nsHandler.getClass().getAnnotation(Namespaces.class);
             if (namespaces != null) {
                 for (String ns : namespaces.value()) {
@@ -177,6 +179,52 @@ public class BlueprintContextListener implements ServletContextListener {
         return nsSet;
     }
     
+    private static NamespaceHandler getNamespaceHandler(ClassLoader classLoader, String className) {
+        synchronized (handlerIndex) {
+            Map<String, Reference<NamespaceHandler>> handlers = handlerIndex.get(classLoader);
+            if (handlers == null) {
+                handlers = new HashMap<String, Reference<NamespaceHandler>>();
+                handlerIndex.put(classLoader, handlers);
+            }
+            Reference<NamespaceHandler> reference = handlers.get(className);
+            NamespaceHandler handler = reference != null ? reference.get() : null;
+            if (handler == null) {
+                Object instance = null;
+                try {
+                    instance = classLoader.loadClass(className).newInstance();
+                } catch (Exception ex) {
+                    throw new RuntimeException("Failed to load NamespaceHandler: " + className, ex);
+                }
+                if (!(instance instanceof NamespaceHandler)) {
+                    throw new RuntimeException("Invalid NamespaceHandler: " + className);
+                }
+                handler = (NamespaceHandler) instance;
+                handlers.put(className, new WeakReference<NamespaceHandler>(handler));
+            }
+            return handler;
+        }
+    }
+
+    private static List<URL> getResources(ClassLoader classLoader, String name) throws IOException {
+        synchronized (resourceIndex) {
+            Map<String, List<URL>> resources = resourceIndex.get(classLoader);
+            if (resources == null) {
+                resources = new HashMap<String, List<URL>>();
+                resourceIndex.put(classLoader, resources);
+            }
+            List<URL> urls = resources.get(name);
+            if (urls == null) {
+                urls = new ArrayList<URL>();
+                Enumeration<URL> e = classLoader.getResources(name);
+                while (e.hasMoreElements()) {
+                    urls.add(e.nextElement());
+                }
+                resources.put(name, urls);
+            }
+            return new ArrayList<URL>(urls);
+        }
+    }
+
     public void contextDestroyed(ServletContextEvent event) {
         ServletContext servletContext = event.getServletContext();
         Object container = servletContext.getAttribute(CONTAINER_ATTRIBUTE);
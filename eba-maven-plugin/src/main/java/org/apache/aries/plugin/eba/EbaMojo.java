@@ -19,6 +19,7 @@ package org.apache.aries.plugin.eba;
  * under the License.
  */
 
+import org.apache.aries.plugin.archive.ArchiveFingerprint;
 import org.apache.maven.archiver.PomPropertiesUtil;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
@@ -232,6 +233,8 @@ public class EbaMojo
         
         zipArchiver.setIncludeEmptyDirs( includeEmptyDirs );
         zipArchiver.setCompress( true );
+        // the bundles are already compressed, they are stored rather than deflated again
+        zipArchiver.setRecompressAddedZips( false );
         zipArchiver.setForced( forceCreation );
         // Check if jar file is there and if requested, copy it
         try
@@ -320,7 +323,7 @@ public class EbaMojo
                     targetFile.getParentFile().mkdirs();
 
                     File file = new File( ebaSourceDir, files[j] );
-                    FileUtils.copyFileToDirectory( file, targetFile.getParentFile() );
+                    FileUtils.copyFileIfModified( file, targetFile );
                 }
             }
         }
@@ -389,7 +392,6 @@ public class EbaMojo
                 pomPropertiesUtil.createPomProperties(project, zipArchiver, pomPropertiesFile, forceCreation);
             }
             File ebaFile = new File( outputDirectory, finalName + ".eba" );
-            zipArchiver.setDestFile(ebaFile);
 
             File buildDir = getBuildDir();
             if (buildDir.isDirectory()) {
@@ -400,7 +402,19 @@ public class EbaMojo
             if (sharedResourcesDir.isDirectory()) {
                 zipArchiver.addDirectory(sharedResourcesDir);
             }
-            zipArchiver.createArchive();
+
+            ArchiveFingerprint fingerprint = new ArchiveFingerprint( ebaFile, zipArchiver );
+            if ( !forceCreation && fingerprint.isUpToDate() )
+            {
+                getLog().info( "Archive " + ebaFile.getName() + " is up to date." );
+            }
+            else
+            {
+                fingerprint.invalidate();
+                zipArchiver.setDestFile( ebaFile );
+                zipArchiver.createArchive();
+                fingerprint.write();
+            }
 
             project.getArtifact().setFile( ebaFile );
         }
@@ -516,7 +530,7 @@ public class EbaMojo
         if (appMfFile.exists()) {
             getLog().info( "Using APPLICATION.MF "+ applicationManifestFile);
             File metaInfDir = new File(getBuildDir(), "META-INF");
-            FileUtils.copyFileToDirectory( appMfFile, metaInfDir);
+            FileUtils.copyFileIfModified( appMfFile, new File(metaInfDir, appMfFile.getName()));
         }
     }
     
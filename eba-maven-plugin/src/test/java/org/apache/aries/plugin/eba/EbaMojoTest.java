@@ -24,12 +24,14 @@ import java.io.File;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
-import org.codehaus.plexus.archiver.zip.ZipEntry;
-import org.codehaus.plexus.archiver.zip.ZipFile;
 import org.codehaus.plexus.util.FileUtils;
 
 /**
@@ -97,7 +99,7 @@ public class EbaMojoTest
 
         ZipFile eba = new ZipFile( ebaFile );
 
-        Enumeration entries = eba.getEntries();
+        Enumeration entries = eba.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -146,7 +148,7 @@ public class EbaMojoTest
 
         ZipFile eba = new ZipFile( ebaFile );
 
-        Enumeration entries = eba.getEntries();
+        Enumeration entries = eba.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -196,7 +198,7 @@ public class EbaMojoTest
 
         ZipFile eba = new ZipFile( ebaFile );
 
-        Enumeration entries = eba.getEntries();
+        Enumeration entries = eba.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -243,7 +245,7 @@ public class EbaMojoTest
 
         ZipFile eba = new ZipFile( ebaFile );
 
-        Enumeration entries = eba.getEntries();
+        Enumeration entries = eba.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -319,7 +321,7 @@ public class EbaMojoTest
 
         ZipFile eba = new ZipFile( ebaFile );
 
-        Enumeration entries = eba.getEntries();
+        Enumeration entries = eba.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -367,7 +369,7 @@ public class EbaMojoTest
 
         ZipFile eba = new ZipFile( ebaFile );
 
-        Enumeration entries = eba.getEntries();
+        Enumeration entries = eba.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -416,7 +418,7 @@ public class EbaMojoTest
 
         ZipFile eba = new ZipFile( ebaFile );
 
-        Enumeration entries = eba.getEntries();
+        Enumeration entries = eba.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -425,6 +427,128 @@ public class EbaMojoTest
 
     }
 
+    public void testUnchangedEbaNotRewritten()
+        throws Exception
+    {
+        File testPom = new File( getBasedir(),
+                                 "target/test-classes/unit/basic-eba-test/plugin-config.xml" );
+
+        EbaMojo mojo = ( EbaMojo ) lookupMojo( "eba", testPom );
+
+        setVariableValueToObject( mojo, "forceCreation", Boolean.TRUE );
+
+        String finalName = ( String ) getVariableValueFromObject( mojo, "finalName" );
+
+        String outputDir = ( String ) getVariableValueFromObject( mojo, "outputDirectory" );
+
+        File projectJar = new File( getBasedir(), "src/test/resources/unit/basic-eba-test/target/test-eba.jar" );
+
+        FileUtils.copyFileToDirectory( projectJar, new File( outputDir ) );
+
+        mojo.execute();
+
+        File ebaFile = new File( outputDir, finalName + ".eba" );
+
+        File fingerprintFile = new File( outputDir, finalName + ".eba.fingerprint" );
+
+        assertTrue( ebaFile.exists() );
+
+        assertTrue( fingerprintFile.exists() );
+
+        String fingerprint = FileUtils.fileRead( fingerprintFile );
+
+        Map<String, Long> content = getEntryChecksums( ebaFile );
+
+        long lastModified = 1000000000000L;
+
+        assertTrue( ebaFile.setLastModified( lastModified ) );
+
+        //none of the entries changed, the archive is left as is
+        mojo = ( EbaMojo ) lookupMojo( "eba", testPom );
+
+        mojo.execute();
+
+        assertEquals( lastModified, ebaFile.lastModified() );
+
+        assertEquals( fingerprint, FileUtils.fileRead( fingerprintFile ) );
+
+        //the archive is written again when the fingerprint does not match
+        FileUtils.fileWrite( fingerprintFile.getPath(), "stale" );
+
+        mojo = ( EbaMojo ) lookupMojo( "eba", testPom );
+
+        mojo.execute();
+
+        assertTrue( ebaFile.lastModified() != lastModified );
+
+        assertEquals( fingerprint, FileUtils.fileRead( fingerprintFile ) );
+
+        assertEquals( content, getEntryChecksums( ebaFile ) );
+    }
+
+    public void testBundlesStored()
+        throws Exception
+    {
+        File testPom = new File( getBasedir(),
+                                 "target/test-classes/unit/basic-eba-test/plugin-config.xml" );
+
+        EbaMojo mojo = ( EbaMojo ) lookupMojo( "eba", testPom );
+
+        setVariableValueToObject( mojo, "forceCreation", Boolean.TRUE );
+
+        String finalName = ( String ) getVariableValueFromObject( mojo, "finalName" );
+
+        String outputDir = ( String ) getVariableValueFromObject( mojo, "outputDirectory" );
+
+        File projectJar = new File( getBasedir(), "src/test/resources/unit/basic-eba-test/target/test-eba.jar" );
+
+        FileUtils.copyFileToDirectory( projectJar, new File( outputDir ) );
+
+        mojo.execute();
+
+        ZipFile eba = new ZipFile( new File( outputDir, finalName + ".eba" ) );
+
+        try
+        {
+            //the bundles are already compressed, the other entries are deflated
+            assertEquals( ZipEntry.STORED, eba.getEntry( "maven-artifact01-1.0-SNAPSHOT.jar" ).getMethod() );
+
+            assertEquals( ZipEntry.STORED, eba.getEntry( "maven-artifact02-1.0-SNAPSHOT.jar" ).getMethod() );
+
+            assertEquals( ZipEntry.DEFLATED,
+                          eba.getEntry( "META-INF/maven/org.apache.maven.test/maven-eba-test/pom.xml" ).getMethod() );
+        }
+        finally
+        {
+            eba.close();
+        }
+    }
+
+    private Map<String, Long> getEntryChecksums( File file )
+        throws Exception
+    {
+        Map<String, Long> checksums = new HashMap<String, Long>();
+
+        ZipFile zip = new ZipFile( file );
+
+        try
+        {
+            Enumeration entries = zip.entries();
+
+            while( entries.hasMoreElements() )
+            {
+                ZipEntry entry = ( ZipEntry ) entries.nextElement();
+
+                checksums.put( entry.getName(), Long.valueOf( entry.getCrc() ) );
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return checksums;
+    }
+
     private int getSizeOfExpectedFiles( Enumeration entries, List expectedFiles )
     {
         while( entries.hasMoreElements() )
@@ -0,0 +1,271 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.ejb.openejb.extender;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.aries.util.io.IOUtils;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * The class files of a bundle which the annotation finder has to read: the classes
+ * carrying annotations, the classes inheriting from them and their supertypes. Classes
+ * outside of these hierarchies cannot be returned by an annotation lookup.
+ * <p>
+ * The class files are analysed from their raw bytes, only the constant pool and the
+ * supertypes are read. The list is kept in a file of the extender data area, along
+ * with the revisions of the bundle and of its fragments it was computed for.
+ */
+final class AnnotationIndex {
+
+  private static final String[] ANNOTATION_ATTRIBUTES = {
+    "RuntimeVisibleAnnotations", "RuntimeInvisibleAnnotations",
+    "RuntimeVisibleParameterAnnotations", "RuntimeInvisibleParameterAnnotations"
+  };
+
+  /** The supertypes of a class file and whether it carries annotations */
+  static final class ClassEntry {
+    final String resource;
+    String name;
+    String superName;
+    String[] interfaces = new String[0];
+    boolean annotated;
+
+    ClassEntry(String resource) {
+      this.resource = resource;
+    }
+  }
+
+  private AnnotationIndex() {}
+
+  /**
+   * @return a key identifying the content of the bundle, which changes when the bundle or one
+   *         of its fragments is updated, or when fragments are attached or detached
+   */
+  static String getKey(Bundle bundle) {
+    StringBuilder key = new StringBuilder();
+    key.append(bundle.getBundleId()).append(':').append(bundle.getLastModified()).append(':')
+        .append(bundle.getSymbolicName()).append(':').append(bundle.getVersion());
+
+    BundleWiring wiring = bundle.adapt(BundleWiring.class);
+    List<BundleWire> wires = (wiring == null) ? null : wiring.getProvidedWires(BundleRevision.HOST_NAMESPACE);
+    if (wires != null) {
+      Map<Long, Long> fragments = new TreeMap<Long, Long>();
+      for (BundleWire wire : wires) {
+        Bundle fragment = wire.getRequirerWiring().getBundle();
+        fragments.put(fragment.getBundleId(), fragment.getLastModified());
+      }
+      for (Map.Entry<Long, Long> fragment : fragments.entrySet()) {
+        key.append(';').append(fragment.getKey()).append(':').append(fragment.getValue());
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * Reads the supertypes of a class file. A class file that cannot be understood is
+   * considered annotated, so that the finder reads it.
+   */
+  static ClassEntry parse(String resource, byte[] bytes) {
+    ClassEntry entry = new ClassEntry(resource);
+    try {
+      int cpCount = readUnsignedShort(bytes, 8);
+      String[] utf8 = new String[cpCount];
+      int[] classNames = new int[cpCount];
+      int offset = 10;
+      for (int i = 1; i < cpCount; i++) {
+        int tag = bytes[offset] & 0xFF;
+        switch (tag) {
+          case 1 :
+            int length = readUnsignedShort(bytes, offset + 1);
+            utf8[i] = new String(bytes, offset + 3, length, "UTF-8");
+            offset += 3 + length;
+            break;
+          case 7 :
+            classNames[i] = readUnsignedShort(bytes, offset + 1);
+            offset += 3;
+            break;
+          case 8 : case 16 : case 19 : case 20 :
+            offset += 3;
+            break;
+          case 15 :
+            offset += 4;
+            break;
+          case 3 : case 4 : case 9 : case 10 : case 11 : case 12 : case 17 : case 18 :
+            offset += 5;
+            break;
+          case 5 : case 6 :
+            offset += 9;
+            i++;
+            break;
+          default :
+            throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+        }
+      }
+      for (String s : utf8) {
+        for (String attribute : ANNOTATION_ATTRIBUTES) {
+          if (attribute.equals(s)) {
+            entry.annotated = true;
+          }
+        }
+      }
+      entry.name = utf8[classNames[readUnsignedShort(bytes, offset + 2)]];
+      int superIndex = readUnsignedShort(bytes, offset + 4);
+      entry.superName = (superIndex == 0) ? null : utf8[classNames[superIndex]];
+      int count = readUnsignedShort(bytes, offset + 6);
+      entry.interfaces = new String[count];
+      for (int i = 0; i < count; i++) {
+        entry.interfaces[i] = utf8[classNames[readUnsignedShort(bytes, offset + 8 + 2 * i)]];
+      }
+    } catch (Exception e) {
+      entry.annotated = true;
+    }
+    return entry;
+  }
+
+  /**
+   * @return the resources of the classes the finder has to read, in the order of the entries
+   */
+  static List<String> select(Collection<ClassEntry> entries) {
+    Map<String, ClassEntry> byName = new HashMap<String, ClassEntry>();
+    for (ClassEntry entry : entries) {
+      if (entry.name != null) {
+        byName.put(entry.name, entry);
+      }
+    }
+    Map<ClassEntry, Boolean> inherits = new HashMap<ClassEntry, Boolean>();
+    Map<ClassEntry, Boolean> selected = new HashMap<ClassEntry, Boolean>();
+    for (ClassEntry entry : entries) {
+      if (inheritsAnnotated(entry, byName, inherits)) {
+        selectSupers(entry, byName, selected);
+      }
+    }
+    List<String> result = new ArrayList<String>();
+    for (ClassEntry entry : entries) {
+      if (selected.containsKey(entry)) {
+        result.add(entry.resource);
+      }
+    }
+    return result;
+  }
+
+  private static boolean inheritsAnnotated(ClassEntry entry, Map<String, ClassEntry> byName,
+      Map<ClassEntry, Boolean> inherits) {
+    Boolean b = inherits.get(entry);
+    if (b == null) {
+      // guards against cycles in broken class files
+      inherits.put(entry, Boolean.FALSE);
+      boolean result = entry.annotated || inheritsAnnotated(entry.superName, byName, inherits);
+      for (int i = 0; !!!result && i < entry.interfaces.length; i++) {
+        result = inheritsAnnotated(entry.interfaces[i], byName, inherits);
+      }
+      b = result;
+      inherits.put(entry, b);
+    }
+    return b;
+  }
+
+  private static boolean inheritsAnnotated(String name, Map<String, ClassEntry> byName,
+      Map<ClassEntry, Boolean> inherits) {
+    ClassEntry entry = (name == null) ? null : byName.get(name);
+    return entry != null && inheritsAnnotated(entry, byName, inherits);
+  }
+
+  private static void selectSupers(ClassEntry entry, Map<String, ClassEntry> byName,
+      Map<ClassEntry, Boolean> selected) {
+    if (entry == null || selected.put(entry, Boolean.TRUE) != null) {
+      return;
+    }
+    if (entry.superName != null) {
+      selectSupers(byName.get(entry.superName), byName, selected);
+    }
+    for (String iface : entry.interfaces) {
+      selectSupers(byName.get(iface), byName, selected);
+    }
+  }
+
+  /**
+   * @return the resources stored for this key, or null if the file is missing or
+   *         was written for another revision of the bundle
+   */
+  static List<String> load(File file, String key) {
+    if (file == null || !!!file.isFile()) {
+      return null;
+    }
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      if (!!!key.equals(reader.readLine())) {
+        return null;
+      }
+      List<String> resources = new ArrayList<String>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        resources.add(line);
+      }
+      return resources;
+    } catch (IOException e) {
+      return null;
+    } finally {
+      IOUtils.close(reader);
+    }
+  }
+
+  static void save(File file, String key, List<String> resources) throws IOException {
+    if (file == null) {
+      return;
+    }
+    file.getParentFile().mkdirs();
+    File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+    try {
+      writer.write(key);
+      writer.newLine();
+      for (String resource : resources) {
+        writer.write(resource);
+        writer.newLine();
+      }
+    } finally {
+      IOUtils.close(writer);
+    }
+    file.delete();
+    if (!!!tmp.renameTo(file)) {
+      tmp.delete();
+      throw new IOException("Unable to write " + file);
+    }
+  }
+
+  private static int readUnsignedShort(byte[] b, int offset) {
+    return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.aries.ejb.openejb.extender;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URL;
@@ -64,6 +65,8 @@ public class EJBExtender implements BundleActivator, BundleTrackerCustomizer {
   
   private RecursiveBundleTracker tracker;
   
+  private BundleContext ctx;
+  
   private final ConcurrentMap<Bundle, RunningApplication> runningApps = 
        new ConcurrentHashMap<Bundle, RunningApplication>();
   
@@ -72,6 +75,7 @@ public class EJBExtender implements BundleActivator, BundleTrackerCustomizer {
   
   public void start(BundleContext context) throws Exception {
 
+    ctx = context;
     //Internal setup
     OSGiTransactionManager.init(context);
     AriesProxyService.init(context);
@@ -208,7 +212,7 @@ public class EJBExtender implements BundleActivator, BundleTrackerCustomizer {
       }
       addAltDDs(ejbModule, bundle);
       //We build our own because we can't trust anyone to get the classpath right otherwise!
-      ejbModule.setFinder(new OSGiFinder(bundle));
+      ejbModule.setFinder(new OSGiFinder(bundle, getIndexFile(bundle)));
       
       ConfigurationFactory configurationFactory = new ConfigurationFactory();
       
@@ -335,8 +339,19 @@ public class EJBExtender implements BundleActivator, BundleTrackerCustomizer {
   public void removedBundle(Bundle bundle, BundleEvent event, Object object) {
     if (bundle.getState() == Bundle.STOPPING) {
       stopEJBs(bundle);
+    } else if (bundle.getState() == Bundle.UNINSTALLED) {
+      File index = getIndexFile(bundle);
+      if(index != null)
+        index.delete();
     }
   }
+
+  /**
+   * The classes the finder reads are kept in the data area between restarts of the bundle
+   */
+  private File getIndexFile(Bundle bundle) {
+    return ctx.getDataFile("annotation-index/" + bundle.getBundleId());
+  }
   
   private static final class ValidationProofValidationContext extends ValidationContext {
     private ValidationProofValidationContext(EjbModule mod) {
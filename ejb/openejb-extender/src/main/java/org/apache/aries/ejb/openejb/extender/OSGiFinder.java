@@ -16,9 +16,22 @@
  */
 package org.apache.aries.ejb.openejb.extender;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.aries.ejb.openejb.extender.AnnotationIndex.ClassEntry;
+import org.apache.aries.util.io.IOUtils;
 import org.apache.xbean.finder.AbstractFinder;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.wiring.BundleWiring;
@@ -27,22 +40,118 @@ import org.slf4j.LoggerFactory;
 
 public class OSGiFinder extends AbstractFinder {
 
+  private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+
   private final Bundle b;
 
   private static final Logger logger = LoggerFactory.getLogger(OSGiFinder.class);
   
   public OSGiFinder(Bundle bundle) {
+    this(bundle, null);
+  }
+
+  /**
+   * @param indexFile where the classes to read are kept between restarts of the bundle, may be null
+   */
+  public OSGiFinder(Bundle bundle, File indexFile) {
     b = bundle;
     
-    for(String resource : bundle.adapt(BundleWiring.class).
-        listResources("/", "*.class", BundleWiring.LISTRESOURCES_RECURSE)) {
-      
+    long start = System.currentTimeMillis();
+    String key = AnnotationIndex.getKey(bundle);
+    List<String> resources = AnnotationIndex.load(indexFile, key);
+    boolean reused = resources != null;
+    
+    int scanned = 0;
+    if (!!!reused) {
+      List<ClassEntry> entries = parseClasses(bundle.adapt(BundleWiring.class).
+          listResources("/", "*.class", BundleWiring.LISTRESOURCES_RECURSE));
+      scanned = entries.size();
+      resources = AnnotationIndex.select(entries);
+      try {
+        AnnotationIndex.save(indexFile, key, resources);
+      } catch (IOException e) {
+        logger.warn("Unable to save the annotation index of bundle " + bundle.getSymbolicName(), e);
+      }
+    }
+    
+    //The finder itself is not thread safe, the selected classes are read one at a time
+    int read = 0;
+    for (String resource : resources) {
+      URL url = getResource(resource);
+      if (url == null) {
+        logger.warn("Error processing class file " + resource);
+        continue;
+      }
+      InputStream in = null;
       try {
-        readClassDef(getResource(resource).openStream());
+        in = url.openStream();
+        readClassDef(in);
+        read++;
       } catch (IOException e) {
         logger.warn("Error processing class file " + resource);
+      } finally {
+        IOUtils.close(in);
       }
     }
+    
+    logger.info("Scanned bundle " + bundle.getSymbolicName() + " for annotations in " 
+        + (System.currentTimeMillis() - start) + " ms, " + read + " class files read"
+        + (reused ? " from the saved index" : " out of " + scanned));
+  }
+
+  /**
+   * Parses the class files of the bundle on as many threads as there are processors.
+   * The bytes of a class file are released as soon as it has been parsed.
+   */
+  private List<ClassEntry> parseClasses(Collection<String> resources) {
+    List<Callable<ClassEntry>> tasks = new ArrayList<Callable<ClassEntry>>();
+    for (final String resource : resources) {
+      tasks.add(new Callable<ClassEntry>() {
+        public ClassEntry call() {
+          byte[] bytes = readResource(resource);
+          return (bytes == null) ? null : AnnotationIndex.parse(resource, bytes);
+        }
+      });
+    }
+    
+    List<ClassEntry> entries = new ArrayList<ClassEntry>(tasks.size());
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, Math.max(1, tasks.size())));
+    try {
+      for (Future<ClassEntry> f : executor.invokeAll(tasks)) {
+        ClassEntry entry = f.get();
+        if (entry != null) {
+          entries.add(entry);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while scanning bundle " + b.getSymbolicName(), e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Unable to scan bundle " + b.getSymbolicName(), e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    return entries;
+  }
+
+  private byte[] readResource(String resource) {
+    URL url = getResource(resource);
+    if (url == null) {
+      logger.warn("Error processing class file " + resource);
+      return null;
+    }
+    InputStream in = null;
+    try {
+      in = url.openStream();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      IOUtils.copy(in, out);
+      return out.toByteArray();
+    } catch (IOException e) {
+      logger.warn("Error processing class file " + resource);
+      return null;
+    } finally {
+      IOUtils.close(in);
+    }
   }
 
   @Override
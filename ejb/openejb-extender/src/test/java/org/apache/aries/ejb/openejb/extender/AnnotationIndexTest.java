@@ -0,0 +1,221 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.ejb.openejb.extender;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.aries.ejb.openejb.extender.AnnotationIndex.ClassEntry;
+import org.apache.aries.unittest.mocks.MethodCall;
+import org.apache.aries.unittest.mocks.Skeleton;
+import org.apache.aries.util.io.IOUtils;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class AnnotationIndexTest {
+
+  @Deprecated
+  public static class AnnotatedBase {}
+
+  public static class PlainSubclass extends AnnotatedBase {}
+
+  public static class PlainBase {}
+
+  public static class AnnotatedSubclass extends PlainBase {
+    @Deprecated
+    public void method() {}
+  }
+
+  @Deprecated
+  public interface AnnotatedInterface {}
+
+  public static class Implementation implements Serializable, AnnotatedInterface {
+    private static final long serialVersionUID = 1L;
+  }
+
+  public static class Unrelated {
+    static final long LONG = 1234567890123L;
+    static final double DOUBLE = 1.5d;
+    static final String STRING = "constant";
+  }
+
+  @Test
+  public void testParse() throws Exception {
+    ClassEntry base = parse(AnnotatedBase.class);
+    assertEquals(internalName(AnnotatedBase.class), base.name);
+    assertEquals("java/lang/Object", base.superName);
+    assertTrue(base.annotated);
+
+    ClassEntry subclass = parse(PlainSubclass.class);
+    assertEquals(internalName(PlainSubclass.class), subclass.name);
+    assertEquals(internalName(AnnotatedBase.class), subclass.superName);
+    assertFalse(subclass.annotated);
+
+    // annotations on members count too
+    assertTrue(parse(AnnotatedSubclass.class).annotated);
+
+    ClassEntry implementation = parse(Implementation.class);
+    assertArrayEquals(new String[] {"java/io/Serializable", internalName(AnnotatedInterface.class)},
+        implementation.interfaces);
+    assertFalse(implementation.annotated);
+
+    ClassEntry iface = parse(AnnotatedInterface.class);
+    assertEquals("java/lang/Object", iface.superName);
+    assertTrue(iface.annotated);
+  }
+
+  @Test
+  public void testParseLongAndDoubleConstants() throws Exception {
+    // long and double constants take two entries of the constant pool
+    ClassEntry unrelated = parse(Unrelated.class);
+    assertEquals(internalName(Unrelated.class), unrelated.name);
+    assertEquals("java/lang/Object", unrelated.superName);
+    assertFalse(unrelated.annotated);
+  }
+
+  @Test
+  public void testParseInvalidClassFile() {
+    ClassEntry entry = AnnotationIndex.parse("Broken.class", new byte[] {(byte) 0xCA, (byte) 0xFE, 0, 1});
+    assertEquals("Broken.class", entry.resource);
+    assertTrue(entry.annotated);
+  }
+
+  @Test
+  public void testSelect() throws Exception {
+    List<ClassEntry> entries = new ArrayList<ClassEntry>();
+    for (Class<?> c : Arrays.asList(Unrelated.class, PlainSubclass.class, AnnotatedBase.class,
+        PlainBase.class, AnnotatedSubclass.class, Implementation.class, AnnotatedInterface.class)) {
+      entries.add(parse(c));
+    }
+
+    assertEquals(Arrays.asList(resource(PlainSubclass.class), resource(AnnotatedBase.class),
+        resource(PlainBase.class), resource(AnnotatedSubclass.class), resource(Implementation.class),
+        resource(AnnotatedInterface.class)), AnnotationIndex.select(entries));
+  }
+
+  @Test
+  public void testSelectPlainSubclassOfAnnotatedBase() throws Exception {
+    // an annotation lookup can return a subclass of an annotated class, which must be read
+    // even though it does not carry any annotation itself
+    List<ClassEntry> entries = Arrays.asList(parse(PlainSubclass.class), parse(AnnotatedBase.class));
+    assertEquals(Arrays.asList(resource(PlainSubclass.class), resource(AnnotatedBase.class)),
+        AnnotationIndex.select(entries));
+
+    // unless the base class is not part of the bundle
+    assertEquals(Collections.emptyList(),
+        AnnotationIndex.select(Collections.singletonList(parse(PlainSubclass.class))));
+  }
+
+  @Test
+  public void testSelectCycle() {
+    ClassEntry a = new ClassEntry("A.class");
+    a.name = "A";
+    a.superName = "B";
+    ClassEntry b = new ClassEntry("B.class");
+    b.name = "B";
+    b.superName = "A";
+    assertEquals(Collections.emptyList(), AnnotationIndex.select(Arrays.asList(a, b)));
+
+    b.annotated = true;
+    assertEquals(Arrays.asList("A.class", "B.class"), AnnotationIndex.select(Arrays.asList(a, b)));
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    File file = File.createTempFile("annotation-index", ".tmp");
+    try {
+      List<String> resources = Arrays.asList("a/A.class", "b/B.class");
+      AnnotationIndex.save(file, "1:2:test:1.0.0", resources);
+
+      assertEquals(resources, AnnotationIndex.load(file, "1:2:test:1.0.0"));
+      assertNull(AnnotationIndex.load(file, "1:3:test:1.0.0"));
+
+      AnnotationIndex.save(file, "1:3:test:1.0.0", Collections.<String>emptyList());
+      assertEquals(Collections.emptyList(), AnnotationIndex.load(file, "1:3:test:1.0.0"));
+      assertFalse(new File(file.getParentFile(), file.getName() + ".tmp").exists());
+    } finally {
+      file.delete();
+    }
+    assertNull(AnnotationIndex.load(file, "1:3:test:1.0.0"));
+    assertNull(AnnotationIndex.load(null, "1:3:test:1.0.0"));
+  }
+
+  @Test
+  public void testKeyChangesWithFragments() {
+    Bundle fragment = Skeleton.newMock(Bundle.class);
+    Skeleton.getSkeleton(fragment).setReturnValue(new MethodCall(Bundle.class, "getBundleId"), 7L);
+    Skeleton.getSkeleton(fragment).setReturnValue(new MethodCall(Bundle.class, "getLastModified"), 100L);
+    BundleWiring fragmentWiring = Skeleton.newMock(BundleWiring.class);
+    Skeleton.getSkeleton(fragmentWiring).setReturnValue(new MethodCall(BundleWiring.class, "getBundle"), fragment);
+    BundleWire wire = Skeleton.newMock(BundleWire.class);
+    Skeleton.getSkeleton(wire).setReturnValue(new MethodCall(BundleWire.class, "getRequirerWiring"), fragmentWiring);
+
+    BundleWiring wiring = Skeleton.newMock(BundleWiring.class);
+    Skeleton.getSkeleton(wiring).setReturnValue(new MethodCall(BundleWiring.class, "getProvidedWires",
+        BundleRevision.HOST_NAMESPACE), Collections.<BundleWire>emptyList());
+    Bundle bundle = Skeleton.newMock(Bundle.class);
+    Skeleton skel = Skeleton.getSkeleton(bundle);
+    skel.setReturnValue(new MethodCall(Bundle.class, "getBundleId"), 5L);
+    skel.setReturnValue(new MethodCall(Bundle.class, "getLastModified"), 42L);
+    skel.setReturnValue(new MethodCall(Bundle.class, "getSymbolicName"), "test.ejbs");
+    skel.setReturnValue(new MethodCall(Bundle.class, "getVersion"), new Version("1.0.0"));
+    skel.setReturnValue(new MethodCall(Bundle.class, "adapt", Class.class), wiring);
+
+    String key = AnnotationIndex.getKey(bundle);
+    assertEquals("5:42:test.ejbs:1.0.0", key);
+
+    Skeleton.getSkeleton(wiring).setReturnValue(new MethodCall(BundleWiring.class, "getProvidedWires",
+        BundleRevision.HOST_NAMESPACE), Collections.singletonList(wire));
+    String withFragment = AnnotationIndex.getKey(bundle);
+    assertEquals("5:42:test.ejbs:1.0.0;7:100", withFragment);
+
+    Skeleton.getSkeleton(fragment).setReturnValue(new MethodCall(Bundle.class, "getLastModified"), 200L);
+    assertFalse(withFragment.equals(AnnotationIndex.getKey(bundle)));
+  }
+
+  private static ClassEntry parse(Class<?> c) throws IOException {
+    InputStream in = c.getClassLoader().getResourceAsStream(resource(c));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IOUtils.copy(in, out);
+    return AnnotationIndex.parse(resource(c), out.toByteArray());
+  }
+
+  private static String resource(Class<?> c) {
+    return internalName(c) + ".class";
+  }
+
+  private static String internalName(Class<?> c) {
+    return c.getName().replace('.', '/');
+  }
+}
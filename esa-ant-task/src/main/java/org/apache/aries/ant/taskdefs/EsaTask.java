@@ -22,12 +22,15 @@ package org.apache.aries.ant.taskdefs;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
@@ -36,6 +39,8 @@ import org.apache.tools.ant.taskdefs.Zip;
 import org.apache.tools.ant.types.Resource;
 import org.apache.tools.ant.types.ZipFileSet;
 import org.apache.tools.ant.util.FileUtils;
+import org.apache.tools.zip.ZipEntry;
+import org.apache.tools.zip.ZipExtraField;
 import org.apache.tools.zip.ZipOutputStream;
 
 /**
@@ -46,6 +51,9 @@ import org.apache.tools.zip.ZipOutputStream;
  */
 public class EsaTask extends Zip {
 
+	/* zip stores times with a granularity of two seconds, see Zip */
+	private static final long ROUNDUP_MILLIS = 1999;
+
 	/* name of the subsystem */
 	private String symbolicName;
 
@@ -70,6 +78,9 @@ public class EsaTask extends Zip {
 	/* Used for dry runs */
 	protected boolean skipWriting = false;
 
+	/* whether the modification times are rounded up, as Zip does */
+	private boolean roundUp = true;
+
 	/* Used build the subsystem content header */
 	private StringBuilder subsystemContent = new StringBuilder(
 		Constants.SUBSYSTEM_CONTENT + ":");
@@ -149,12 +160,31 @@ public class EsaTask extends Zip {
 		this.skipWriting = skipWriting;
 	}
 
+	@Override
+	public void setRoundUp(boolean roundUp) {
+
+		super.setRoundUp(roundUp);
+		this.roundUp = roundUp;
+	}
+
 	@Override
 	protected void zipFile(
 		File file, ZipOutputStream zOut, String vPath, int mode)
 		throws IOException {
 
-		super.zipFile(file, zOut, vPath, mode);
+		/*
+		 * bundles are already compressed, deflating them again only costs
+		 * time; duplicates, updates and dry runs are left to Zip
+		 */
+		if (isCompress() && !super.skipWriting && !isInUpdateMode() &&
+			!entries.containsKey(vPath) && !file.equals(getDestFile()) &&
+			isZipArchive(file)) {
+
+			zipStoredFile(file, zOut, vPath, mode);
+		}
+		else {
+			super.zipFile(file, zOut, vPath, mode);
+		}
 
 		/*
 		 * this handling is only for OSGi bundles and we need to exclude other
@@ -163,28 +193,134 @@ public class EsaTask extends Zip {
 		if (file.isFile() &&
 			!Constants.SUBSYSTEM_MANIFEST_NAME.equalsIgnoreCase(vPath)) {
 
-			JarFile bundleFile = new JarFile(file);
+			String strSubsystemContentEntry = getSubsystemContentEntry(file);
 
-			Manifest jarManifest = bundleFile.getManifest();
+			if (strSubsystemContentEntry != null) {
+
+				subsystemContent.append(strSubsystemContentEntry);
+				subsystemContent.append(",");
+			}
+		}
+	}
 
-			if (jarManifest != null) {
+	/**
+	 * Adds a file to the archive without compressing it, the size and the
+	 * checksum of a stored entry have to be known before it is written.
+	 */
+	private void zipStoredFile(
+		File file, ZipOutputStream zOut, String vPath, int mode)
+		throws IOException {
 
-				Attributes mainAttributes = jarManifest.getMainAttributes();
+		log("adding stored entry " + vPath, Project.MSG_VERBOSE);
 
-				String bundleSymbolicName =
-					mainAttributes.getValue(Constants.BUNDLE_SYMBOLICNAME);
+		entries.put(vPath, vPath);
 
-				String bundleVersion =
-					mainAttributes.getValue(Constants.BUNDLE_VERSION);
+		ZipEntry ze = new ZipEntry(vPath);
+		ze.setTime(file.lastModified() + (roundUp ? ROUNDUP_MILLIS : 0));
+		ze.setMethod(ZipEntry.STORED);
+		ze.setSize(file.length());
+		ze.setCrc(getCrc(file));
+		ze.setUnixMode(mode);
 
-				bundleFile.close();
+		ZipExtraField[] extra = getCurrentExtraFields();
 
-				String strSubsystemContentEntry =
-					bundleSymbolicName + ";version=" + bundleVersion;
+		if (extra != null) {
+			ze.setExtraFields(extra);
+		}
 
-				subsystemContent.append(strSubsystemContentEntry);
-				subsystemContent.append(",");
+		zOut.putNextEntry(ze);
+
+		InputStream in = new FileInputStream(file);
+
+		try {
+			byte[] buffer = new byte[8192];
+			int count;
+
+			while ((count = in.read(buffer)) != -1) {
+				zOut.write(buffer, 0, count);
+			}
+		}
+		finally {
+			FileUtils.close(in);
+		}
+	}
+
+	private static long getCrc(File file)
+		throws IOException {
+
+		CRC32 crc = new CRC32();
+
+		InputStream in = new FileInputStream(file);
+
+		try {
+			byte[] buffer = new byte[8192];
+			int count;
+
+			while ((count = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, count);
+			}
+		}
+		finally {
+			FileUtils.close(in);
+		}
+
+		return crc.getValue();
+	}
+
+	/**
+	 * @return whether the file starts with the header of a zip entry, as
+	 *         bundles and other archives do
+	 */
+	private static boolean isZipArchive(File file)
+		throws IOException {
+
+		byte[] header = new byte[4];
+
+		InputStream in = new FileInputStream(file);
+
+		try {
+			if (in.read(header) != header.length) {
+				return false;
+			}
+		}
+		finally {
+			FileUtils.close(in);
+		}
+
+		return header[0] == 'P' && header[1] == 'K' && header[2] == 3 &&
+			header[3] == 4;
+	}
+
+	/**
+	 * @param file
+	 *            the bundle
+	 * @return the Subsystem-Content entry of the bundle, null if it has no
+	 *         manifest
+	 */
+	private String getSubsystemContentEntry(File file)
+		throws IOException {
+
+		JarFile bundleFile = new JarFile(file);
+
+		try {
+			Manifest jarManifest = bundleFile.getManifest();
+
+			if (jarManifest == null) {
+				return null;
 			}
+
+			Attributes mainAttributes = jarManifest.getMainAttributes();
+
+			String bundleSymbolicName =
+				mainAttributes.getValue(Constants.BUNDLE_SYMBOLICNAME);
+
+			String bundleVersion =
+				mainAttributes.getValue(Constants.BUNDLE_VERSION);
+
+			return bundleSymbolicName + ";version=" + bundleVersion;
+		}
+		finally {
+			bundleFile.close();
 		}
 	}
 
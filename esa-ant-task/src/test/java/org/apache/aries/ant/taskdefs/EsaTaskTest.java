@@ -19,6 +19,7 @@
 
 package org.apache.aries.ant.taskdefs;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -27,6 +28,7 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -156,4 +158,63 @@ public class EsaTaskTest {
 			fail(e.getMessage());
 		}
 	}
+
+	@Test
+	public void generateArchiveWithStoredBundles()
+		throws IOException {
+
+		File srcDir = new File("../src/test/resources");
+
+		File destfile = new File("target/esa-test-stored.esa");
+
+		if (destfile.exists()) {
+			destfile.delete();
+		}
+
+		EsaTask esaTask = new EsaTask();
+
+		Project testProject = new Project();
+
+		esaTask.setProject(testProject);
+
+		FileSet fileSet = new FileSet();
+		fileSet.setDir(srcDir);
+		fileSet.setIncludes("*.jar");
+
+		esaTask.addFileset(fileSet);
+		esaTask.setDestFile(destfile);
+		esaTask.setSymbolicName("esatask-test");
+		esaTask.setGenerateManifest(true);
+		esaTask.execute();
+
+		ZipFile esaArchive = new ZipFile(destfile);
+
+		try {
+			// the bundles are already compressed, the manifest is deflated
+			ZipEntry bundle = esaArchive.getEntry("bundle1.jar");
+			assertEquals(ZipEntry.STORED, bundle.getMethod());
+			assertEquals(new File(srcDir, "bundle1.jar").length(), bundle.getSize());
+			assertEquals(
+				ZipEntry.STORED, esaArchive.getEntry("bundle2.jar").getMethod());
+			assertEquals(
+				ZipEntry.DEFLATED,
+				esaArchive.getEntry("OSGI-INF/SUBSYSTEM.MF").getMethod());
+
+			// reading the entries checks their sizes and checksums
+			for (String entry : new String[] {"bundle1.jar", "bundle2.jar"}) {
+				InputStream in =
+					esaArchive.getInputStream(esaArchive.getEntry(entry));
+				try {
+					while (in.read() != -1) {
+					}
+				}
+				finally {
+					in.close();
+				}
+			}
+		}
+		finally {
+			esaArchive.close();
+		}
+	}
 }
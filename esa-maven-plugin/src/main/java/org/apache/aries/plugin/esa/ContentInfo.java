@@ -19,13 +19,8 @@
 
 package org.apache.aries.plugin.esa;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.Map;
 import java.util.jar.Attributes;
-import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import aQute.lib.osgi.Analyzer;
 
@@ -74,32 +69,21 @@ public class ContentInfo {
         return line;
     }
 
-    public static ContentInfo create(Artifact artifact, Log log) {
-        ZipFile zip = null;
+    public static ContentInfo create(Artifact artifact, ManifestCache manifestCache, Log log) {
         try {
-            zip = new ZipFile(artifact.getFile());
-            ZipEntry entry = zip.getEntry("META-INF/MANIFEST.MF");
-            if (entry != null) {
-                Manifest mf = getManifest(zip, entry);
-                return handleManifest(artifact, mf);
-            } else {
+            ManifestCache.Entry entry = manifestCache.get(artifact.getFile());
+            if (ManifestCache.MANIFEST.equals(entry.getSource())) {
+                return handleManifest(artifact, entry.getAttributes());
+            } else if (ManifestCache.SUBSYSTEM.equals(entry.getSource())) {
                 // no manifest.mf
-                entry = zip.getEntry("OSGI-INF/SUBSYSTEM.MF");
-                if (entry != null) {
-                    Manifest mf = getManifest(zip, entry);
-                    return handleSubsystem(artifact, mf);
-                } else {
-                    // and no subsystem.mf
-                    return handleUnknown(artifact);
-                }
+                return handleSubsystem(artifact, entry.getAttributes());
+            } else {
+                // and no subsystem.mf
+                return handleUnknown(artifact);
             }
         } catch (Exception e) {
             log.warn("Error creating content information", e);
             return null;
-        } finally {
-            if (zip != null) {
-               try { zip.close(); } catch (IOException ignore) {}
-            }
         }
     }
 
@@ -111,11 +95,9 @@ public class ContentInfo {
         return info;
     }
 
-    private static ContentInfo handleSubsystem(Artifact artifact, Manifest mf) {
+    private static ContentInfo handleSubsystem(Artifact artifact, Attributes mainAttributes) {
         ContentInfo info = new ContentInfo();
 
-        Attributes mainAttributes = mf.getMainAttributes();
-
         String subsystemSymbolicName = mainAttributes.getValue(Constants.SUBSYSTEM_SYMBOLICNAME);
         if (subsystemSymbolicName != null) {
             Map<String, ?> header = Analyzer.parseHeader(subsystemSymbolicName, null);
@@ -139,9 +121,7 @@ public class ContentInfo {
         return info;
     }
 
-    private static ContentInfo handleManifest(Artifact artifact, Manifest mf) {
-        Attributes mainAttributes = mf.getMainAttributes();
-
+    private static ContentInfo handleManifest(Artifact artifact, Attributes mainAttributes) {
         String bundleSymbolicName = mainAttributes.getValue(Constants.BUNDLE_SYMBOLICNAME);
         if (bundleSymbolicName == null) {
             // not a bundle
@@ -165,17 +145,4 @@ public class ContentInfo {
             return info;
         }
     }
-
-    private static Manifest getManifest(ZipFile zip, ZipEntry entry) throws IOException {
-        InputStream in = null;
-        try {
-            in = zip.getInputStream(entry);
-            Manifest mf = new Manifest(in);
-            return mf;
-        } finally {
-            if (in != null) {
-                try { in.close(); } catch (IOException ignore) {}
-            }
-        }
-    }
 }
@@ -19,6 +19,7 @@ package org.apache.aries.plugin.esa;
  * under the License.
  */
 
+import org.apache.aries.plugin.archive.ArchiveFingerprint;
 import org.apache.maven.archiver.PomPropertiesUtil;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
@@ -30,10 +31,12 @@ import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -173,6 +176,14 @@ public class EsaMojo
      */
     private boolean forceCreation;
 
+    /**
+     * The file keeping the manifest headers of the content between builds, so that
+     * the content is not opened again to generate the subsystem manifest.
+     *
+     * @parameter expression="${project.build.directory}/esa-manifest-cache.properties"
+     */
+    private File manifestCacheFile;
+
     /**
      * Define which bundles to include in the archive.
      *   none - no bundles are included 
@@ -283,7 +294,7 @@ public class EsaMojo
                     targetFile.getParentFile().mkdirs();
 
                     File file = new File( esaSourceDir, files[j] );
-                    FileUtils.copyFileToDirectory( file, targetFile.getParentFile() );
+                    FileUtils.copyFileIfModified( file, targetFile );
                 }
             }
         }
@@ -384,6 +395,8 @@ public class EsaMojo
         
         zipArchiver.setIncludeEmptyDirs( includeEmptyDirs );
         zipArchiver.setCompress( true );
+        // the bundles are already compressed, they are stored rather than deflated again
+        zipArchiver.setRecompressAddedZips( false );
         zipArchiver.setForced( forceCreation );        
     }
     
@@ -412,6 +425,7 @@ public class EsaMojo
             artifacts = project.getDependencyArtifacts();                   
             
             artifacts = selectArtifacts(artifacts);
+            ManifestCache manifestCache = loadManifestCache();
             Iterator<Artifact> iter = artifacts.iterator();
 
             FileUtils.fileAppend(fileName, Constants.SUBSYSTEM_CONTENT + ": ");
@@ -419,7 +433,7 @@ public class EsaMojo
             while (iter.hasNext()) {
                 Artifact artifact = iter.next();
                 order++;
-                ContentInfo info = ContentInfo.create(artifact, getLog());
+                ContentInfo info = ContentInfo.create(artifact, manifestCache, getLog());
                 if (info == null) {
                     continue;
                 }
@@ -434,6 +448,7 @@ public class EsaMojo
             }
 
             FileUtils.fileAppend(fileName, "\n");
+            saveManifestCache(manifestCache, artifacts);
 
             Iterator<Map.Entry<?, ?>> instructionIter = instructions.entrySet().iterator();
             while(instructionIter.hasNext()) {
@@ -453,6 +468,28 @@ public class EsaMojo
 
     }
 
+    private ManifestCache loadManifestCache() {
+        ManifestCache manifestCache = new ManifestCache();
+        try {
+            manifestCache.load(manifestCacheFile);
+        } catch (IOException e) {
+            getLog().debug("Ignoring the manifest cache " + manifestCacheFile, e);
+        }
+        return manifestCache;
+    }
+
+    private void saveManifestCache(ManifestCache manifestCache, Set<Artifact> artifacts) {
+        List<File> files = new ArrayList<File>();
+        for (Artifact artifact : artifacts) {
+            files.add(artifact.getFile());
+        }
+        try {
+            manifestCache.save(manifestCacheFile, files);
+        } catch (IOException e) {
+            getLog().warn("Unable to write the manifest cache " + manifestCacheFile, e);
+        }
+    }
+
     // The maven2OsgiConverter assumes the artifact is a jar so we need our own
     // This uses the same fallback scheme as the converter
     private String getSubsystemSymbolicName(Artifact artifact) {
@@ -512,7 +549,7 @@ public class EsaMojo
         if (appMfFile.exists()) {
             getLog().info( "Using SUBSYSTEM.MF "+ subsystemManifestFile);
             File osgiInfDir = new File(getBuildDir(), "OSGI-INF");
-            FileUtils.copyFileToDirectory( appMfFile, osgiInfDir);
+            FileUtils.copyFileIfModified( appMfFile, new File(osgiInfDir, appMfFile.getName()));
         }
     }
     
@@ -557,10 +594,19 @@ public class EsaMojo
         try
         {
             File esaFile = new File( outputDirectory, finalName + ".esa" );
-            zipArchiver.setDestFile(esaFile);
-
 
-            zipArchiver.createArchive();
+            ArchiveFingerprint fingerprint = new ArchiveFingerprint( esaFile, zipArchiver );
+            if ( !forceCreation && fingerprint.isUpToDate() )
+            {
+                getLog().info( "Archive " + esaFile.getName() + " is up to date." );
+            }
+            else
+            {
+                fingerprint.invalidate();
+                zipArchiver.setDestFile( esaFile );
+                zipArchiver.createArchive();
+                fingerprint.write();
+            }
 
             project.getArtifact().setFile( esaFile );
         }
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.aries.plugin.esa;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The manifest headers of the archives listed in a Subsystem-Content header. The headers
+ * are keyed by the path, the length and the modification time of the archive, so that an
+ * archive is only opened again when it changes. A cache is created for each execution of the
+ * mojo and can be stored in a properties file to be reused by the next build.
+ */
+public class ManifestCache {
+
+    /** the archive has a META-INF/MANIFEST.MF */
+    public static final String MANIFEST = "manifest";
+    /** the archive has no META-INF/MANIFEST.MF but an OSGI-INF/SUBSYSTEM.MF */
+    public static final String SUBSYSTEM = "subsystem";
+    /** the archive has none of the manifests */
+    public static final String NONE = "none";
+
+    private static final String[] HEADERS = {
+        Constants.BUNDLE_SYMBOLICNAME, Constants.BUNDLE_VERSION, Constants.FRAGMENT_HOST,
+        Constants.SUBSYSTEM_SYMBOLICNAME, Constants.SUBSYSTEM_VERSION, Constants.SUBSYSTEM_TYPE
+    };
+
+    private static final String SOURCE = "source";
+    private static final String STAMP = "stamp";
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    public static class Entry {
+        private final String stamp;
+        private final String source;
+        private final Attributes attributes;
+
+        Entry(String stamp, String source, Attributes attributes) {
+            this.stamp = stamp;
+            this.source = source;
+            this.attributes = attributes;
+        }
+
+        /**
+         * @return which manifest the headers were read from: {@link ManifestCache#MANIFEST}, {@link ManifestCache#SUBSYSTEM} or {@link ManifestCache#NONE}
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * @return the headers used to describe the content, empty for {@link ManifestCache#NONE}
+         */
+        public Attributes getAttributes() {
+            return attributes;
+        }
+    }
+
+    /**
+     * @return the manifest headers of the archive, read from the archive if it changed since they were cached
+     */
+    public Entry get(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        String stamp = file.length() + ":" + file.lastModified();
+        Entry entry = entries.get(path);
+        if (entry == null || !stamp.equals(entry.stamp)) {
+            entry = read(file, stamp);
+            entries.put(path, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Adds the headers stored by {@link #save(File, Iterable)} to the cache. The headers of the archives
+     * which changed since are read again when they are needed.
+     */
+    public void load(File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        for (String key : props.stringPropertyNames()) {
+            if (!key.endsWith("." + STAMP)) {
+                continue;
+            }
+            String path = key.substring(0, key.length() - STAMP.length() - 1);
+            String source = props.getProperty(path + "." + SOURCE);
+            if (source == null || entries.containsKey(path)) {
+                continue;
+            }
+            Attributes attributes = new Attributes();
+            for (String header : HEADERS) {
+                String value = props.getProperty(path + "." + header);
+                if (value != null) {
+                    attributes.putValue(header, value);
+                }
+            }
+            entries.put(path, new Entry(props.getProperty(key), source, attributes));
+        }
+    }
+
+    /**
+     * Stores the headers of the given archives.
+     */
+    public void save(File file, Iterable<File> archives) throws IOException {
+        if (file == null) {
+            return;
+        }
+        Properties props = new Properties();
+        for (File archive : archives) {
+            Entry entry = (archive == null) ? null : entries.get(archive.getAbsolutePath());
+            if (entry == null) {
+                continue;
+            }
+            String path = archive.getAbsolutePath();
+            props.setProperty(path + "." + STAMP, entry.stamp);
+            props.setProperty(path + "." + SOURCE, entry.source);
+            for (String header : HEADERS) {
+                String value = entry.attributes.getValue(header);
+                if (value != null) {
+                    props.setProperty(path + "." + header, value);
+                }
+            }
+        }
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "Manifest headers of the subsystem content");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Entry read(File file, String stamp) throws IOException {
+        ZipFile zip = new ZipFile(file);
+        try {
+            String source = MANIFEST;
+            ZipEntry entry = zip.getEntry("META-INF/MANIFEST.MF");
+            if (entry == null) {
+                source = SUBSYSTEM;
+                entry = zip.getEntry("OSGI-INF/SUBSYSTEM.MF");
+            }
+            Attributes attributes = new Attributes();
+            if (entry == null) {
+                source = NONE;
+            } else {
+                InputStream in = zip.getInputStream(entry);
+                try {
+                    Attributes main = new Manifest(in).getMainAttributes();
+                    for (String header : HEADERS) {
+                        String value = main.getValue(header);
+                        if (value != null) {
+                            attributes.putValue(header, value);
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            return new Entry(stamp, source, attributes);
+        } finally {
+            try { zip.close(); } catch (IOException ignore) {}
+        }
+    }
+}
@@ -25,16 +25,18 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import aQute.lib.osgi.Analyzer;
 
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
-import org.codehaus.plexus.archiver.zip.ZipEntry;
-import org.codehaus.plexus.archiver.zip.ZipFile;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * @author <a href="mailto:aramirez@apache.org">Allan Ramirez</a>
@@ -106,7 +108,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -155,7 +157,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -206,7 +208,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -232,7 +234,7 @@ public class EsaMojoTest
 
     private void testForHeader(ZipFile esa, String header, String exactEntry) throws Exception {
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
 
         // Test Use-Bundle & Subsytem-Type inclusion
@@ -292,7 +294,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -340,7 +342,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -405,7 +407,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -454,7 +456,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -497,7 +499,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile( esaFile );
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue( entries.hasMoreElements() );
 
@@ -548,7 +550,7 @@ public class EsaMojoTest
 
         ZipFile esa = new ZipFile(esaFile);
 
-        Enumeration entries = esa.getEntries();
+        Enumeration entries = esa.entries();
 
         assertTrue(entries.hasMoreElements());
 
@@ -581,6 +583,120 @@ public class EsaMojoTest
         assertEquals("feature", attributes.get("type"));
     }
 
+    public void testUnchangedEsaNotRewritten()
+        throws Exception
+    {
+        File testPom = new File( getBasedir(),
+                                 "target/test-classes/unit/basic-esa-test/plugin-config.xml" );
+
+        EsaMojo mojo = ( EsaMojo ) lookupMojo( "esa", testPom );
+
+        setVariableValueToObject( mojo, "forceCreation", Boolean.TRUE );
+
+        String finalName = ( String ) getVariableValueFromObject( mojo, "finalName" );
+
+        String outputDir = ( String ) getVariableValueFromObject( mojo, "outputDirectory" );
+
+        mojo.execute();
+
+        File esaFile = new File( outputDir, finalName + ".esa" );
+
+        File fingerprintFile = new File( outputDir, finalName + ".esa.fingerprint" );
+
+        assertTrue( esaFile.exists() );
+
+        assertTrue( fingerprintFile.exists() );
+
+        String fingerprint = FileUtils.fileRead( fingerprintFile );
+
+        Map<String, Long> content = getEntryChecksums( esaFile );
+
+        long lastModified = 1000000000000L;
+
+        assertTrue( esaFile.setLastModified( lastModified ) );
+
+        //none of the entries changed, the archive is left as is
+        mojo = ( EsaMojo ) lookupMojo( "esa", testPom );
+
+        mojo.execute();
+
+        assertEquals( lastModified, esaFile.lastModified() );
+
+        assertEquals( fingerprint, FileUtils.fileRead( fingerprintFile ) );
+
+        //the archive is written again when the fingerprint does not match
+        FileUtils.fileWrite( fingerprintFile.getPath(), "stale" );
+
+        mojo = ( EsaMojo ) lookupMojo( "esa", testPom );
+
+        mojo.execute();
+
+        assertTrue( esaFile.lastModified() != lastModified );
+
+        assertEquals( fingerprint, FileUtils.fileRead( fingerprintFile ) );
+
+        assertEquals( content, getEntryChecksums( esaFile ) );
+    }
+
+    public void testBundlesStored()
+        throws Exception
+    {
+        File testPom = new File( getBasedir(),
+                                 "target/test-classes/unit/basic-esa-test/plugin-config.xml" );
+
+        EsaMojo mojo = ( EsaMojo ) lookupMojo( "esa", testPom );
+
+        setVariableValueToObject( mojo, "forceCreation", Boolean.TRUE );
+
+        String finalName = ( String ) getVariableValueFromObject( mojo, "finalName" );
+
+        String outputDir = ( String ) getVariableValueFromObject( mojo, "outputDirectory" );
+
+        mojo.execute();
+
+        ZipFile esa = new ZipFile( new File( outputDir, finalName + ".esa" ) );
+
+        try
+        {
+            //the bundles are already compressed, the other entries are deflated
+            assertEquals( ZipEntry.STORED, esa.getEntry( "maven-artifact01-1.0-SNAPSHOT.jar" ).getMethod() );
+
+            assertEquals( ZipEntry.STORED, esa.getEntry( "maven-artifact02-1.0-SNAPSHOT.jar" ).getMethod() );
+
+            assertEquals( ZipEntry.DEFLATED,
+                          esa.getEntry( "META-INF/maven/org.apache.maven.test/maven-esa-test/pom.xml" ).getMethod() );
+        }
+        finally
+        {
+            esa.close();
+        }
+    }
+
+    private Map<String, Long> getEntryChecksums( File file )
+        throws Exception
+    {
+        Map<String, Long> checksums = new HashMap<String, Long>();
+
+        ZipFile zip = new ZipFile( file );
+
+        try
+        {
+            Enumeration entries = zip.entries();
+
+            while( entries.hasMoreElements() )
+            {
+                ZipEntry entry = ( ZipEntry ) entries.nextElement();
+
+                checksums.put( entry.getName(), Long.valueOf( entry.getCrc() ) );
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return checksums;
+    }
+
     private int getSizeOfExpectedFiles( Enumeration entries, List expectedFiles )
     {
         while( entries.hasMoreElements() )
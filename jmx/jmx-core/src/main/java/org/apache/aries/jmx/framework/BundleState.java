@@ -16,6 +16,7 @@
  */
 package org.apache.aries.jmx.framework;
 
+import static org.apache.aries.jmx.util.FrameworkUtils.createFilter;
 import static org.apache.aries.jmx.util.FrameworkUtils.getBundleDependencies;
 import static org.apache.aries.jmx.util.FrameworkUtils.getBundleExportedPackages;
 import static org.apache.aries.jmx.util.FrameworkUtils.getBundleImportedPackages;
@@ -27,16 +28,22 @@ import static org.apache.aries.jmx.util.FrameworkUtils.getRegisteredServiceIds;
 import static org.apache.aries.jmx.util.FrameworkUtils.getServicesInUseByBundle;
 import static org.apache.aries.jmx.util.FrameworkUtils.isBundlePendingRemoval;
 import static org.apache.aries.jmx.util.FrameworkUtils.isBundleRequiredByOthers;
+import static org.apache.aries.jmx.util.FrameworkUtils.page;
 import static org.apache.aries.jmx.util.FrameworkUtils.resolveBundle;
+import static org.apache.aries.jmx.util.TypeUtils.toPrimitive;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -52,6 +59,8 @@ import javax.management.Notification;
 import javax.management.NotificationBroadcasterSupport;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.OpenDataException;
 import javax.management.openmbean.TabularData;
 import javax.management.openmbean.TabularDataSupport;
 
@@ -64,6 +73,7 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
 import org.osgi.jmx.framework.BundleStateMBean;
 import org.osgi.service.log.LogService;
 import org.osgi.service.packageadmin.PackageAdmin;
@@ -71,11 +81,12 @@ import org.osgi.service.startlevel.StartLevel;
 
 /**
  * Implementation of <code>BundleStateMBean</code> which emits JMX <code>Notification</code> on <code>Bundle</code>
- * state changes.
+ * state changes. The bundle events are also recorded in a {@link ChangeLog} backing the paged and delta
+ * operations of <code>PagedBundleStateMBean</code>.
  *
  * @version $Rev$ $Date$
  */
-public class BundleState extends NotificationBroadcasterSupport implements BundleStateMBean, MBeanRegistration {
+public class BundleState extends NotificationBroadcasterSupport implements PagedBundleStateMBean, MBeanRegistration {
 
     protected Logger logger;
     protected BundleContext bundleContext;
@@ -89,6 +100,7 @@ public class BundleState extends NotificationBroadcasterSupport implements Bundl
     private AtomicInteger attributeChangeNotificationSequenceNumber = new AtomicInteger(1);
     private Lock lock = new ReentrantLock();
     private AtomicInteger registrations = new AtomicInteger(0);
+    private final ChangeLog changeLog = new ChangeLog();
 
     // notification type description
     public static String BUNDLE_EVENT = "org.osgi.bundle.event";
@@ -350,6 +362,107 @@ public class BundleState extends NotificationBroadcasterSupport implements Bundl
         return bundleTable;
     }
 
+    /**
+     * @see org.apache.aries.jmx.framework.PagedBundleStateMBean#listBundles(java.lang.String, int, int)
+     */
+    public TabularData listBundles(String filter, int offset, int limit) throws IOException {
+        Filter bundleFilter = createFilter(filter);
+        List<Bundle> bundles = new ArrayList<Bundle>();
+        for (Bundle bundle : getSortedBundles()) {
+            if (bundleFilter == null || bundleFilter.match(getFilterProperties(bundle))) {
+                bundles.add(bundle);
+            }
+        }
+        TabularData bundleTable = new TabularDataSupport(BUNDLES_TYPE);
+        for (Bundle bundle : page(bundles, offset, limit)) {
+            bundleTable.put(new BundleData(bundleContext, bundle, packageAdmin, startLevel).toCompositeData());
+        }
+        return bundleTable;
+    }
+
+    /**
+     * @see org.apache.aries.jmx.framework.PagedBundleStateMBean#getGeneration()
+     */
+    public long getGeneration() throws IOException {
+        return changeLog.getGeneration();
+    }
+
+    /**
+     * @see org.apache.aries.jmx.framework.PagedBundleStateMBean#listBundlesChangedSince(long)
+     */
+    public CompositeData listBundlesChangedSince(long generation) throws IOException {
+        ChangeLog.Delta delta = changeLog.since(generation);
+        List<Long> removed = new ArrayList<Long>(delta.getRemoved());
+        TabularData bundleTable = new TabularDataSupport(BUNDLES_TYPE);
+        if (delta.isReset()) {
+            for (Bundle bundle : getSortedBundles()) {
+                bundleTable.put(new BundleData(bundleContext, bundle, packageAdmin, startLevel).toCompositeData());
+            }
+        } else {
+            for (Long id : delta.getChanged()) {
+                Bundle bundle = bundleContext.getBundle(id);
+                if (bundle == null) {
+                    // uninstalled after the delta was taken
+                    removed.add(id);
+                } else {
+                    bundleTable.put(new BundleData(bundleContext, bundle, packageAdmin, startLevel).toCompositeData());
+                }
+            }
+        }
+
+        Map<String, Object> items = new HashMap<String, Object>();
+        items.put(GENERATION, delta.getGeneration());
+        items.put(RESET, delta.isReset());
+        items.put(BUNDLES, bundleTable);
+        items.put(REMOVED, toPrimitive(removed.toArray(new Long[removed.size()])));
+        try {
+            return new CompositeDataSupport(BUNDLE_CHANGES_TYPE, items);
+        } catch (OpenDataException e) {
+            throw new IllegalStateException("Failed to create CompositeData for bundle changes since generation ["
+                    + generation + "]", e);
+        }
+    }
+
+    private List<Bundle> getSortedBundles() {
+        List<Bundle> bundles = new ArrayList<Bundle>();
+        Bundle[] containerBundles = bundleContext.getBundles();
+        if (containerBundles != null) {
+            bundles.addAll(Arrays.asList(containerBundles));
+        }
+        Collections.sort(bundles, new Comparator<Bundle>() {
+            public int compare(Bundle b1, Bundle b2) {
+                long id1 = b1.getBundleId();
+                long id2 = b2.getBundleId();
+                return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+            }
+        });
+        return bundles;
+    }
+
+    private Dictionary<String, Object> getFilterProperties(Bundle bundle) {
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        Dictionary<String, String> headers = bundle.getHeaders();
+        if (headers != null) {
+            Enumeration<String> keys = headers.keys();
+            while (keys.hasMoreElements()) {
+                String key = keys.nextElement();
+                properties.put(key, headers.get(key));
+            }
+        }
+        properties.put(IDENTIFIER, bundle.getBundleId());
+        properties.put(STATE, getBundleState(bundle));
+        putIfNotNull(properties, LOCATION, bundle.getLocation());
+        putIfNotNull(properties, VERSION, bundle.getVersion());
+        putIfNotNull(properties, SYMBOLIC_NAME, bundle.getSymbolicName());
+        return properties;
+    }
+
+    private static void putIfNotNull(Dictionary<String, Object> properties, String key, Object value) {
+        if (value != null) {
+            properties.put(key, value);
+        }
+    }
+
     /**
      * @see javax.management.NotificationBroadcasterSupport#getNotificationInfo()
      */
@@ -402,6 +515,11 @@ public class BundleState extends NotificationBroadcasterSupport implements Bundl
             if (bundleListener == null) {
                 bundleListener = new BundleListener() {
                     public void bundleChanged(BundleEvent event) {
+                        if (event.getType() == BundleEvent.UNINSTALLED) {
+                            changeLog.removed(event.getBundle().getBundleId());
+                        } else {
+                            changeLog.changed(event.getBundle().getBundleId());
+                        }
                         try {
                             final Notification notification = new Notification(EVENT, OBJECTNAME,
                                     notificationSequenceNumber.getAndIncrement());
@@ -73,7 +73,7 @@ public class BundleStateMBeanHandler implements MBeanHandler {
         StartLevel startLevel = (StartLevel) bundleContext.getService(startLevelRef);
         bundleStateMBean = new BundleState(bundleContext, packageAdmin, startLevel, stateConfig, logger);
         try {
-            mbean = new RegistrableStandardEmitterMBean(bundleStateMBean, BundleStateMBean.class);
+            mbean = new RegistrableStandardEmitterMBean(bundleStateMBean, PagedBundleStateMBean.class);
         } catch (NotCompliantMBeanException e) {
             logger.log(LogService.LOG_ERROR, "Failed to instantiate MBean for " + BundleStateMBean.class.getName(), e);
         }
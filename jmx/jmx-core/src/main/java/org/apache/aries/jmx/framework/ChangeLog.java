@@ -0,0 +1,169 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.jmx.framework;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Bounded log of the identifiers (bundle or service ids) that changed in the framework. Every
+ * recorded change bumps a generation counter, which lets a poller ask only for the identifiers
+ * that changed after a generation it has already seen.
+ * </p>
+ * <p>
+ * Only the latest change per identifier is kept, and the log holds at most <code>capacity</code>
+ * identifiers. When older entries have been evicted the log can no longer answer for old
+ * generations and {@link #since(long)} reports a reset, asking the caller to reload everything.
+ * </p>
+ *
+ * @version $Rev$ $Date$
+ */
+class ChangeLog {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    // insertion ordered, an identifier is moved to the tail every time it changes
+    private final LinkedHashMap<Long, Change> changes = new LinkedHashMap<Long, Change>();
+    private long generation;
+    // the oldest generation which can still be answered without a reset
+    private long floor;
+
+    ChangeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ChangeLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Argument capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records that the given identifier was added or modified.
+     *
+     * @param id the bundle or service identifier
+     * @return the new generation
+     */
+    synchronized long changed(long id) {
+        return record(id, false);
+    }
+
+    /**
+     * Records that the given identifier was removed.
+     *
+     * @param id the bundle or service identifier
+     * @return the new generation
+     */
+    synchronized long removed(long id) {
+        return record(id, true);
+    }
+
+    /**
+     * @return the current generation
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the identifiers that changed after the given generation. Generation 0 stands for a
+     * caller which has not seen anything yet and is always answered with a reset, as the bundles
+     * and services which existed before the first recorded change are not in the log.
+     *
+     * @param since a generation previously returned to the caller, or 0
+     * @return the changes, flagged as a reset if the log cannot answer for <code>since</code>
+     */
+    synchronized Delta since(long since) {
+        if (since <= 0 || since < floor || since > generation) {
+            return new Delta(generation, true, new ArrayList<Long>(), new ArrayList<Long>());
+        }
+        List<Long> changed = new ArrayList<Long>();
+        List<Long> removed = new ArrayList<Long>();
+        for (Map.Entry<Long, Change> entry : changes.entrySet()) {
+            Change change = entry.getValue();
+            if (change.generation > since) {
+                if (change.removed) {
+                    removed.add(entry.getKey());
+                } else {
+                    changed.add(entry.getKey());
+                }
+            }
+        }
+        return new Delta(generation, false, changed, removed);
+    }
+
+    private long record(long id, boolean removed) {
+        generation++;
+        changes.remove(id);
+        changes.put(id, new Change(generation, removed));
+        if (changes.size() > capacity) {
+            Iterator<Change> eldest = changes.values().iterator();
+            floor = eldest.next().generation;
+            eldest.remove();
+        }
+        return generation;
+    }
+
+    private static class Change {
+        private final long generation;
+        private final boolean removed;
+
+        Change(long generation, boolean removed) {
+            this.generation = generation;
+            this.removed = removed;
+        }
+    }
+
+    /**
+     * The result of {@link ChangeLog#since(long)}.
+     */
+    static class Delta {
+        private final long generation;
+        private final boolean reset;
+        private final List<Long> changed;
+        private final List<Long> removed;
+
+        Delta(long generation, boolean reset, List<Long> changed, List<Long> removed) {
+            this.generation = generation;
+            this.reset = reset;
+            this.changed = changed;
+            this.removed = removed;
+        }
+
+        long getGeneration() {
+            return generation;
+        }
+
+        boolean isReset() {
+            return reset;
+        }
+
+        List<Long> getChanged() {
+            return changed;
+        }
+
+        List<Long> getRemoved() {
+            return removed;
+        }
+    }
+}
@@ -16,9 +16,17 @@
  */
 package org.apache.aries.jmx.framework;
 
+import static org.apache.aries.jmx.util.FrameworkUtils.createFilter;
+import static org.apache.aries.jmx.util.FrameworkUtils.page;
+
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Dictionary;
 import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -28,6 +36,7 @@ import org.apache.aries.jmx.codec.PackageData;
 import org.apache.aries.jmx.util.FrameworkUtils;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
 import org.osgi.framework.Version;
 import org.osgi.jmx.framework.PackageStateMBean;
 import org.osgi.service.packageadmin.ExportedPackage;
@@ -42,7 +51,7 @@ import org.osgi.service.packageadmin.PackageAdmin;
  * 
  * @version $Rev$ $Date$
  */
-public class PackageState implements PackageStateMBean {
+public class PackageState implements PagedPackageStateMBean {
 
     /**
      * {@link PackageAdmin} service reference.
@@ -145,4 +154,54 @@ public class PackageState implements PackageStateMBean {
         return PackageData.tableFrom(packages);
     }
 
+    /**
+     * @see org.apache.aries.jmx.framework.PagedPackageStateMBean#listPackages(String, int, int)
+     */
+    public TabularData listPackages(String filter, int offset, int limit) throws IOException {
+        Filter packageFilter = createFilter(filter);
+        Set<PackageData> packages = new HashSet<PackageData>();
+        for (Bundle bundle : context.getBundles()) {
+            ExportedPackage[] exportedPackages = packageAdmin.getExportedPackages(bundle);
+            if (exportedPackages != null) {
+                for (ExportedPackage exportedPackage : exportedPackages) {
+                    PackageData packageData = new PackageData(exportedPackage);
+                    if (packageFilter == null || packageFilter.match(getFilterProperties(packageData))) {
+                        packages.add(packageData);
+                    }
+                }
+            }
+        }
+
+        List<PackageData> sorted = new ArrayList<PackageData>(packages);
+        Collections.sort(sorted, new Comparator<PackageData>() {
+            public int compare(PackageData p1, PackageData p2) {
+                int result = p1.getName().compareTo(p2.getName());
+                if (result == 0) {
+                    result = Version.parseVersion(p1.getVersion()).compareTo(Version.parseVersion(p2.getVersion()));
+                }
+                if (result == 0) {
+                    long id1 = p1.getExportingBundles()[0];
+                    long id2 = p2.getExportingBundles()[0];
+                    result = id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+                }
+                return result;
+            }
+        });
+        return PackageData.tableFrom(new LinkedHashSet<PackageData>(page(sorted, offset, limit)));
+    }
+
+    private Dictionary<String, Object> getFilterProperties(PackageData packageData) {
+        long[] exportingBundles = packageData.getExportingBundles();
+        Long[] exportingBundleIds = new Long[exportingBundles.length];
+        for (int i = 0; i < exportingBundles.length; i++) {
+            exportingBundleIds[i] = exportingBundles[i];
+        }
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(NAME, packageData.getName());
+        properties.put(VERSION, Version.parseVersion(packageData.getVersion()));
+        properties.put(EXPORTING_BUNDLES, exportingBundleIds);
+        properties.put(REMOVAL_PENDING, packageData.isRemovalPending());
+        return properties;
+    }
+
 }
@@ -69,9 +69,9 @@ public class PackageStateMBeanHandler implements MBeanHandler {
     public void open() {
         ServiceReference adminRef = context.getServiceReference(PackageAdmin.class.getCanonicalName());
         PackageAdmin packageAdmin = (PackageAdmin) context.getService(adminRef);
-        PackageStateMBean packageState = new PackageState(context, packageAdmin);
+        PagedPackageStateMBean packageState = new PackageState(context, packageAdmin);
         try {
-            mbean = new StandardMBean(packageState, PackageStateMBean.class);
+            mbean = new StandardMBean(packageState, PagedPackageStateMBean.class);
         } catch (NotCompliantMBeanException e) {
             logger.log(LogService.LOG_ERROR, "Not compliant MBean", e);
         }
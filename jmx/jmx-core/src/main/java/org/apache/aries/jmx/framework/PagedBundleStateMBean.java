@@ -0,0 +1,129 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.jmx.framework;
+
+import java.io.IOException;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+
+import org.osgi.jmx.Item;
+import org.osgi.jmx.JmxConstants;
+import org.osgi.jmx.framework.BundleStateMBean;
+
+/**
+ * Extension of the <code>BundleStateMBean</code> for clients which poll the bundle state of a
+ * large framework. Bundles can be listed one page at a time, and pollers can fetch only the
+ * bundles which changed since a generation they have already seen.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface PagedBundleStateMBean extends BundleStateMBean {
+
+    /**
+     * The key GENERATION, used in {@link #GENERATION_ITEM}.
+     */
+    String GENERATION = "Generation";
+
+    /**
+     * The item containing the generation the changes are valid for in {@link #BUNDLE_CHANGES_TYPE}.
+     */
+    Item GENERATION_ITEM = new Item(GENERATION, "The generation of the bundle state", SimpleType.LONG);
+
+    /**
+     * The key RESET, used in {@link #RESET_ITEM}.
+     */
+    String RESET = "Reset";
+
+    /**
+     * The item telling whether the changes hold every bundle rather than a delta, in
+     * {@link #BUNDLE_CHANGES_TYPE}.
+     */
+    Item RESET_ITEM = new Item(RESET,
+            "True if the requested generation is no longer known and all bundles are returned",
+            SimpleType.BOOLEAN);
+
+    /**
+     * The key BUNDLES, used in {@link #BUNDLES_ITEM}.
+     */
+    String BUNDLES = "Bundles";
+
+    /**
+     * The item containing the installed or changed bundles in {@link #BUNDLE_CHANGES_TYPE}.
+     */
+    Item BUNDLES_ITEM = new Item(BUNDLES, "The installed or changed bundles", BUNDLES_TYPE);
+
+    /**
+     * The key REMOVED, used in {@link #REMOVED_ITEM}.
+     */
+    String REMOVED = "Removed";
+
+    /**
+     * The item containing the identifiers of the uninstalled bundles in {@link #BUNDLE_CHANGES_TYPE}.
+     */
+    Item REMOVED_ITEM = new Item(REMOVED, "The identifiers of the uninstalled bundles",
+            JmxConstants.LONG_ARRAY_TYPE);
+
+    /**
+     * The Composite Type for the bundles changed since a generation. This type consists of:
+     * <ul>
+     * <li>{@link #GENERATION}</li>
+     * <li>{@link #RESET}</li>
+     * <li>{@link #BUNDLES}</li>
+     * <li>{@link #REMOVED}</li>
+     * </ul>
+     */
+    CompositeType BUNDLE_CHANGES_TYPE = Item.compositeType("BUNDLE_CHANGES",
+            "The bundles changed since a generation", GENERATION_ITEM, RESET_ITEM, BUNDLES_ITEM, REMOVED_ITEM);
+
+    /**
+     * Answer a page of the bundles matching the filter, ordered by bundle identifier. The filter is
+     * matched against the bundle headers and the {@link #IDENTIFIER}, {@link #SYMBOLIC_NAME},
+     * {@link #VERSION}, {@link #LOCATION} and {@link #STATE} keys.
+     *
+     * @param filter an LDAP filter, or <code>null</code> for all bundles
+     * @param offset the number of matching bundles to skip
+     * @param limit the maximum number of bundles to return, or a negative number for no limit
+     * @return the tabular data typed by {@link #BUNDLES_TYPE}
+     * @throws IOException if the operation fails
+     * @throws IllegalArgumentException if the filter is not valid
+     */
+    TabularData listBundles(String filter, int offset, int limit) throws IOException;
+
+    /**
+     * Answer the current generation of the bundle state. The generation is incremented for every
+     * bundle event.
+     *
+     * @return the current generation
+     * @throws IOException if the operation fails
+     */
+    long getGeneration() throws IOException;
+
+    /**
+     * Answer the bundles which changed after the given generation. If the generation is unknown,
+     * for instance because it is too old, the result is flagged with {@link #RESET} and holds all
+     * the bundles of the framework. Generation 0 is always answered that way, so a client can start
+     * polling from it.
+     *
+     * @param generation a generation previously returned by this MBean, or 0
+     * @return the composite data typed by {@link #BUNDLE_CHANGES_TYPE}
+     * @throws IOException if the operation fails
+     */
+    CompositeData listBundlesChangedSince(long generation) throws IOException;
+}
@@ -0,0 +1,46 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.jmx.framework;
+
+import java.io.IOException;
+
+import javax.management.openmbean.TabularData;
+
+import org.osgi.jmx.framework.PackageStateMBean;
+
+/**
+ * Extension of the <code>PackageStateMBean</code> for clients which list the packages of a large
+ * framework one page at a time.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface PagedPackageStateMBean extends PackageStateMBean {
+
+    /**
+     * Answer a page of the exported packages matching the filter, ordered by name, version and
+     * exporting bundle. The filter is matched against the {@link #NAME}, {@link #VERSION},
+     * {@link #EXPORTING_BUNDLES} and {@link #REMOVAL_PENDING} keys.
+     *
+     * @param filter an LDAP filter, or <code>null</code> for all packages
+     * @param offset the number of matching packages to skip
+     * @param limit the maximum number of packages to return, or a negative number for no limit
+     * @return the tabular data typed by {@link #PACKAGES_TYPE}
+     * @throws IOException if the operation fails
+     * @throws IllegalArgumentException if the filter is not valid
+     */
+    TabularData listPackages(String filter, int offset, int limit) throws IOException;
+}
@@ -16,8 +16,11 @@
  */
 package org.apache.aries.jmx.framework;
 
+import static org.apache.aries.jmx.util.FrameworkUtils.createFilter;
 import static org.apache.aries.jmx.util.FrameworkUtils.getBundleIds;
+import static org.apache.aries.jmx.util.FrameworkUtils.page;
 import static org.apache.aries.jmx.util.FrameworkUtils.resolveService;
+import static org.apache.aries.jmx.util.TypeUtils.toPrimitive;
 import static org.osgi.jmx.JmxConstants.PROPERTIES_TYPE;
 
 import java.io.IOException;
@@ -25,7 +28,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -41,6 +47,8 @@ import javax.management.Notification;
 import javax.management.NotificationBroadcasterSupport;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.OpenDataException;
 import javax.management.openmbean.TabularData;
 import javax.management.openmbean.TabularDataSupport;
 
@@ -61,11 +69,13 @@ import org.osgi.service.log.LogService;
 
 /**
  * Implementation of <code>ServiceStateMBean</code> which emits JMX <code>Notification</code> for framework
- * <code>ServiceEvent</code> events and changes to the <code>ServiceIds</code> attribute.
+ * <code>ServiceEvent</code> events and changes to the <code>ServiceIds</code> attribute. The service events
+ * are also recorded in a {@link ChangeLog} backing the paged and delta operations of
+ * <code>PagedServiceStateMBean</code>.
  *
  * @version $Rev$ $Date$
  */
-public class ServiceState extends NotificationBroadcasterSupport implements ServiceStateMBean, MBeanRegistration {
+public class ServiceState extends NotificationBroadcasterSupport implements PagedServiceStateMBean, MBeanRegistration {
 
     protected Logger logger;
     private BundleContext bundleContext;
@@ -77,6 +87,7 @@ public class ServiceState extends NotificationBroadcasterSupport implements Serv
     private AtomicInteger attributeChangeNotificationSequenceNumber = new AtomicInteger(1);
     private AtomicInteger registrations = new AtomicInteger(0);
     private Lock lock = new ReentrantLock();
+    private final ChangeLog changeLog = new ChangeLog();
 
     // notification type description
     public static String SERVICE_EVENT = "org.osgi.service.event";
@@ -180,6 +191,85 @@ public class ServiceState extends NotificationBroadcasterSupport implements Serv
         return servicesTable;
     }
 
+    /**
+     * @see org.apache.aries.jmx.framework.PagedServiceStateMBean#listServices(java.lang.String, int, int)
+     */
+    public TabularData listServices(String filter, int offset, int limit) throws IOException {
+        List<ServiceReference<?>> references = getSortedServiceReferences(filter);
+        TabularData servicesTable = new TabularDataSupport(SERVICES_TYPE);
+        for (ServiceReference<?> reference : page(references, offset, limit)) {
+            servicesTable.put(new ServiceData(reference).toCompositeData());
+        }
+        return servicesTable;
+    }
+
+    /**
+     * @see org.apache.aries.jmx.framework.PagedServiceStateMBean#getGeneration()
+     */
+    public long getGeneration() throws IOException {
+        return changeLog.getGeneration();
+    }
+
+    /**
+     * @see org.apache.aries.jmx.framework.PagedServiceStateMBean#listServicesChangedSince(long)
+     */
+    public CompositeData listServicesChangedSince(long generation) throws IOException {
+        ChangeLog.Delta delta = changeLog.since(generation);
+        List<Long> removed = new ArrayList<Long>(delta.getRemoved());
+        TabularData servicesTable = new TabularDataSupport(SERVICES_TYPE);
+        if (delta.isReset()) {
+            for (ServiceReference<?> reference : getSortedServiceReferences(null)) {
+                servicesTable.put(new ServiceData(reference).toCompositeData());
+            }
+        } else if (!delta.getChanged().isEmpty()) {
+            StringBuilder filter = new StringBuilder("(|");
+            for (Long id : delta.getChanged()) {
+                filter.append('(').append(Constants.SERVICE_ID).append('=').append(id).append(')');
+            }
+            filter.append(')');
+            List<Long> missing = new ArrayList<Long>(delta.getChanged());
+            for (ServiceReference<?> reference : getSortedServiceReferences(filter.toString())) {
+                servicesTable.put(new ServiceData(reference).toCompositeData());
+                missing.remove(reference.getProperty(Constants.SERVICE_ID));
+            }
+            // unregistered after the delta was taken
+            removed.addAll(missing);
+        }
+
+        Map<String, Object> items = new HashMap<String, Object>();
+        items.put(GENERATION, delta.getGeneration());
+        items.put(RESET, delta.isReset());
+        items.put(SERVICES, servicesTable);
+        items.put(REMOVED, toPrimitive(removed.toArray(new Long[removed.size()])));
+        try {
+            return new CompositeDataSupport(SERVICE_CHANGES_TYPE, items);
+        } catch (OpenDataException e) {
+            throw new IllegalStateException("Failed to create CompositeData for service changes since generation ["
+                    + generation + "]", e);
+        }
+    }
+
+    private List<ServiceReference<?>> getSortedServiceReferences(String filter) throws IOException {
+        ServiceReference<?>[] allServiceReferences = null;
+        try {
+            allServiceReferences = bundleContext.getAllServiceReferences(null, filter);
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("Invalid filter [" + filter + "]", e);
+        }
+        List<ServiceReference<?>> references = new ArrayList<ServiceReference<?>>();
+        if (allServiceReferences != null) {
+            references.addAll(Arrays.asList(allServiceReferences));
+        }
+        Collections.sort(references, new Comparator<ServiceReference<?>>() {
+            public int compare(ServiceReference<?> r1, ServiceReference<?> r2) {
+                Long id1 = (Long) r1.getProperty(Constants.SERVICE_ID);
+                Long id2 = (Long) r2.getProperty(Constants.SERVICE_ID);
+                return id1.compareTo(id2);
+            }
+        });
+        return references;
+    }
+
     /**
      * @see javax.management.NotificationBroadcasterSupport#getNotificationInfo()
      */
@@ -254,6 +344,12 @@ public class ServiceState extends NotificationBroadcasterSupport implements Serv
             if (serviceListener == null) {
                 serviceListener = new AllServiceListener() {
                     public void serviceChanged(ServiceEvent serviceevent) {
+                        long serviceID = (Long) serviceevent.getServiceReference().getProperty(Constants.SERVICE_ID);
+                        if (serviceevent.getType() == ServiceEvent.UNREGISTERING) {
+                            changeLog.removed(serviceID);
+                        } else {
+                            changeLog.changed(serviceID);
+                        }
                         try {
                             // Create a notification for the event
                             final Notification notification = new Notification(EVENT, OBJECTNAME,
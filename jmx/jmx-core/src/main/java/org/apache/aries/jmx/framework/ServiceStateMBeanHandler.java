@@ -64,7 +64,7 @@ public class ServiceStateMBeanHandler implements MBeanHandler {
     public void open() {
         serviceStateMBean = new ServiceState(bundleContext, stateConfig, logger);
         try {
-            mbean = new RegistrableStandardEmitterMBean(serviceStateMBean, ServiceStateMBean.class);
+            mbean = new RegistrableStandardEmitterMBean(serviceStateMBean, PagedServiceStateMBean.class);
         } catch (NotCompliantMBeanException e) {
             logger.log(LogService.LOG_ERROR, "Failed to instantiate MBean for " + ServiceStateMBean.class.getName(), e);
         }
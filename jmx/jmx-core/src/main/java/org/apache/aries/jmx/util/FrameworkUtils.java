@@ -36,6 +36,8 @@ import org.apache.aries.util.ManifestHeaderUtils;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.packageadmin.ExportedPackage;
@@ -633,6 +635,31 @@ public class FrameworkUtils {
         
         return result;
     }
-    
-    
+
+    /*
+     * Returns the sub list starting at offset holding at most limit elements, a negative limit meaning no limit
+     */
+    public static <T> List<T> page(List<T> list, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Argument offset cannot be negative");
+        }
+        int from = Math.min(offset, list.size());
+        int to = limit < 0 ? list.size() : (int) Math.min((long) from + limit, list.size());
+        return list.subList(from, to);
+    }
+
+    /*
+     * Creates a Filter from an LDAP filter string, returns null if the filter string is null or empty
+     */
+    public static Filter createFilter(String filter) throws IllegalArgumentException {
+        if (filter == null || filter.trim().length() == 0) {
+            return null;
+        }
+        try {
+            return FrameworkUtil.createFilter(filter);
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("Invalid filter [" + filter + "]", e);
+        }
+    }
+
 }
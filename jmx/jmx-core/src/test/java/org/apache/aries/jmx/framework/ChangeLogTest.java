@@ -0,0 +1,108 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.aries.jmx.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * {@link ChangeLog} test case.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ChangeLogTest {
+
+    @Test
+    public void testChangesSinceGeneration() {
+        ChangeLog log = new ChangeLog();
+        assertEquals(0, log.getGeneration());
+
+        log.changed(1);
+        long generation = log.changed(2);
+        assertEquals(2, generation);
+
+        log.changed(3);
+        log.removed(1);
+
+        ChangeLog.Delta delta = log.since(generation);
+        assertFalse(delta.isReset());
+        assertEquals(4, delta.getGeneration());
+        assertEquals(Arrays.asList(3L), delta.getChanged());
+        assertEquals(Arrays.asList(1L), delta.getRemoved());
+
+        delta = log.since(log.getGeneration());
+        assertFalse(delta.isReset());
+        assertTrue(delta.getChanged().isEmpty());
+        assertTrue(delta.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void testLatestChangeWins() {
+        ChangeLog log = new ChangeLog();
+        long generation = log.changed(1);
+        log.removed(5);
+        log.changed(5);
+
+        ChangeLog.Delta delta = log.since(generation);
+        assertEquals(Arrays.asList(5L), delta.getChanged());
+        assertTrue(delta.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void testResetForUnknownGeneration() {
+        ChangeLog log = new ChangeLog(2);
+        assertTrue(log.since(0).isReset());
+        assertTrue(log.since(-1).isReset());
+
+        long first = log.changed(1);
+        long second = log.changed(2);
+        assertFalse(log.since(first).isReset());
+
+        // evicts the changes of identifiers 1 and 2
+        log.changed(3);
+        log.changed(4);
+        assertTrue(log.since(first).isReset());
+        assertFalse(log.since(second).isReset());
+        assertEquals(Arrays.asList(3L, 4L), log.since(second).getChanged());
+
+        assertTrue(log.since(log.getGeneration() + 1).isReset());
+    }
+
+    @Test
+    public void testPollingFromFirstGeneration() {
+        ChangeLog log = new ChangeLog();
+        log.changed(1);
+        log.changed(2);
+
+        // a poller starting from 0 has not seen the identifiers changed before it started
+        ChangeLog.Delta delta = log.since(0);
+        assertTrue(delta.isReset());
+        assertEquals(2, delta.getGeneration());
+        assertTrue(delta.getChanged().isEmpty());
+
+        log.changed(3);
+        delta = log.since(delta.getGeneration());
+        assertFalse(delta.isReset());
+        assertEquals(Arrays.asList(3L), delta.getChanged());
+    }
+
+}
@@ -128,4 +128,38 @@ public class PackageStateTest {
         Assert.assertEquals("1.0.0", version);
     }
 
+    @Test
+    public void testListPackagesPaged() throws IOException {
+        Bundle bundle = Mockito.mock(Bundle.class);
+        Mockito.when(bundle.getBundleId()).thenReturn(Long.valueOf(4));
+        Mockito.when(context.getBundles()).thenReturn(new Bundle[]{bundle});
+        ExportedPackage[] exported = new ExportedPackage[3];
+        String[] names = new String[]{"c.pkg", "a.pkg", "b.pkg"};
+        for (int i = 0; i < exported.length; i++) {
+            exported[i] = Mockito.mock(ExportedPackage.class);
+            Mockito.when(exported[i].getVersion()).thenReturn(Version.parseVersion("1.0.0"));
+            Mockito.when(exported[i].getImportingBundles()).thenReturn(new Bundle[0]);
+            Mockito.when(exported[i].getName()).thenReturn(names[i]);
+            Mockito.when(exported[i].getExportingBundle()).thenReturn(bundle);
+        }
+        Mockito.when(admin.getExportedPackages(bundle)).thenReturn(exported);
+
+        TabularData table = mbean.listPackages(null, 1, 1);
+        Assert.assertEquals(PackageStateMBean.PACKAGES_TYPE, table.getTabularType());
+        Assert.assertEquals(1, table.size());
+        CompositeData data = (CompositeData) table.values().iterator().next();
+        Assert.assertEquals("b.pkg", data.get(PackageStateMBean.NAME));
+
+        table = mbean.listPackages("(|(Name=a.pkg)(Name=c.pkg))", 0, -1);
+        Assert.assertEquals(2, table.size());
+
+        table = mbean.listPackages("(Version>=2.0.0)", 0, -1);
+        Assert.assertEquals(0, table.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testListPackagesInvalidFilter() throws IOException {
+        mbean.listPackages("(Name=", 0, -1);
+    }
+
 }
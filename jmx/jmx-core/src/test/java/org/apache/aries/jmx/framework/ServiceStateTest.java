@@ -45,6 +45,7 @@ import javax.management.Notification;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
 
 import org.apache.aries.jmx.Logger;
 import org.junit.Test;
@@ -231,4 +232,77 @@ public class ServiceStateTest {
         assertEquals(0, attributeChanges.size());
     }
 
+    @Test
+    public void testServicesChangedSince() throws Exception {
+        BundleContext context = mock(BundleContext.class);
+        ServiceState serviceState = new ServiceState(context, new StateConfig(false), mock(Logger.class));
+
+        Bundle b1 = mock(Bundle.class);
+        when(b1.getBundleId()).thenReturn(new Long(9));
+        ServiceReference reference = mock(ServiceReference.class);
+        when(reference.getBundle()).thenReturn(b1);
+        when(reference.getProperty(Constants.SERVICE_ID)).thenReturn(new Long(44));
+        when(reference.getProperty(Constants.OBJECTCLASS)).thenReturn(new String[] {"org.apache.aries.jmx.Mock"});
+        when(reference.getPropertyKeys()).thenReturn(new String[] {Constants.SERVICE_ID});
+        when(context.getAllServiceReferences(null, null)).thenReturn(new ServiceReference[] {reference});
+
+        ServiceReference removedReference = mock(ServiceReference.class);
+        when(removedReference.getProperty(Constants.SERVICE_ID)).thenReturn(new Long(45));
+
+        serviceState.preRegister(mock(MBeanServer.class), new ObjectName(OBJECTNAME));
+        serviceState.postRegister(true);
+        ArgumentCaptor<AllServiceListener> argument = ArgumentCaptor.forClass(AllServiceListener.class);
+        verify(context).addServiceListener(argument.capture());
+        AllServiceListener serviceListener = argument.getValue();
+
+        // an unknown generation returns every service
+        CompositeData changes = serviceState.listServicesChangedSince(0);
+        assertTrue((Boolean) changes.get(PagedServiceStateMBean.RESET));
+        assertEquals(1, ((TabularData) changes.get(PagedServiceStateMBean.SERVICES)).size());
+        long generation = (Long) changes.get(PagedServiceStateMBean.GENERATION);
+        assertEquals(0, generation);
+
+        ServiceEvent registeredEvent = mock(ServiceEvent.class);
+        when(registeredEvent.getServiceReference()).thenReturn(reference);
+        when(registeredEvent.getType()).thenReturn(ServiceEvent.REGISTERED);
+        ServiceEvent otherEvent = mock(ServiceEvent.class);
+        when(otherEvent.getServiceReference()).thenReturn(removedReference);
+        when(otherEvent.getType()).thenReturn(ServiceEvent.REGISTERED);
+        serviceListener.serviceChanged(registeredEvent);
+        serviceListener.serviceChanged(otherEvent);
+        assertEquals(2, serviceState.getGeneration());
+
+        // service 45 is gone by the time the delta is resolved
+        changes = serviceState.listServicesChangedSince(1);
+        assertFalse((Boolean) changes.get(PagedServiceStateMBean.RESET));
+        assertEquals(2L, changes.get(PagedServiceStateMBean.GENERATION));
+        assertEquals(0, ((TabularData) changes.get(PagedServiceStateMBean.SERVICES)).size());
+        assertArrayEquals(new long[] {45}, (long[]) changes.get(PagedServiceStateMBean.REMOVED));
+
+        serviceState.postDeregister();
+    }
+
+    @Test
+    public void testListServicesPaged() throws Exception {
+        BundleContext context = mock(BundleContext.class);
+        ServiceState serviceState = new ServiceState(context, new StateConfig(), mock(Logger.class));
+
+        Bundle b1 = mock(Bundle.class);
+        when(b1.getBundleId()).thenReturn(new Long(9));
+        ServiceReference[] references = new ServiceReference[3];
+        long[] ids = new long[] {12, 10, 11};
+        for (int i = 0; i < references.length; i++) {
+            references[i] = mock(ServiceReference.class);
+            when(references[i].getBundle()).thenReturn(b1);
+            when(references[i].getProperty(Constants.SERVICE_ID)).thenReturn(new Long(ids[i]));
+            when(references[i].getPropertyKeys()).thenReturn(new String[] {Constants.SERVICE_ID});
+        }
+        when(context.getAllServiceReferences(null, "(objectClass=*)")).thenReturn(references);
+
+        TabularData table = serviceState.listServices("(objectClass=*)", 1, 5);
+        assertEquals(2, table.size());
+        assertNotNull(table.get(new Object[] {new Long(11)}));
+        assertNotNull(table.get(new Object[] {new Long(12)}));
+    }
+
 }
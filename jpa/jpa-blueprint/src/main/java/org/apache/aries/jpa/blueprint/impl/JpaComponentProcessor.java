@@ -49,6 +49,7 @@ import org.slf4j.LoggerFactory;
 public class JpaComponentProcessor implements ComponentDefinitionRegistryProcessor {
     private static final String JPA_COORDINATOR = "jpa_Coordinator";
     private static final Logger LOGGER = LoggerFactory.getLogger(JpaComponentProcessor.class);
+    private static final boolean SELECTIVE = isSelectiveInterceptorAvailable();
     private AnnotationScanner annotationScanner;
     private ParserContext pc;
 
@@ -99,7 +100,7 @@ public class JpaComponentProcessor implements ComponentDefinitionRegistryProcess
             compDef.addProperty(propName, ref);
             
             MutableRefMetadata emRef = getServiceRef(cdr, pcAnn.unitName(), EntityManager.class);
-            Interceptor interceptor = new JpaInterceptor(container, JPA_COORDINATOR, emRef.getComponentId());
+            Interceptor interceptor = createInterceptor(container, emRef.getComponentId());
             cdr.registerInterceptorWithComponent(compDef, interceptor);
         }
         
@@ -164,4 +165,28 @@ public class JpaComponentProcessor implements ComponentDefinitionRegistryProcess
         return (T)((PassThroughMetadata) cdr.getComponentDefinition(id)).getObject();
     }
 
+    /**
+     * Returns the interface type so that verifying this class does not load
+     * SelectiveJpaInterceptor when blueprint lacks SelectiveInterceptor.
+     */
+    private Interceptor createInterceptor(BlueprintContainer container, String emId) {
+        if (SELECTIVE) {
+            return new SelectiveJpaInterceptor(container, JPA_COORDINATOR, emId);
+        }
+        return new JpaInterceptor(container, JPA_COORDINATOR, emId);
+    }
+
+    /**
+     * Older blueprint core bundles do not export SelectiveInterceptor.
+     */
+    private static boolean isSelectiveInterceptorAvailable() {
+        try {
+            Class.forName("org.apache.aries.blueprint.SelectiveInterceptor", false,
+                          JpaComponentProcessor.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
 }
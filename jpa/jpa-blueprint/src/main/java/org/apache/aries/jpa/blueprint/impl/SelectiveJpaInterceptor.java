@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.jpa.blueprint.impl;
+
+import java.lang.reflect.Method;
+
+import org.apache.aries.blueprint.SelectiveInterceptor;
+import org.osgi.service.blueprint.container.BlueprintContainer;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+
+/**
+ * JpaInterceptor that blueprint leaves out of the calls to the methods of
+ * java.lang.Object, which do not use the EntityManager. Only created when the
+ * blueprint bundle provides {@link SelectiveInterceptor}.
+ */
+public class SelectiveJpaInterceptor extends JpaInterceptor implements SelectiveInterceptor {
+
+    public SelectiveJpaInterceptor(BlueprintContainer container, String coordinatorId, String emId) {
+        super(container, coordinatorId, emId);
+    }
+
+    public boolean appliesTo(ComponentMetadata cm, Method m) {
+        return m.getDeclaringClass() != Object.class;
+    }
+}
@@ -66,6 +66,8 @@ public abstract class BaseActivator implements BundleActivator {
     private final ConcurrentMap<Bundle, Map<ConsumerRestriction, List<BundleDescriptor>>> consumerRestrictions =
             new ConcurrentHashMap<Bundle, Map<ConsumerRestriction, List<BundleDescriptor>>>();
 
+    private final ContextClassLoaderCache contextClassLoaderCache = new ContextClassLoaderCache();
+
     public synchronized void start(BundleContext context, final String consumerHeaderName) throws Exception {
         bundleContext = context;
 
@@ -113,6 +115,7 @@ public abstract class BaseActivator implements BundleActivator {
 
     public void removeWeavingData(Bundle bundle) {
         bundleWeavingData.remove(bundle);
+        contextClassLoaderCache.invalidate();
     }
 
     @Override
@@ -159,6 +162,7 @@ public abstract class BaseActivator implements BundleActivator {
 
         SortedMap<Long, Pair<Bundle, Map<String, Object>>> map = registeredProviders.get(registrationClassName);
         map.put(bundle.getBundleId(), new Pair<Bundle, Map<String, Object>>(bundle, customAttributes));
+        contextClassLoaderCache.invalidate();
     }
 
     public void unregisterProviderBundle(Bundle bundle) {
@@ -170,6 +174,7 @@ public abstract class BaseActivator implements BundleActivator {
                 }
             }
         }
+        contextClassLoaderCache.invalidate();
     }
 
     public Collection<Bundle> findProviderBundles(String name) {
@@ -204,6 +209,7 @@ public abstract class BaseActivator implements BundleActivator {
         for (ConsumerRestriction restriction : restrictions) {
             map.put(restriction, allowedBundles);
         }
+        contextClassLoaderCache.invalidate();
     }
 
     public Collection<Bundle> findConsumerRestrictions(Bundle consumer, String className, String methodName,
@@ -262,6 +268,24 @@ public abstract class BaseActivator implements BundleActivator {
         return bundles;
     }
 
+    ContextClassLoaderCache getContextClassLoaderCache() {
+        return contextClassLoaderCache;
+    }
+
+    /**
+     * @return The number of woven calls that reused a cached Thread Context Classloader.
+     */
+    public long getContextClassLoaderCacheHits() {
+        return contextClassLoaderCache.getHits();
+    }
+
+    /**
+     * @return The number of woven calls that had to resolve the Thread Context Classloader.
+     */
+    public long getContextClassLoaderCacheMisses() {
+        return contextClassLoaderCache.getMisses();
+    }
+
     // TODO unRegisterConsumerBundle();
     private class LogServiceTracker extends ServiceTracker {
         public LogServiceTracker(BundleContext context) {
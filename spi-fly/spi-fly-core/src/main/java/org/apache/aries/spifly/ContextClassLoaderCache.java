@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.spifly;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Caches the Thread Context Classloader resolved for a woven call, so that code calling
+ * for example ServiceLoader.load() in a loop gets the same classloader back without looking up
+ * the providers and consumer restrictions again.
+ * <p>
+ * Entries are stamped with the generation at which they were resolved. Any change to the
+ * registered providers or consumer restrictions bumps the generation, which makes all existing
+ * entries stale, including those still being resolved at the time of the change.
+ */
+class ContextClassLoaderCache {
+    // Marker for resolutions that found no classloader
+    private static final Object NO_CLASSLOADER = new Object();
+
+    private final ConcurrentMap<Key, Entry> cache = new ConcurrentHashMap<Key, Entry>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Looks up a cached resolution.
+     * @return The cached entry or {@code null} if nothing valid is cached. A cached entry can hold
+     * a {@code null} classloader when the resolution found no providers.
+     */
+    Entry get(Bundle consumer, String className, String methodName, String argument) {
+        Entry entry = cache.get(new Key(consumer, className, methodName, argument));
+        if (entry != null && entry.generation == generation.get()) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return The generation to pass to {@link #put} once the resolution is done.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    void put(long resolvedGeneration, Bundle consumer, String className, String methodName, String argument,
+            ClassLoader classLoader) {
+        cache.put(new Key(consumer, className, methodName, argument),
+                new Entry(resolvedGeneration, classLoader == null ? NO_CLASSLOADER : classLoader));
+    }
+
+    void invalidate() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    static class Entry {
+        private final long generation;
+        private final Object classLoader;
+
+        Entry(long generation, Object classLoader) {
+            this.generation = generation;
+            this.classLoader = classLoader;
+        }
+
+        ClassLoader getClassLoader() {
+            return classLoader == NO_CLASSLOADER ? null : (ClassLoader) classLoader;
+        }
+    }
+
+    private static class Key {
+        private final Bundle consumer;
+        private final String className;
+        private final String methodName;
+        private final String argument;
+        private final int hashCode;
+
+        Key(Bundle consumer, String className, String methodName, String argument) {
+            this.consumer = consumer;
+            this.className = className;
+            this.methodName = methodName;
+            this.argument = argument;
+
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((consumer == null) ? 0 : consumer.hashCode());
+            result = prime * result + ((className == null) ? 0 : className.hashCode());
+            result = prime * result + ((methodName == null) ? 0 : methodName.hashCode());
+            result = prime * result + ((argument == null) ? 0 : argument.hashCode());
+            hashCode = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return equal(consumer, other.consumer) && equal(className, other.className) &&
+                equal(methodName, other.methodName) && equal(argument, other.argument);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -124,6 +124,22 @@ public class Util {
             args = null; // only supported on ServiceLoader.load() at the moment
         }
 
+        // The resolution only depends on the class name of the argument, not on the Class object itself
+        String argument = clsArg == null ? null : clsArg.getName();
+        ContextClassLoaderCache cache = activator.getContextClassLoaderCache();
+        ContextClassLoaderCache.Entry cached = cache.get(consumerBundle, className, methodName, argument);
+        if (cached != null) {
+            return cached.getClassLoader();
+        }
+
+        long generation = cache.getGeneration();
+        ClassLoader cl = resolveContextClassloader(activator, consumerBundle, className, methodName, requestedClass, args);
+        cache.put(generation, consumerBundle, className, methodName, argument, cl);
+        return cl;
+    }
+
+    private static ClassLoader resolveContextClassloader(BaseActivator activator, Bundle consumerBundle,
+            String className, String methodName, String requestedClass, Map<Pair<Integer, String>, String> args) {
         Collection<Bundle> bundles = new ArrayList<Bundle>(activator.findProviderBundles(requestedClass));
         activator.log(LogService.LOG_DEBUG, "Found bundles providing " + requestedClass + ": " + bundles);
 
@@ -19,6 +19,7 @@
 package org.apache.aries.spifly;
 
 import static junit.framework.Assert.assertNotNull;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 
 import java.net.URL;
@@ -104,6 +105,56 @@ public class UtilTest {
         assertSame(providerCL, Thread.currentThread().getContextClassLoader());
     }
 
+    @Test
+    public void testFixContextClassLoaderCached() throws Exception {
+        BaseActivator activator = new BaseActivator() {
+            public void start(BundleContext context) throws Exception {
+            }
+        };
+        BaseActivator.activator = activator;
+
+        URL url = getClass().getResource("/embedded3.jar");
+        assertNotNull("precondition", url);
+
+        Bundle providerBundle = EasyMock.createMock(Bundle.class);
+        final ClassLoader providerCL = new TestBundleClassLoader(new URL [] {url}, getClass().getClassLoader(), providerBundle);
+        EasyMock.expect(providerBundle.getBundleContext()).andThrow(new IllegalStateException("Disable getBundleClassLoaderViaAdapt")).anyTimes();
+        EasyMock.expect(providerBundle.getBundleId()).andReturn(42L).anyTimes();
+        EasyMock.expect(providerBundle.getEntryPaths((String) EasyMock.anyObject())).andReturn(null).anyTimes();
+        Dictionary<String, String> providerHeaders = new Hashtable<String, String>();
+        providerHeaders.put(Constants.BUNDLE_CLASSPATH, ".,embedded3.jar");
+        EasyMock.expect(providerBundle.getHeaders()).andReturn(providerHeaders).anyTimes();
+        EasyMock.expect(providerBundle.getResource("embedded3.jar")).andReturn(url).anyTimes();
+        providerBundle.loadClass((String) EasyMock.anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Class<?>>() {
+            @Override
+            public Class<?> answer() throws Throwable {
+                return providerCL.loadClass((String) EasyMock.getCurrentArguments()[0]);
+            }
+        }).anyTimes();
+        EasyMock.replay(providerBundle);
+        activator.registerProviderBundle(MySPI.class.getName(), providerBundle, new HashMap<String, Object>());
+
+        Bundle clientBundle = EasyMock.createMock(Bundle.class);
+        EasyMock.replay(clientBundle);
+        ClassLoader clientCL = new TestBundleClassLoader(new URL [] {}, getClass().getClassLoader(), clientBundle);
+
+        for (int i = 0; i < 3; i++) {
+            Thread.currentThread().setContextClassLoader(null);
+            Util.fixContextClassloader(ServiceLoader.class.getName(), "load", MySPI.class, clientCL);
+            assertSame(providerCL, Thread.currentThread().getContextClassLoader());
+        }
+        assertEquals(1, activator.getContextClassLoaderCacheMisses());
+        assertEquals(2, activator.getContextClassLoaderCacheHits());
+
+        // Unregistering the provider invalidates the cached classloader
+        activator.unregisterProviderBundle(providerBundle);
+        Thread.currentThread().setContextClassLoader(null);
+        Util.fixContextClassloader(ServiceLoader.class.getName(), "load", MySPI.class, clientCL);
+        assertSame(null, Thread.currentThread().getContextClassLoader());
+        assertEquals(2, activator.getContextClassLoaderCacheMisses());
+    }
+
     @Test
     public void testNotInitialized() throws Exception {
         BaseActivator.activator = null;
@@ -19,9 +19,12 @@
 package org.apache.aries.spifly.dynamic;
 
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.aries.spifly.Util;
 import org.apache.aries.spifly.WeavingData;
+import org.apache.aries.spifly.weaver.ConstantPoolScanner;
 import org.apache.aries.spifly.weaver.TCCLSetterVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -34,6 +37,8 @@ import org.osgi.service.log.LogService;
 public class ClientWeavingHook implements WeavingHook {
     private final String addedImport;
     private final DynamicWeavingActivator activator;
+    private final ConcurrentMap<Bundle, WeavingStatistics> statistics =
+        new ConcurrentHashMap<Bundle, WeavingStatistics>();
 
     ClientWeavingHook(BundleContext context, DynamicWeavingActivator dwActivator) {
         activator = dwActivator;
@@ -47,23 +52,58 @@ public class ClientWeavingHook implements WeavingHook {
             ";bundle-version=" + bver;
     }
 
-	@Override
-	public void weave(WovenClass wovenClass) {
-	    Bundle consumerBundle = wovenClass.getBundleWiring().getBundle();
+    @Override
+    public void weave(WovenClass wovenClass) {
+        Bundle consumerBundle = wovenClass.getBundleWiring().getBundle();
         Set<WeavingData> wd = activator.getWeavingData(consumerBundle);
         if (wd != null) {
-	        activator.log(LogService.LOG_DEBUG, "Weaving class " + wovenClass.getClassName());
+            WeavingStatistics stats = getOrCreateStatistics(consumerBundle);
+            stats.classScanned();
 
+            // Constructing the reader only indexes the constant pool, use that to rule out
+            // classes that cannot call any of the methods before doing the expensive rewrite.
             ClassReader cr = new ClassReader(wovenClass.getBytes());
+            if (!ConstantPoolScanner.mayReferToWeavingData(cr, wd)) {
+                stats.classSkipped();
+                return;
+            }
+
+            activator.log(LogService.LOG_DEBUG, "Weaving class " + wovenClass.getClassName());
+
             ClassWriter cw = new OSGiFriendlyClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES,
                 wovenClass.getBundleWiring().getClassLoader());
-	        TCCLSetterVisitor tsv = new TCCLSetterVisitor(cw, wovenClass.getClassName(), wd);
-	        cr.accept(tsv, ClassReader.SKIP_FRAMES);
-	        if (tsv.isWoven()) {
-    	        wovenClass.setBytes(cw.toByteArray());
-    	        if (tsv.additionalImportRequired())
-    	            wovenClass.getDynamicImports().add(addedImport);
-	        }
-	    }
-	}
+            TCCLSetterVisitor tsv = new TCCLSetterVisitor(cw, wovenClass.getClassName(), wd);
+            cr.accept(tsv, ClassReader.SKIP_FRAMES);
+            if (tsv.isWoven()) {
+                stats.classWoven();
+                wovenClass.setBytes(cw.toByteArray());
+                if (tsv.additionalImportRequired())
+                    wovenClass.getDynamicImports().add(addedImport);
+            }
+        }
+    }
+
+    /**
+     * @param consumerBundle A consumer bundle.
+     * @return The weaving statistics of the bundle, or {@code null} if none of its classes
+     * were looked at.
+     */
+    WeavingStatistics getStatistics(Bundle consumerBundle) {
+        return statistics.get(consumerBundle);
+    }
+
+    void removeStatistics(Bundle consumerBundle) {
+        statistics.remove(consumerBundle);
+    }
+
+    private WeavingStatistics getOrCreateStatistics(Bundle consumerBundle) {
+        WeavingStatistics stats = statistics.get(consumerBundle);
+        if (stats == null) {
+            WeavingStatistics newStats = new WeavingStatistics();
+            stats = statistics.putIfAbsent(consumerBundle, newStats);
+            if (stats == null)
+                stats = newStats;
+        }
+        return stats;
+    }
 }
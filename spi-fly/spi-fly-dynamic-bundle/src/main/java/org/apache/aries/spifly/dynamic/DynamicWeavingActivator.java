@@ -20,6 +20,7 @@ package org.apache.aries.spifly.dynamic;
 
 import org.apache.aries.spifly.BaseActivator;
 import org.apache.aries.spifly.SpiFlyConstants;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
@@ -28,11 +29,12 @@ import org.osgi.framework.hooks.weaving.WeavingHook;
 public class DynamicWeavingActivator extends BaseActivator implements BundleActivator {
     @SuppressWarnings("rawtypes")
     private ServiceRegistration weavingHookService;
+    private ClientWeavingHook weavingHook;
 
     @Override
     public synchronized void start(BundleContext context) throws Exception {
-        WeavingHook wh = new ClientWeavingHook(context, this);
-        weavingHookService = context.registerService(WeavingHook.class.getName(), wh, null);
+        weavingHook = new ClientWeavingHook(context, this);
+        weavingHookService = context.registerService(WeavingHook.class.getName(), weavingHook, null);
 
         super.start(context, SpiFlyConstants.SPI_CONSUMER_HEADER);
     }
@@ -43,4 +45,23 @@ public class DynamicWeavingActivator extends BaseActivator implements BundleActi
 
         super.stop(context);
     }
+
+    @Override
+    public void removeWeavingData(Bundle bundle) {
+        super.removeWeavingData(bundle);
+
+        ClientWeavingHook wh = weavingHook;
+        if (wh != null)
+            wh.removeStatistics(bundle);
+    }
+
+    /**
+     * @param consumerBundle A consumer bundle.
+     * @return The counts of classes scanned, skipped and woven for the bundle, or {@code null}
+     * if none of its classes went through the weaving hook.
+     */
+    public WeavingStatistics getWeavingStatistics(Bundle consumerBundle) {
+        ClientWeavingHook wh = weavingHook;
+        return wh == null ? null : wh.getStatistics(consumerBundle);
+    }
 }
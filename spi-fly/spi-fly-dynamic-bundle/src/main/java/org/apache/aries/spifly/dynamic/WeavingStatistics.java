@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.spifly.dynamic;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the classes of a consumer bundle that went through the {@link ClientWeavingHook}.
+ */
+public class WeavingStatistics {
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong woven = new AtomicLong();
+
+    void classScanned() {
+        scanned.incrementAndGet();
+    }
+
+    void classSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    void classWoven() {
+        woven.incrementAndGet();
+    }
+
+    /**
+     * @return The number of classes that were checked for calls that need weaving.
+     */
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    /**
+     * @return The number of classes that the constant pool pre-scan ruled out, so that no
+     * rewriting was attempted.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return The number of classes that were actually woven.
+     */
+    public long getWoven() {
+        return woven.get();
+    }
+
+    @Override
+    public String toString() {
+        return "WeavingStatistics [scanned=" + scanned + ", skipped=" + skipped + ", woven=" + woven + "]";
+    }
+}
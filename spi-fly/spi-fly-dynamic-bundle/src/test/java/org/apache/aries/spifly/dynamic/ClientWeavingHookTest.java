@@ -114,6 +114,41 @@ public class ClientWeavingHookTest {
         Assert.assertEquals(Collections.singleton("olleh"), result);
     }
 
+    @Test
+    public void testClassWithoutServiceLoaderCallSkipped() throws Exception {
+        Dictionary<String, String> consumerHeaders = new Hashtable<String, String>();
+        consumerHeaders.put(SpiFlyConstants.SPI_CONSUMER_HEADER, "*");
+
+        Bundle providerBundle = mockProviderBundle("impl1", 1);
+        activator.registerProviderBundle("org.apache.aries.mytest.MySPI", providerBundle, new HashMap<String, Object>());
+
+        Bundle consumerBundle = mockConsumerBundle(consumerHeaders, providerBundle);
+        activator.addConsumerWeavingData(consumerBundle, SpiFlyConstants.SPI_CONSUMER_HEADER);
+
+        Bundle spiFlyBundle = mockSpiFlyBundle("spifly", Version.parseVersion("1.9.4"), consumerBundle, providerBundle);
+        ClientWeavingHook wh = new ClientWeavingHook(spiFlyBundle.getBundleContext(), activator);
+
+        // JaxpClient doesn't call ServiceLoader.load() so the pre-scan should rule it out.
+        URL clsUrl = getClass().getResource("JaxpClient.class");
+        Assert.assertNotNull("Precondition", clsUrl);
+        WovenClass wc = new MyWovenClass(clsUrl, "org.apache.aries.spifly.dynamic.JaxpClient", consumerBundle);
+        byte[] originalBytes = wc.getBytes();
+        wh.weave(wc);
+        Assert.assertSame(originalBytes, wc.getBytes());
+        Assert.assertEquals(0, wc.getDynamicImports().size());
+
+        URL clsUrl2 = getClass().getResource("TestClient.class");
+        Assert.assertNotNull("Precondition", clsUrl2);
+        WovenClass wc2 = new MyWovenClass(clsUrl2, "org.apache.aries.spifly.dynamic.TestClient", consumerBundle);
+        wh.weave(wc2);
+        Assert.assertEquals(1, wc2.getDynamicImports().size());
+
+        WeavingStatistics stats = wh.getStatistics(consumerBundle);
+        Assert.assertEquals(2, stats.getScanned());
+        Assert.assertEquals(1, stats.getSkipped());
+        Assert.assertEquals(1, stats.getWoven());
+    }
+
     @Test
     public void testTCCLResetting() throws Exception {
         ClassLoader cl = new URLClassLoader(new URL [] {});
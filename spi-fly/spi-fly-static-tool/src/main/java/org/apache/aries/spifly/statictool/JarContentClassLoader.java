@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.spifly.statictool;
+
+import java.util.Map;
+
+/**
+ * Classloader that defines classes straight from the in-memory content of the jar being
+ * processed, so that the {@link StaticToolClassWriter} can compute frames without the jar
+ * being extracted to disk first.
+ */
+public class JarContentClassLoader extends ClassLoader {
+    private final Map<String, byte[]> entries;
+
+    /**
+     * @param entries The jar content, keyed by entry name.
+     * @param parent The parent classloader.
+     */
+    public JarContentClassLoader(Map<String, byte[]> entries, ClassLoader parent) {
+        super(parent);
+        this.entries = entries;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = entries.get(name.replace('.', '/') + ".class");
+        if (bytes == null)
+            throw new ClassNotFoundException(name);
+
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
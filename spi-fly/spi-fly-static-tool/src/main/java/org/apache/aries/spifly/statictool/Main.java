@@ -19,6 +19,7 @@
 package org.apache.aries.spifly.statictool;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -26,11 +27,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
@@ -40,6 +55,7 @@ import org.apache.aries.spifly.SpiFlyConstants;
 import org.apache.aries.spifly.Streams;
 import org.apache.aries.spifly.Util;
 import org.apache.aries.spifly.WeavingData;
+import org.apache.aries.spifly.weaver.ConstantPoolScanner;
 import org.apache.aries.spifly.weaver.TCCLSetterVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -49,6 +65,7 @@ import org.osgi.framework.Version;
 public class Main {
     private static final String MODIFIED_BUNDLE_SUFFIX = "_spifly.jar";
     private static final String IMPORT_PACKAGE = "Import-Package";
+    private static final String SOURCE_DIGEST_HEADER = "X-SpiFly-Source-Digest";
 
     public static void usage() {
         System.err.println("This tool processes OSGi Bundles that use java.util.ServiceLoader.load() to");
@@ -69,31 +86,59 @@ public class Main {
         if (args.length < 1)
             usage();
 
-        for (String arg : args) {
-            weaveJar(arg);
+        long start = System.nanoTime();
+        Report total = new Report();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (String arg : args) {
+                weaveJar(arg, executor, total);
+            }
+        } finally {
+            executor.shutdown();
         }
+        total.print("All bundles", System.nanoTime() - start);
     }
 
-    private static void weaveJar(String jarPath) throws Exception {
+    private static void weaveJar(String jarPath, ExecutorService executor, Report total) throws Exception {
         System.out.println("[SPI Fly Static Tool] Processing: " + jarPath);
+        long start = System.nanoTime();
 
         File jarFile = new File(jarPath);
-        File tempDir = new File(System.getProperty("java.io.tmpdir") + File.separator + jarFile.getName() + "_" + System.currentTimeMillis());
-        Manifest manifest = unJar(jarFile, tempDir);
-        String consumerHeaderVal = manifest.getMainAttributes().getValue(SpiFlyConstants.SPI_CONSUMER_HEADER);
-        String consumerHeaderKey = null;
-        if (consumerHeaderVal != null) {
-            consumerHeaderKey = SpiFlyConstants.SPI_CONSUMER_HEADER;
-        } else {
-            consumerHeaderVal = manifest.getMainAttributes().getValue(SpiFlyConstants.REQUIRE_CAPABILITY);
-            if (consumerHeaderVal != null) {
-                consumerHeaderKey = SpiFlyConstants.REQUIRE_CAPABILITY;
+        byte[] jarBytes = Streams.suck(new FileInputStream(jarFile));
+        JarInputStream jis = new JarInputStream(new ByteArrayInputStream(jarBytes));
+        try {
+            Manifest manifest = jis.getManifest();
+            String consumerHeaderVal = null;
+            String consumerHeaderKey = null;
+            if (manifest != null) {
+                consumerHeaderVal = manifest.getMainAttributes().getValue(SpiFlyConstants.SPI_CONSUMER_HEADER);
+                if (consumerHeaderVal != null) {
+                    consumerHeaderKey = SpiFlyConstants.SPI_CONSUMER_HEADER;
+                } else {
+                    consumerHeaderVal = manifest.getMainAttributes().getValue(SpiFlyConstants.REQUIRE_CAPABILITY);
+                    if (consumerHeaderVal != null) {
+                        consumerHeaderKey = SpiFlyConstants.REQUIRE_CAPABILITY;
+                    }
+                }
+            }
+
+            if (consumerHeaderVal == null) {
+                System.out.println("[SPI Fly Static Tool] This file is not marked as an SPI Consumer.");
+                return;
             }
-        }
 
-        if (consumerHeaderVal != null) {
+            File newJar = getNewJarFile(jarFile);
+            String digest = digest(jarBytes);
+            if (isUpToDate(newJar, digest)) {
+                System.out.println("[SPI Fly Static Tool] Unchanged since it was last processed, skipping: " + newJar);
+                return;
+            }
+
+            Set<WeavingData> wd = ConsumerHeaderProcessor.processHeader(consumerHeaderKey, consumerHeaderVal);
             String bcp = manifest.getMainAttributes().getValue(Constants.BUNDLE_CLASSPATH);
-            weaveDir(tempDir, consumerHeaderKey, consumerHeaderVal, bcp);
+            Report report = new Report();
+            report.addBytes(jarBytes.length);
+            List<JarContent> content = weaveContent(jis, wd, bcp, executor, report);
 
             if (SpiFlyConstants.SPI_CONSUMER_HEADER.equals(consumerHeaderKey)) {
                 manifest.getMainAttributes().remove(new Attributes.Name(SpiFlyConstants.SPI_CONSUMER_HEADER));
@@ -116,13 +161,20 @@ public class Main {
 
             // TODO if new packages needed then...
             extendImportPackage(manifest);
+            manifest.getMainAttributes().putValue(SOURCE_DIGEST_HEADER, digest);
 
-            File newJar = getNewJarFile(jarFile);
-            jar(newJar, tempDir, manifest);
-        } else {
-            System.out.println("[SPI Fly Static Tool] This file is not marked as an SPI Consumer.");
+            OutputStream os = new FileOutputStream(newJar);
+            try {
+                writeContent(new JarOutputStream(os, manifest), content);
+            } finally {
+                os.close();
+            }
+
+            report.print(jarFile.getName(), System.nanoTime() - start);
+            total.add(report);
+        } finally {
+            jis.close();
         }
-        delTree(tempDir);
     }
 
     private static void extendImportPackage(Manifest manifest) throws IOException {
@@ -170,179 +222,209 @@ public class Main {
         return new File(s);
     }
 
-    private static void weaveDir(File dir, String consumerHeaderKey, String consumerHeaderValue, String bundleClassPath) throws Exception {
-        Set<WeavingData> wd = ConsumerHeaderProcessor.processHeader(consumerHeaderKey, consumerHeaderValue);
-
-        URLClassLoader cl = new URLClassLoader(new URL [] {dir.toURI().toURL()}, Main.class.getClassLoader());
-        String dirName = dir.getAbsolutePath();
-
-        DirTree dt = new DirTree(dir);
-        for (File f : dt.getFiles()) {
-            if (!f.getName().endsWith(".class"))
+    /**
+     * Reads all the entries of the jar into memory and weaves its classes in parallel.
+     * Jars on the Bundle-ClassPath are woven on the calling thread while the classes of the
+     * outer jar are being processed, so that pool threads never wait on each other.
+     */
+    private static List<JarContent> weaveContent(JarInputStream jis, final Set<WeavingData> wd, String bundleClassPath,
+            ExecutorService executor, final Report report) throws Exception {
+        Map<String, byte[]> entries = new HashMap<String, byte[]>();
+        List<JarContent> content = new ArrayList<JarContent>();
+        JarEntry je;
+        while ((je = jis.getNextJarEntry()) != null) {
+            if ("META-INF/MANIFEST.MF".equals(je.getName()))
                 continue;
 
-            String className = f.getAbsolutePath().substring(dirName.length());
-            if (className.startsWith(File.separator))
-                className = className.substring(1);
-            className = className.substring(0, className.length() - ".class".length());
-            className = className.replace(File.separator, ".");
-
-            InputStream is = new FileInputStream(f);
-            byte[] b;
-            try {
-                ClassReader cr = new ClassReader(is);
-                ClassWriter cw = new StaticToolClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES, cl);
-                TCCLSetterVisitor cv = new TCCLSetterVisitor(cw, className, wd);
-                cr.accept(cv, ClassReader.SKIP_FRAMES);
-                if (cv.isWoven()) {
-                    b = cw.toByteArray();
-                } else {
-                    // if not woven, store the original bytes
-                    b = Streams.suck(new FileInputStream(f));
-                }
-            } finally {
-                is.close();
-            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Streams.pump(jis, baos);
+            jis.closeEntry();
 
-            OutputStream os = new FileOutputStream(f);
-            try {
-                os.write(b);
-            } finally {
-                os.close();
-            }
+            JarContent jc = new JarContent(je, baos.toByteArray());
+            content.add(jc);
+            entries.put(je.getName(), jc.bytes);
         }
 
+        Set<String> bcpEntries = new HashSet<String>();
         if (bundleClassPath != null) {
             for (String entry : bundleClassPath.split(",")) {
-                File jarFile = new File(dir, entry.trim());
-                if (jarFile.isFile()) {
-                    weaveBCPJar(jarFile, consumerHeaderKey, consumerHeaderValue);
-                }
+                bcpEntries.add(entry.trim());
             }
         }
-    }
 
-    private static void weaveBCPJar(File jarFile, String consumerHeaderKey, String consumerHeaderVal) throws Exception {
-        File tempDir = new File(System.getProperty("java.io.tmpdir") + File.separator + jarFile.getName() + "_" + System.currentTimeMillis());
-        try {
-            Manifest manifest = unJar(jarFile, tempDir);
-            weaveDir(tempDir, consumerHeaderKey, consumerHeaderVal, null);
-            if (!jarFile.delete()) {
-                throw new IOException("Could not replace file: " + jarFile);
+        final ClassLoader cl = new JarContentClassLoader(entries, Main.class.getClassLoader());
+        for (final JarContent jc : content) {
+            final String name = jc.entry.getName();
+            if (!jc.entry.isDirectory() && name.endsWith(".class")) {
+                jc.woven = executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                        return weaveClass(jc.bytes, className, wd, cl, report);
+                    }
+                });
             }
+        }
 
-            jar(jarFile, tempDir, manifest);
-        } finally {
-            delTree(tempDir);
+        for (JarContent jc : content) {
+            if (bcpEntries.contains(jc.entry.getName())) {
+                jc.bytes = weaveBCPJar(jc.bytes, wd, executor, report);
+            }
         }
+        return content;
     }
 
-    static Manifest unJar(File jarFile, File tempDir) throws IOException {
-        ensureDirectory(tempDir);
+    private static byte[] weaveClass(byte[] bytes, String className, Set<WeavingData> wd, ClassLoader cl, Report report) {
+        report.classScanned();
 
-        JarInputStream jis = new JarInputStream(new FileInputStream(jarFile));
-        JarEntry je = null;
-        while((je = jis.getNextJarEntry()) != null) {
-            if (je.isDirectory()) {
-                File outDir = new File(tempDir, je.getName());
-                ensureDirectory(outDir);
+        // Constructing the reader only indexes the constant pool, use that to rule out
+        // classes that cannot call any of the methods before doing the expensive rewrite.
+        ClassReader cr = new ClassReader(bytes);
+        if (!ConstantPoolScanner.mayReferToWeavingData(cr, wd)) {
+            report.classSkipped();
+            return bytes;
+        }
 
-                continue;
-            }
+        ClassWriter cw = new StaticToolClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES, cl);
+        TCCLSetterVisitor cv = new TCCLSetterVisitor(cw, className, wd);
+        cr.accept(cv, ClassReader.SKIP_FRAMES);
+        if (cv.isWoven()) {
+            report.classWoven();
+            return cw.toByteArray();
+        } else {
+            // if not woven, store the original bytes
+            return bytes;
+        }
+    }
 
-            File outFile = new File(tempDir, je.getName());
-            File outDir = outFile.getParentFile();
-            ensureDirectory(outDir);
+    private static byte[] weaveBCPJar(byte[] jarBytes, Set<WeavingData> wd, ExecutorService executor, Report report) throws Exception {
+        JarInputStream jis = new JarInputStream(new ByteArrayInputStream(jarBytes));
+        try {
+            Manifest manifest = jis.getManifest();
+            List<JarContent> content = weaveContent(jis, wd, null, executor, report);
 
-            OutputStream out = new FileOutputStream(outFile);
-            try {
-                Streams.pump(jis, out);
-            } finally {
-                out.flush();
-                out.close();
-                jis.closeEntry();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(jarBytes.length);
+            writeContent(manifest == null ? new JarOutputStream(baos) : new JarOutputStream(baos, manifest), content);
+            return baos.toByteArray();
+        } finally {
+            jis.close();
+        }
+    }
+
+    private static void writeContent(JarOutputStream jos, List<JarContent> content) throws Exception {
+        try {
+            for (JarContent jc : content) {
+                JarEntry entry = new JarEntry(jc.entry.getName());
+                entry.setTime(jc.entry.getTime());
+                jos.putNextEntry(entry);
+                jos.write(jc.getBytes());
+                jos.closeEntry();
             }
-            outFile.setLastModified(je.getTime());
+        } finally {
+            jos.finish();
         }
+    }
 
-        Manifest manifest = jis.getManifest();
-        if (manifest != null) {
-            File mf = new File(tempDir, "META-INF/MANIFEST.MF");
-            File mfDir = mf.getParentFile();
-            ensureDirectory(mfDir);
+    private static boolean isUpToDate(File newJar, String digest) {
+        if (!newJar.isFile())
+            return false;
 
-            OutputStream out = new FileOutputStream(mf);
+        try {
+            JarFile jf = new JarFile(newJar);
             try {
-                manifest.write(out);
+                Manifest manifest = jf.getManifest();
+                return manifest != null && digest.equals(manifest.getMainAttributes().getValue(SOURCE_DIGEST_HEADER));
             } finally {
-                out.flush();
-                out.close();
+                jf.close();
             }
+        } catch (IOException e) {
+            // Can't read the previous output, process the jar again
+            return false;
         }
-
-        jis.close();
-        return manifest;
     }
 
-    static void jar(File jarFile, File rootFile, Manifest manifest) throws IOException {
-        JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile), manifest);
-        try {
-            addToJarRecursively(jos, rootFile.getAbsoluteFile(), rootFile.getAbsolutePath());
-        } finally {
-            jos.close();
+    private static String digest(byte[] bytes) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
         }
+        return sb.toString();
     }
 
-    static void addToJarRecursively(JarOutputStream jar, File source, String rootDirectory) throws IOException {
-        String sourceName = source.getAbsolutePath().replace("\\", "/");
-        sourceName = sourceName.substring(rootDirectory.length());
-
-        if (sourceName.startsWith("/")) {
-            sourceName = sourceName.substring(1);
+    /**
+     * An entry of the jar being processed, with its content held in memory.
+     */
+    private static class JarContent {
+        private final JarEntry entry;
+        private byte[] bytes;
+        private Future<byte[]> woven;
+
+        JarContent(JarEntry entry, byte[] bytes) {
+            this.entry = entry;
+            this.bytes = bytes;
         }
 
-        if ("META-INF/MANIFEST.MF".equals(sourceName))
-            return;
+        byte[] getBytes() throws Exception {
+            if (woven == null)
+                return bytes;
 
-        if (source.isDirectory()) {
-            /* Is there any point in adding a directory beyond just taking up space?
-            if (!sourceName.isEmpty()) {
-                if (!sourceName.endsWith("/")) {
-                    sourceName += "/";
-                }
-                JarEntry entry = new JarEntry(sourceName);
-                jar.putNextEntry(entry);
-                jar.closeEntry();
-            }
-            */
-            for (File nested : source.listFiles()) {
-                addToJarRecursively(jar, nested, rootDirectory);
+            try {
+                return woven.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception)
+                    throw (Exception) e.getCause();
+                throw e;
             }
-            return;
         }
+    }
 
-        JarEntry entry = new JarEntry(sourceName);
-        jar.putNextEntry(entry);
-        InputStream is = new FileInputStream(source);
-        try {
-            Streams.pump(is, jar);
-        } finally {
-            jar.closeEntry();
-            is.close();
+    /**
+     * Timing and throughput figures printed after processing.
+     */
+    private static class Report {
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger bundles = new AtomicInteger();
+        private final AtomicInteger scanned = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger woven = new AtomicInteger();
+
+        void addBytes(long count) {
+            bytes.addAndGet(count);
         }
-    }
 
-    static void delTree(File tempDir) throws IOException {
-        for (File f : new DirTree(tempDir).getFiles()) {
-            if (!f.delete())
-                throw new IOException("Problem deleting file: " + tempDir.getAbsolutePath());
+        void classScanned() {
+            scanned.incrementAndGet();
+        }
+
+        void classSkipped() {
+            skipped.incrementAndGet();
+        }
+
+        void classWoven() {
+            woven.incrementAndGet();
         }
-    }
 
-    private static void ensureDirectory(File outDir) throws IOException {
-        if (!outDir.isDirectory())
-            if (!outDir.mkdirs())
-                throw new IOException("Unable to create directory " + outDir.getAbsolutePath());
+        void add(Report other) {
+            bundles.incrementAndGet();
+            bytes.addAndGet(other.bytes.get());
+            scanned.addAndGet(other.scanned.get());
+            skipped.addAndGet(other.skipped.get());
+            woven.addAndGet(other.woven.get());
+        }
+
+        void print(String name, long nanos) {
+            double seconds = Math.max(nanos, 1) / 1000000000.0;
+            StringBuilder sb = new StringBuilder("[SPI Fly Static Tool] ");
+            sb.append(name).append(": ");
+            if (bundles.get() > 0)
+                sb.append(bundles).append(" bundle(s) woven, ");
+            sb.append(scanned).append(" classes (").append(skipped).append(" skipped by pre-scan, ");
+            sb.append(woven).append(" woven) in ").append(nanos / 1000000).append(" ms, ");
+            sb.append(String.format("%.1f", scanned.get() / seconds)).append(" classes/s, ");
+            sb.append(String.format("%.1f", bytes.get() / 1024.0 / 1024.0 / seconds)).append(" MB/s");
+            System.out.println(sb);
+        }
     }
 }
-
@@ -104,4 +104,41 @@ public class ConsumerTest {
                 expectedFile.delete();
         }
     }
+
+    @Test
+    public void testUnchangedBundleNotProcessedAgain() throws Exception {
+        String testClassFileName = TestClass.class.getName().replace('.', '/') + ".class";
+        URL testClassURL = getClass().getResource("/" + testClassFileName);
+
+        File jarFile = new File(System.getProperty("java.io.tmpdir") + "/testjar_" + System.currentTimeMillis() + ".jar");
+        File expectedFile = new File(jarFile.getParent(), jarFile.getName().replaceAll("[.]jar", "_spifly.jar"));
+        try {
+            Manifest mf = new Manifest();
+            Attributes mainAttributes = mf.getMainAttributes();
+            mainAttributes.putValue("Manifest-Version", "1.0");
+            mainAttributes.putValue("Bundle-ManifestVersion", "2.0");
+            mainAttributes.putValue("Bundle-SymbolicName", "testbundle");
+            mainAttributes.putValue(SpiFlyConstants.SPI_CONSUMER_HEADER, Test2Class.class.getName() + "#getTCCL()");
+
+            JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile), mf);
+            jos.putNextEntry(new ZipEntry(testClassFileName));
+            Streams.pump(testClassURL.openStream(), jos);
+            jos.close();
+
+            Main.main(jarFile.getCanonicalPath());
+            Assert.assertTrue("A processed separate bundle should have been created", expectedFile.exists());
+
+            JarFile transformedJarFile = new JarFile(expectedFile);
+            Assert.assertNotNull(transformedJarFile.getManifest().getMainAttributes().getValue("X-SpiFly-Source-Digest"));
+            transformedJarFile.close();
+
+            Assert.assertTrue(expectedFile.setLastModified(0));
+            Main.main(jarFile.getCanonicalPath());
+            Assert.assertEquals("The processed bundle is up to date and should not have been written again",
+                    0, expectedFile.lastModified());
+        } finally {
+            jarFile.delete();
+            expectedFile.delete();
+        }
+    }
 }
@@ -18,103 +18,175 @@
  */
 package org.apache.aries.spifly.statictool;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
+import org.apache.aries.spifly.SpiFlyConstants;
 import org.apache.aries.spifly.Streams;
-import org.junit.Assert;
+import org.apache.aries.spifly.statictool.bundle.Test2Class;
+import org.apache.aries.spifly.statictool.bundle.TestClass;
 import org.junit.Test;
-import org.junit.internal.ArrayComparisonFailure;
 
 public class MainTest {
+    private static final String TEST_CLASS = TestClass.class.getName().replace('.', '/') + ".class";
+    private static final String EMBEDDED_JAR = "lib/embedded.jar";
+
     @Test
-    public void testUnJarReJar() throws Exception {
-        URL jarURL = getClass().getResource("/testjar.jar");
-        File jarFile = new File(jarURL.getFile());
-        File tempDir = new File(System.getProperty("java.io.tmpdir") + "/testjar_" + System.currentTimeMillis());
-        
+    public void testWeaveJar() throws Exception {
+        // the entries of testjar.jar, a class to weave and a jar on the Bundle-ClassPath
+        Map<String, byte[]> embedded = new LinkedHashMap<String, byte[]>();
+        embedded.put(TEST_CLASS, Streams.suck(getClass().getResourceAsStream("/" + TEST_CLASS)));
+        Manifest embeddedManifest = new Manifest();
+        embeddedManifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        embeddedManifest.getMainAttributes().putValue("Foo", "Bar");
+        ByteArrayOutputStream embeddedJar = new ByteArrayOutputStream();
+        writeJar(embeddedJar, embeddedManifest, embedded);
+
+        Map<String, byte[]> entries = readJar(getClass().getResourceAsStream("/testjar.jar"), null);
+        entries.put(TEST_CLASS, embedded.get(TEST_CLASS));
+        entries.put(EMBEDDED_JAR, embeddedJar.toByteArray());
+
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.putValue("Manifest-Version", "1.0");
+        attributes.putValue("Bundle-ManifestVersion", "2");
+        attributes.putValue("Bundle-SymbolicName", "testbundle");
+        attributes.putValue("Bundle-ClassPath", ".," + EMBEDDED_JAR);
+        attributes.putValue(SpiFlyConstants.SPI_CONSUMER_HEADER, Test2Class.class.getName() + "#getTCCL()");
+
+        File jarFile = File.createTempFile("testjar_", ".jar");
+        File wovenFile = new File(jarFile.getParent(), jarFile.getName().replaceAll("[.]jar", "_spifly.jar"));
         try {
-            Manifest manifest = Main.unJar(jarFile, tempDir);
-            
-            assertStreams(new File(tempDir, "META-INF/MANIFEST.MF"), 
-                    "jar:" + jarURL + "!/META-INF/MANIFEST.MF");
-            
-            assertStreams(new File(tempDir, "A text File with no content"),
-                    "jar:" + jarURL + "!/A text File with no content");
-            assertStreams(new File(tempDir, "dir/Main.class"),
-                    "jar:" + jarURL + "!/dir/Main.class");
-            assertStreams(new File(tempDir, "dir/dir 2/a.txt"), 
-                    "jar:" + jarURL + "!/dir/dir 2/a.txt");
-            assertStreams(new File(tempDir, "dir/dir 2/b.txt"), 
-                    "jar:" + jarURL + "!/dir/dir 2/b.txt");
-                        
-            Assert.assertTrue(new File(tempDir, "dir/dir.3").exists());
-            
-            // Create a second jar from the exploded directory
-            File copiedFile = new File(jarFile.getAbsolutePath() + ".copy");            
-            Main.jar(copiedFile, tempDir, manifest);
-            URL copyURL = copiedFile.toURI().toURL();
-            
-            assertStreams("jar:" + copyURL + "!/META-INF/MANIFEST.MF", 
-                    "jar:" + jarURL + "!/META-INF/MANIFEST.MF");
-            
-            assertStreams("jar:" + copyURL + "!/A text File with no content",
-                    "jar:" + jarURL + "!/A text File with no content");
-            assertStreams("jar:" + copyURL + "!/dir/Main.class",
-                    "jar:" + jarURL + "!/dir/Main.class");
-            assertStreams("jar:" + copyURL + "!/dir/dir 2/a.txt", 
-                    "jar:" + jarURL + "!/dir/dir 2/a.txt");
-            assertStreams("jar:" + copyURL + "!/dir/dir 2/b.txt", 
-                    "jar:" + jarURL + "!/dir/dir 2/b.txt");
+            OutputStream os = new FileOutputStream(jarFile);
+            try {
+                writeJar(os, manifest, entries);
+            } finally {
+                os.close();
+            }
+            List<Long> times = getEntryTimes(jarFile);
+
+            Main.main(jarFile.getCanonicalPath());
+            assertTrue("A processed separate bundle should have been created", wovenFile.isFile());
+
+            Manifest wovenManifest = new Manifest();
+            Map<String, byte[]> woven = readJar(new FileInputStream(wovenFile), wovenManifest);
+            Attributes wovenAttributes = wovenManifest.getMainAttributes();
+            assertEquals("testbundle", wovenAttributes.getValue("Bundle-SymbolicName"));
+            assertEquals(".," + EMBEDDED_JAR, wovenAttributes.getValue("Bundle-ClassPath"));
+            assertNull(wovenAttributes.getValue(SpiFlyConstants.SPI_CONSUMER_HEADER));
+            assertEquals(Test2Class.class.getName() + "#getTCCL()",
+                    wovenAttributes.getValue(SpiFlyConstants.PROCESSED_SPI_CONSUMER_HEADER));
+            assertEquals("org.apache.aries.spifly;version=\"[1.0.0,1.1.0)\"", wovenAttributes.getValue("Import-Package"));
+            assertNotNull(wovenAttributes.getValue("X-SpiFly-Source-Digest"));
+
+            // same entries in the same order and with the same times, only the class is woven
+            assertEquals(new ArrayList<String>(entries.keySet()), new ArrayList<String>(woven.keySet()));
+            assertEquals(times, getEntryTimes(wovenFile));
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                if (TEST_CLASS.equals(entry.getKey())) {
+                    assertFalse("The class should have been woven",
+                            Arrays.equals(entry.getValue(), woven.get(entry.getKey())));
+                } else if (!EMBEDDED_JAR.equals(entry.getKey())) {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), woven.get(entry.getKey()));
+                }
+            }
+            assertTrue(woven.containsKey("dir/dir.3/"));
+
+            // the jar on the Bundle-ClassPath is woven too and keeps its manifest
+            Manifest wovenEmbeddedManifest = new Manifest();
+            Map<String, byte[]> wovenEmbedded = readJar(new ByteArrayInputStream(woven.get(EMBEDDED_JAR)), wovenEmbeddedManifest);
+            assertEquals("Bar", wovenEmbeddedManifest.getMainAttributes().getValue("Foo"));
+            assertEquals(Arrays.asList(TEST_CLASS), new ArrayList<String>(wovenEmbedded.keySet()));
+            assertArrayEquals(woven.get(TEST_CLASS), wovenEmbedded.get(TEST_CLASS));
         } finally {
-            Main.delTree(tempDir);
+            jarFile.delete();
+            wovenFile.delete();
         }
     }
 
     @Test
-    public void testDelTree() throws IOException {
-        URL jarURL = getClass().getResource("/testjar.jar");
-        File jarFile = new File(jarURL.getFile());
-        File tempDir = new File(System.getProperty("java.io.tmpdir") + "/testjar_" + System.currentTimeMillis());
-        
-        assertFalse("Precondition", tempDir.exists());
-        Main.unJar(jarFile, tempDir);
-        assertTrue(tempDir.exists());
-        
-        Main.delTree(tempDir);                
-        assertFalse(tempDir.exists());
+    public void testNonConsumerJarNotWritten() throws Exception {
+        File jarFile = File.createTempFile("testjar_", ".jar");
+        File wovenFile = new File(jarFile.getParent(), jarFile.getName().replaceAll("[.]jar", "_spifly.jar"));
+        try {
+            OutputStream os = new FileOutputStream(jarFile);
+            try {
+                os.write(Streams.suck(getClass().getResourceAsStream("/testjar.jar")));
+            } finally {
+                os.close();
+            }
+
+            Main.main(jarFile.getCanonicalPath());
+            assertFalse(wovenFile.exists());
+        } finally {
+            jarFile.delete();
+            wovenFile.delete();
+        }
     }
-    
-    private void assertStreams(String url1, String url2) throws Exception {
-        InputStream is1 = new URL(url1).openStream();
-        InputStream is2 = new URL(url2).openStream();
-        assertStreams(is1, is2);
+
+    private static void writeJar(OutputStream os, Manifest manifest, Map<String, byte[]> entries) throws IOException {
+        JarOutputStream jos = new JarOutputStream(os, manifest);
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            jos.putNextEntry(new JarEntry(entry.getKey()));
+            jos.write(entry.getValue());
+            jos.closeEntry();
+        }
+        jos.finish();
     }
-    
-    private void assertStreams(File file, String url) throws Exception {
-        InputStream is1 = new FileInputStream(file);
-        InputStream is2 = new URL(url).openStream();
-        assertStreams(is1, is2);
+
+    private static Map<String, byte[]> readJar(InputStream is, Manifest manifest) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        JarInputStream jis = new JarInputStream(is);
+        try {
+            if (manifest != null && jis.getManifest() != null) {
+                manifest.getMainAttributes().putAll(jis.getManifest().getMainAttributes());
+            }
+            JarEntry je;
+            while ((je = jis.getNextJarEntry()) != null) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                Streams.pump(jis, baos);
+                entries.put(je.getName(), baos.toByteArray());
+            }
+        } finally {
+            jis.close();
+        }
+        return entries;
     }
 
-    private void assertStreams(InputStream is1, InputStream is2)
-            throws IOException, ArrayComparisonFailure {
+    private static List<Long> getEntryTimes(File jarFile) throws IOException {
+        List<Long> times = new ArrayList<Long>();
+        JarInputStream jis = new JarInputStream(new FileInputStream(jarFile));
         try {
-            byte[] bytes1 = Streams.suck(is1);
-            byte[] bytes2 = Streams.suck(is2);
-            Assert.assertArrayEquals("Files not equal", bytes1, bytes2);
+            JarEntry je;
+            while ((je = jis.getNextJarEntry()) != null) {
+                times.add(je.getTime());
+            }
         } finally {
-            is1.close();
-            is2.close();
+            jis.close();
         }
+        return times;
     }
 }
-
-
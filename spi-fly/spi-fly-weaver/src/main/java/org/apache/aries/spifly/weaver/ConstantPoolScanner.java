@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.spifly.weaver;
+
+import java.nio.charset.Charset;
+import java.util.Set;
+
+import org.apache.aries.spifly.WeavingData;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Cheap check run before the {@link TCCLSetterVisitor}. A class can only invoke a method if its
+ * constant pool holds both the internal name of the owner class and the name of the method as
+ * UTF8 constants, so when no {@link WeavingData} has both present the class cannot need weaving
+ * and the expensive rewrite (which computes frames and may load classes) can be skipped.
+ * <p>
+ * Only the constant pool is looked at, no ASM visitor is run over the class.
+ */
+public class ConstantPoolScanner {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int UTF8_TAG = 1;
+
+    private ConstantPoolScanner() {
+        // Only static methods
+    }
+
+    /**
+     * @param classBytes The bytes of the class to check.
+     * @param weavingData The calls that need to be woven.
+     * @return {@code false} if the class cannot refer to any of the calls, {@code true} if it might.
+     */
+    public static boolean mayReferToWeavingData(byte[] classBytes, Set<WeavingData> weavingData) {
+        return mayReferToWeavingData(new ClassReader(classBytes), weavingData);
+    }
+
+    /**
+     * @param cr A class reader over the class to check. Constructing the reader only indexes the
+     * constant pool, so it can be reused for the actual weaving afterwards.
+     * @param weavingData The calls that need to be woven.
+     * @return {@code false} if the class cannot refer to any of the calls, {@code true} if it might.
+     */
+    public static boolean mayReferToWeavingData(ClassReader cr, Set<WeavingData> weavingData) {
+        for (WeavingData wd : weavingData) {
+            byte[] owner = wd.getClassName().replace('.', '/').getBytes(UTF8);
+            byte[] method = wd.getMethodName().getBytes(UTF8);
+            if (containsUTF8(cr, owner) && containsUTF8(cr, method))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean containsUTF8(ClassReader cr, byte[] value) {
+        byte[] b = cr.b;
+        for (int i = 1; i < cr.getItemCount(); i++) {
+            int index = cr.getItem(i);
+            // The second slot of long and double constants has no item
+            if (index == 0 || b[index - 1] != UTF8_TAG)
+                continue;
+
+            int length = ((b[index] & 0xFF) << 8) | (b[index + 1] & 0xFF);
+            if (length != value.length)
+                continue;
+
+            int start = index + 2;
+            boolean equal = true;
+            for (int j = 0; j < length; j++) {
+                if (b[start + j] != value[j]) {
+                    equal = false;
+                    break;
+                }
+            }
+            if (equal)
+                return true;
+        }
+        return false;
+    }
+}
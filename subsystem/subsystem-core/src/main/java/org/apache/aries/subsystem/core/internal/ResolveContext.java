@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -47,19 +48,69 @@ public class ResolveContext extends org.osgi.service.resolver.ResolveContext {
 	private final Repository repositoryServiceRepository;
 	private final SubsystemResource resource;
 	private final Repository systemRepository;
-	private final Map<Resource, Wiring> wirings = computeWirings();
+	private final Map<Resource, Wiring> wirings;
+	// The resolver asks for the providers of the same requirement objects over
+	// and over while backtracking. The repositories do not change during a
+	// resolution so the answers are remembered for the lifetime of this context.
+	// Identity is used because requirement equality is not reliable across
+	// implementations.
+	private final Map<Requirement, List<Capability>> providers = new IdentityHashMap<Requirement, List<Capability>>();
+	private int findProvidersCount;
+	private int findProvidersHits;
+	private long findProvidersNanos;
 	
 	public ResolveContext(SubsystemResource resource) {
+		this(resource, computeWirings(),
+				new ContentRepository(resource.getInstallableContent(), resource.getSharedContent()),
+				resource.getLocalRepository(),
+				new PreferredProviderRepository(resource),
+				new RepositoryServiceRepository(),
+				Activator.getInstance().getSystemRepository());
+	}
+	
+	ResolveContext(SubsystemResource resource, Map<Resource, Wiring> wirings, 
+			Repository contentRepository, Repository localRepository, 
+			Repository preferredProviderRepository, Repository repositoryServiceRepository, 
+			Repository systemRepository) {
 		this.resource = resource;
-		contentRepository = new ContentRepository(resource.getInstallableContent(), resource.getSharedContent());
-		localRepository = resource.getLocalRepository();
-		preferredProviderRepository = new PreferredProviderRepository(resource);
-		repositoryServiceRepository = new RepositoryServiceRepository();
-		systemRepository = Activator.getInstance().getSystemRepository();
+		this.wirings = wirings;
+		this.contentRepository = contentRepository;
+		this.localRepository = localRepository;
+		this.preferredProviderRepository = preferredProviderRepository;
+		this.repositoryServiceRepository = repositoryServiceRepository;
+		this.systemRepository = systemRepository;
 	}
 	
 	@Override
 	public List<Capability> findProviders(Requirement requirement) {
+		findProvidersCount++;
+		List<Capability> providers = this.providers.get(requirement);
+		if (providers == null) {
+			long start = System.nanoTime();
+			providers = computeProviders(requirement);
+			findProvidersNanos += System.nanoTime() - start;
+			this.providers.put(requirement, providers);
+		}
+		else {
+			findProvidersHits++;
+		}
+		// The resolver may insert hosted capabilities into the returned list.
+		return new ArrayList<Capability>(providers);
+	}
+	
+	/**
+	 * Returns the number of times the providers of a requirement were asked
+	 * for, the number of those that were answered from previous results, and
+	 * the time in milliseconds spent searching the repositories, formatted for
+	 * logging.
+	 */
+	public String getStatistics() {
+		return findProvidersCount + " provider lookups, " + findProvidersHits 
+				+ " answered from previous lookups, " + findProvidersNanos / 1000000 
+				+ " ms searching repositories";
+	}
+	
+	private List<Capability> computeProviders(Requirement requirement) {
 		ArrayList<Capability> result = new ArrayList<Capability>();
 		try {
 			// Only check the system repository for osgi.ee and osgi.native
@@ -162,7 +213,7 @@ public class ResolveContext extends org.osgi.service.resolver.ResolveContext {
 		}
 	}
 
-	private void addWiring(Resource resource, Map<Resource, Wiring> wirings) {
+	private static void addWiring(Resource resource, Map<Resource, Wiring> wirings) {
 		if (resource instanceof BundleConstituent) {
 			BundleConstituent bc = (BundleConstituent)resource;
 			wirings.put(bc.getBundle().adapt(BundleRevision.class), bc.getWiring());
@@ -173,7 +224,7 @@ public class ResolveContext extends org.osgi.service.resolver.ResolveContext {
 		}
 	}
 	
-	private Map<Resource, Wiring> computeWirings() {
+	private static Map<Resource, Wiring> computeWirings() {
 		Map<Resource, Wiring> wirings = new HashMap<Resource, Wiring>();
 		for (BasicSubsystem subsystem : Activator.getInstance().getSubsystems().getSubsystems()) { // NEED
 			for (Resource constituent : subsystem.getConstituents()) {
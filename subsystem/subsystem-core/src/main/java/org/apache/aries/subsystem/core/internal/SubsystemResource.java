@@ -70,8 +70,12 @@ import org.osgi.service.resolver.ResolveContext;
 import org.osgi.service.subsystem.Subsystem;
 import org.osgi.service.subsystem.SubsystemConstants;
 import org.osgi.service.subsystem.SubsystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class SubsystemResource implements Resource {
+	private static final Logger logger = LoggerFactory.getLogger(SubsystemResource.class);
+	
 	private Region region;
 
 	private final List<Capability> capabilities;
@@ -358,8 +362,11 @@ public class SubsystemResource implements Resource {
 			ProvisionResourceHeader header = manifest.getProvisionResourceHeader();
 			if (header == null)
 				return;
+			// One context serves all of the clauses so that the repositories
+			// and wirings are only computed once.
+			org.apache.aries.subsystem.core.internal.ResolveContext context = createResolveContext();
 			for (ProvisionResourceHeader.Clause clause : header.getClauses()) {
-				Resource resource = findDependency(clause);
+				Resource resource = findDependency(clause, context);
 				if (resource == null)
 					throw new SubsystemException("A required dependency could not be found. This means the resource was either missing or not recognized as a supported resource format due to, for example, an invalid bundle manifest or blueprint XML file. Turn on debug logging for more information. The resource was: " + resource);
 				addDependency(resource);
@@ -370,7 +377,13 @@ public class SubsystemResource implements Resource {
 	private void computeDependencies(SubsystemManifest manifest)  {
 		SubsystemContentHeader contentHeader = manifest.getSubsystemContentHeader();
 		try {
-			Map<Resource, List<Wire>> resolution = Activator.getInstance().getResolver().resolve(createResolveContext());
+			long start = System.currentTimeMillis();
+			org.apache.aries.subsystem.core.internal.ResolveContext context = createResolveContext();
+			Map<Resource, List<Wire>> resolution = Activator.getInstance().getResolver().resolve(context);
+			if (logger.isDebugEnabled())
+				logger.debug("Resolved subsystem {} in {} ms ({})", 
+						new Object[]{getSubsystemManifest().getSubsystemSymbolicNameHeader().getSymbolicName(), 
+						System.currentTimeMillis() - start, context.getStatistics()});
 			setImportIsolationPolicy(resolution);
 			for (Map.Entry<Resource, List<Wire>> entry : resolution.entrySet()) {
 				Resource key = entry.getKey();
@@ -452,7 +465,7 @@ public class SubsystemResource implements Resource {
 		return region;
 	}
 
-	private ResolveContext createResolveContext() {
+	private org.apache.aries.subsystem.core.internal.ResolveContext createResolveContext() {
 		return new org.apache.aries.subsystem.core.internal.ResolveContext(this);
 	}
 
@@ -508,7 +521,7 @@ public class SubsystemResource implements Resource {
 		return findContent(clause.toRequirement(this));
 	}
 
-	private Resource findDependency(ProvisionResourceHeader.Clause clause) {
+	private Resource findDependency(ProvisionResourceHeader.Clause clause, ResolveContext context) {
 		Attribute attribute = clause.getAttribute(DeployedContentHeader.Clause.ATTRIBUTE_RESOURCEID);
 		long resourceId = attribute == null ? -1 : Long.parseLong(String.valueOf(attribute.getValue()));
 		if (resourceId != -1) {
@@ -521,7 +534,7 @@ public class SubsystemResource implements Resource {
 		OsgiIdentityRequirement requirement = new OsgiIdentityRequirement(
 				clause.getPath(), clause.getDeployedVersion(),
 				clause.getType(), true);
-		List<Capability> capabilities = createResolveContext().findProviders(requirement);
+		List<Capability> capabilities = context.findProviders(requirement);
 		if (capabilities.isEmpty())
 			return null;
 		return capabilities.get(0).getResource();
@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aries.subsystem.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.aries.subsystem.core.internal.DependencyCalculator.MissingCapability;
+import org.apache.aries.subsystem.core.repository.Repository;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.osgi.framework.namespace.IdentityNamespace;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Namespace;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wiring;
+import org.osgi.service.resolver.HostedCapability;
+
+public class ResolveContextTest {
+    private final Capability capA = createCapability("a");
+    private final Capability capB = createCapability("b");
+    private final Capability capC = createCapability("c");
+    private final CountingRepository content = new CountingRepository();
+    private final CountingRepository local = new CountingRepository();
+    private final CountingRepository preferred = new CountingRepository();
+    private final CountingRepository repositoryServices = new CountingRepository();
+    private final CountingRepository system = new CountingRepository();
+
+    @Test
+    public void testRepeatedRequirementAnsweredFromMemo() {
+        Requirement requirement = new TestRequirement("org.foo", Collections.<String, String>emptyMap());
+        content.add(requirement, capA);
+        system.add(requirement, capB);
+        ResolveContext context = createResolveContext();
+
+        assertEquals(Arrays.asList(capA, capB), context.findProviders(requirement));
+        assertEquals(Arrays.asList(capA, capB), context.findProviders(requirement));
+        assertEquals(1, content.calls);
+        assertEquals(1, local.calls);
+        assertEquals(1, preferred.calls);
+        assertEquals(1, system.calls);
+        // the other repositories answered
+        assertEquals(0, repositoryServices.calls);
+        assertTrue(context.getStatistics(), context.getStatistics().startsWith("2 provider lookups, 1 answered"));
+    }
+
+    @Test
+    public void testCallerGetsModifiableCopy() {
+        Requirement requirement = new TestRequirement("org.foo", Collections.<String, String>emptyMap());
+        content.add(requirement, capA);
+        ResolveContext context = createResolveContext();
+
+        List<Capability> first = context.findProviders(requirement);
+        HostedCapability hosted = EasyMock.createNiceMock(HostedCapability.class);
+        assertEquals(1, context.insertHostedCapability(first, hosted));
+        assertEquals(Arrays.asList(capA, hosted), first);
+
+        // the hosted capability inserted by the resolver does not leak into later answers
+        List<Capability> second = context.findProviders(requirement);
+        assertNotSame(first, second);
+        assertEquals(Collections.singletonList(capA), second);
+        second.clear();
+        assertEquals(Collections.singletonList(capA), context.findProviders(requirement));
+        assertEquals(1, content.calls);
+    }
+
+    @Test
+    public void testMissingOptionalProviderRemembered() {
+        Requirement requirement = new TestRequirement("org.foo", Collections.singletonMap(
+                Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE, Namespace.RESOLUTION_OPTIONAL));
+        ResolveContext context = createResolveContext();
+
+        List<Capability> providers = context.findProviders(requirement);
+        assertEquals(1, providers.size());
+        assertTrue(providers.get(0) instanceof MissingCapability);
+        assertEquals(1, repositoryServices.calls);
+
+        providers = context.findProviders(requirement);
+        assertEquals(1, providers.size());
+        assertTrue(providers.get(0) instanceof MissingCapability);
+        assertEquals(1, repositoryServices.calls);
+    }
+
+    @Test
+    public void testSharedContextAnswersLikeSeparateContexts() {
+        // the dependencies of a deployment manifest are looked up through one context
+        List<Requirement> requirements = new ArrayList<Requirement>();
+        for (int i = 0; i < 3; i++) {
+            requirements.add(new TestRequirement("org.foo", Collections.singletonMap("filter", "(dependency=" + i + ")")));
+        }
+        content.add(requirements.get(0), capA);
+        local.add(requirements.get(1), capB);
+        local.add(requirements.get(1), capC);
+        repositoryServices.add(requirements.get(2), capC);
+
+        ResolveContext shared = createResolveContext();
+        for (Requirement requirement : requirements) {
+            assertEquals(createResolveContext().findProviders(requirement), shared.findProviders(requirement));
+        }
+        assertEquals(Arrays.asList(capB, capC), shared.findProviders(requirements.get(1)));
+        assertEquals(Collections.singletonList(capC), shared.findProviders(requirements.get(2)));
+    }
+
+    private ResolveContext createResolveContext() {
+        return new ResolveContext(null, Collections.<Resource, Wiring>emptyMap(),
+                content, local, preferred, repositoryServices, system);
+    }
+
+    private static Capability createCapability(String name) {
+        // identity capabilities are valid without looking up the regions
+        return new TestCapability(IdentityNamespace.IDENTITY_NAMESPACE,
+                Collections.<String, Object>singletonMap(IdentityNamespace.IDENTITY_NAMESPACE, name));
+    }
+
+    private static class CountingRepository implements Repository {
+        private final Map<Requirement, List<Capability>> capabilities = new HashMap<Requirement, List<Capability>>();
+        private int calls;
+
+        void add(Requirement requirement, Capability capability) {
+            List<Capability> list = capabilities.get(requirement);
+            if (list == null) {
+                list = new ArrayList<Capability>();
+                capabilities.put(requirement, list);
+            }
+            list.add(capability);
+        }
+
+        @Override
+        public Map<Requirement, Collection<Capability>> findProviders(Collection<? extends Requirement> requirements) {
+            calls++;
+            Map<Requirement, Collection<Capability>> result = new HashMap<Requirement, Collection<Capability>>();
+            for (Requirement requirement : requirements) {
+                List<Capability> list = capabilities.get(requirement);
+                result.put(requirement, list == null ? new ArrayList<Capability>() : new ArrayList<Capability>(list));
+            }
+            return result;
+        }
+    }
+
+    private static class TestRequirement implements Requirement {
+        private final String namespace;
+        private final Map<String, String> directives;
+
+        private TestRequirement(String ns, Map<String, String> dirs) {
+            namespace = ns;
+            directives = dirs;
+        }
+
+        @Override
+        public String getNamespace() {
+            return namespace;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Map<String, String> getDirectives() {
+            return directives;
+        }
+
+        @Override
+        public Resource getResource() {
+            return null;
+        }
+    }
+}
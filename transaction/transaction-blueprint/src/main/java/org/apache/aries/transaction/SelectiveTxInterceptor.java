@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+package org.apache.aries.transaction;
+
+import java.lang.reflect.Method;
+
+import javax.transaction.TransactionManager;
+
+import org.apache.aries.blueprint.SelectiveInterceptor;
+import org.osgi.service.blueprint.reflect.ComponentMetadata;
+import org.osgi.service.coordinator.Coordinator;
+
+/**
+ * Transaction interceptor that blueprint leaves out of the calls to methods without
+ * a transaction attribute. Only created when the blueprint bundle provides
+ * {@link SelectiveInterceptor}.
+ */
+public class SelectiveTxInterceptor extends TxInterceptorImpl implements SelectiveInterceptor {
+    private final ComponentTxData txData;
+
+    public SelectiveTxInterceptor(TransactionManager tm, Coordinator coordinator, ComponentTxData txData) {
+        super(tm, coordinator, txData);
+        this.txData = txData;
+    }
+
+    public boolean appliesTo(ComponentMetadata cm, Method m) {
+        return txData.getEffectiveType(m) != null;
+    }
+}
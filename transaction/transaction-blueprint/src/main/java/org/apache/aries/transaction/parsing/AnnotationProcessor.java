@@ -22,7 +22,9 @@ import javax.transaction.TransactionManager;
 
 import org.apache.aries.blueprint.BeanProcessor;
 import org.apache.aries.blueprint.ComponentDefinitionRegistry;
+import org.apache.aries.blueprint.Interceptor;
 import org.apache.aries.transaction.ComponentTxData;
+import org.apache.aries.transaction.SelectiveTxInterceptor;
 import org.apache.aries.transaction.TxInterceptorImpl;
 import org.osgi.service.blueprint.reflect.BeanMetadata;
 import org.osgi.service.coordinator.Coordinator;
@@ -36,6 +38,7 @@ import org.slf4j.LoggerFactory;
 public class AnnotationProcessor implements BeanProcessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationProcessor.class);
+    private static final boolean SELECTIVE = isSelectiveInterceptorAvailable();
 
     private final ComponentDefinitionRegistry cdr;
     private TransactionManager tm;
@@ -61,9 +64,33 @@ public class AnnotationProcessor implements BeanProcessor {
         ComponentTxData txData = new ComponentTxData(bean.getClass());
         if (txData.isTransactional()) {
             LOGGER.debug("Adding transaction interceptor to bean {} with class {}.", beanName, bean.getClass());
-            cdr.registerInterceptorWithComponent(beanData, new TxInterceptorImpl(tm, coordinator, txData));
+            cdr.registerInterceptorWithComponent(beanData, createInterceptor(txData));
         }
         return bean;
     }
 
+    /**
+     * Returns the interface type so that verifying this class does not load
+     * SelectiveTxInterceptor when blueprint lacks SelectiveInterceptor.
+     */
+    private Interceptor createInterceptor(ComponentTxData txData) {
+        if (SELECTIVE) {
+            return new SelectiveTxInterceptor(tm, coordinator, txData);
+        }
+        return new TxInterceptorImpl(tm, coordinator, txData);
+    }
+
+    /**
+     * Older blueprint core bundles do not export SelectiveInterceptor.
+     */
+    private static boolean isSelectiveInterceptorAvailable() {
+        try {
+            Class.forName("org.apache.aries.blueprint.SelectiveInterceptor", false,
+                          AnnotationProcessor.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
 }
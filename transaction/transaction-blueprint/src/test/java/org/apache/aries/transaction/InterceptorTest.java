@@ -20,6 +20,8 @@ package org.apache.aries.transaction;
 
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 
@@ -42,6 +44,18 @@ public class InterceptorTest {
         runPostCall(true);
     }
 
+    @Test
+    public void testAppliesOnlyToTransactionalMethods() throws Exception {
+        IMocksControl c = EasyMock.createControl();
+        TransactionManager tm = c.createMock(TransactionManager.class);
+        Coordinator coordinator = c.createMock(Coordinator.class);
+        ComponentTxData txData = new ComponentTxData(AnnotatedPojo.class);
+        SelectiveTxInterceptor sut = new SelectiveTxInterceptor(tm, coordinator, txData);
+
+        assertTrue(sut.appliesTo(null, AnnotatedPojo.class.getMethod("increment", String.class)));
+        assertFalse(sut.appliesTo(null, Object.class.getMethod("toString")));
+    }
+
     private void runPostCall(boolean failCoordination) throws Throwable {
         postCallWithTransaction(new IllegalStateException(), true, failCoordination);
         postCallWithTransaction(new Error(), true, failCoordination);
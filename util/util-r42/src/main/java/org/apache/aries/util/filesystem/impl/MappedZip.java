@@ -0,0 +1,514 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.util.filesystem.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.aries.util.filesystem.IFile;
+import org.apache.aries.util.io.IOUtils;
+
+/**
+ * A read only view of a zip, used to read nested archives in place.
+ * <p>
+ * The central directory is read once, and entries are then read directly at their offset instead
+ * of scanning the archive with a {@link java.util.zip.ZipInputStream}. A zip on disk is read
+ * through a file channel opened for each read, so no handle is held on the file in between and it
+ * can still be replaced or deleted on any platform. A nested archive stored uncompressed is a range
+ * of the archive containing it, a compressed one is inflated once in memory.
+ * <p>
+ * Archives using zip64 extensions, and archives which would have to be held in memory and are
+ * bigger than {@link #MAX_IN_MEMORY}, are not supported. {@link #open(IFile)} returns null for
+ * them, as for archives it cannot read for any other reason, and callers fall back to streaming.
+ */
+final class MappedZip {
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_HEADER = 0x06054b50;
+  private static final int LOCAL_LENGTH = 30;
+  private static final int CENTRAL_LENGTH = 46;
+  private static final int END_LENGTH = 22;
+  private static final int MAX_IN_MEMORY = 16 * 1024 * 1024;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /** Where the archive is read from, positions are relative to its start */
+  private final Source source;
+  /** The archive this one is nested in, null for a zip on disk */
+  private final MappedZip parent;
+  /** The zip on disk, null for a nested archive */
+  private final File file;
+  private final long lastModified;
+  private final long length;
+
+  private final List<ZipEntry> entries;
+  private final Map<String, ZipEntry> entriesByName;
+  private final Map<String, Long> localHeaders;
+  private final Map<String, Long> dataOffsets = new ConcurrentHashMap<String, Long>();
+
+  private MappedZip(Source source, MappedZip parent, File file) throws IOException {
+    this.source = source;
+    this.parent = parent;
+    this.file = file;
+    this.lastModified = (file == null) ? 0 : file.lastModified();
+    this.length = (file == null) ? 0 : file.length();
+
+    List<ZipEntry> list = new ArrayList<ZipEntry>();
+    Map<String, ZipEntry> byName = new HashMap<String, ZipEntry>();
+    Map<String, Long> headers = new HashMap<String, Long>();
+    readCentralDirectory(list, byName, headers);
+
+    entries = Collections.unmodifiableList(list);
+    entriesByName = byName;
+    localHeaders = headers;
+  }
+
+  /**
+   * Returns a view of the given archive, reading the archives it is nested in as needed.
+   *
+   * @return the view, or null if the archive cannot be read this way
+   */
+  static MappedZip open(IFile archive) {
+    try {
+      if (archive instanceof NestedZipFile) {
+        NestedZipFile nested = (NestedZipFile) archive;
+        if (nested.getNameInZip().length() == 0) return open(nested.archive);
+        MappedZip container = nested.getMappedArchive();
+        return (container == null) ? null : container.getNested(nested.getNameInZip());
+      } else if (archive instanceof ZipFileImpl) {
+        ZipFileImpl entry = (ZipFileImpl) archive;
+        MappedZip container = new MappedZip(new FileSource(entry.zip), null, entry.zip);
+        return container.getNested(entry.getNameInZip());
+      } else if (archive instanceof FileImpl) {
+        File file = ((FileImpl) archive).file;
+        return new MappedZip(new FileSource(file), null, file);
+      } else {
+        return load(archive.open(), -1, null);
+      }
+    } catch (IOException e) {
+      return null;
+    } catch (RuntimeException e) {
+      // a malformed archive, which streaming reports or copes with
+      return null;
+    }
+  }
+
+  /**
+   * @return whether none of the zips on disk this view was read from has been modified since
+   */
+  boolean isCurrent() {
+    if (parent != null) return parent.isCurrent();
+    if (file != null) return file.lastModified() == lastModified && file.length() == length;
+    return true;
+  }
+
+  /**
+   * @return all the entries, in the order of the central directory
+   */
+  List<ZipEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Looks up an entry the same way as {@link java.util.zip.ZipFile#getEntry(String)}.
+   */
+  ZipEntry getEntry(String name) {
+    ZipEntry entry = entriesByName.get(name);
+    if (entry == null && !!!name.endsWith("/")) entry = entriesByName.get(name + "/");
+    return entry;
+  }
+
+  /**
+   * @return the content of the given entry, or null if there is no such entry
+   */
+  InputStream getInputStream(String name) throws IOException {
+    ZipEntry entry = getEntry(name);
+    if (entry == null) return null;
+
+    if (entry.getMethod() == ZipEntry.STORED) {
+      return source.open(getDataOffset(entry), entry.getCompressedSize());
+    } else if (entry.getMethod() == ZipEntry.DEFLATED) {
+      // the inflater may need a byte past the end of the compressed data, which is always there
+      // since the central directory follows the entries
+      return new EntryInflaterInputStream(source.open(getDataOffset(entry), entry.getCompressedSize() + 1));
+    } else {
+      throw new IOException("Unsupported compression method " + entry.getMethod() + " for entry " + entry.getName());
+    }
+  }
+
+  private MappedZip getNested(String name) throws IOException {
+    ZipEntry entry = getEntry(name);
+    if (entry == null || entry.isDirectory()) return null;
+
+    if (entry.getMethod() == ZipEntry.STORED) {
+      return new MappedZip(source.slice(getDataOffset(entry), entry.getCompressedSize()), this, null);
+    } else if (entry.getSize() > MAX_IN_MEMORY) {
+      return null;
+    } else {
+      return load(getInputStream(name), entry.getSize(), this);
+    }
+  }
+
+  /**
+   * Returns the offset of the data of an entry, reading its local header the first time.
+   */
+  private long getDataOffset(ZipEntry entry) throws IOException {
+    Long offset = dataOffsets.get(entry.getName());
+    if (offset == null) {
+      long local = localHeaders.get(entry.getName());
+      ByteBuffer header = source.read(local, LOCAL_LENGTH);
+      if (header.getInt(0) != LOCAL_HEADER) throw new IOException("Invalid local header for entry " + entry.getName());
+      offset = local + LOCAL_LENGTH + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+      dataOffsets.put(entry.getName(), offset);
+    }
+    return offset;
+  }
+
+  /**
+   * Reads the given stream in memory, unless it turns out to be bigger than {@link #MAX_IN_MEMORY}.
+   *
+   * @param size the size of the content if known, -1 otherwise
+   */
+  private static MappedZip load(InputStream in, long size, MappedZip parent) throws IOException {
+    if (in == null) return null;
+
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(size < 0 ? 8192 : (int) size);
+      byte[] buffer = new byte[8192];
+      for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+        if (out.size() + n > MAX_IN_MEMORY) return null;
+        out.write(buffer, 0, n);
+      }
+      return new MappedZip(new BufferSource(ByteBuffer.wrap(out.toByteArray())), parent, null);
+    } finally {
+      IOUtils.close(in);
+    }
+  }
+
+  private void readCentralDirectory(List<ZipEntry> list, Map<String, ZipEntry> byName, Map<String, Long> headers)
+      throws IOException {
+    int tailLength = (int) Math.min(source.length(), END_LENGTH + 0xffff);
+    long tailStart = source.length() - tailLength;
+    ByteBuffer tail = source.read(tailStart, tailLength);
+
+    int end = findEndOfCentralDirectory(tail);
+    int count = tail.getShort(end + 10) & 0xffff;
+    long size = tail.getInt(end + 12) & 0xffffffffL;
+    long offset = tail.getInt(end + 16) & 0xffffffffL;
+    if (count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL) {
+      throw new IOException("zip64 archives are not supported");
+    }
+    if (size > Integer.MAX_VALUE) throw new IOException("Invalid central directory");
+
+    ByteBuffer directory = source.read(offset, (int) size);
+    int pos = 0;
+    for (int i = 0; i < count; i++) {
+      if (pos + CENTRAL_LENGTH > directory.limit() || directory.getInt(pos) != CENTRAL_HEADER) {
+        throw new IOException("Invalid central directory");
+      }
+
+      int method = directory.getShort(pos + 10) & 0xffff;
+      int time = directory.getShort(pos + 12) & 0xffff;
+      int date = directory.getShort(pos + 14) & 0xffff;
+      long crc = directory.getInt(pos + 16) & 0xffffffffL;
+      long compressedSize = directory.getInt(pos + 20) & 0xffffffffL;
+      long entrySize = directory.getInt(pos + 24) & 0xffffffffL;
+      int nameLength = directory.getShort(pos + 28) & 0xffff;
+      int extraLength = directory.getShort(pos + 30) & 0xffff;
+      int commentLength = directory.getShort(pos + 32) & 0xffff;
+      long localHeader = directory.getInt(pos + 42) & 0xffffffffL;
+
+      if (compressedSize == 0xffffffffL || entrySize == 0xffffffffL || localHeader == 0xffffffffL) {
+        throw new IOException("zip64 archives are not supported");
+      }
+      if (pos + CENTRAL_LENGTH + nameLength > directory.limit()) throw new IOException("Invalid central directory");
+
+      String name = readName(directory, pos + CENTRAL_LENGTH, nameLength);
+      ZipEntry entry = new ZipEntry(name);
+      entry.setMethod(method);
+      entry.setTime(dosToJavaTime(date, time));
+      entry.setCrc(crc);
+      entry.setCompressedSize(compressedSize);
+      entry.setSize(entrySize);
+
+      list.add(entry);
+      byName.put(name, entry);
+      headers.put(name, localHeader);
+
+      pos += CENTRAL_LENGTH + nameLength + extraLength + commentLength;
+    }
+  }
+
+  private static int findEndOfCentralDirectory(ByteBuffer tail) throws IOException {
+    for (int pos = tail.limit() - END_LENGTH; pos >= 0; pos--) {
+      if (tail.getInt(pos) == END_HEADER) return pos;
+    }
+    throw new IOException("Not a zip archive");
+  }
+
+  private static String readName(ByteBuffer directory, int pos, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer b = directory.duplicate();
+    b.position(pos);
+    b.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  private static long dosToJavaTime(int date, int time) {
+    Calendar c = new GregorianCalendar(((date >> 9) & 0x7f) + 1980, ((date >> 5) & 0x0f) - 1, date & 0x1f,
+        (time >> 11) & 0x1f, (time >> 5) & 0x3f, (time & 0x1f) * 2);
+    return c.getTimeInMillis();
+  }
+
+  /**
+   * The bytes of an archive, either a range of a file or held in memory.
+   */
+  private static abstract class Source {
+    abstract long length();
+
+    /**
+     * @return the given range, in little endian order
+     */
+    abstract ByteBuffer read(long pos, int length) throws IOException;
+
+    /**
+     * @return the given range, or as much of it as there is
+     */
+    abstract InputStream open(long pos, long length) throws IOException;
+
+    abstract Source slice(long pos, long length) throws IOException;
+
+    void checkRange(long pos, long length) throws IOException {
+      if (pos < 0 || length < 0 || pos + length > length()) throw new IOException("Invalid offset " + pos + " in archive");
+    }
+  }
+
+  private static final class BufferSource extends Source {
+    private final ByteBuffer buffer;
+
+    BufferSource(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    long length() {
+      return buffer.capacity();
+    }
+
+    @Override
+    ByteBuffer read(long pos, int length) throws IOException {
+      checkRange(pos, length);
+      ByteBuffer b = buffer.duplicate();
+      b.position((int) pos);
+      b.limit((int) pos + length);
+      return b.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    InputStream open(long pos, long length) throws IOException {
+      return new ByteBufferInputStream(read(pos, (int) Math.min(length, length() - pos)));
+    }
+
+    @Override
+    Source slice(long pos, long length) throws IOException {
+      return new BufferSource(read(pos, (int) length));
+    }
+  }
+
+  /**
+   * A range of a file, which is opened for each read and closed right after.
+   */
+  private static final class FileSource extends Source {
+    private final File file;
+    private final long base;
+    private final long length;
+
+    FileSource(File file) {
+      this(file, 0, file.length());
+    }
+
+    private FileSource(File file, long base, long length) {
+      this.file = file;
+      this.base = base;
+      this.length = length;
+    }
+
+    @Override
+    long length() {
+      return length;
+    }
+
+    @Override
+    ByteBuffer read(long pos, int length) throws IOException {
+      checkRange(pos, length);
+      ByteBuffer b = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = raf.getChannel();
+        while (b.hasRemaining()) {
+          if (channel.read(b, base + pos + b.position()) == -1) throw new EOFException(file.getAbsolutePath());
+        }
+      } finally {
+        IOUtils.close(raf);
+      }
+      b.flip();
+      return b;
+    }
+
+    @Override
+    InputStream open(long pos, long length) throws IOException {
+      checkRange(pos, 0);
+      return new BufferedInputStream(new FileRangeInputStream(file, base + pos, Math.min(length, length() - pos)));
+    }
+
+    @Override
+    Source slice(long pos, long length) throws IOException {
+      checkRange(pos, length);
+      return new FileSource(file, base + pos, length);
+    }
+  }
+
+  /**
+   * Reads a range of a file, closing the file as soon as the range has been read.
+   */
+  private static class FileRangeInputStream extends InputStream {
+    private final RandomAccessFile raf;
+    private long remaining;
+    private boolean closed;
+
+    FileRangeInputStream(File file, long pos, long length) throws IOException {
+      raf = new RandomAccessFile(file, "r");
+      try {
+        raf.seek(pos);
+      } catch (IOException e) {
+        IOUtils.close(raf);
+        throw e;
+      }
+      remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return (read(b, 0, 1) == -1) ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) return 0;
+      if (remaining <= 0) return -1;
+      if (closed) throw new IOException("Stream closed");
+      int n = raf.read(b, off, (int) Math.min(len, remaining));
+      if (n == -1) {
+        remaining = 0;
+        close();
+        return -1;
+      }
+      remaining -= n;
+      if (remaining == 0) close();
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return closed ? 0 : (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!!!closed) {
+        closed = true;
+        raf.close();
+      }
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) return 0;
+      if (!!!buffer.hasRemaining()) return -1;
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  /**
+   * Inflates a raw deflated entry, releasing the inflater when closed.
+   */
+  private static class EntryInflaterInputStream extends InflaterInputStream {
+    private boolean closed;
+
+    EntryInflaterInputStream(InputStream in) {
+      super(in, new Inflater(true), 8192);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!!!closed) {
+        closed = true;
+        inf.end();
+        super.close();
+      }
+    }
+  }
+}
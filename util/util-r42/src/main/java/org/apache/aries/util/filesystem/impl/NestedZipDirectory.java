@@ -89,8 +89,11 @@ public class NestedZipDirectory extends NestedZipFile implements IDirectory {
 	}
 
 	private List<? extends ZipEntry> getAllEntries() {
+		MappedZip view;
 		if (cache != null && !!!cache.isClosed()) {
 			return Collections.list(cache.getZipFile().entries());
+		} else if ((view = getMappedArchive()) != null) {
+			return view.getEntries();
 		} else {
 			ZipInputStream zis = null;
 			try {
@@ -139,6 +142,7 @@ public class NestedZipDirectory extends NestedZipFile implements IDirectory {
 	public IFile getFile(String name) {
 		Map<String,ZipEntry> entries = new HashMap<String, ZipEntry>();
 		ZipEntry ze;
+		MappedZip view;
 
 		if (cache != null && !!!cache.isClosed()) {
 			ZipFile zip = cache.getZipFile();
@@ -153,6 +157,17 @@ public class NestedZipDirectory extends NestedZipFile implements IDirectory {
 
 			ze = zip.getEntry(name);
 
+		} else if ((view = getMappedArchive()) != null) {
+			String[] segments = name.split("/");
+			StringBuilder path = new StringBuilder();
+			for (String s : segments) {
+				path.append(s).append('/');
+				ZipEntry p = view.getEntry(path.toString());
+				if (p != null) entries.put(path.toString(), p);
+			}
+
+			ze = view.getEntry(name);
+
 		} else {
 			ZipInputStream zis = null;
 
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -37,6 +38,8 @@ public class NestedZipFile implements IFile {
 	protected final IFile archive;
 	private final String nameInZip;
 	protected final NestedCloseableDirectory cache;
+	/** The view of the archive, shared by all the files of the archive */
+	private final AtomicReference<MappedZip> mapped;
 	
 	/**
 	 * Construct a nested zip file
@@ -53,6 +56,7 @@ public class NestedZipFile implements IFile {
 		size = entry.getSize();
 		lastModified = entry.getTime();
 		this.cache = cache;
+		this.mapped = (parent == null) ? new AtomicReference<MappedZip>() : ((NestedZipFile) parent).mapped;
 	}
 	
 	public NestedZipFile(IFile archive, String pathInZip, NestedZipDirectory parent, NestedCloseableDirectory cache) {
@@ -64,6 +68,7 @@ public class NestedZipFile implements IFile {
 		size = -1;
 		lastModified = -1;
 		this.cache = cache;
+		this.mapped = (parent == null) ? new AtomicReference<MappedZip>() : ((NestedZipFile) parent).mapped;
 	}
 	
 	
@@ -76,6 +81,7 @@ public class NestedZipFile implements IFile {
 		lastModified = archive.getLastModified();
 		size = archive.getSize();
 		cache = null;
+		mapped = new AtomicReference<MappedZip>();
 	}
 	
 	public NestedZipFile(NestedZipFile other, NestedCloseableDirectory cache) {
@@ -85,6 +91,7 @@ public class NestedZipFile implements IFile {
 		parent = other.parent;
 		archive = other.archive;
 		nameInZip = other.nameInZip;
+		mapped = other.mapped;
 		
 		this.cache = cache;
 	}
@@ -127,13 +134,30 @@ public class NestedZipFile implements IFile {
 		return parent;
 	}
 
+	/**
+	 * Returns a view of the archive containing this file, read in place or inflated in memory
+	 * the first time and then shared with all the files of the archive. Returns null if the archive
+	 * cannot be read this way.
+	 */
+	MappedZip getMappedArchive() {
+		MappedZip result = mapped.get();
+		if (result == null || !!!result.isCurrent()) {
+			result = MappedZip.open(archive);
+			if (result != null) mapped.set(result);
+		}
+		return result;
+	}
+
 	public InputStream open() throws IOException, UnsupportedOperationException {
+		MappedZip view;
 		if (cache != null && !!!cache.isClosed()) {
 			ZipFile zip = cache.getZipFile();
 			ZipEntry ze = zip.getEntry(nameInZip);
 			
 			if (ze != null) return zip.getInputStream(ze);
 			else return null;
+		} else if ((view = getMappedArchive()) != null) {
+			return view.getInputStream(nameInZip);
 		} else {
 			final ZipInputStream zis = new ZipInputStream(archive.open());
 			
@@ -26,17 +26,26 @@ import org.apache.aries.util.io.IOUtils;
 
 public class ZipCloseableDirectory extends CloseableDirectory {
 	private final ZipFile zip;
+	private final ZipIndex index;
 	
 	public ZipCloseableDirectory(File archive, ZipDirectory parent) throws IOException {
 		super(parent);
 
 		this.zip = new ZipFile(archive);
+		this.index = new ZipIndex(zip, archive);
 		delegate = new ZipDirectory(parent, this);
 	}
 	
 	public ZipFile getZipFile() {
 		return zip;
 	}
+
+	/**
+	 * @return the index of the open zip file, safe to use from any thread
+	 */
+	ZipIndex getIndex() {
+		return index;
+	}
 	
 	@Override
 	protected void cleanup() {
@@ -24,11 +24,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.apache.aries.util.IORuntimeException;
 import org.apache.aries.util.filesystem.ICloseableDirectory;
@@ -84,13 +82,14 @@ public class ZipDirectory extends ZipFileImpl implements IDirectory
 
     String entryName = isZipRoot() ? name : getNameInZip() + "/" + name;
 
-    ZipEntry entryFile = getEntry(entryName);
+    ZipIndex index = getIndex();
+    ZipEntry entryFile = index.getEntry(entryName);
 
     if (entryFile != null) {
       if (!!!entryFile.isDirectory()) {
-        result = new ZipFileImpl(zip, entryFile, buildParent(entryFile), cache);
+        result = new ZipFileImpl(zip, entryFile, buildParent(entryFile, index), cache);
       } else {
-        result = new ZipDirectory(zip, entryFile, buildParent(entryFile), cache);
+        result = new ZipDirectory(zip, entryFile, buildParent(entryFile, index), cache);
       }
     }
     return result;
@@ -99,9 +98,10 @@ public class ZipDirectory extends ZipFileImpl implements IDirectory
   /**
    * This method builds the parent directory hierarchy for a file.
    * @param foundEntry
+   * @param index the index of the zip
    * @return the parent of the entry.
    */
-  private ZipDirectory buildParent(ZipEntry foundEntry)
+  private ZipDirectory buildParent(ZipEntry foundEntry, ZipIndex index)
   {
     ZipDirectory result = this;
 
@@ -120,7 +120,7 @@ public class ZipDirectory extends ZipFileImpl implements IDirectory
       for (int i = 0; i < paths.length - 1; i++) {
         String path = paths[i];
         baseBuilderCrapThingToGetRoundFindBugs.append(path);
-        ZipEntry dirEntry = getEntry(baseBuilderCrapThingToGetRoundFindBugs.toString());
+        ZipEntry dirEntry = index.getEntry(baseBuilderCrapThingToGetRoundFindBugs.toString());
         if (dirEntry == null) {
           result = this;
           break outer;
@@ -149,24 +149,20 @@ public class ZipDirectory extends ZipFileImpl implements IDirectory
 
   private List<IFile> listFiles(boolean includeFilesInNestedSubdirs)
   {
-	  List<IFile> files = new ArrayList<IFile>();
-
-	  ZipFile z = openZipFile();
-	  List<? extends ZipEntry> entries = Collections.list(z.entries());
+	  ZipIndex index = getIndex();
+	  List<ZipEntry> entries = includeFilesInNestedSubdirs
+	      ? index.getDescendants(getNameInZip()) : index.getChildren(getNameInZip());
 
+	  List<IFile> files = new ArrayList<IFile>(entries.size());
 	  for (ZipEntry possibleEntry : entries) {
-		  if (isInDir(getNameInZip(), possibleEntry, includeFilesInNestedSubdirs)) {
-			  ZipDirectory parent = includeFilesInNestedSubdirs ? buildParent(possibleEntry) : this;
-			  if (possibleEntry.isDirectory()) {
-				  files.add(new ZipDirectory(zip, possibleEntry, parent, cache));
-			  } else {
-				  files.add(new ZipFileImpl(zip, possibleEntry, parent, cache));
-			  }
+		  ZipDirectory parent = includeFilesInNestedSubdirs ? buildParent(possibleEntry, index) : this;
+		  if (possibleEntry.isDirectory()) {
+			  files.add(new ZipDirectory(zip, possibleEntry, parent, cache));
+		  } else {
+			  files.add(new ZipFileImpl(zip, possibleEntry, parent, cache));
 		  }
-
 	  }
 
-	  closeZipFile(z);
 	  return files;
   }
 
@@ -239,17 +235,6 @@ public class ZipDirectory extends ZipFileImpl implements IDirectory
     return super.hashCode();
   }
 
-  private ZipEntry getEntry(String entryName) {
-    ZipFile z = openZipFile();
-    ZipEntry entryFile = null;
-
-    if (z != null) {
-      entryFile = z.getEntry(entryName);
-      closeZipFile(z);
-    }
-    return entryFile;
-  }
-
   public ICloseableDirectory toCloseable() {
 	  try {
 		  return new ZipCloseableDirectory(zip, this);
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -55,6 +56,8 @@ public class ZipFileImpl implements IFile
   private final String zipPathToRoot;
   /** The closeable directory that caches the open ZipFile */
   protected final ZipCloseableDirectory cache;
+  /** The index of the zip, shared by all the files of the archive */
+  private final AtomicReference<ZipIndex> index;
 
   /**
    * This constructor is used to create a file entry within the zip.
@@ -81,6 +84,7 @@ public class ZipFileImpl implements IFile
 
     this.parent = parent1;
     this.cache = cache;
+    this.index = ((ZipFileImpl)parent1).index;
   }
 
   /**
@@ -110,6 +114,7 @@ public class ZipFileImpl implements IFile
     size = zip1.length();
     url = zip1.toURI().toURL().toExternalForm();
     this.cache = null;
+    this.index = new AtomicReference<ZipIndex>();
   }
 
   public ZipFileImpl(ZipFileImpl other, ZipCloseableDirectory cache) {
@@ -122,6 +127,7 @@ public class ZipFileImpl implements IFile
 	  url = other.url;
 	  zipPathToRoot = other.zipPathToRoot;
 	  this.cache = cache;
+	  index = other.index;
   }
 
   /**
@@ -239,6 +245,21 @@ public class ZipFileImpl implements IFile
 	  else return url.substring(5);
   }
 
+  /**
+   * Returns the index of the zip. The index of an open closeable directory is used if there is one,
+   * otherwise the index is read once and shared until the archive is modified.
+   */
+  ZipIndex getIndex() {
+    if (cache != null && !!!cache.isClosed()) return cache.getIndex();
+
+    ZipIndex result = index.get();
+    if (result == null || !!!result.isCurrent(zip)) {
+      result = ZipIndex.build(zip);
+      index.set(result);
+    }
+    return result;
+  }
+
   ZipFile openZipFile(){
     ZipFile z = null;
 
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.util.filesystem.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.aries.util.IORuntimeException;
+
+/**
+ * An immutable index of the central directory of a zip, built once and shared by all the
+ * {@link ZipDirectory} and {@link ZipFileImpl} objects of the archive. Entries are looked up by
+ * name, and the entries directly inside a directory are looked up by the directory name, so
+ * walking the archive does not enumerate every entry for every directory.
+ * <p>
+ * Directory names are given without the trailing '/', the root of the zip is "".
+ */
+final class ZipIndex {
+  private final long lastModified;
+  private final long length;
+  /** All the entries, in the order of the central directory */
+  private final List<ZipEntry> entries;
+  private final Map<String, ZipEntry> entriesByName;
+  private final Map<String, List<ZipEntry>> children;
+
+  ZipIndex(ZipFile zip, File file) {
+    lastModified = file.lastModified();
+    length = file.length();
+
+    List<ZipEntry> all = new ArrayList<ZipEntry>(zip.size());
+    Map<String, ZipEntry> byName = new HashMap<String, ZipEntry>(zip.size() * 2);
+    Map<String, List<ZipEntry>> byDir = new HashMap<String, List<ZipEntry>>();
+
+    Enumeration<? extends ZipEntry> e = zip.entries();
+    while (e.hasMoreElements()) {
+      ZipEntry entry = e.nextElement();
+      String name = stripSlash(entry.getName());
+      if (name.length() == 0) continue;
+
+      all.add(entry);
+      byName.put(entry.getName(), entry);
+
+      int slash = name.lastIndexOf('/');
+      String dir = (slash == -1) ? "" : name.substring(0, slash);
+      List<ZipEntry> list = byDir.get(dir);
+      if (list == null) {
+        list = new ArrayList<ZipEntry>();
+        byDir.put(dir, list);
+      }
+      list.add(entry);
+    }
+
+    entries = Collections.unmodifiableList(all);
+    entriesByName = byName;
+    children = byDir;
+  }
+
+  /**
+   * Reads the central directory of the given archive.
+   */
+  static ZipIndex build(File file) {
+    ZipFile zip = null;
+    try {
+      zip = new ZipFile(file);
+      return new ZipIndex(zip, file);
+    } catch (IOException e) {
+      throw new IORuntimeException("IOException reading zip file: " + file, e);
+    } finally {
+      if (zip != null) {
+        try {
+          zip.close();
+        } catch (IOException e) {}
+      }
+    }
+  }
+
+  /**
+   * @return whether the archive has not been modified since this index was built
+   */
+  boolean isCurrent(File file) {
+    return file.lastModified() == lastModified && file.length() == length;
+  }
+
+  /**
+   * Looks up an entry the same way as {@link ZipFile#getEntry(String)}, a directory is found
+   * with or without the trailing '/'.
+   */
+  ZipEntry getEntry(String name) {
+    ZipEntry entry = entriesByName.get(name);
+    if (entry == null && !!!name.endsWith("/")) entry = entriesByName.get(name + "/");
+    return entry;
+  }
+
+  /**
+   * @return the entries directly inside the given directory
+   */
+  List<ZipEntry> getChildren(String dir) {
+    List<ZipEntry> result = children.get(dir);
+    return (result == null) ? Collections.<ZipEntry>emptyList() : Collections.unmodifiableList(result);
+  }
+
+  /**
+   * @return the entries inside the given directory and all its subdirectories
+   */
+  List<ZipEntry> getDescendants(String dir) {
+    if (dir.length() == 0) return entries;
+
+    String prefix = dir + "/";
+    List<ZipEntry> result = new ArrayList<ZipEntry>();
+    for (ZipEntry entry : entries) {
+      String name = entry.getName();
+      if (name.startsWith(prefix) && name.length() > prefix.length()) result.add(entry);
+    }
+    return result;
+  }
+
+  private static String stripSlash(String name) {
+    return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+  }
+}
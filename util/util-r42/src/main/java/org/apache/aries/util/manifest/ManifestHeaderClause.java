@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.util.manifest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.aries.util.internal.MessageUtil;
+
+/**
+ * A clause of a manifest header, for example <code>pkg1;pkg2;version="[1.0,2.0)";resolution:=optional</code>.
+ * <p>
+ * A clause is a view over the header it was read from: splitting a header into clauses is a single
+ * pass over the header, and the names and attributes of a clause are only extracted from the header
+ * when they are asked for. The syntax accepted, including quoting, is the one of
+ * {@link ManifestHeaderProcessor#parseImportString(String)} and the other parse methods of
+ * {@link ManifestHeaderProcessor}, which are built on this class.
+ * <p>
+ * Directives are represented in the attributes with their name suffixed by ':'.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class ManifestHeaderClause
+{
+  private final String header;
+  private final int start;
+  private final int end;
+  /** The delimiters within quotes which are normalized in names and attributes */
+  private final String nameDelimiters;
+  private final String parameterDelimiters;
+
+  // read on first access
+  private List<String> names;
+  private boolean hasSemicolon;
+  private int[] parameters;
+  private int parameterCount;
+  private Map<String, String> attributes;
+
+  private ManifestHeaderClause(String header, int start, int end, boolean listed)
+  {
+    this.header = header;
+    this.start = start;
+    this.end = end;
+    this.nameDelimiters = listed ? "," : "";
+    this.parameterDelimiters = listed ? ",;=" : ";=";
+  }
+
+  /**
+   * Splits a comma separated header into clauses. Commas within double quotes do not separate clauses.
+   *
+   * @param header the header, may be null
+   * @return the clauses, an empty list for a null header
+   * @throws IllegalArgumentException if a double quote is not closed
+   */
+  public static List<ManifestHeaderClause> parse(String header)
+  {
+    List<ManifestHeaderClause> result = new ArrayList<ManifestHeaderClause>();
+    if (header == null) return result;
+
+    int length = header.length();
+    if (length == 0) {
+      result.add(new ManifestHeaderClause(header, 0, 0, true));
+      return result;
+    }
+
+    boolean quoted = false;
+    int clauseStart = 0;
+    // empty clauses are dropped at the end of the header only
+    int emptyClauses = 0;
+    for (int i = 0; i <= length; i++) {
+      char c = (i < length) ? header.charAt(i) : ',';
+      if (c == '"') {
+        quoted = !!!quoted;
+      } else if (c == ',' && (!!!quoted || i == length)) {
+        if (quoted) {
+          throw new IllegalArgumentException(MessageUtil.getMessage("UTIL0008E", header.substring(clauseStart).trim()));
+        }
+        if (i == clauseStart) {
+          emptyClauses++;
+        } else {
+          for (; emptyClauses > 0; emptyClauses--) {
+            result.add(new ManifestHeaderClause(header, clauseStart, clauseStart, true));
+          }
+          int s = trimStart(header, clauseStart, i);
+          result.add(new ManifestHeaderClause(header, s, trimEnd(header, s, i), true));
+        }
+        clauseStart = i + 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reads a single clause, which is not split on commas.
+   *
+   * @param clause the clause
+   * @return a view of the clause
+   */
+  public static ManifestHeaderClause parseClause(String clause)
+  {
+    return new ManifestHeaderClause(clause, 0, clause.length(), false);
+  }
+
+  /**
+   * @return the first name of the clause
+   */
+  public String getName()
+  {
+    return getNames().get(0);
+  }
+
+  /**
+   * @return the names of the clause, the names following the first one are those declared before
+   *         the first attribute or directive
+   */
+  public List<String> getNames()
+  {
+    readParts();
+    return names;
+  }
+
+  /**
+   * @return the attributes and directives of the clause, the map is created on the first call
+   */
+  public Map<String, String> getAttributes()
+  {
+    readParts();
+    if (attributes == null) {
+      attributes = new HashMap<String, String>();
+      String[] pair = new String[2];
+      for (int i = 0; i < parameterCount; i++) {
+        if (readParameter(parameters[2 * i], parameters[2 * i + 1], pair)) attributes.put(pair[0], pair[1]);
+      }
+    }
+    return attributes;
+  }
+
+  /**
+   * Looks up an attribute without creating the attribute map.
+   *
+   * @param name the name of the attribute, suffixed by ':' for a directive
+   * @return the value, or null if the clause does not declare it
+   */
+  public String getAttribute(String name)
+  {
+    if (attributes != null) return attributes.get(name);
+
+    readParts();
+    String[] pair = new String[2];
+    // the last declaration wins, as in the attribute map
+    for (int i = parameterCount - 1; i >= 0; i--) {
+      if (readParameter(parameters[2 * i], parameters[2 * i + 1], pair) && pair[0].equals(name)) return pair[1];
+    }
+    return null;
+  }
+
+  /**
+   * Looks up a directive without creating the attribute map.
+   *
+   * @param name the name of the directive, without ':'
+   * @return the value, or null if the clause does not declare it
+   */
+  public String getDirective(String name)
+  {
+    return getAttribute(name + ":");
+  }
+
+  /**
+   * Returns the attributes the way {@link ManifestHeaderProcessor} always has: null when the
+   * clause declares several names but no attribute.
+   */
+  Map<String, String> getAttributesOrNull()
+  {
+    readParts();
+    return (hasSemicolon && parameterCount == 0) ? null : getAttributes();
+  }
+
+  @Override
+  public String toString()
+  {
+    return header.substring(start, end);
+  }
+
+  private void readParts()
+  {
+    if (names != null) return;
+
+    List<String> result = new ArrayList<String>(1);
+    int semicolon = indexOf(';', start, end);
+    if (semicolon == -1) {
+      result.add(text(start, end, nameDelimiters, false));
+      names = result;
+      return;
+    }
+
+    hasSemicolon = true;
+    int s = trimStart(header, start, semicolon);
+    result.add(text(s, trimEnd(header, s, semicolon), nameDelimiters, false));
+
+    int tailStart = trimStart(header, semicolon + 1, end);
+    int tailEnd = trimEnd(header, tailStart, end);
+    parameters = new int[8];
+    boolean inParameters = false;
+    boolean quoted = false;
+    int partStart = tailStart;
+    // empty parts are dropped at the end of the clause only
+    int emptyParts = 0;
+    for (int i = tailStart; i <= tailEnd; i++) {
+      char c = (i < tailEnd) ? header.charAt(i) : ';';
+      if (c == '"') {
+        quoted = !!!quoted;
+      } else if (c == ';' && (!!!quoted || i == tailEnd)) {
+        if (quoted) {
+          throw new IllegalArgumentException(MessageUtil.getMessage("UTIL0008E", header.substring(partStart, tailEnd)));
+        }
+        if (i == partStart && tailStart != tailEnd) {
+          emptyParts++;
+        } else {
+          for (; emptyParts > 0; emptyParts--) {
+            if (!!!inParameters) result.add("");
+          }
+          int ps = trimStart(header, partStart, i);
+          int pe = trimEnd(header, ps, i);
+          if (indexOf('=', ps, pe) == -1) {
+            // names declared after an attribute are ignored
+            if (!!!inParameters) result.add(text(ps, pe, parameterDelimiters, false));
+          } else {
+            inParameters = true;
+            addParameter(ps, pe);
+          }
+        }
+        partStart = i + 1;
+      }
+    }
+    names = result;
+  }
+
+  private void addParameter(int s, int e)
+  {
+    if (2 * parameterCount + 2 > parameters.length) {
+      int[] bigger = new int[parameters.length * 2];
+      System.arraycopy(parameters, 0, bigger, 0, parameters.length);
+      parameters = bigger;
+    }
+    parameters[2 * parameterCount] = s;
+    parameters[2 * parameterCount + 1] = e;
+    parameterCount++;
+  }
+
+  /**
+   * Reads the name and the value of a parameter. A parameter with more than one '=' outside double
+   * quotes is ignored.
+   *
+   * @return whether the parameter is valid
+   */
+  private boolean readParameter(int s, int e, String[] pair)
+  {
+    int first = -1;
+    int second = -1;
+    boolean quoted = false;
+    for (int i = s; i < e; i++) {
+      char c = header.charAt(i);
+      if (c == '"') {
+        quoted = !!!quoted;
+      } else if (c == '=' && !!!quoted) {
+        if (first == -1) {
+          first = i;
+        } else {
+          second = i;
+          break;
+        }
+      }
+    }
+    // a parameter is a name and a non empty value, followed by nothing but '='
+    if (first == -1) return false;
+    if (second != -1) {
+      for (int i = second; i < e; i++) {
+        if (header.charAt(i) != '=') return false;
+      }
+    }
+    int valueEnd = (second == -1) ? e : second;
+    if (valueEnd == first + 1) return false;
+
+    int ks = trimStart(header, s, first);
+    int ke = trimEnd(header, ks, first);
+    String name;
+    if (ke > ks && header.charAt(ke - 1) == ':') {
+      // clear out any space as in "directive  :=value"
+      name = text(ks, trimEnd(header, ks, ke - 1), parameterDelimiters, false) + ":";
+    } else {
+      name = text(ks, ke, parameterDelimiters, false);
+    }
+
+    int vs = trimStart(header, first + 1, valueEnd);
+    int ve = trimEnd(header, vs, valueEnd);
+    String value;
+    if (ve - vs >= 2 && header.charAt(vs) == '"' && header.charAt(ve - 1) == '"') {
+      value = text(vs + 1, ve - 1, parameterDelimiters, true);
+    } else {
+      value = text(vs, ve, parameterDelimiters, false);
+    }
+
+    pair[0] = name;
+    pair[1] = value;
+    return true;
+  }
+
+  /**
+   * Returns a region of the header. Header values were historically split on delimiters before the
+   * pieces within double quotes were trimmed and joined again, so white space around the given
+   * delimiters within double quotes is removed.
+   */
+  private String text(int s, int e, String delimiters, boolean quoted)
+  {
+    boolean q = quoted;
+    boolean normalize = false;
+    for (int i = s; i < e && !!!normalize; i++) {
+      char c = header.charAt(i);
+      if (c == '"') {
+        q = !!!q;
+      } else if (q && delimiters.indexOf(c) != -1) {
+        normalize = (i > s && header.charAt(i - 1) <= ' ') || (i + 1 < e && header.charAt(i + 1) <= ' ');
+      }
+    }
+    if (!!!normalize) return header.substring(s, e);
+
+    StringBuilder sb = new StringBuilder(e - s);
+    q = quoted;
+    for (int i = s; i < e; i++) {
+      char c = header.charAt(i);
+      if (c == '"') {
+        q = !!!q;
+        sb.append(c);
+      } else if (q && delimiters.indexOf(c) != -1) {
+        int l = sb.length();
+        while (l > 0 && sb.charAt(l - 1) <= ' ') l--;
+        sb.setLength(l);
+        sb.append(c);
+        while (i + 1 < e && header.charAt(i + 1) <= ' ') i++;
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private int indexOf(char c, int from, int to)
+  {
+    for (int i = from; i < to; i++) {
+      if (header.charAt(i) == c) return i;
+    }
+    return -1;
+  }
+
+  private static int trimStart(String s, int from, int to)
+  {
+    while (from < to && s.charAt(from) <= ' ') from++;
+    return from;
+  }
+
+  private static int trimEnd(String s, int from, int to)
+  {
+    while (to > from && s.charAt(to - 1) <= ' ') to--;
+    return to;
+  }
+}
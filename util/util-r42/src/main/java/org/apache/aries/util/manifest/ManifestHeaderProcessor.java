@@ -222,96 +222,14 @@ public class ManifestHeaderProcessor
    *         and the Value being a NameValueMap of key->value mappings.
    */
   private static List<NameValuePair> genericNameWithNameValuePairProcess(String s){
-    String name;
-    Map<String,String> params = null;
     List<NameValuePair> nameValues = new ArrayList<NameValuePair>();
-    List<String> pkgs = new ArrayList<String>();
-    int index = s.indexOf(";");
-    if(index==-1){
-      name = s;
-      params = new HashMap<String, String>();
-      pkgs.add(name);
-    }else{
-      name = s.substring(0,index).trim();
-      String tail = s.substring(index+1).trim();
-
-      pkgs.add(name); // add the first package
-      StringBuilder parameters = new StringBuilder();
-
-
-      // take into consideration of multiple packages separated by ';'
-      // while they share the same attributes or directives
-      List<String> tailParts = split(tail, ";");
-      boolean firstParameter =false;
-
-      for (String part : tailParts) {
-        // if it is not a parameter and no parameter appears in front of it, it must a package
-        if (!!!(part.contains("=")))  {
-          // Need to make sure no parameter appears before the package, otherwise ignore this string
-          // as this syntax is invalid
-          if (!!!(firstParameter))
-            pkgs.add(part);
-        } else {
-          if (!!!(firstParameter))
-            firstParameter = true;
-
-          parameters.append(part + ";");
-        }
-      }
-
-      if (parameters.length() != 0) {
-        //remove the final ';' if there is one
-        if (parameters.toString().endsWith(";")) {
-
-          parameters = parameters.deleteCharAt(parameters.length() -1);
-        }
-
-        params = genericNameValueProcess(parameters.toString());
-      }
-
+    ManifestHeaderClause clause = ManifestHeaderClause.parseClause(s);
+    // the names of a clause share the same attributes
+    Map<String,String> params = clause.getAttributesOrNull();
+    for (String name : clause.getNames()) {
+      nameValues.add(new NameValuePair(name, params));
     }
-    for (String pkg : pkgs) {
-      nameValues.add(new NameValuePair(pkg,params));
-    }
-
     return nameValues;
-
-  }
-
-  /**
-   * Internal method to parse headers with the format<p>
-   *   [attribute-name]=[attribute-value](;[attribute-name]=[attribute-value])*<br>
-   * Eg.<br>
-   *   thing=value;other=something<br>
-   * <p>
-   * Note. Directives (name:=value) are represented in the map with name suffixed by ':'
-   *
-   * @param s data to parse
-   * @return a NameValueMap, with attribute-name -> attribute-value.
-   */
-  private static Map<String,String> genericNameValueProcess(String s){
-    Map<String,String> params = new HashMap<String,String>();
-    List<String> parameters = split(s, ";");
-    for(String parameter : parameters) {
-      List<String> parts = split(parameter,"=");
-      // do a check, otherwise we might get NPE
-      if (parts.size() ==2) {
-        String second = parts.get(1).trim();
-        if (second.startsWith("\"") && second.endsWith("\""))
-          second = second.substring(1,second.length()-1);
-
-        String first = parts.get(0).trim();
-
-        // make sure for directives we clear out any space as in "directive  :=value"
-        if (first.endsWith(":")) {
-            first = first.substring(0, first.length()-1).trim()+":";
-        }
-
-        params.put(first, second);
-      }
-    }
-
-    return params;
   }
 
   /**
@@ -322,11 +240,10 @@ public class ManifestHeaderProcessor
    * @param s The data to parse
    */
   private static void genericImportExportProcess(NameValueCollection out, String s){
-    List<String> packages = split(s, ",");
-    for(String pkg : packages){
-      List<NameValuePair> ps = genericNameWithNameValuePairProcess(pkg);
-      for (NameValuePair p : ps) {
-        out.addToCollection(p.getName(), p.getAttributes());
+    for (ManifestHeaderClause clause : ManifestHeaderClause.parse(s)) {
+      Map<String,String> params = clause.getAttributesOrNull();
+      for (String name : clause.getNames()) {
+        out.addToCollection(name, params);
       }
     }
   }
@@ -413,16 +330,13 @@ public class ManifestHeaderProcessor
   private static List<GenericMetadata> parseGenericMetadata(String s) {
     List<GenericMetadata> capabilities = new ArrayList<GenericMetadata>();
 
-    List<String> entries = split(s, ",");
-    for(String e : entries){
-      List<NameValuePair> nvpList = genericNameWithNameValuePairProcess(e);
+    for(ManifestHeaderClause clause : ManifestHeaderClause.parse(s)){
+      Map<String, String> attrMap = clause.getAttributesOrNull();
 
-      for(NameValuePair nvp : nvpList) {
-        String namespace = nvp.getName();
+      for(String namespace : clause.getNames()) {
         GenericMetadata cap = new GenericMetadata(namespace);
         capabilities.add(cap);
 
-        Map<String, String> attrMap = nvp.getAttributes();
         for (Map.Entry<String, String> entry : attrMap.entrySet()) {
           String k = entry.getKey();
           String v = entry.getValue();
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -36,6 +37,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -192,11 +194,56 @@ public class FileSystemTest
 
 	  File desiredFile = new File(new File(getTestResourceDir(), "/app1"), "META-INF/APPLICATION.MF");
 
-	  // no size information when stream reading :(
-	  runBasicDirTest(inner, "app2.zip/", -1, desiredFile.lastModified());
+	  // the nested zip is read in place, so the size is known without extracting it
+	  runBasicDirTest(inner, "app2.zip/", desiredFile.length(), desiredFile.lastModified());
 	  runBasicDirTest(inner.toCloseable(), "app2.zip/", desiredFile.length(), desiredFile.lastModified());
   }
 
+  /**
+   * Make sure that zip files stored uncompressed inside other zip files are read correctly.
+   */
+  @Test
+  public void nestedStoredZipInZip() throws IOException
+  {
+	  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	  InputStream in = new FileInputStream("fileSystemTest/app2.zip");
+	  try {
+	    IOUtils.copyAndDoNotCloseInputStream(in, bytes);
+	  } finally {
+	    in.close();
+	  }
+	  byte[] app2 = bytes.toByteArray();
+	  CRC32 crc = new CRC32();
+	  crc.update(app2);
+
+	  File storedZip = new File("fileSystemTest/stored.zip");
+	  ZipOutputStream out = new ZipOutputStream(new FileOutputStream(storedZip));
+	  try {
+	    ZipEntry ze = new ZipEntry("lib/app2.zip");
+	    ze.setMethod(ZipEntry.STORED);
+	    ze.setSize(app2.length);
+	    ze.setCrc(crc.getValue());
+	    out.putNextEntry(ze);
+	    out.write(app2);
+	    out.closeEntry();
+	  } finally {
+	    out.close();
+	  }
+
+	  try {
+	    IDirectory outer = FileSystem.getFSRoot(storedZip);
+	    IDirectory inner = outer.getFile("lib/app2.zip").convertNested();
+	    assertNotNull(inner);
+
+	    File desiredFile = new File(new File(getTestResourceDir(), "/app1"), "META-INF/APPLICATION.MF");
+
+	    runBasicDirTest(inner, "lib/app2.zip/", desiredFile.length(), desiredFile.lastModified());
+	    checkManifest(inner.getFile("META-INF/APPLICATION.MF").open());
+	  } finally {
+	    storedZip.delete();
+	  }
+  }
+
   /**
    * Make sure that the operations work with zip files inside other zip files. Performance is not going to be great though :)
    */
@@ -213,8 +260,8 @@ public class FileSystemTest
 
       File desiredFile = new File(new File(getTestResourceDir(), "/app1"), "META-INF/APPLICATION.MF");
 
-      // no size information when stream reading :(
-      runBasicDirTest(inner, "app2.zip/", -1, desiredFile.lastModified());
+      // the nested zip is read in place, so the size is known without extracting it
+      runBasicDirTest(inner, "app2.zip/", desiredFile.length(), desiredFile.lastModified());
       runBasicDirTest(inner.toCloseable(), "app2.zip/", desiredFile.length(), desiredFile.lastModified());
     } finally {
       outer.close();
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.util.filesystem.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.aries.util.filesystem.ICloseableDirectory;
+import org.apache.aries.util.filesystem.IDirectory;
+import org.apache.aries.util.filesystem.IFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Walks the directory tree of an archive of 10000 entries through {@link ZipDirectory}, and looks
+ * up every file by name. Run it against an older revision of the filesystem implementation to
+ * compare.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.aries.util.filesystem.impl.ZipDirectoryBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZipDirectoryBenchmark {
+
+  private static final int DIRECTORIES = 100;
+  private static final int FILES = 99;
+
+  private File archive;
+  private IDirectory root;
+  private ICloseableDirectory closeable;
+
+  @Setup
+  public void setUp() throws IOException {
+    archive = File.createTempFile("zipDirectoryBenchmark", ".zip");
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive));
+    try {
+      for (int d = 0; d < DIRECTORIES; d++) {
+        out.putNextEntry(new ZipEntry("dir" + d + "/"));
+        out.closeEntry();
+        for (int f = 0; f < FILES; f++) {
+          out.putNextEntry(new ZipEntry("dir" + d + "/file" + f + ".txt"));
+          out.write(("content " + f).getBytes("UTF-8"));
+          out.closeEntry();
+        }
+      }
+    } finally {
+      out.close();
+    }
+
+    root = FileSystemImpl.getFSRoot(archive, null);
+    closeable = root.toCloseable();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    closeable.close();
+    archive.delete();
+  }
+
+  @Benchmark
+  public int traverse() {
+    return walk(root);
+  }
+
+  @Benchmark
+  public int traverseCloseable() {
+    return walk(closeable);
+  }
+
+  @Benchmark
+  public int listAllFiles() {
+    return root.listAllFiles().size();
+  }
+
+  @Benchmark
+  public int getFileCloseable() {
+    int found = 0;
+    for (int d = 0; d < DIRECTORIES; d++) {
+      for (int f = 0; f < FILES; f++) {
+        if (closeable.getFile("dir" + d + "/file" + f + ".txt") != null) found++;
+      }
+    }
+    return found;
+  }
+
+  private static int walk(IDirectory dir) {
+    int count = 0;
+    for (IFile file : dir.listFiles()) {
+      count++;
+      if (file.isDirectory()) count += walk(file.convert());
+    }
+    return count;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .include(ZipDirectoryBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
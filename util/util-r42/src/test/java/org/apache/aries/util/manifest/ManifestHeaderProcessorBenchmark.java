@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.util.manifest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.aries.util.ManifestHeaderUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link ManifestHeaderProcessor#parseImportString(String)} and
+ * {@link ManifestHeaderProcessor#parseExportString(String)} with the split based parsing they used
+ * before {@link ManifestHeaderClause}, on headers like those of the sample bundles.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.aries.util.manifest.ManifestHeaderProcessorBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManifestHeaderProcessorBenchmark {
+
+  static final String IMPORT_PACKAGE =
+      "javax.persistence;version=\"[1.1,2)\",javax.servlet;version=\"[2.5,3)\","
+      + "javax.servlet.http;version=\"[2.5,3)\",javax.sql,javax.transaction;version=\"[1.1,2)\","
+      + "org.apache.aries.samples.ariestrader.api;version=\"[1.0,2)\";provide:=true,"
+      + "org.apache.aries.samples.ariestrader.api.persistence;version=\"[1.0,2)\","
+      + "org.apache.aries.samples.ariestrader.util;version=\"[1.0,2)\","
+      + "org.apache.commons.logging;version=\"[1.1,2)\";resolution:=optional,"
+      + "org.osgi.framework;version=\"[1.5,2)\",org.osgi.service.blueprint;version=\"[1.0.0,2.0.0)\","
+      + "org.osgi.service.blueprint.container;version=\"[1.0,2)\","
+      + "org.osgi.util.tracker;version=\"[1.4,2)\",dalvik.system;resolution:=optional";
+
+  static final String EXPORT_PACKAGE =
+      "org.apache.aries.samples.ariestrader.api;uses:=\"org.apache.aries.samples.ariestrader.api.persistence,"
+      + "javax.persistence\";version=\"1.0.0\","
+      + "org.apache.aries.samples.ariestrader.api.persistence;uses:=\"javax.persistence\";version=\"1.0.0\","
+      + "org.apache.aries.samples.ariestrader.util;uses:=\"org.apache.commons.logging,"
+      + "org.apache.aries.samples.ariestrader.api,javax.naming\";version=\"1.0.0\","
+      + "org.apache.aries.samples.blog.api;org.apache.aries.samples.blog.api.persistence;version=\"1.0.0\"";
+
+  @Benchmark
+  public Object importPackage() {
+    return ManifestHeaderProcessor.parseImportString(IMPORT_PACKAGE);
+  }
+
+  @Benchmark
+  public Object importPackageSplit() {
+    Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+    for (String clause : ManifestHeaderUtils.split(IMPORT_PACKAGE, ",")) {
+      Map<String, String> attributes = new HashMap<String, String>();
+      List<String> names = splitClause(clause, attributes);
+      for (String name : names) result.put(name, attributes);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public Object exportPackage() {
+    return ManifestHeaderProcessor.parseExportString(EXPORT_PACKAGE);
+  }
+
+  @Benchmark
+  public Object exportPackageSplit() {
+    List<Object> result = new ArrayList<Object>();
+    for (String clause : ManifestHeaderUtils.split(EXPORT_PACKAGE, ",")) {
+      Map<String, String> attributes = new HashMap<String, String>();
+      result.addAll(splitClause(clause, attributes));
+      result.add(attributes);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public Object importPackageLookup() {
+    // what most callers want: the version of each import, without the attribute maps
+    List<String> versions = new ArrayList<String>();
+    for (ManifestHeaderClause clause : ManifestHeaderClause.parse(IMPORT_PACKAGE)) {
+      versions.add(clause.getAttribute("version"));
+    }
+    return versions;
+  }
+
+  /**
+   * The parsing of a clause used before {@link ManifestHeaderClause}.
+   */
+  private static List<String> splitClause(String clause, Map<String, String> attributes) {
+    List<String> names = new ArrayList<String>();
+    int index = clause.indexOf(';');
+    if (index == -1) {
+      names.add(clause);
+      return names;
+    }
+    names.add(clause.substring(0, index).trim());
+    StringBuilder parameters = new StringBuilder();
+    for (String part : ManifestHeaderUtils.split(clause.substring(index + 1).trim(), ";")) {
+      if (!!!part.contains("=")) {
+        if (parameters.length() == 0) names.add(part);
+      } else {
+        parameters.append(part + ";");
+      }
+    }
+    for (String parameter : ManifestHeaderUtils.split(parameters.toString(), ";")) {
+      List<String> parts = ManifestHeaderUtils.split(parameter, "=");
+      if (parts.size() == 2) {
+        String value = parts.get(1).trim();
+        if (value.startsWith("\"") && value.endsWith("\"")) value = value.substring(1, value.length() - 1);
+        attributes.put(parts.get(0).trim(), value);
+      }
+    }
+    return names;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .include(ManifestHeaderProcessorBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
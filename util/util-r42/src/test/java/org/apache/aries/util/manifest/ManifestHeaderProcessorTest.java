@@ -619,4 +619,32 @@ public class ManifestHeaderProcessorTest
       assertEquals(Long.MAX_VALUE, cap.getAttributes().get("long"));
       assertEquals(0, new Double("3.141592653589793").compareTo((Double) cap.getAttributes().get("d")));
     }
+
+    @Test
+    public void testHeaderClauses() {
+      List<ManifestHeaderClause> clauses = ManifestHeaderClause.parse(
+          "a.b;c.d;version=\"[1.0,2.0)\";resolution:=optional, e.f;weird=\"x;y,z\", g.h");
+      assertEquals(3, clauses.size());
+
+      ManifestHeaderClause first = clauses.get(0);
+      assertEquals(Arrays.asList("a.b", "c.d"), first.getNames());
+      assertEquals("[1.0,2.0)", first.getAttribute("version"));
+      assertEquals("optional", first.getDirective("resolution"));
+      assertNull(first.getAttribute("resolution"));
+      assertEquals(2, first.getAttributes().size());
+
+      assertEquals("e.f", clauses.get(1).getName());
+      assertEquals("x;y,z", clauses.get(1).getAttributes().get("weird"));
+
+      assertEquals("g.h", clauses.get(2).getName());
+      assertTrue(clauses.get(2).getAttributes().isEmpty());
+      assertNull(clauses.get(2).getAttribute("version"));
+
+      try {
+        ManifestHeaderClause.parse("a;version=\"1.0");
+        fail("Unbalanced quotes should be reported");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
 }
@@ -24,17 +24,27 @@ import static org.apache.aries.versioning.utils.SemanticVersioningUtils.oneLineB
 import static org.apache.aries.versioning.utils.SemanticVersioningUtils.twoLineBreaks;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URLClassLoader;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.aries.util.filesystem.FileSystem;
 import org.apache.aries.util.filesystem.IDirectory;
@@ -43,6 +53,7 @@ import org.apache.aries.util.io.IOUtils;
 import org.apache.aries.util.manifest.ManifestHeaderProcessor;
 import org.apache.aries.versioning.utils.BinaryCompatibilityStatus;
 import org.apache.aries.versioning.utils.ClassDeclaration;
+import org.apache.aries.versioning.utils.ClassHierarchyIndex;
 import org.apache.aries.versioning.utils.FieldDeclaration;
 import org.apache.aries.versioning.utils.MethodDeclaration;
 import org.apache.aries.versioning.utils.SemanticVersioningClassVisitor;
@@ -61,8 +72,9 @@ public class BundleCompatibility {
   private static final Logger _logger = LoggerFactory.getLogger(BundleCompatibility.class);
 
 
-  private URLClassLoader oldJarsLoader;
-  private URLClassLoader newJarsLoader;
+  private ClassHierarchyIndex oldJarsIndex;
+  private ClassHierarchyIndex newJarsIndex;
+  private VersionCheckCache cache;
   private String bundleSymbolicName;
   private String bundleElement;
   private boolean bundleVersionCorrect;
@@ -85,14 +97,35 @@ public class BundleCompatibility {
   }
   
   public BundleCompatibility(String bundleSymbolicName, BundleInfo currentBundle, BundleInfo baseBundle, URLClassLoader oldJarsLoader, URLClassLoader newJarsLoader, List<String> excludes) {
+    this(bundleSymbolicName,
+         currentBundle,
+         baseBundle,
+         new ClassHierarchyIndex(oldJarsLoader),
+         new ClassHierarchyIndex(newJarsLoader),
+         excludes);
+  }
+
+  /**
+   * @param oldJarsIndex the classes of the baseline, the supertypes of the baseline classes are read from
+   * @param newJarsIndex the classes of the current version, the supertypes of the current classes are read from
+   */
+  public BundleCompatibility(String bundleSymbolicName, BundleInfo currentBundle, BundleInfo baseBundle, ClassHierarchyIndex oldJarsIndex, ClassHierarchyIndex newJarsIndex, List<String> excludes) {
     this.bundleSymbolicName = bundleSymbolicName;
     this.currentBundle = currentBundle;
     this.baseBundle = baseBundle;
-    this.oldJarsLoader = oldJarsLoader;
-    this.newJarsLoader = newJarsLoader;
+    this.oldJarsIndex = oldJarsIndex;
+    this.newJarsIndex = newJarsIndex;
     this.excludes = excludes != null ? excludes : new ArrayList<String>();
   }
 
+  /**
+   * Reuses the results of earlier checks against the same baseline for the packages which have not changed.
+   * The cache is saved by {@link #invoke()}.
+   */
+  public void setCache(VersionCheckCache cache) {
+    this.cache = cache;
+  }
+
   public VersionChange getBundleChange() {
     return bundleChange;
   }
@@ -136,11 +169,10 @@ public class BundleCompatibility {
     String fatal_package = null;
     if (!!!currBundleExpPkgContents.isEmpty()) {
       baseBundleExpPkgContents = getAllExportedPkgContents(baseBundle);
-      // compare each class right now
+      // compare the packages in parallel, the results are then reported in order
+      Map<String, PackageResult> results = comparePackages(baseBundleExpPkgContents, currBundleExpPkgContents);
       for (Map.Entry<String, PackageContent> pkg : baseBundleExpPkgContents.entrySet()) {
         String pkgName = pkg.getKey();
-        Map<String, IFile> baseClazz = pkg.getValue().getClasses();
-        Map<String, IFile> baseXsds = pkg.getValue().getXsds();
         PackageContent currPkgContents = currBundleExpPkgContents.get(pkgName);
         if (currPkgContents == null) {
           // The package is no longer exported any more. This should lead to bundle major version change.
@@ -148,24 +180,8 @@ public class BundleCompatibility {
           fatal_package = pkgName;
           _logger.debug("The package " + pkgName + " in the bundle of " + bundleSymbolicName + " is no longer to be exported. Major change.");
         } else {
-          Map<String, IFile> curClazz = currPkgContents.getClasses();
-          Map<String, IFile> curXsds = currPkgContents.getXsds();
-          //check whether there should be major change/minor change/micro change in this package.
-          //1. Use ASM to visit all classes in the package
-          VersionChangeReason majorChange = new VersionChangeReason();
-          VersionChangeReason minorChange = new VersionChangeReason();
-          // check all classes to see whether there are minor or major changes
-          visitPackage(pkgName, baseClazz, curClazz, majorChange, minorChange);
-          // If there is no binary compatibility changes, check whether xsd files have been added, changed or deleted
-          if (!!!majorChange.isChange()) {
-            checkXsdChangesInPkg(pkgName, baseXsds, curXsds, majorChange);
-            // If everything is ok with the existing classes. Need to find out whether there are more API (abstract classes) in the current bundle.
-            // loop through curClazz and visit it and find out whether one of them is abstract.
-            // check whether there are more xsd or abstract classes added
-            if (!!!(majorChange.isChange() || minorChange.isChange())) {
-              checkAdditionalClassOrXsds(pkgName, curClazz, curXsds, minorChange);
-            }
-          }
+          VersionChangeReason majorChange = results.get(pkgName).majorChange;
+          VersionChangeReason minorChange = results.get(pkgName).minorChange;
           // We have scanned the whole packages, report the result
           //                    if (majorChange.isChange() || minorChange.isChange()) {
           String oldVersion = pkg.getValue().getPackageVersion();
@@ -220,9 +236,141 @@ public class BundleCompatibility {
         }
       }
     }
+    if (cache != null) {
+      cache.save();
+    }
     return this;
   }
 
+  /**
+   * Compares the classes and the schemas of the packages exported by both bundles, on as many
+   * threads as there are processors. The packages whose hash is in the cache are not compared.
+   */
+  private Map<String, PackageResult> comparePackages(Map<String, PackageContent> basePkgs,
+      final Map<String, PackageContent> currPkgs) throws IOException {
+    Map<String, PackageResult> results = new HashMap<String, PackageResult>();
+    List<PackageContent> pkgs = new ArrayList<PackageContent>();
+    for (PackageContent basePkg : basePkgs.values()) {
+      if (currPkgs.containsKey(basePkg.getPackageName())) {
+        pkgs.add(basePkg);
+      }
+    }
+
+    int threads = Math.min(Runtime.getRuntime().availableProcessors(), pkgs.size());
+    if (threads <= 1) {
+      for (PackageContent basePkg : pkgs) {
+        results.put(basePkg.getPackageName(), comparePackage(basePkg, currPkgs.get(basePkg.getPackageName())));
+      }
+      return results;
+    }
+
+    List<Callable<PackageResult>> tasks = new ArrayList<Callable<PackageResult>>();
+    for (final PackageContent basePkg : pkgs) {
+      tasks.add(new Callable<PackageResult>() {
+        public PackageResult call() throws IOException {
+          return comparePackage(basePkg, currPkgs.get(basePkg.getPackageName()));
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<PackageResult>> futures = executor.invokeAll(tasks);
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.put(pkgs.get(i).getPackageName(), futures.get(i).get());
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) throw (IOException) cause;
+          if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+          if (cause instanceof Error) throw (Error) cause;
+          throw new IOException("The package " + pkgs.get(i).getPackageName() + " cannot be compared: " + cause);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while comparing the packages of " + bundleSymbolicName);
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  private PackageResult comparePackage(PackageContent basePkg, PackageContent currPkg) throws IOException {
+    String pkgName = basePkg.getPackageName();
+    String hash = null;
+    if (cache != null) {
+      hash = getPackageHash(currPkg);
+      PackageResult result = cache.get(pkgName, hash);
+      if (result != null) {
+        _logger.debug("The package " + pkgName + " has not changed since the last check.");
+        return result;
+      }
+    }
+
+    Map<String, IFile> baseClazz = basePkg.getClasses();
+    Map<String, IFile> baseXsds = basePkg.getXsds();
+    // the maps of the current package are emptied as the classes are compared
+    Map<String, IFile> curClazz = new HashMap<String, IFile>(currPkg.getClasses());
+    Map<String, IFile> curXsds = new HashMap<String, IFile>(currPkg.getXsds());
+    //check whether there should be major change/minor change/micro change in this package.
+    //1. Use ASM to visit all classes in the package
+    PackageResult result = new PackageResult();
+    VersionChangeReason majorChange = result.majorChange;
+    VersionChangeReason minorChange = result.minorChange;
+    // check all classes to see whether there are minor or major changes
+    visitPackage(pkgName, baseClazz, curClazz, majorChange, minorChange);
+    // If there is no binary compatibility changes, check whether xsd files have been added, changed or deleted
+    if (!!!majorChange.isChange()) {
+      checkXsdChangesInPkg(pkgName, baseXsds, curXsds, majorChange);
+      // If everything is ok with the existing classes. Need to find out whether there are more API (abstract classes) in the current bundle.
+      // loop through curClazz and visit it and find out whether one of them is abstract.
+      // check whether there are more xsd or abstract classes added
+      if (!!!(majorChange.isChange() || minorChange.isChange())) {
+        checkAdditionalClassOrXsds(pkgName, curClazz, curXsds, minorChange);
+      }
+    }
+
+    if (cache != null) {
+      cache.put(pkgName, hash, result);
+    }
+    return result;
+  }
+
+  /**
+   * Hashes the classes and the schemas of a package of the current bundle, and the supertypes of its classes
+   * found in the current jars, which the comparison depends on as well.
+   */
+  private String getPackageHash(PackageContent pkg) throws IOException {
+    MessageDigest digest = VersionCheckCache.newDigest();
+    Set<String> supers = new TreeSet<String>();
+    for (Map.Entry<String, IFile> clazz : new TreeMap<String, IFile>(pkg.getClasses()).entrySet()) {
+      byte[] bytes = readBytes(clazz.getValue());
+      update(digest, clazz.getKey(), bytes);
+      ClassReader cr = new ClassReader(bytes);
+      if (cr.getSuperName() != null) {
+        supers.addAll(newJarsIndex.getUpperChain(cr.getSuperName()));
+      }
+      for (String iface : cr.getInterfaces()) {
+        supers.addAll(newJarsIndex.getUpperChain(iface));
+      }
+    }
+    for (Map.Entry<String, IFile> xsd : new TreeMap<String, IFile>(pkg.getXsds()).entrySet()) {
+      update(digest, xsd.getKey(), readBytes(xsd.getValue()));
+    }
+    for (String superName : supers) {
+      if (newJarsIndex.isIndexed(superName)) {
+        update(digest, superName, newJarsIndex.getClassBytes(superName));
+      }
+    }
+    return VersionCheckCache.toHex(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, String name, byte[] bytes) throws IOException {
+    digest.update(name.getBytes("UTF-8"));
+    digest.update((byte) 0);
+    digest.update(bytes);
+  }
+
   private Map<String, PackageContent> getAllExportedPkgContents(BundleInfo currentBundle) {
     String packageExports = currentBundle.getBundleManifest().getRawAttributes().getValue(Constants.EXPORT_PACKAGE);
     List<ManifestHeaderProcessor.NameValuePair> exportPackageLists = ManifestHeaderProcessor.parseExportString(packageExports);
@@ -299,7 +447,7 @@ public class BundleCompatibility {
       IFile curFile = curClazz.get(file.getKey());
       String changeClass = file.getValue().getName();
       //Scan the base version
-      SemanticVersioningClassVisitor oldcv = getVisitor(file.getValue(), oldJarsLoader);
+      SemanticVersioningClassVisitor oldcv = getVisitor(file.getValue(), oldJarsIndex);
       // skip the property files as they are compiled as class file as well
       ClassDeclaration cd = oldcv.getClassDeclaration();
       if ((cd != null) && (!SemanticVersioningUtils.isPropertyFile(cd))) {
@@ -319,7 +467,7 @@ public class BundleCompatibility {
           // load the class from the current version of the bundle
           // remove it from the curClazz collection as we would like to know whether there are more classes added
           curClazz.remove(file.getKey());
-          SemanticVersioningClassVisitor newcv = getVisitor(curFile, newJarsLoader);
+          SemanticVersioningClassVisitor newcv = getVisitor(curFile, newJarsIndex);
           // check for binary compatibility
           ClassDeclaration newcd = newcv.getClassDeclaration();
           BinaryCompatibilityStatus bcs = newcd.getBinaryCompatibleStatus(oldcv.getClassDeclaration());
@@ -463,7 +611,7 @@ public class BundleCompatibility {
     while (iterator.hasNext()) {
       IFile ifile = iterator.next();
       String changeClass = ifile.getName();
-      SemanticVersioningClassVisitor cv = getVisitor(ifile, newJarsLoader);
+      SemanticVersioningClassVisitor cv = getVisitor(ifile, newJarsIndex);
       if (cv.getClassDeclaration() != null) {
         // If this is a public/protected class, it will need to increase the minor version of the package.
         minorChange.setChange(true);
@@ -556,12 +704,12 @@ public class BundleCompatibility {
     return sb.toString();
   }
 
-  private SemanticVersioningClassVisitor getVisitor(IFile file, URLClassLoader loader) {
+  private SemanticVersioningClassVisitor getVisitor(IFile file, ClassHierarchyIndex index) {
    
     SerialVersionClassVisitor sv = new SerialVersionClassVisitor(null);
-    SemanticVersioningClassVisitor oldcv = new SemanticVersioningClassVisitor(loader, sv);
+    SemanticVersioningClassVisitor oldcv = new SemanticVersioningClassVisitor(index, sv);
     try {
-      ClassReader cr = new ClassReader(file.open());
+      ClassReader cr = new ClassReader(readBytes(file));
       cr.accept(oldcv, 0);
     } catch (IOException ioe) {
       _logger.debug("The file " + file + "cannot be opened.");
@@ -569,6 +717,12 @@ public class BundleCompatibility {
     return oldcv;
   }
 
+  private static byte[] readBytes(IFile file) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IOUtils.copy(file.open(), out);
+    return out.toByteArray();
+  }
+
   enum VERSION_CHANGE_TYPE {
     MAJOR_CHANGE("major"), MINOR_CHANGE("minor"), NO_CHANGE("no");
     private final String text;
@@ -619,7 +773,15 @@ public class BundleCompatibility {
     }
   }
 
-  private static class VersionChangeReason {
+  /**
+   * The changes found in a package
+   */
+  static class PackageResult {
+    final VersionChangeReason majorChange = new VersionChangeReason();
+    final VersionChangeReason minorChange = new VersionChangeReason();
+  }
+
+  static class VersionChangeReason {
     boolean change = false;
     String reason = null;
     String changeClass = null;
@@ -26,10 +26,9 @@ import java.lang.String;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +38,7 @@ import org.apache.aries.util.filesystem.IDirectory;
 import org.apache.aries.util.filesystem.IFile;
 import org.apache.aries.util.io.IOUtils;
 import org.apache.aries.util.manifest.BundleManifest;
+import org.apache.aries.versioning.utils.ClassHierarchyIndex;
 import org.apache.aries.versioning.utils.SemanticVersioningUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,8 +46,8 @@ import org.slf4j.LoggerFactory;
 public class SemanticVersioningChecker {
 
     private static final Logger _logger = LoggerFactory.getLogger(SemanticVersioningChecker.class);
-    private URLClassLoader newJarsLoader;
-    private URLClassLoader oldJarsLoader;
+    private ClassHierarchyIndex newJarsIndex;
+    private ClassHierarchyIndex oldJarsIndex;
     private static final String xmlHeader = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>";
 
     /**
@@ -86,12 +86,9 @@ public class SemanticVersioningChecker {
             //scan each individual bundle and find the corresponding bundle in the baseline and verify the version changes
             currentBundles = getBundles(currentDir);
             baseBundles = getBundles(baseDir);
-            URL[] newJarURLs = getListURLs(currentBundles.values()).toArray(new URL[0]);
-            newJarsLoader = new URLClassLoader(newJarURLs);
+            newJarsIndex = new ClassHierarchyIndex(getFiles(currentBundles.values()));
 
-            URL[] oldJarURLs = getListURLs(baseBundles.values()).toArray(new URL[0]);
-
-            oldJarsLoader = new URLClassLoader(oldJarURLs);
+            oldJarsIndex = new ClassHierarchyIndex(getFiles(baseBundles.values()));
 
             //Write the xml header
             writeRecordToWriter(versionStatusFileWriter, xmlHeader + "\r\n");
@@ -110,7 +107,7 @@ public class SemanticVersioningChecker {
                 if (baseBundle == null) {
                     _logger.debug("The bundle " + bundleSymbolicName + " has no counterpart in the base. The semantic version validation does not apply to this bundle.");
                 } else {
-                    BundleCompatibility bundleCompatibility = new BundleCompatibility(bundleSymbolicName, currentBundle, baseBundle, oldJarsLoader, newJarsLoader).invoke();
+                    BundleCompatibility bundleCompatibility = new BundleCompatibility(bundleSymbolicName, currentBundle, baseBundle, oldJarsIndex, newJarsIndex, null).invoke();
                     bundleVersionCorrect = bundleCompatibility.isBundleVersionCorrect();
                     bundleElement = bundleCompatibility.getBundleElement();
                     pkgElements = bundleCompatibility.getPkgElements();
@@ -130,6 +127,8 @@ public class SemanticVersioningChecker {
             e.printStackTrace();
         } finally {
             IOUtils.close(versionStatusFileWriter);
+            IOUtils.close(newJarsIndex);
+            IOUtils.close(oldJarsIndex);
         }
 
         return;
@@ -170,20 +169,12 @@ public class SemanticVersioningChecker {
         return bundles;
     }
 
-    private Collection<URL> getListURLs(Collection<BundleInfo> bundles) {
-        Collection<URL> urls = new HashSet<URL>();
-        try {
-            for (BundleInfo bundle : bundles) {
-
-                URL url = bundle.getBundle().toURI().toURL();
-                urls.add(url);
-
-            }
-
-        } catch (MalformedURLException e) {
-            _logger.debug(e.getMessage());
+    private Collection<File> getFiles(Collection<BundleInfo> bundles) {
+        Collection<File> files = new ArrayList<File>();
+        for (BundleInfo bundle : bundles) {
+            files.add(bundle.getBundle());
         }
-        return urls;
+        return files;
     }
 
 }
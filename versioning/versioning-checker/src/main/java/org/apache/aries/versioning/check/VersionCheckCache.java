@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.versioning.check;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.apache.aries.util.io.IOUtils;
+import org.apache.aries.versioning.check.BundleCompatibility.PackageResult;
+import org.apache.aries.versioning.check.BundleCompatibility.VersionChangeReason;
+
+/**
+ * The results of the package comparisons against one baseline bundle, kept between builds.
+ * A result is keyed by the package name and is only used while the hash of the package,
+ * computed from its classes, its schemas and the supertypes of its classes, is unchanged.
+ * <p>
+ * The results are stored in a properties file of the cache directory named after the SHA-1
+ * of the baseline bundle. Instances are thread safe.
+ *
+ * @version $Rev:$ $Date:$
+ */
+public class VersionCheckCache {
+  private static final String FORMAT = "1";
+  private static final String FORMAT_KEY = "format";
+
+  private final File file;
+  private final Properties results = new Properties();
+  private boolean modified;
+
+  /**
+   * @param directory the cache directory, created when the cache is saved
+   * @param baseline the baseline bundle the results are computed against
+   */
+  public VersionCheckCache(File directory, File baseline) throws IOException {
+    InputStream in = new FileInputStream(baseline);
+    try {
+      file = new File(directory, hash(in) + ".properties");
+    } finally {
+      IOUtils.close(in);
+    }
+    if (file.isFile()) {
+      in = new FileInputStream(file);
+      try {
+        results.load(in);
+      } finally {
+        IOUtils.close(in);
+      }
+      if (!!!FORMAT.equals(results.getProperty(FORMAT_KEY))) {
+        results.clear();
+      }
+    }
+  }
+
+  /**
+   * @return the result of the comparison of the package, or null if the package was not compared with this hash
+   */
+  synchronized PackageResult get(String pkgName, String hash) {
+    if (!!!hash.equals(results.getProperty(pkgName + ".hash"))) {
+      return null;
+    }
+    PackageResult result = new PackageResult();
+    read(pkgName + ".major", result.majorChange);
+    read(pkgName + ".minor", result.minorChange);
+    return result;
+  }
+
+  synchronized void put(String pkgName, String hash, PackageResult result) {
+    results.setProperty(pkgName + ".hash", hash);
+    write(pkgName + ".major", result.majorChange);
+    write(pkgName + ".minor", result.minorChange);
+    modified = true;
+  }
+
+  public synchronized void save() throws IOException {
+    if (!!!modified) {
+      return;
+    }
+    file.getParentFile().mkdirs();
+    results.setProperty(FORMAT_KEY, FORMAT);
+    OutputStream out = new FileOutputStream(file);
+    try {
+      results.store(out, "Apache Aries semantic versioning results");
+    } finally {
+      IOUtils.close(out);
+    }
+    modified = false;
+  }
+
+  private void read(String prefix, VersionChangeReason change) {
+    String reason = results.getProperty(prefix + ".reason");
+    if (reason != null) {
+      change.update(reason, results.getProperty(prefix + ".class"),
+          Boolean.parseBoolean(results.getProperty(prefix + ".abstract")));
+    }
+  }
+
+  private void write(String prefix, VersionChangeReason change) {
+    if (change.isChange() && change.getReason() != null) {
+      results.setProperty(prefix + ".reason", change.getReason());
+      if (change.getChangeClass() != null) {
+        results.setProperty(prefix + ".class", change.getChangeClass());
+      } else {
+        results.remove(prefix + ".class");
+      }
+      results.setProperty(prefix + ".abstract", String.valueOf(change.isMoreAbstractMethod()));
+    } else {
+      results.remove(prefix + ".reason");
+      results.remove(prefix + ".class");
+      results.remove(prefix + ".abstract");
+    }
+  }
+
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(byte[] digest) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  private static String hash(InputStream in) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[8192];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      digest.update(buffer, 0, n);
+    }
+    return toHex(digest.digest());
+  }
+}
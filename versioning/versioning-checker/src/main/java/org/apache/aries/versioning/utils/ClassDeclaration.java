@@ -18,7 +18,6 @@
  */
 package org.apache.aries.versioning.utils;
 
-import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
@@ -29,7 +28,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
 public class ClassDeclaration extends GenericDeclaration {
@@ -53,7 +51,7 @@ public class ClassDeclaration extends GenericDeclaration {
     private final Collection<String> supers = new ArrayList<String>();
 
 
-    private final URLClassLoader jarsLoader;
+    private final ClassHierarchyIndex index;
 
     private final SerialVersionClassVisitor serialVisitor;
 
@@ -123,58 +121,44 @@ public class ClassDeclaration extends GenericDeclaration {
 
     public ClassDeclaration(int access, String name, String signature, String superName,
                             String[] interfaces, URLClassLoader loader, SerialVersionClassVisitor cv) {
+        this(access, name, signature, superName, interfaces, new ClassHierarchyIndex(loader), cv);
+    }
+
+    public ClassDeclaration(int access, String name, String signature, String superName,
+                            String[] interfaces, ClassHierarchyIndex index, SerialVersionClassVisitor cv) {
         super(access, name, signature);
         this.superName = superName;
         this.interfaces = interfaces;
         this.fields = new HashMap<String, FieldDeclaration>();
         this.methods = new HashMap<String, Set<MethodDeclaration>>();
-        this.jarsLoader = loader;
+        this.index = index;
         this.serialVisitor = cv;
     }
 
     private void getFieldsRecursively(String superClass) {
 
         if ((superClass != null)) {
-            // load the super class of the cd
-            try {
-                SerialVersionClassVisitor cv = new SerialVersionClassVisitor(null);
-                SemanticVersioningClassVisitor svc = new SemanticVersioningClassVisitor(jarsLoader, cv);
-                ClassReader cr = new ClassReader(jarsLoader.getResourceAsStream(superClass + SemanticVersioningUtils.classExt));
-                cr.accept(svc, 0);
-                ClassDeclaration cd = svc.getClassDeclaration();
-                if (cd != null) {
-                    addFieldInUpperChain(cd.getFields());
-                    getFieldsRecursively(cd.getSuperName());
-                    for (String iface : cd.getInterfaces()) {
-                        getFieldsRecursively(iface);
-                    }
+            // the declarations of the supers are read from the index, they are shared so only read them
+            ClassDeclaration cd = index.getClassDeclaration(superClass);
+            if (cd != null) {
+                addFieldInUpperChain(cd.getFields());
+                getFieldsRecursively(cd.getSuperName());
+                for (String iface : cd.getInterfaces()) {
+                    getFieldsRecursively(iface);
                 }
-            } catch (IOException ioe) {
-                // not a problem
             }
         }
     }
 
     private void getMethodsRecursively(String superClass) {
         if ((superClass != null)) {
-            // load the super class of the cd
-            SerialVersionClassVisitor cv = new SerialVersionClassVisitor(null);
-
-            SemanticVersioningClassVisitor svc = new SemanticVersioningClassVisitor(jarsLoader, cv);
-            // use URLClassLoader to load the class
-            try {
-                ClassReader cr = new ClassReader(jarsLoader.getResourceAsStream(superClass + SemanticVersioningUtils.classExt));
-                cr.accept(svc, 0);
-                ClassDeclaration cd = svc.getClassDeclaration();
-                if (cd != null) {
-                    addMethodsInUpperChain(cd.getMethods());
-                    getMethodsRecursively(cd.getSuperName());
-                    for (String iface : cd.getInterfaces()) {
-                        getMethodsRecursively(iface);
-                    }
+            ClassDeclaration cd = index.getClassDeclaration(superClass);
+            if (cd != null) {
+                addMethodsInUpperChain(cd.getMethods());
+                getMethodsRecursively(cd.getSuperName());
+                for (String iface : cd.getInterfaces()) {
+                    getMethodsRecursively(iface);
                 }
-            } catch (IOException ioe) {
-                // not a deal
             }
         }
     }
@@ -222,26 +206,7 @@ public class ClassDeclaration extends GenericDeclaration {
         Collection<String> clazz = new HashSet<String>();
 
         if (className != null) {
-            // load the super class of the cd
-            SerialVersionClassVisitor cv = new SerialVersionClassVisitor(null);
-
-            SemanticVersioningClassVisitor svc = new SemanticVersioningClassVisitor(jarsLoader, cv);
-            try {
-                ClassReader cr = new ClassReader(jarsLoader.getResourceAsStream(className + SemanticVersioningUtils.classExt));
-                cr.accept(svc, 0);
-                clazz.add(className);
-                if (svc.getClassDeclaration() != null) {
-                    String superName = svc.getClassDeclaration().getSuperName();
-                    clazz.addAll(getUpperChainRecursively(superName));
-                    if (svc.getClassDeclaration().getInterfaces() != null) {
-                        for (String iface : svc.getClassDeclaration().getInterfaces()) {
-                            clazz.addAll(getUpperChainRecursively(iface));
-                        }
-                    }
-                }
-            } catch (IOException ioe) {
-                // not to worry about this. terminate.
-            }
+            clazz.addAll(index.getUpperChain(className));
         }
         return clazz;
     }
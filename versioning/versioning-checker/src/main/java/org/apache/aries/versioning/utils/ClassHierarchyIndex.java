@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.versioning.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * The declarations of the classes of a set of jars, read from their class bytes. The
+ * supertypes of the classes being compared are looked up here, each of them being read and
+ * parsed once, without loading any class.
+ * <p>
+ * Classes that are not in the jars, such as those of the JDK, are read as resources of a
+ * fallback class loader, the system class loader by default. Instances are thread safe.
+ */
+public class ClassHierarchyIndex implements Closeable {
+
+    /** The declaration of a class, null when the class is not public or protected */
+    private static class Node {
+        final ClassDeclaration declaration;
+
+        Node(ClassDeclaration declaration) {
+            this.declaration = declaration;
+        }
+    }
+
+    private static final Node MISSING = new Node(null);
+
+    private final List<ZipFile> jars = new ArrayList<ZipFile>();
+    private final Map<String, ZipFile> classes = new HashMap<String, ZipFile>();
+    private final ClassLoader fallback;
+    private final ConcurrentMap<String, Node> declarations = new ConcurrentHashMap<String, Node>();
+    private final ConcurrentMap<String, Collection<String>> supers = new ConcurrentHashMap<String, Collection<String>>();
+
+    /**
+     * Indexes the class entries of jars. When a class is in several jars, the first one wins.
+     */
+    public ClassHierarchyIndex(Collection<File> files) throws IOException {
+        this(files, ClassLoader.getSystemClassLoader());
+    }
+
+    public ClassHierarchyIndex(Collection<File> files, ClassLoader fallback) throws IOException {
+        this.fallback = fallback;
+        try {
+            for (File file : files) {
+                ZipFile jar = new ZipFile(file);
+                jars.add(jar);
+                Enumeration<? extends ZipEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.endsWith(SemanticVersioningUtils.classExt) && !!!classes.containsKey(name)) {
+                        classes.put(name, jar);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the classes from the resources of a class loader.
+     */
+    public ClassHierarchyIndex(URLClassLoader loader) {
+        this.fallback = loader;
+    }
+
+    /**
+     * @param className the internal name of a class
+     * @return whether the class is in the indexed jars
+     */
+    public boolean isIndexed(String className) {
+        return classes.containsKey(className + SemanticVersioningUtils.classExt);
+    }
+
+    /**
+     * @param className the internal name of a class
+     * @return the bytes of the class, or null if it cannot be found
+     */
+    public byte[] getClassBytes(String className) throws IOException {
+        String resource = className + SemanticVersioningUtils.classExt;
+        ZipFile jar = classes.get(resource);
+        InputStream in;
+        if (jar != null) {
+            in = jar.getInputStream(jar.getEntry(resource));
+        } else if (fallback != null) {
+            in = fallback.getResourceAsStream(resource);
+        } else {
+            in = null;
+        }
+        return (in == null) ? null : readFully(in);
+    }
+
+    /**
+     * @param className the internal name of a class
+     * @return whether the class can be found
+     */
+    public boolean exists(String className) {
+        return getNode(className) != MISSING;
+    }
+
+    /**
+     * @param className the internal name of a class
+     * @return the declaration of the class, null if the class cannot be found or is neither public nor protected.
+     *         The declaration is shared and must not be modified.
+     */
+    public ClassDeclaration getClassDeclaration(String className) {
+        return getNode(className).declaration;
+    }
+
+    /**
+     * @param className the internal name of a class
+     * @return the names of the supertypes of the class, the class included, which can be found,
+     *         as {@link ClassDeclaration#getUpperChainRecursively(String)} returns them
+     */
+    public Collection<String> getUpperChain(String className) {
+        Collection<String> result = supers.get(className);
+        if (result == null) {
+            Set<String> chain = new LinkedHashSet<String>();
+            if (exists(className)) {
+                chain.add(className);
+                ClassDeclaration cd = getClassDeclaration(className);
+                if (cd != null) {
+                    if (cd.getSuperName() != null) {
+                        chain.addAll(getUpperChain(cd.getSuperName()));
+                    }
+                    for (String iface : cd.getInterfaces()) {
+                        chain.addAll(getUpperChain(iface));
+                    }
+                }
+            }
+            supers.putIfAbsent(className, chain);
+            result = chain;
+        }
+        return result;
+    }
+
+    public void close() {
+        for (ZipFile jar : jars) {
+            try {
+                jar.close();
+            } catch (IOException e) {
+                // not a problem
+            }
+        }
+        jars.clear();
+    }
+
+    private Node getNode(String className) {
+        Node node = declarations.get(className);
+        if (node == null) {
+            node = MISSING;
+            try {
+                byte[] bytes = getClassBytes(className);
+                if (bytes != null) {
+                    SemanticVersioningClassVisitor svc = new SemanticVersioningClassVisitor(this, new SerialVersionClassVisitor(null));
+                    new ClassReader(bytes).accept(svc, 0);
+                    node = new Node(svc.getClassDeclaration());
+                }
+            } catch (IOException ioe) {
+                // the class cannot be read, as if it was not there
+            }
+            Node existing = declarations.putIfAbsent(className, node);
+            if (existing != null) {
+                node = existing;
+            }
+        }
+        return node;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -31,18 +31,25 @@ public class SemanticVersioningClassVisitor extends ClassVisitor {
 
     private ClassDeclaration classDeclaration;
     private boolean needVisit = false;
-    private URLClassLoader loader = null;
+    private ClassHierarchyIndex index = null;
     private SerialVersionClassVisitor cv = null;
 
     public SemanticVersioningClassVisitor(URLClassLoader newJarLoader, SerialVersionClassVisitor cv) {
-      super(SemanticVersioningUtils.ASM4);
-      this.loader = newJarLoader;
-      this.cv = cv;
+      this(new ClassHierarchyIndex(newJarLoader), cv);
     }
 
     public SemanticVersioningClassVisitor(URLClassLoader newJarLoader) {
+      this(new ClassHierarchyIndex(newJarLoader), null);
+    }
+
+    /**
+     * @param index the classes the supertypes of the visited class are read from
+     * @param cv the visitor computing the serialVersionUID of the class, may be null
+     */
+    public SemanticVersioningClassVisitor(ClassHierarchyIndex index, SerialVersionClassVisitor cv) {
       super(SemanticVersioningUtils.ASM4);
-      this.loader = newJarLoader;
+      this.index = index;
+      this.cv = cv;
     }
 
     public ClassDeclaration getClassDeclaration() {
@@ -63,7 +70,7 @@ public class SemanticVersioningClassVisitor extends ClassVisitor {
             cv.visit(version, access, name, signature, superName, interfaces);
         }
         if (Modifier.isPublic(access) || (Modifier.isProtected(access))) {
-            classDeclaration = new ClassDeclaration(access, name, signature, superName, interfaces, loader, cv);
+            classDeclaration = new ClassDeclaration(access, name, signature, superName, interfaces, index, cv);
             needVisit = true;
 
         }
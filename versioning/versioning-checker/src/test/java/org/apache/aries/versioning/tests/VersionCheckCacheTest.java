@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.versioning.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.aries.util.manifest.BundleManifest;
+import org.apache.aries.versioning.check.BundleCompatibility;
+import org.apache.aries.versioning.check.BundleInfo;
+import org.apache.aries.versioning.check.VersionCheckCache;
+import org.apache.aries.versioning.utils.ClassHierarchyIndex;
+import org.junit.Test;
+
+/**
+ * Test that the results read from the cache are those of a full check.
+ */
+public class VersionCheckCacheTest {
+
+  private final File oldBundleFile = new File("../src/test/resources/api_1.0.0.jar");
+  private final File newBundleFile = new File("../src/test/resources/api_1.0.1.jar");
+
+  @Test
+  public void testCachedResults() throws Exception {
+    File cacheDir = File.createTempFile("versioning", "cache");
+    cacheDir.delete();
+
+    BundleCompatibility checked = check(cacheDir, null);
+    assertTrue("The major change is not reported", checked.getBundleElement().contains("major changes"));
+    assertEquals(1, cacheDir.listFiles().length);
+
+    BundleCompatibility cached = check(cacheDir, null);
+    assertEquals(checked.getBundleElement(), cached.getBundleElement());
+    assertEquals(checked.getPkgElements().toString(), cached.getPkgElements().toString());
+
+    // the excludes apply to the cached results as well
+    List<String> excludes = new ArrayList<String>();
+    excludes.add("method void methodToBeExcludedFrom() has been deleted");
+    BundleCompatibility excluded = check(cacheDir, excludes);
+    assertTrue("Unexpected bundle versioning issue", excluded.getBundleElement() == null);
+    assertTrue("Unexpected package versioning issue", excluded.getPkgElements().toString().trim().length() == 0);
+
+    for (File f : cacheDir.listFiles()) {
+      f.delete();
+    }
+    cacheDir.delete();
+  }
+
+  private BundleCompatibility check(File cacheDir, List<String> excludes) throws Exception {
+    BundleInfo oldBundle = new BundleInfo(BundleManifest.fromBundle(oldBundleFile), oldBundleFile);
+    BundleInfo newBundle = new BundleInfo(BundleManifest.fromBundle(newBundleFile), newBundleFile);
+    ClassHierarchyIndex oldIndex = new ClassHierarchyIndex(Collections.singleton(oldBundleFile));
+    ClassHierarchyIndex newIndex = new ClassHierarchyIndex(Collections.singleton(newBundleFile));
+    try {
+      BundleCompatibility bundleCompatibility = new BundleCompatibility(newBundle.getBundleManifest().getSymbolicName(),
+          newBundle, oldBundle,
+          oldIndex,
+          newIndex,
+          excludes);
+      bundleCompatibility.setCache(new VersionCheckCache(cacheDir, oldBundleFile));
+      return bundleCompatibility.invoke();
+    } finally {
+      oldIndex.close();
+      newIndex.close();
+    }
+  }
+}
@@ -19,9 +19,7 @@ package org.apache.aries.versioning.mojo;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +27,8 @@ import org.apache.aries.util.manifest.BundleManifest;
 import org.apache.aries.versioning.check.BundleCompatibility;
 import org.apache.aries.versioning.check.BundleInfo;
 import org.apache.aries.versioning.check.VersionChange;
+import org.apache.aries.versioning.check.VersionCheckCache;
+import org.apache.aries.versioning.utils.ClassHierarchyIndex;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
 import org.apache.maven.execution.MavenSession;
@@ -80,6 +80,19 @@ public class VersionCheckerMojo extends AbstractMojo {
 
     @Parameter
     private List<String> excludes;
+
+    /**
+     * whether to reuse the results of the previous checks against the same old artifact
+     * for the packages which have not changed
+     */
+    @Parameter(property="aries.version.check.cache", defaultValue="true")
+    private boolean useCache;
+
+    /**
+     * location of the results of the previous checks
+     */
+    @Parameter(defaultValue="${project.build.directory}/versioning-cache")
+    private File cacheDirectory;
     
     @Component
     private RepositorySystem repository;
@@ -118,16 +131,26 @@ public class VersionCheckerMojo extends AbstractMojo {
 
                 BundleInfo oldBundle = getBundleInfo(resolve(oldArtifact));
                 String bundleSymbolicName = newBundle.getBundleManifest().getSymbolicName();
-                URLClassLoader oldClassLoader = new URLClassLoader(new URL[] {oldBundle.getBundle().toURI()
-                    .toURL()});
-                URLClassLoader newClassLoader = new URLClassLoader(new URL[] {newBundle.getBundle().toURI()
-                    .toURL()});
-                BundleCompatibility bundleCompatibility = new BundleCompatibility(bundleSymbolicName,
-                                                                                  newBundle, oldBundle,
-                                                                                  oldClassLoader,
-                                                                                  newClassLoader,
-                                                                                  excludes);
-                bundleCompatibility.invoke();
+                BundleCompatibility bundleCompatibility;
+                ClassHierarchyIndex oldIndex = new ClassHierarchyIndex(Collections.singleton(oldBundle.getBundle()));
+                try {
+                    ClassHierarchyIndex newIndex = new ClassHierarchyIndex(Collections.singleton(newBundle.getBundle()));
+                    try {
+                        bundleCompatibility = new BundleCompatibility(bundleSymbolicName,
+                                                                      newBundle, oldBundle,
+                                                                      oldIndex,
+                                                                      newIndex,
+                                                                      excludes);
+                        if (useCache) {
+                            bundleCompatibility.setCache(new VersionCheckCache(cacheDirectory, oldBundle.getBundle()));
+                        }
+                        bundleCompatibility.invoke();
+                    } finally {
+                        newIndex.close();
+                    }
+                } finally {
+                    oldIndex.close();
+                }
                 String bundleElement = bundleCompatibility.getBundleElement();
                 String pkgElement = bundleCompatibility.getPkgElements().toString();
                 
@@ -149,8 +172,6 @@ public class VersionCheckerMojo extends AbstractMojo {
                 } else {
                     getLog().info("All package or bundle versions are semanticly versioned correctly.");
                 }
-            } catch (MalformedURLException e) {
-                throw new MojoExecutionException("Problem analyzing sources");
             } catch (IOException e) {
                 throw new MojoExecutionException("Problem analyzing sources");
             }
@@ -29,17 +29,41 @@ import org.osgi.service.url.URLStreamHandlerService;
 
 public class Activator implements BundleActivator {
 
+    private DependencyScanner scanner;
+
     @Override
     public void start(BundleContext context) throws Exception {
+        if (Boolean.parseBoolean(context.getProperty(DependencyScanner.PARALLEL))) {
+            scanner = new DependencyScanner(
+                    getInt(context, DependencyScanner.THREADS, Runtime.getRuntime().availableProcessors()),
+                    getInt(context, DependencyScanner.CACHE_SIZE, DependencyScanner.DEFAULT_CACHE_SIZE));
+        }
+        boolean streaming = Boolean.parseBoolean(context.getProperty(WarToWabConverterImpl.STREAMING));
         Dictionary<String, Object> props = new Hashtable<String, Object>();
         props.put("url.handler.protocol", new String[]{"webbundle"});
-        context.registerService(URLStreamHandlerService.class, new WAR_URLServiceHandler(), props);
-        context.registerService(WarToWabConverter.class, new WarToWabConverterService(), null);
+        context.registerService(URLStreamHandlerService.class, new WAR_URLServiceHandler(scanner, streaming), props);
+        context.registerService(WarToWabConverter.class, new WarToWabConverterService(scanner, streaming), null);
     }
 
     @Override
     public void stop(BundleContext context) throws Exception {
         // Services will be unregistered by framework
+        if (scanner != null) {
+            scanner.destroy();
+            scanner = null;
+        }
+    }
+
+    private static int getInt(BundleContext context, String name, int defaultValue) {
+        String value = context.getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // use the default
+            }
+        }
+        return defaultValue;
     }
 
 }
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.web.converter.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.apache.aries.web.converter.WarToWabConverter.InputStreamProvider;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Scans a WAR for the packages its classes and JSPs import, analysing the class files
+ * and the nested jars on worker threads.
+ * <p>
+ * Entries are read in bulk and handed to the workers as byte arrays, each nested jar
+ * being analysed by a single worker. The result of a scan is cached against the SHA-1
+ * of the WAR content, so converting a WAR that was converted before only costs a read
+ * of the WAR.
+ * <p>
+ * Instances are thread safe and are shared by all the conversions of the bundle.
+ */
+public class DependencyScanner {
+  /** Framework property enabling the parallel scan, false by default */
+  public static final String PARALLEL = "org.apache.aries.web.converter.parallel";
+  /** Framework property for the number of worker threads, the number of processors by default */
+  public static final String THREADS = "org.apache.aries.web.converter.threads";
+  /** Framework property for the number of scan results kept, 32 by default */
+  public static final String CACHE_SIZE = "org.apache.aries.web.converter.cache.size";
+
+  static final int DEFAULT_CACHE_SIZE = 32;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // Entries queued for a worker, which bounds the WAR content held in memory
+  private static final int PENDING_PER_THREAD = 4;
+
+  /**
+   * The packages found by a scan. The manifests are those of the jars at the top
+   * level of the WAR, keyed by entry name.
+   */
+  static class Result {
+    final Set<String> importPackages = new TreeSet<String>();
+    final Set<String> exemptPackages = new TreeSet<String>();
+    final Map<String, Manifest> manifests = new HashMap<String, Manifest>();
+    Manifest manifest;
+  }
+
+  private final ThreadPoolExecutor executor;
+  private final Semaphore pending;
+  private final Map<String, Result> cache;
+  private final AtomicInteger cacheHits = new AtomicInteger();
+  private final AtomicInteger cacheMisses = new AtomicInteger();
+
+  public DependencyScanner(int threads, final int cacheSize) {
+    threads = Math.max(1, threads);
+    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Aries WAB Converter-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    pending = new Semaphore(threads * PENDING_PER_THREAD);
+
+    @SuppressWarnings("serial")
+    Map<String, Result> lru = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    cache = Collections.synchronizedMap(lru);
+  }
+
+  /**
+   * Scans a WAR, or returns the result of a previous scan of the same content.
+   * The result must not be modified.
+   */
+  Result scan(InputStreamProvider war) throws IOException {
+    String key = digest(war);
+    Result result = cache.get(key);
+    if (result != null) {
+      cacheHits.incrementAndGet();
+      return result;
+    }
+    cacheMisses.incrementAndGet();
+
+    JarInputStream jarInput = new JarInputStream(war.getInputStream());
+    try {
+      result = scanTopLevel(jarInput);
+    } finally {
+      close(jarInput);
+    }
+    cache.put(key, result);
+    return result;
+  }
+
+  public int getCacheHits() {
+    return cacheHits.get();
+  }
+
+  public int getCacheMisses() {
+    return cacheMisses.get();
+  }
+
+  public void destroy() {
+    executor.shutdownNow();
+    cache.clear();
+  }
+
+  private Result scanTopLevel(JarInputStream jarInput) throws IOException {
+    List<String> names = new ArrayList<String>();
+    List<Future<Result>> futures = new ArrayList<Future<Result>>();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    boolean done = false;
+    try {
+      ZipEntry entry;
+      while ((entry = jarInput.getNextEntry()) != null) {
+        final String name = entry.getName();
+        if (!!!isScanned(name)) {
+          continue;
+        }
+        final byte[] content = read(jarInput, entry, buffer);
+        pending.acquireUninterruptibly();
+        try {
+          futures.add(executor.submit(new Callable<Result>() {
+            public Result call() throws Exception {
+              try {
+                Result result = new Result();
+                scanEntry(name, content, result, new byte[BUFFER_SIZE]);
+                return result;
+              } finally {
+                pending.release();
+              }
+            }
+          }));
+        } catch (RejectedExecutionException e) {
+          pending.release();
+          throw new IOException("The WAB converter is stopped");
+        }
+        names.add(name);
+      }
+
+      Result result = new Result();
+      for (int i = 0; i < futures.size(); i++) {
+        Result r = get(futures.get(i));
+        result.importPackages.addAll(r.importPackages);
+        result.exemptPackages.addAll(r.exemptPackages);
+        if (names.get(i).endsWith(".jar")) {
+          result.manifests.put(names.get(i), r.manifest);
+        }
+      }
+      done = true;
+      return result;
+    } finally {
+      if (!!!done) {
+        for (Future<Result> f : futures) {
+          f.cancel(true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Analyses a single entry. The imports of a nested jar are those of its own entries,
+   * which are read on the current thread.
+   */
+  private static void scanEntry(String name, byte[] content, Result result, byte[] buffer) throws IOException {
+    if (name.endsWith(".class")) {
+      PackageFinder pkgFinder = new PackageFinder();
+      new ClassReader(content).accept(pkgFinder, ClassReader.SKIP_DEBUG);
+
+      result.importPackages.addAll(pkgFinder.getImportPackages());
+      result.exemptPackages.addAll(pkgFinder.getExemptPackages());
+    } else if (name.endsWith(".jsp")) {
+      result.importPackages.addAll(JSPImportParser.getImports(new ByteArrayInputStream(content)));
+    } else if (name.endsWith(".jar")) {
+      JarInputStream jarInput = new JarInputStream(new ByteArrayInputStream(content));
+      ZipEntry entry;
+      while ((entry = jarInput.getNextEntry()) != null) {
+        if (isScanned(entry.getName())) {
+          scanEntry(entry.getName(), read(jarInput, entry, buffer), result, buffer);
+        }
+      }
+      result.manifest = jarInput.getManifest();
+    }
+  }
+
+  private static boolean isScanned(String name) {
+    return name.endsWith(".class") || name.endsWith(".jsp") || name.endsWith(".jar");
+  }
+
+  private static byte[] read(InputStream in, ZipEntry entry, byte[] buffer) throws IOException {
+    long size = entry.getSize();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int) size : buffer.length);
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  private static Result get(Future<Result> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while scanning the WAR");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      IOException ioe = new IOException("Unable to scan the WAR");
+      ioe.initCause(cause);
+      throw ioe;
+    }
+  }
+
+  /**
+   * Closes a stream that has only been read, like IOUtils.close() in aries util which this
+   * bundle does not depend on. Failing to close it cannot lose any data.
+   */
+  private static void close(Closeable c) {
+    try {
+      c.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  private static String digest(InputStreamProvider war) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      IOException ioe = new IOException("SHA-1 is not available");
+      ioe.initCause(e);
+      throw ioe;
+    }
+    InputStream in = war.getInputStream();
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, n);
+      }
+    } finally {
+      close(in);
+    }
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+}
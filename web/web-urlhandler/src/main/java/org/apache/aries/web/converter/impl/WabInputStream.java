@@ -0,0 +1,495 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIESOR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.aries.web.converter.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * The WAB read from a WAR: the new manifest followed by the entries of the WAR, which
+ * are copied as they are stored in the WAR, without being inflated and compressed again.
+ * The WAB is produced as it is read, so neither the WAR nor the WAB is held in memory.
+ * <p>
+ * The entries are read from the local headers of the WAR. The end of a deflated entry
+ * followed by a data descriptor is found by inflating it, its content is discarded. The
+ * central directory of the WAR is not read. ZIP64 extra fields of the WAR are read, but
+ * the WAB is written without them, so it cannot exceed the ZIP limits of 4GB and 65535
+ * entries.
+ */
+class WabInputStream extends InputStream {
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int DATA_DESCRIPTOR = 0x08074b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_HEADER = 0x06054b50;
+  private static final int DATA_DESCRIPTOR_FLAG = 8;
+  private static final int ZIP64_EXTRA = 0x0001;
+  private static final int VERSION = 20;
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private enum State { MANIFEST, ENTRY, DATA, DEFLATED_DATA, DATA_DESCRIPTOR, CENTRAL_DIRECTORY, DONE }
+
+  private static class Entry {
+    byte[] name;
+    int version;
+    int flags;
+    int method;
+    int time;
+    int date;
+    long crc;
+    long compressedSize;
+    long size;
+    long offset;
+    boolean zip64;
+    boolean copied;
+  }
+
+  /** A byte array stream which can be read from */
+  private static class Buffer extends ByteArrayOutputStream {
+    Buffer(int size) {
+      super(size);
+    }
+
+    byte[] bytes() {
+      return buf;
+    }
+  }
+
+  private final PushbackInputStream in;
+  private final Manifest manifest;
+  private final boolean skipSignatures;
+  private final List<Entry> entries = new ArrayList<Entry>();
+  private final Buffer out = new Buffer(CHUNK_SIZE + 1024);
+  private final Buffer header = new Buffer(512);
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+  private final byte[] scratch = new byte[CHUNK_SIZE];
+  private final byte[] single = new byte[1];
+  private Inflater inflater;
+  private State state = State.MANIFEST;
+  private Entry current;
+  private long remaining;
+  private long written;
+  private int pos;
+
+  /**
+   * @param war the WAR, closed with this stream
+   * @param manifest the manifest of the WAB
+   * @param skipSignatures whether the signature files of the WAR are left out
+   */
+  WabInputStream(InputStream war, Manifest manifest, boolean skipSignatures) {
+    this.in = new PushbackInputStream(new BufferedInputStream(war, CHUNK_SIZE), CHUNK_SIZE);
+    this.manifest = manifest;
+    this.skipSignatures = skipSignatures;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return (read(single, 0, 1) == -1) ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    while (pos == out.size()) {
+      if (state == State.DONE) {
+        return -1;
+      }
+      out.reset();
+      pos = 0;
+      step();
+    }
+    int n = Math.min(len, out.size() - pos);
+    System.arraycopy(out.bytes(), pos, b, off, n);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+    return out.size() - pos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    state = State.DONE;
+    if (inflater != null) {
+      inflater.end();
+      inflater = null;
+    }
+    in.close();
+  }
+
+  private void step() throws IOException {
+    switch (state) {
+      case MANIFEST:
+        writeManifest();
+        state = State.ENTRY;
+        break;
+      case ENTRY:
+        readEntry();
+        break;
+      case DATA: {
+        int n = in.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+        if (n == -1) {
+          throw new EOFException("Unexpected end of " + name(current));
+        }
+        emit(chunk, 0, n);
+        remaining -= n;
+        if (remaining == 0) {
+          state = State.ENTRY;
+        }
+        break;
+      }
+      case DEFLATED_DATA:
+        copyDeflatedData();
+        break;
+      case DATA_DESCRIPTOR:
+        copyDataDescriptor();
+        state = State.ENTRY;
+        break;
+      case CENTRAL_DIRECTORY:
+        writeCentralDirectory();
+        state = State.DONE;
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void writeManifest() throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    manifest.write(content);
+    byte[] bytes = content.toByteArray();
+
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      while (!!!deflater.finished()) {
+        int n = deflater.deflate(scratch);
+        compressed.write(scratch, 0, n);
+      }
+    } finally {
+      deflater.end();
+    }
+
+    Entry entry = new Entry();
+    entry.name = JarFile.MANIFEST_NAME.getBytes("UTF-8");
+    entry.version = VERSION;
+    entry.method = ZipEntry.DEFLATED;
+    Calendar c = Calendar.getInstance();
+    entry.time = c.get(Calendar.HOUR_OF_DAY) << 11 | c.get(Calendar.MINUTE) << 5 | c.get(Calendar.SECOND) >> 1;
+    entry.date = (c.get(Calendar.YEAR) - 1980) << 9 | (c.get(Calendar.MONTH) + 1) << 5 | c.get(Calendar.DAY_OF_MONTH);
+    entry.crc = crc.getValue();
+    entry.compressedSize = compressed.size();
+    entry.size = bytes.length;
+    entry.copied = true;
+    current = entry;
+    entries.add(entry);
+    writeLocalHeader(entry, new byte[0]);
+    emit(compressed.toByteArray(), 0, compressed.size());
+  }
+
+  private void readEntry() throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      state = State.CENTRAL_DIRECTORY;
+      return;
+    }
+    in.unread(first);
+    long signature = readInt();
+    if (signature != LOCAL_HEADER) {
+      // the central directory of the WAR, or data we do not know about, ends the entries
+      state = State.CENTRAL_DIRECTORY;
+      return;
+    }
+
+    Entry entry = new Entry();
+    entry.version = readShort();
+    entry.flags = readShort();
+    entry.method = readShort();
+    entry.time = readShort();
+    entry.date = readShort();
+    entry.crc = readInt();
+    entry.compressedSize = readInt();
+    entry.size = readInt();
+    int nameLength = readShort();
+    int extraLength = readShort();
+    entry.name = new byte[nameLength];
+    readFully(entry.name);
+    byte[] extra = new byte[extraLength];
+    readFully(extra);
+    extra = readZip64(entry, extra);
+
+    String name = name(entry);
+    entry.copied = !!!name.equalsIgnoreCase(JarFile.MANIFEST_NAME)
+        && !!!(skipSignatures && WarToWabConverterImpl.isSignatureFile(name));
+    current = entry;
+    if (entry.copied) {
+      entries.add(entry);
+    }
+    writeLocalHeader(entry, extra);
+
+    if ((entry.flags & DATA_DESCRIPTOR_FLAG) == 0) {
+      remaining = entry.compressedSize;
+      state = (remaining == 0) ? State.ENTRY : State.DATA;
+    } else if (entry.method == ZipEntry.DEFLATED) {
+      if (inflater == null) {
+        inflater = new Inflater(true);
+      } else {
+        inflater.reset();
+      }
+      state = State.DEFLATED_DATA;
+    } else {
+      throw new IOException("Only deflated entries can have a data descriptor: " + name);
+    }
+  }
+
+  private void copyDeflatedData() throws IOException {
+    int n = in.read(chunk);
+    if (n == -1) {
+      throw new EOFException("Unexpected end of " + name(current));
+    }
+    inflater.setInput(chunk, 0, n);
+    try {
+      while (!!!inflater.finished() && !!!inflater.needsInput()) {
+        if (inflater.needsDictionary()) {
+          throw new IOException("Invalid deflated data in " + name(current));
+        }
+        inflater.inflate(scratch);
+      }
+    } catch (DataFormatException e) {
+      IOException ioe = new IOException("Invalid deflated data in " + name(current));
+      ioe.initCause(e);
+      throw ioe;
+    }
+    if (inflater.finished()) {
+      // the bytes following the deflated data are the data descriptor
+      int unused = inflater.getRemaining();
+      in.unread(chunk, n - unused, unused);
+      n -= unused;
+      state = State.DATA_DESCRIPTOR;
+    }
+    emit(chunk, 0, n);
+  }
+
+  private void copyDataDescriptor() throws IOException {
+    long crc = readInt();
+    // the signature of the data descriptor is optional
+    if (crc == DATA_DESCRIPTOR) {
+      crc = readInt();
+    }
+    current.crc = crc;
+    current.compressedSize = current.zip64 ? readLong() : readInt();
+    current.size = current.zip64 ? readLong() : readInt();
+    checkSize(current);
+
+    header.reset();
+    writeInt(header, DATA_DESCRIPTOR);
+    writeInt(header, current.crc);
+    writeInt(header, current.compressedSize);
+    writeInt(header, current.size);
+    emit(header.bytes(), 0, header.size());
+  }
+
+  private void writeLocalHeader(Entry entry, byte[] extra) throws IOException {
+    entry.offset = written;
+    header.reset();
+    writeInt(header, LOCAL_HEADER);
+    writeShort(header, entry.version);
+    writeShort(header, entry.flags);
+    writeShort(header, entry.method);
+    writeShort(header, entry.time);
+    writeShort(header, entry.date);
+    writeInt(header, entry.crc);
+    writeInt(header, entry.compressedSize);
+    writeInt(header, entry.size);
+    writeShort(header, entry.name.length);
+    writeShort(header, extra.length);
+    header.write(entry.name);
+    header.write(extra);
+    emit(header.bytes(), 0, header.size());
+  }
+
+  private void writeCentralDirectory() throws IOException {
+    if (entries.size() > 0xffff) {
+      throw new IOException("ZIP64 archives are not supported: too many entries");
+    }
+    current = null;
+    long start = written;
+    for (Entry entry : entries) {
+      if (entry.offset > 0xffffffffL) {
+        throw new IOException("ZIP64 archives are not supported: " + name(entry));
+      }
+      header.reset();
+      writeInt(header, CENTRAL_HEADER);
+      writeShort(header, VERSION);
+      writeShort(header, entry.version);
+      writeShort(header, entry.flags);
+      writeShort(header, entry.method);
+      writeShort(header, entry.time);
+      writeShort(header, entry.date);
+      writeInt(header, entry.crc);
+      writeInt(header, entry.compressedSize);
+      writeInt(header, entry.size);
+      writeShort(header, entry.name.length);
+      // no extra field, comment, disk number, internal or external attributes
+      writeShort(header, 0);
+      writeShort(header, 0);
+      writeShort(header, 0);
+      writeShort(header, 0);
+      writeInt(header, 0);
+      writeInt(header, entry.offset);
+      header.write(entry.name);
+      emit(header.bytes(), 0, header.size());
+    }
+    long size = written - start;
+    if (start > 0xffffffffL) {
+      throw new IOException("ZIP64 archives are not supported: the WAB is too large");
+    }
+
+    header.reset();
+    writeInt(header, END_HEADER);
+    writeShort(header, 0);
+    writeShort(header, 0);
+    writeShort(header, entries.size());
+    writeShort(header, entries.size());
+    writeInt(header, size);
+    writeInt(header, start);
+    writeShort(header, 0);
+    emit(header.bytes(), 0, header.size());
+    entries.clear();
+  }
+
+  /**
+   * Adds bytes of the current entry to the WAB, unless the entry is left out.
+   */
+  private void emit(byte[] b, int off, int len) {
+    if (current == null || current.copied) {
+      out.write(b, off, len);
+      written += len;
+    }
+  }
+
+  /**
+   * Reads the sizes held by the ZIP64 extra field of a local header, if any.
+   *
+   * @return the extra field without its ZIP64 block
+   */
+  private static byte[] readZip64(Entry entry, byte[] extra) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream(extra.length);
+    for (int i = 0; i + 4 <= extra.length; ) {
+      int id = getShort(extra, i);
+      int length = Math.min(getShort(extra, i + 2), extra.length - i - 4);
+      if (id == ZIP64_EXTRA) {
+        entry.zip64 = true;
+        int off = i + 4;
+        if (entry.size == 0xffffffffL && off + 8 <= i + 4 + length) {
+          entry.size = getLong(extra, off);
+          off += 8;
+        }
+        if (entry.compressedSize == 0xffffffffL && off + 8 <= i + 4 + length) {
+          entry.compressedSize = getLong(extra, off);
+        }
+      } else {
+        result.write(extra, i, 4 + length);
+      }
+      i += 4 + length;
+    }
+    checkSize(entry);
+    return result.toByteArray();
+  }
+
+  private static void checkSize(Entry entry) throws IOException {
+    if (entry.size >= 0xffffffffL || entry.compressedSize >= 0xffffffffL) {
+      throw new IOException("ZIP64 entries are not supported: " + name(entry));
+    }
+  }
+
+  private static int getShort(byte[] b, int off) {
+    return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8;
+  }
+
+  private static long getLong(byte[] b, int off) {
+    long v = 0;
+    for (int i = 7; i >= 0; i--) {
+      v = v << 8 | (b[off + i] & 0xff);
+    }
+    return v;
+  }
+
+  private static String name(Entry entry) throws IOException {
+    return new String(entry.name, "UTF-8");
+  }
+
+  private int readShort() throws IOException {
+    int b0 = in.read();
+    int b1 = in.read();
+    if ((b0 | b1) < 0) {
+      throw new EOFException("Unexpected end of the WAR");
+    }
+    return b0 | b1 << 8;
+  }
+
+  private long readInt() throws IOException {
+    return readShort() | ((long) readShort()) << 16;
+  }
+
+  private long readLong() throws IOException {
+    return readInt() | readInt() << 32;
+  }
+
+  private void readFully(byte[] b) throws IOException {
+    for (int off = 0; off < b.length; ) {
+      int n = in.read(b, off, b.length - off);
+      if (n == -1) {
+        throw new EOFException("Unexpected end of the WAR");
+      }
+      off += n;
+    }
+  }
+
+  private static void writeShort(ByteArrayOutputStream out, int v) {
+    out.write(v & 0xff);
+    out.write((v >>> 8) & 0xff);
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, long v) {
+    writeShort(out, (int) (v & 0xffff));
+    writeShort(out, (int) ((v >>> 16) & 0xffff));
+  }
+}
@@ -44,6 +44,9 @@ import org.objectweb.asm.ClassReader;
 import org.osgi.framework.Constants;
 
 public class WarToWabConverterImpl implements WabConversion {
+  /** Framework property enabling the streaming conversion, false by default */
+  public static final String STREAMING = "org.apache.aries.web.converter.streaming";
+
   private static final String DEFAULT_BUNDLE_VERSION = "1.0";
   private static final String DEFAULT_BUNDLE_MANIFESTVERSION = "2";
   private static final String INITIAL_CLASSPATH_ENTRY = "WEB-INF/classes";
@@ -69,6 +72,8 @@ public class WarToWabConverterImpl implements WabConversion {
   private Manifest wabManifest;
   private String warName;
   private InputStreamProvider input;
+  private DependencyScanner scanner;
+  private boolean streaming;
   
   // State used for updating the manifest
   private Set<String> importPackages;
@@ -82,7 +87,19 @@ public class WarToWabConverterImpl implements WabConversion {
   }
   
   public WarToWabConverterImpl(InputStreamProvider warFile, String name, CaseInsensitiveMap properties) throws IOException {
+    this(warFile, name, properties, null, false);
+  }
+
+  /**
+   * @param scanner the scanner analysing the WAR in parallel, or null to analyse it on the calling thread
+   * @param streaming whether the WAB is produced as it is read, with the entries of the WAR copied as they
+   *          are stored, rather than built in a buffer
+   */
+  public WarToWabConverterImpl(InputStreamProvider warFile, String name, CaseInsensitiveMap properties,
+                               DependencyScanner scanner, boolean streaming) throws IOException {
     this.properties = properties;
+    this.scanner = scanner;
+    this.streaming = streaming;
     classPath = new ArrayList<String>();
     importPackages = new TreeSet<String>();
     exemptPackages = new TreeSet<String>();
@@ -102,6 +119,14 @@ public class WarToWabConverterImpl implements WabConversion {
       Manifest manifest = jarInput.getManifest();
       if (isBundle(manifest)) {
           wabManifest = updateBundleManifest(manifest);
+      } else if (scanner != null) {
+          jarInput.close();
+          jarInput = null;
+          DependencyScanner.Result result = scanner.scan(input);
+          importPackages.addAll(result.importPackages);
+          exemptPackages.addAll(result.exemptPackages);
+          buildClassPath(result.manifests);
+          wabManifest = updateManifest(manifest);
       } else {
           scanForDependencies(jarInput);
           // Add the new properties to the manifest byte stream
@@ -122,6 +147,23 @@ public class WarToWabConverterImpl implements WabConversion {
     generateManifest();
     
     CachedOutputStream output = new CachedOutputStream();
+    if (streaming) {
+      // the length is needed, keep a copy of the WAB, which goes to a temporary file when large
+      InputStream wabInput = new WabInputStream(input.getInputStream(), wabManifest, signed);
+      try {
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = wabInput.read(buffer)) != -1) {
+          output.write(buffer, 0, n);
+        }
+      } finally {
+        wabInput.close();
+        output.close();
+      }
+      wab = output;
+      return;
+    }
+
     JarOutputStream jarOutput = null;
     JarInputStream jarInput = null;
     ZipEntry entry = null;
@@ -171,7 +213,7 @@ public class WarToWabConverterImpl implements WabConversion {
       return false;
   }
   
-  private void scanRecursive(final JarInputStream jarInput, boolean topLevel) throws IOException 
+  private void scanRecursive(JarInputStream jarInput, boolean topLevel) throws IOException 
   {
     ZipEntry entry;
     
@@ -187,13 +229,8 @@ public class WarToWabConverterImpl implements WabConversion {
         importPackages.addAll(thisJSPsImports);
       } else if (entry.getName().endsWith(".jar")) {
         
-        JarInputStream newJar = new JarInputStream(new InputStream() {
-          @Override
-          public int read() throws IOException
-          {
-            return jarInput.read();
-          }
-        });
+        // the nested stream is never closed, so it can read the entry directly
+        JarInputStream newJar = new JarInputStream(jarInput);
         
         // discard return, we only care about the top level jars
         scanRecursive(newJar,false);
@@ -218,6 +255,11 @@ public class WarToWabConverterImpl implements WabConversion {
     
     scanRecursive(jarInput, true);
 
+    buildClassPath(manifests);
+  }
+
+  private void buildClassPath(Map<String, Manifest> manifests) throws IOException
+  {
     // Process manifests from jars in order to work out classpath dependencies
     ClassPathBuilder classPathBuilder = new ClassPathBuilder(manifests);
     for (String fileName : manifests.keySet())
@@ -507,7 +549,7 @@ public class WarToWabConverterImpl implements WabConversion {
       return foundDigestAttribute;
   }
   
-  private static boolean isSignatureFile(String entryName) {
+  static boolean isSignatureFile(String entryName) {
       String[] parts = entryName.split("/");
       if (parts.length == 2) {
           String name = parts[1].toLowerCase();
@@ -522,6 +564,10 @@ public class WarToWabConverterImpl implements WabConversion {
   }
   
   public InputStream getWAB() throws IOException {
+    if (streaming && wab == null) {
+      generateManifest();
+      return new WabInputStream(input.getInputStream(), wabManifest, signed);
+    }
     convert();
     return wab.getInputStream();
   }
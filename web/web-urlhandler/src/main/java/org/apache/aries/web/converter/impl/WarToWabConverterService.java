@@ -26,8 +26,20 @@ import org.apache.aries.web.converter.WarToWabConverter;
 
 public class WarToWabConverterService implements WarToWabConverter {
 
+  private final DependencyScanner scanner;
+  private final boolean streaming;
+
+  public WarToWabConverterService() {
+    this(null, false);
+  }
+
+  public WarToWabConverterService(DependencyScanner scanner, boolean streaming) {
+    this.scanner = scanner;
+    this.streaming = streaming;
+  }
+
   public WabConversion convert(InputStreamProvider input, String name, Properties properties) throws IOException {
-    return new WarToWabConverterImpl(input, name, properties);
+    return new WarToWabConverterImpl(input, name, new CaseInsensitiveMap(properties), scanner, streaming);
   }
 
 }
@@ -26,17 +26,27 @@ import java.net.URLConnection;
 
 import org.apache.aries.web.converter.WarToWabConverter.InputStreamProvider;
 import org.apache.aries.web.converter.impl.CaseInsensitiveMap;
+import org.apache.aries.web.converter.impl.DependencyScanner;
 import org.apache.aries.web.converter.impl.WarToWabConverterImpl;
 
 public class WARConnection extends URLConnection
 {
   private WarToWabConverterImpl converter = null;
   private CaseInsensitiveMap properties;
+  private DependencyScanner scanner;
+  private boolean streaming;
   
   protected WARConnection(URL url, CaseInsensitiveMap properties) throws MalformedURLException
+  {
+    this(url, properties, null, false);
+  }
+
+  protected WARConnection(URL url, CaseInsensitiveMap properties, DependencyScanner scanner, boolean streaming) throws MalformedURLException
   {
     super(url);
     this.properties = properties;
+    this.scanner = scanner;
+    this.streaming = streaming;
   }
 
   @Override
@@ -53,7 +63,7 @@ public class WARConnection extends URLConnection
       public InputStream getInputStream() throws IOException {
         return url.openStream();
       }
-    }, warName, properties);
+    }, warName, properties, scanner, streaming);
   }
 
   @Override
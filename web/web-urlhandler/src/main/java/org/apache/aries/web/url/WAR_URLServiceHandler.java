@@ -26,6 +26,7 @@ import java.util.Hashtable;
 import java.util.StringTokenizer;
 
 import org.apache.aries.web.converter.impl.CaseInsensitiveMap;
+import org.apache.aries.web.converter.impl.DependencyScanner;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.url.AbstractURLStreamHandlerService;
@@ -38,9 +39,19 @@ public class WAR_URLServiceHandler extends AbstractURLStreamHandlerService imple
 
   private static final String urlScheme = "webbundle";
   
+  private final DependencyScanner scanner;
+  private final boolean streaming;
+  
   public WAR_URLServiceHandler()
+  {
+    this(null, false);
+  }
+
+  public WAR_URLServiceHandler(DependencyScanner scanner, boolean streaming)
   {
     super();
+    this.scanner = scanner;
+    this.streaming = streaming;
   }
 
   public URLConnection openConnection(URL url) throws IOException
@@ -70,7 +81,7 @@ public class WAR_URLServiceHandler extends AbstractURLStreamHandlerService imple
       }
     }
         
-    return new WARConnection(new URL(url.getPath()), properties);
+    return new WARConnection(new URL(url.getPath()), properties, scanner, streaming);
   }
 
   @Override
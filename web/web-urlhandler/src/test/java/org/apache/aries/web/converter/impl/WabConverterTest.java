@@ -24,13 +24,17 @@ import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
 import java.util.jar.Attributes;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 
 import org.apache.aries.web.converter.WarToWabConverter;
@@ -235,6 +239,140 @@ public class WabConverterTest
     }
   }
   
+  @Test
+  public void testParallelScan() throws Exception {
+    final byte[] war = makeWarWithClasses();
+    Properties properties = new Properties();
+    properties.put(WarToWabConverter.WEB_CONTEXT_PATH, "/test");
+
+    Attributes expected = new WarToWabConverterImpl(makeTestFile(war), WAR_FILE_NAME, properties)
+        .getWABManifest().getMainAttributes();
+    assertTrue(expected.getValue(Constants.IMPORT_PACKAGE).contains("org.objectweb.asm;resolution:=optional"));
+    assertTrue(expected.getValue(Constants.IMPORT_PACKAGE).contains("org.apache.test.jsp;resolution:=optional"));
+    assertEquals("WEB-INF/classes,WEB-INF/lib/finder.jar", expected.getValue(Constants.BUNDLE_CLASSPATH));
+
+    DependencyScanner scanner = new DependencyScanner(2, DependencyScanner.DEFAULT_CACHE_SIZE);
+    try {
+      for (int i = 0; i < 2; i++) {
+        Attributes attrs = new WarToWabConverterImpl(makeTestFile(war), WAR_FILE_NAME,
+            new CaseInsensitiveMap(properties), scanner, false).getWABManifest().getMainAttributes();
+        assertEquals(expected.getValue(Constants.IMPORT_PACKAGE), attrs.getValue(Constants.IMPORT_PACKAGE));
+        assertEquals(expected.getValue(Constants.BUNDLE_CLASSPATH), attrs.getValue(Constants.BUNDLE_CLASSPATH));
+      }
+      assertEquals(1, scanner.getCacheMisses());
+      assertEquals(1, scanner.getCacheHits());
+    } finally {
+      scanner.destroy();
+    }
+  }
+
+  @Test
+  public void testStreaming() throws Exception {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1");
+    JarOutputStream out = new JarOutputStream(bout, manifest);
+    out.putNextEntry(new ZipEntry("index.html"));
+    out.write("hello world".getBytes());
+    byte[] stored = "stored".getBytes();
+    CRC32 crc = new CRC32();
+    crc.update(stored);
+    ZipEntry entry = new ZipEntry("WEB-INF/stored.txt");
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(stored.length);
+    entry.setCrc(crc.getValue());
+    out.putNextEntry(entry);
+    out.write(stored);
+    out.close();
+    byte[] war = bout.toByteArray();
+
+    Properties properties = new Properties();
+    properties.put(WarToWabConverter.WEB_CONTEXT_PATH, "/test");
+    properties.put(Constants.BUNDLE_SYMBOLICNAME, "test.bundle");
+    WarToWabConverterImpl sut = new WarToWabConverterImpl(makeTestFile(war), WAR_FILE_NAME,
+        new CaseInsensitiveMap(properties), null, true);
+
+    InputStream wabInput = sut.getWAB();
+    byte[] wab = getBytes(wabInput);
+    wabInput.close();
+    JarInputStream in = new JarInputStream(new ByteArrayInputStream(wab));
+    assertEquals("test.bundle", in.getManifest().getMainAttributes().getValue(Constants.BUNDLE_SYMBOLICNAME));
+    assertEquals("index.html", in.getNextJarEntry().getName());
+    assertEquals("hello world", new String(getBytes(in)));
+    assertEquals("WEB-INF/stored.txt", in.getNextJarEntry().getName());
+    assertEquals("stored", new String(getBytes(in)));
+    assertEquals(null, in.getNextJarEntry());
+    in.close();
+
+    // the central directory is read when the WAB is opened as a file
+    File file = File.createTempFile("wab", ".jar");
+    try {
+      FileOutputStream fout = new FileOutputStream(file);
+      fout.write(wab);
+      fout.close();
+      JarFile jar = new JarFile(file);
+      try {
+        assertEquals("test.bundle", jar.getManifest().getMainAttributes().getValue(Constants.BUNDLE_SYMBOLICNAME));
+        assertEquals("hello world", new String(getBytes(jar.getInputStream(jar.getEntry("index.html")))));
+        assertEquals("stored", new String(getBytes(jar.getInputStream(jar.getEntry("WEB-INF/stored.txt")))));
+        assertEquals(3, jar.size());
+      } finally {
+        jar.close();
+      }
+    } finally {
+      file.delete();
+    }
+
+    assertEquals(wab.length, sut.getWabLength());
+    wabInput = sut.getWAB();
+    assertEquals(wab.length, getBytes(wabInput).length);
+    wabInput.close();
+  }
+
+  /**
+   * A WAR with a class, a JSP and a nested jar holding a class
+   */
+  private byte[] makeWarWithClasses() throws IOException {
+    ByteArrayOutputStream jar = new ByteArrayOutputStream();
+    JarOutputStream out = new JarOutputStream(jar, new Manifest());
+    out.putNextEntry(new ZipEntry("org/apache/aries/web/converter/impl/PackageFinder.class"));
+    out.write(getClassBytes(PackageFinder.class));
+    out.close();
+
+    ByteArrayOutputStream war = new ByteArrayOutputStream();
+    out = new JarOutputStream(war);
+    out.putNextEntry(new ZipEntry("WEB-INF/classes/org/apache/aries/web/converter/impl/WabConverterTest.class"));
+    out.write(getClassBytes(WabConverterTest.class));
+    out.putNextEntry(new ZipEntry("index.jsp"));
+    out.write("<%@ page import=\"org.apache.test.jsp.Helper\" %>".getBytes());
+    out.putNextEntry(new ZipEntry("WEB-INF/lib/finder.jar"));
+    out.write(jar.toByteArray());
+    out.close();
+    return war.toByteArray();
+  }
+
+  private byte[] getClassBytes(Class<?> clazz) throws IOException {
+    InputStream in = clazz.getResourceAsStream(clazz.getSimpleName() + ".class");
+    try {
+      return getBytes(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads a stream to its end, without closing it
+   */
+  private byte[] getBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+  
   private Attributes convertWithProperties(Manifest m, String ... props) throws Exception {
     Properties properties = new Properties();
     for (int i=0;i<props.length;i+=2) {